@@ -39,10 +39,16 @@ import java.util.List;
  * Executes a given set of SQL scripts against a javax.sql.DataSource
  * <p/>
  * <p/>
+ * The statements are read from the scripts one at a time and executed in JDBC batches, committing every
+ * commitInterval statements, so large seed scripts are never held in memory as a whole.
+ * <p/>
+ * <p/>
  * Usage:
  * <code>
  *    <bean id="dataSourcePopulator" class="org.apache.rave.jdbc.DataSourcePopulator">
  *       <property name="executeScriptQuery" value="SELECT * FROM widgets" />
+ *       <property name="batchSize" value="100" />
+ *       <property name="commitInterval" value="10000" />
  *       <property name="scriptLocations" >
  *          <list>
  *              <value>file:db/sequences/create_all_seq.sql</value>
@@ -59,8 +65,13 @@ public class DataSourcePopulator implements Serializable {
 
     private static Logger logger = LoggerFactory.getLogger(DataSourcePopulator.class);
 
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    public static final int DEFAULT_COMMIT_INTERVAL = 10000;
+
     protected String executeScriptQuery;
     protected List<Resource> scriptLocations;
+    protected int batchSize = DEFAULT_BATCH_SIZE;
+    protected int commitInterval = DEFAULT_COMMIT_INTERVAL;
 
     /**
      * Creates a new populator initial values for required properties.
@@ -108,6 +119,29 @@ public class DataSourcePopulator implements Serializable {
         this.scriptLocations = scriptLocations;
     }
 
+    /**
+     * Optional Property
+     * <p/>
+     * Sets the number of statements sent to the database at once, defaults to {@value #DEFAULT_BATCH_SIZE}
+     *
+     * @param batchSize the number of statements in a JDBC batch, at least 1
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Optional Property
+     * <p/>
+     * Sets the number of statements executed between commits, defaults to {@value #DEFAULT_COMMIT_INTERVAL}.  Each
+     * script is committed at its end regardless.
+     *
+     * @param commitInterval the number of statements in a transaction, at least 1
+     */
+    public void setCommitInterval(int commitInterval) {
+        this.commitInterval = commitInterval;
+    }
+
     public void initialize(DataSource dataSource) {
         validateProperties();
         populateDataSourceIfNecessary(dataSource);
@@ -120,6 +154,9 @@ public class DataSourcePopulator implements Serializable {
         if (scriptLocations == null) {
             throw new IllegalArgumentException("The path to the database schema DDL is required");
         }
+        if (batchSize < 1 || commitInterval < 1) {
+            throw new IllegalArgumentException("The batch size and commit interval must be at least 1");
+        }
     }
 
     protected void populateDataSourceIfNecessary(DataSource dataSource) {
@@ -137,25 +174,72 @@ public class DataSourcePopulator implements Serializable {
         }
     }
 
-    /*
-      Static Helper methods
-    */
-    protected static void executeScripts(Connection connection, List<Resource> resources) {
+    protected void executeScripts(Connection connection, List<Resource> resources) {
         for (Resource script : resources) {
+            SqlFileParser parser = new SqlFileParser(script);
             try {
-                String sql = new SqlFileParser(script).getSQL();
-                logger.debug("Executing sql:\n" + sql);
-                executeSql(sql, connection);
-                logger.debug("Successfully executed statement");
-
+                long start = System.currentTimeMillis();
+                int count = executeStatements(parser, connection, script.getFilename());
+                logger.info("Executed " + count + " statements from " + script.getFilename() + " in " +
+                        (System.currentTimeMillis() - start) + " ms");
             } catch (IOException e) {
                 throw new RuntimeException("File IO Exception while loading " + script.getFilename(), e);
             } catch (SQLException e) {
                 throw new RuntimeException("SQL exception occurred loading data from " + script.getFilename(), e);
+            } finally {
+                closeParser(parser);
             }
         }
     }
 
+    protected int executeStatements(SqlFileParser parser, Connection connection, String scriptName)
+            throws IOException, SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        Statement statement = connection.createStatement();
+        try {
+            int count = 0;
+            int batched = 0;
+            String sql;
+            while ((sql = parser.nextStatement()) != null) {
+                if (logger.isTraceEnabled()) {
+                    logger.trace("Adding sql to batch:\n" + sql);
+                }
+                statement.addBatch(sql);
+                count++;
+                batched++;
+                if (batched == batchSize) {
+                    statement.executeBatch();
+                    batched = 0;
+                }
+                if (count % commitInterval == 0) {
+                    if (batched > 0) {
+                        statement.executeBatch();
+                        batched = 0;
+                    }
+                    connection.commit();
+                    logger.info("Committed " + count + " statements from " + scriptName);
+                }
+            }
+            if (batched > 0) {
+                statement.executeBatch();
+            }
+            connection.commit();
+            return count;
+        } catch (SQLException e) {
+            //the statements since the last commit are discarded, the earlier ones stay in the database
+            connection.rollback();
+            throw e;
+        } finally {
+            closeStatement(statement);
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /*
+      Static Helper methods
+    */
+
     protected static boolean testExecuteScriptQuery(Connection conn, String executeScriptQuery) {
         boolean result;
         try {
@@ -190,5 +274,21 @@ public class DataSourcePopulator implements Serializable {
         statement.execute(sql);
     }
 
+    protected static void closeStatement(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            logger.error("Error closing statement", e);
+        }
+    }
+
+    protected static void closeParser(SqlFileParser parser) {
+        try {
+            parser.close();
+        } catch (IOException e) {
+            logger.error("Error closing script", e);
+        }
+    }
+
 
 }
\ No newline at end of file
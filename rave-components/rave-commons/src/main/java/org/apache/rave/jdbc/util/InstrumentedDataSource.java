@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.jdbc.util;
+
+import org.apache.commons.dbcp.BasicDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pooled {@link javax.sql.DataSource} that records how long callers wait to borrow a connection from the pool.
+ * <p/>
+ * All pool configuration (size, abandoned connection detection, prepared statement caching and validation) is
+ * inherited from {@link BasicDataSource}.  The pool state and the borrow statistics are exposed as JMX attributes
+ * so the pool can be sized against real load.
+ * <p/>
+ * Usage:
+ * <code>
+ *    <bean id="pooledDataSource" class="org.apache.rave.jdbc.util.InstrumentedDataSource" destroy-method="close">
+ *       <property name="url" value="jdbc:h2:mem:portal"/>
+ *       <property name="driverClassName" value="org.h2.Driver"/>
+ *       <property name="maxActive" value="50"/>
+ *       <property name="maxWait" value="10000"/>
+ *    </bean>
+ * </code>
+ */
+@ManagedResource(description = "Pooled JDBC DataSource")
+public class InstrumentedDataSource extends BasicDataSource {
+
+    private static Logger logger = LoggerFactory.getLogger(InstrumentedDataSource.class);
+
+    private final AtomicLong connectionRequests = new AtomicLong();
+    private final AtomicLong connectionTimeouts = new AtomicLong();
+    private final AtomicLong totalWaitTimeMillis = new AtomicLong();
+    private final AtomicLong maxWaitTimeMillis = new AtomicLong();
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.currentTimeMillis();
+        try {
+            return super.getConnection();
+        } catch (SQLException e) {
+            recordFailure(e);
+            throw e;
+        } finally {
+            recordWait(System.currentTimeMillis() - start);
+        }
+    }
+
+    @Override
+    public Connection getConnection(String user, String pass) throws SQLException {
+        long start = System.currentTimeMillis();
+        try {
+            return super.getConnection(user, pass);
+        } catch (SQLException e) {
+            recordFailure(e);
+            throw e;
+        } finally {
+            recordWait(System.currentTimeMillis() - start);
+        }
+    }
+
+    @Override
+    @ManagedAttribute(description = "Number of connections currently borrowed from the pool")
+    public synchronized int getNumActive() {
+        return super.getNumActive();
+    }
+
+    @Override
+    @ManagedAttribute(description = "Number of idle connections in the pool")
+    public synchronized int getNumIdle() {
+        return super.getNumIdle();
+    }
+
+    @Override
+    @ManagedAttribute(description = "Maximum number of connections the pool will hand out")
+    public synchronized int getMaxActive() {
+        return super.getMaxActive();
+    }
+
+    @ManagedAttribute(description = "Number of connection requests made against the pool")
+    public long getConnectionRequestCount() {
+        return connectionRequests.get();
+    }
+
+    @ManagedAttribute(description = "Number of connection requests that timed out waiting for the pool")
+    public long getConnectionTimeoutCount() {
+        return connectionTimeouts.get();
+    }
+
+    @ManagedAttribute(description = "Total time in milliseconds spent waiting for connections")
+    public long getTotalWaitTimeMillis() {
+        return totalWaitTimeMillis.get();
+    }
+
+    @ManagedAttribute(description = "Longest time in milliseconds a single request waited for a connection")
+    public long getMaxWaitTimeMillis() {
+        return maxWaitTimeMillis.get();
+    }
+
+    @ManagedAttribute(description = "Average time in milliseconds spent waiting for a connection")
+    public double getAverageWaitTimeMillis() {
+        long requests = connectionRequests.get();
+        return requests == 0 ? 0 : (double) totalWaitTimeMillis.get() / requests;
+    }
+
+    @ManagedOperation(description = "Resets the connection wait statistics")
+    public void resetStatistics() {
+        connectionRequests.set(0);
+        connectionTimeouts.set(0);
+        totalWaitTimeMillis.set(0);
+        maxWaitTimeMillis.set(0);
+    }
+
+    /*
+      Helper methods
+    */
+    private void recordWait(long waitMillis) {
+        connectionRequests.incrementAndGet();
+        totalWaitTimeMillis.addAndGet(waitMillis);
+        long currentMax = maxWaitTimeMillis.get();
+        while (waitMillis > currentMax && !maxWaitTimeMillis.compareAndSet(currentMax, waitMillis)) {
+            currentMax = maxWaitTimeMillis.get();
+        }
+    }
+
+    private void recordFailure(SQLException e) {
+        //BasicDataSource wraps the NoSuchElementException thrown by the underlying pool when maxWait expires
+        if (e.getCause() instanceof NoSuchElementException) {
+            connectionTimeouts.incrementAndGet();
+            logger.warn("Timed out waiting for a pooled connection. active: {}, idle: {}", getNumActive(), getNumIdle());
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.jdbc.util;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * A schema migration implemented in Java, for conversions of existing data a SQL script cannot express.  Applied by
+ * the {@link SchemaMigrator} in the order of its version, along with the scripts.
+ */
+public interface JdbcMigration {
+
+    /**
+     * @return a short description of the migration, recorded in the version table
+     */
+    String getDescription();
+
+    /**
+     * Applies the migration.  The connection is not committed automatically, it is committed by the
+     * {@link SchemaMigrator} once the migration returns and rolled back if the migration throws.
+     *
+     * @param connection the connection to the database to migrate
+     * @throws SQLException if the migration fails
+     */
+    void migrate(Connection connection) throws SQLException;
+}
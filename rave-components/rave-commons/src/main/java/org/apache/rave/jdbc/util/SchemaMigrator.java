@@ -0,0 +1,263 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.jdbc.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Applies versioned SQL scripts to a javax.sql.DataSource, each at most once.
+ * <p/>
+ * <p/>
+ * The tables and columns of the entities are created by the JPA provider, the scripts add what it cannot derive from
+ * the mappings, such as secondary indexes, or convert existing data after a mapping changed.  A script is named
+ * V&lt;version&gt;__&lt;description&gt;.sql and the scripts are applied in the order of their versions.  Conversions a
+ * script cannot express are implemented as a {@link JdbcMigration} and applied in the order of their versions along
+ * with the scripts.  The versions applied are recorded in the version table, which is created when it does not exist
+ * yet.
+ * <p/>
+ * <p/>
+ * Usage:
+ * <code>
+ *    <bean id="schemaMigrator" class="org.apache.rave.jdbc.util.SchemaMigrator">
+ *       <property name="versionTable" value="rave_portal_schema_version" />
+ *       <property name="migrationLocations" value="classpath*:org/apache/rave/portal/migration/V*.sql" />
+ *    </bean>
+ * </code>
+ * <p/>
+ */
+public class SchemaMigrator {
+    private static Logger logger = LoggerFactory.getLogger(SchemaMigrator.class);
+
+    public static final String DEFAULT_VERSION_TABLE = "schema_version";
+    private static final Pattern MIGRATION_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+
+    private Resource[] migrationLocations;
+    private Map<Integer, JdbcMigration> jdbcMigrations = Collections.emptyMap();
+    private String versionTable = DEFAULT_VERSION_TABLE;
+
+    /**
+     * Required Property
+     * <p/>
+     * Sets the scripts to apply, in any order
+     *
+     * @param migrationLocations the scripts, each named V&lt;version&gt;__&lt;description&gt;.sql
+     */
+    public void setMigrationLocations(Resource[] migrationLocations) {
+        this.migrationLocations = migrationLocations;
+    }
+
+    /**
+     * Optional Property
+     * <p/>
+     * Sets the migrations implemented in Java, by version.  Their versions must differ from those of the scripts.
+     *
+     * @param jdbcMigrations the migrations by version
+     */
+    public void setJdbcMigrations(Map<Integer, JdbcMigration> jdbcMigrations) {
+        this.jdbcMigrations = jdbcMigrations;
+    }
+
+    /**
+     * Optional Property
+     * <p/>
+     * Sets the table recording the versions applied, defaults to {@value #DEFAULT_VERSION_TABLE}.  Persistence units
+     * sharing a database need a version table each.
+     *
+     * @param versionTable the name of the table
+     */
+    public void setVersionTable(String versionTable) {
+        this.versionTable = versionTable;
+    }
+
+    /**
+     * Applies the scripts whose version has not been applied to the database yet
+     *
+     * @param dataSource the database to migrate
+     * @return the number of scripts applied
+     */
+    public int migrate(DataSource dataSource) {
+        SortedMap<Integer, JdbcMigration> migrations = getMigrations();
+        Connection connection = null;
+        try {
+            connection = dataSource.getConnection();
+            Set<Integer> applied = getAppliedVersions(connection);
+            int count = 0;
+            for (Map.Entry<Integer, JdbcMigration> migration : migrations.entrySet()) {
+                if (!applied.contains(migration.getKey())) {
+                    apply(connection, migration.getKey(), migration.getValue());
+                    count++;
+                }
+            }
+            logger.info("Applied " + count + " of " + migrations.size() + " schema migrations");
+            return count;
+        } catch (SQLException e) {
+            throw new RuntimeException("Error migrating the database schema", e);
+        } finally {
+            DataSourcePopulator.closeConnection(connection);
+        }
+    }
+
+    /*
+      Helper methods
+    */
+    protected SortedMap<Integer, JdbcMigration> getMigrations() {
+        if (migrationLocations == null) {
+            throw new IllegalArgumentException("The locations of the schema migrations are required");
+        }
+        SortedMap<Integer, JdbcMigration> migrations = new TreeMap<Integer, JdbcMigration>(jdbcMigrations);
+        for (Resource migration : migrationLocations) {
+            Matcher name = MIGRATION_NAME.matcher(migration.getFilename());
+            if (!name.matches()) {
+                throw new IllegalArgumentException("Schema migration " + migration.getFilename() +
+                        " is not named V<version>__<description>.sql");
+            }
+            JdbcMigration duplicate = migrations.put(Integer.valueOf(name.group(1)),
+                    new ScriptMigration(migration, name.group(2).replace('_', ' ')));
+            if (duplicate != null) {
+                throw new IllegalArgumentException("Schema migrations " + duplicate.getDescription() + " and " +
+                        migration.getFilename() + " have the same version");
+            }
+        }
+        return migrations;
+    }
+
+    protected Set<Integer> getAppliedVersions(Connection connection) throws SQLException {
+        Set<Integer> versions = new HashSet<Integer>();
+        Statement statement = connection.createStatement();
+        try {
+            if (!versionTableExists(connection)) {
+                statement.execute("CREATE TABLE " + versionTable + " (version INTEGER NOT NULL PRIMARY KEY, " +
+                        "description VARCHAR(255), applied_on TIMESTAMP)");
+                return versions;
+            }
+            ResultSet resultSet = statement.executeQuery("SELECT version FROM " + versionTable);
+            while (resultSet.next()) {
+                versions.add(resultSet.getInt(1));
+            }
+            return versions;
+        } finally {
+            DataSourcePopulator.closeStatement(statement);
+        }
+    }
+
+    protected void apply(Connection connection, int version, JdbcMigration migration) throws SQLException {
+        logger.info("Applying schema migration " + version + ": " + migration.getDescription());
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            migration.migrate(connection);
+            recordVersion(connection, version, migration);
+            connection.commit();
+        } catch (SQLException e) {
+            //most databases commit DDL implicitly, so a failed migration may have to be repaired by hand
+            connection.rollback();
+            throw e;
+        } catch (RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private void recordVersion(Connection connection, int version, JdbcMigration migration) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement("INSERT INTO " + versionTable +
+                " (version, description, applied_on) VALUES (?, ?, ?)");
+        try {
+            statement.setInt(1, version);
+            statement.setString(2, migration.getDescription());
+            statement.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+            statement.executeUpdate();
+        } finally {
+            DataSourcePopulator.closeStatement(statement);
+        }
+    }
+
+    // unquoted names are stored in upper or lower case depending on the database
+    private boolean versionTableExists(Connection connection) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        for (String name : new String[]{versionTable, versionTable.toUpperCase(), versionTable.toLowerCase()}) {
+            ResultSet tables = metaData.getTables(null, null, name, null);
+            try {
+                if (tables.next()) {
+                    return true;
+                }
+            } finally {
+                tables.close();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Applies the statements of a script
+     */
+    private static class ScriptMigration implements JdbcMigration {
+        private final Resource script;
+        private final String description;
+
+        private ScriptMigration(Resource script, String description) {
+            this.script = script;
+            this.description = description;
+        }
+
+        @Override
+        public String getDescription() {
+            return description;
+        }
+
+        @Override
+        public void migrate(Connection connection) throws SQLException {
+            SqlFileParser parser = new SqlFileParser(script);
+            Statement statement = connection.createStatement();
+            try {
+                String sql;
+                while ((sql = parser.nextStatement()) != null) {
+                    statement.execute(sql);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("File IO Exception while loading " + script.getFilename(), e);
+            } finally {
+                DataSourcePopulator.closeStatement(statement);
+                DataSourcePopulator.closeParser(parser);
+            }
+        }
+    }
+}
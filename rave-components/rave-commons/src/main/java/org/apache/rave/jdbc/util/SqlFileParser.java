@@ -22,22 +22,23 @@ package org.apache.rave.jdbc.util;
 import org.springframework.core.io.Resource;
 
 import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.Set;
-import java.util.Stack;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
- * Parses a file looking for create, alter, insert, update, delete or drop commands and appends them to an output
- * string or follows @@ syntax to read child scripts.
+ * Parses a file looking for create, alter, insert, update, delete or drop commands and returns them one at a time,
+ * following @@ syntax to read child scripts in place.
+ * <p/>
+ * Only the script being read and the statement being built are held in memory, so scripts of any size can be
+ * parsed.  Close the parser when not reading it to the end.
  */
-public class SqlFileParser {
-    private static final Pattern WORD_PATTERN = Pattern.compile("^([a-zA-Z]*)[ ;]");
+public class SqlFileParser implements Closeable {
     private static final String CHILD_SCRIPT_INDICATOR = "@@";
+    private static final char STATEMENT_TERMINATOR = ';';
     private static final Set<String> commandSet;
 
     static {
@@ -54,14 +55,10 @@ public class SqlFileParser {
         commandSet.add("rollback");
     }
 
-    private enum State {
-        INIT,
-        READFILE,
-        READSQL
-    }
-
-    private Stack<State> stateStack;
-    private Resource resource;
+    //the readers of the scripts being read, the innermost child script first
+    private final LinkedList<BufferedReader> readers;
+    private final Resource resource;
+    private boolean started;
 
     /**
      * Constructor takes a Spring {@link org.springframework.core.io.Resource}
@@ -69,7 +66,7 @@ public class SqlFileParser {
      * @param resource the initial file to parse
      */
     public SqlFileParser(Resource resource) {
-        stateStack = new Stack<State>();
+        this.readers = new LinkedList<BufferedReader>();
         this.resource = resource;
     }
 
@@ -80,82 +77,98 @@ public class SqlFileParser {
      * @throws java.io.IOException if the resource or its children are not found
      */
     public String getSQL() throws IOException {
-        return processResource(resource);
-    }
-
-    private String processResource(Resource res) throws IOException {
         StringBuilder sql = new StringBuilder();
-        File resourceFile = res.getFile();
-        stateStack.push(State.INIT);
-        processFile(resourceFile, sql);
-        stateStack.pop();
+        try {
+            String statement;
+            while ((statement = nextStatement()) != null) {
+                sql.append(statement).append(STATEMENT_TERMINATOR).append(' ');
+            }
+        } finally {
+            close();
+        }
         return sql.toString();
     }
 
-    private void processFile(File file, StringBuilder sql) throws IOException {
-		  BufferedReader fileReader=null;
-		  try {
-				fileReader = new BufferedReader(new FileReader(file.getAbsoluteFile()));
-				String line = null;
-				while ((line = fileReader.readLine()) != null) {
-					 processLine(sql, line);
-				}
-		  }
-		  catch (IOException ioex) {
-				throw (ioex);
-		  }
-		  finally {
-				if(fileReader != null) {
-                    fileReader.close();
+    /**
+     * Reads the next SQL statement from the resource passed to the constructor or its children
+     *
+     * @return the statement without its terminating semicolon, or null when all scripts have been read
+     * @throws java.io.IOException if the resource or its children are not found
+     */
+    public String nextStatement() throws IOException {
+        if (!started) {
+            started = true;
+            open(resource);
+        }
+        StringBuilder statement = null;
+        while (!readers.isEmpty()) {
+            String line = readers.getFirst().readLine();
+            if (line == null) {
+                readers.removeFirst().close();
+                continue;
+            }
+            String trimmed = line.trim();
+            if (statement == null) {
+                if (trimmed.startsWith(CHILD_SCRIPT_INDICATOR)) {
+                    //child script lines do not have a terminal character but are by definition only one line long
+                    open(resource.createRelative(trimmed.substring(CHILD_SCRIPT_INDICATOR.length())));
+                    continue;
                 }
-		  }
-    }
-
-    private void processLine(StringBuilder sql, String line) throws IOException {
-        String lowerLine = line.toLowerCase().trim();
-        switch (stateStack.peek()) {
-            case INIT: {
-                if (lowerLine.startsWith(CHILD_SCRIPT_INDICATOR)) {
-                    //replace the current element in the stack with the new state
-                    stateStack.pop();
-                    stateStack.push(State.READFILE);
-                    processLine(sql, line);
-                } else if (commandSet.contains(getFirstWord(lowerLine))) {
-
-                    //replace the current element in the stack with the new state
-                    stateStack.pop();
-                    stateStack.push(State.READSQL);
-                    processLine(sql, line);
+                if (!isCommand(trimmed)) {
+                    continue;
                 }
-                break;
-            }
-            case READFILE: {
-                stateStack.push(State.INIT);
-                Resource child = resource.createRelative(line.replace(CHILD_SCRIPT_INDICATOR, ""));
-                sql.append(processResource(child));
-                //Read File lines do not have a terminal character but are by definition only one line long
-                stateStack.pop();
-                stateStack.push(State.INIT);
-                break;
-            }
-            case READSQL: {
-                sql.append(line);
+                statement = new StringBuilder(line);
+            } else {
                 //add a space to accommodate line breaks.  Not a big deal if extraneous spaces are added
-                sql.append(" ");
-                if (lowerLine.endsWith(";")) {
-                    stateStack.pop();
-                    stateStack.push(State.INIT);
-                }
-                break;
+                statement.append(' ').append(line);
             }
-            default: {
-                throw new RuntimeException("Invalid State");
+            if (trimmed.length() > 0 && trimmed.charAt(trimmed.length() - 1) == STATEMENT_TERMINATOR) {
+                return toStatement(statement);
             }
         }
+        //an unterminated statement at the end of the scripts is still executed
+        return statement == null ? null : toStatement(statement);
+    }
+
+    /**
+     * Closes the scripts that have not been read to the end
+     *
+     * @throws java.io.IOException if a script cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        while (!readers.isEmpty()) {
+            readers.removeFirst().close();
+        }
+    }
+
+    private void open(Resource res) throws IOException {
+        readers.addFirst(new BufferedReader(new InputStreamReader(res.getInputStream())));
+    }
+
+    private static String toStatement(StringBuilder statement) {
+        String sql = statement.toString().trim();
+        if (sql.length() > 0 && sql.charAt(sql.length() - 1) == STATEMENT_TERMINATOR) {
+            sql = sql.substring(0, sql.length() - 1).trim();
+        }
+        return sql;
+    }
+
+    //a command is a word of letters followed by a space or a semicolon
+    private static boolean isCommand(String line) {
+        int end = 0;
+        while (end < line.length() && isLetter(line.charAt(end))) {
+            end++;
+        }
+        if (end == 0 || end == line.length()) {
+            return false;
+        }
+        char next = line.charAt(end);
+        return (next == ' ' || next == STATEMENT_TERMINATOR)
+                && commandSet.contains(line.substring(0, end).toLowerCase());
     }
 
-    private static String getFirstWord(String line) {
-        Matcher match = WORD_PATTERN.matcher(line);
-        return match.find() ? match.group(1) : null;
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
     }
 }
@@ -23,7 +23,9 @@ import org.apache.rave.persistence.BasicEntity;
 import org.apache.rave.persistence.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.Cache;
 import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
 import javax.persistence.PersistenceContext;
 
 import static org.apache.rave.persistence.jpa.util.JpaUtil.saveOrUpdate;
@@ -55,12 +57,59 @@ public abstract class AbstractJpaRepository<T extends BasicEntity> implements Re
     @Override
     @Transactional
     public T save(T item) {
-        return saveOrUpdate(item.getEntityId(), manager, item);
+        T saved = saveOrUpdate(item.getEntityId(), manager, item);
+        evictRelated(saved);
+        return saved;
     }
 
     @Override
     @Transactional
     public void delete(T item) {
         manager.remove(item);
+        //removing null is a no-op for the persistence provider, so there is nothing to evict either
+        if (item != null) {
+            evictRelated(item);
+        }
+    }
+
+    /**
+     * Evicts second level cache entries that are affected by a change to the given item but that the persistence
+     * provider cannot detect on its own, such as a cached parent whose collection maps this entity by a foreign key.
+     * <p/>
+     * The provider already updates the cache entry of the item itself on commit, so the default does nothing.
+     *
+     * @param item the item that was saved or deleted
+     */
+    protected void evictRelated(T item) {
+    }
+
+    /**
+     * Evicts a single entity from the second level cache, if a cache is configured
+     *
+     * @param entityType the type of the entity to evict
+     * @param id the id of the entity to evict
+     */
+    protected void evictFromCache(Class<?> entityType, Object id) {
+        Cache cache = getCache();
+        if (cache != null && id != null) {
+            cache.evict(entityType, id);
+        }
+    }
+
+    /**
+     * Evicts all entities of the given type from the second level cache, if a cache is configured
+     *
+     * @param entityType the type of the entities to evict
+     */
+    protected void evictFromCache(Class<?> entityType) {
+        Cache cache = getCache();
+        if (cache != null) {
+            cache.evict(entityType);
+        }
+    }
+
+    private Cache getCache() {
+        EntityManagerFactory factory = manager.getEntityManagerFactory();
+        return factory == null ? null : factory.getCache();
     }
 }
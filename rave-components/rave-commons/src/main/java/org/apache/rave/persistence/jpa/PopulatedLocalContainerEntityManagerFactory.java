@@ -20,25 +20,33 @@
 package org.apache.rave.persistence.jpa;
 
 import org.apache.rave.jdbc.util.DataSourcePopulator;
+import org.apache.rave.jdbc.util.SchemaMigrator;
+import org.apache.rave.service.LockService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
 
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.spi.PersistenceUnitInfo;
+import java.util.concurrent.locks.Lock;
 
 
 /**
  * {@inheritDoc}
  * <p/>
  * Creates a LocalContainerEntityManagerFactoryBean that calls a DataSourcePopulator bean to insert data into the
- * DataSource immediately after the factory is initialized
+ * DataSource immediately after the factory is initialized, followed by a SchemaMigrator bean to apply the schema
+ * changes the JPA provider does not make itself.  When a lock service is set, the migrations run while holding its
+ * lock for the persistence unit, so nodes starting at the same time against one database do not apply them twice.
+ * A failed migration fails the creation of the factory, since the mappings may rely on it.
  */
 public class PopulatedLocalContainerEntityManagerFactory extends LocalContainerEntityManagerFactoryBean {
     private static final long serialVersionUID = 1L;
     private static final Logger logger = LoggerFactory.getLogger(PopulatedLocalContainerEntityManagerFactory.class);
 
     private DataSourcePopulator populator;
+    private SchemaMigrator migrator;
+    private LockService lockService;
 
     public PopulatedLocalContainerEntityManagerFactory() {
         super();
@@ -48,24 +56,62 @@ public class PopulatedLocalContainerEntityManagerFactory extends LocalContainerE
         this.populator = populator;
     }
 
+    public void setMigrator(SchemaMigrator migrator) {
+        this.migrator = migrator;
+    }
+
+    public void setLockService(LockService lockService) {
+        this.lockService = lockService;
+    }
+
     /**
      * Called after the EntityManagerFactory is initialized and processed.  Delegates to the data populator
-     * any insertion of data into the DataSource
+     * any insertion of data into the DataSource and then to the schema migrator any schema changes
      *
      * @param emf the newly created EntityManagerFactory
      * @param pui the PersistenceUnit that the EntityManagerFactory was initialized for
      */
     @Override
     protected void postProcessEntityManagerFactory(EntityManagerFactory emf, PersistenceUnitInfo pui) {
-        if (populator != null) {
+        if (populator != null || migrator != null) {
             //Create an entity manager to force initialization of the context and then populate
             emf.createEntityManager().close();
+        }
+        if (populator != null) {
             try {
                 populator.initialize(this.getDataSource());
             } catch (RuntimeException e) {
                 logger.error("Database population has failed. It will be empty.", e);
             }
         }
+        if (migrator != null) {
+            //migrate after populating, so the migrations also convert the initial data
+            try {
+                migrate();
+            } catch (RuntimeException e) {
+                logger.error("Database schema migration has failed.", e);
+                throw e;
+            }
+        }
         super.postProcessEntityManagerFactory(emf, pui);
     }
+
+    private void migrate() {
+        if (lockService == null) {
+            migrator.migrate(this.getDataSource());
+            return;
+        }
+        Lock lock = lockService.borrowLock("SchemaMigration", getPersistenceUnitName());
+        try {
+            lock.lock();
+            try {
+                //the versions applied are read after locking, so a node that waited skips what the other applied
+                migrator.migrate(this.getDataSource());
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            lockService.returnLock(lock);
+        }
+    }
 }
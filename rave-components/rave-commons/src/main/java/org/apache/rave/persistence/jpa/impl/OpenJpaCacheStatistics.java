@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.persistence.jpa.impl;
+
+import org.apache.openjpa.datacache.CacheStatistics;
+import org.apache.openjpa.datacache.QueryCache;
+import org.apache.openjpa.kernel.QueryStatistics;
+import org.apache.openjpa.persistence.OpenJPAEntityManagerFactory;
+import org.apache.openjpa.persistence.OpenJPAPersistence;
+import org.apache.openjpa.persistence.QueryResultCache;
+import org.apache.openjpa.persistence.StoreCache;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Exposes the hit and miss counters of the OpenJPA second level (data) cache and query result cache
+ * of an {@link EntityManagerFactory} as JMX attributes.
+ * <p/>
+ * Data cache counters are only collected when the cache is configured with EnableStatistics=true.
+ */
+@ManagedResource(description = "OpenJPA second level cache statistics")
+public class OpenJpaCacheStatistics {
+
+    private final OpenJPAEntityManagerFactory entityManagerFactory;
+
+    public OpenJpaCacheStatistics(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = OpenJPAPersistence.cast(entityManagerFactory);
+    }
+
+    @ManagedAttribute(description = "Number of entity reads served by the data cache")
+    public long getDataCacheHitCount() {
+        CacheStatistics statistics = getDataCacheStatistics();
+        return statistics == null ? 0 : statistics.getHitCount();
+    }
+
+    @ManagedAttribute(description = "Number of entity reads that missed the data cache")
+    public long getDataCacheMissCount() {
+        CacheStatistics statistics = getDataCacheStatistics();
+        return statistics == null ? 0 : statistics.getReadCount() - statistics.getHitCount();
+    }
+
+    @ManagedAttribute(description = "Number of entities written to the data cache")
+    public long getDataCacheWriteCount() {
+        CacheStatistics statistics = getDataCacheStatistics();
+        return statistics == null ? 0 : statistics.getWriteCount();
+    }
+
+    @ManagedAttribute(description = "Number of query executions served by the query cache")
+    public long getQueryCacheHitCount() {
+        QueryStatistics<?> statistics = getQueryCacheStatistics();
+        return statistics == null ? 0 : statistics.getHitCount();
+    }
+
+    @ManagedAttribute(description = "Number of query executions that missed the query cache")
+    public long getQueryCacheMissCount() {
+        QueryStatistics<?> statistics = getQueryCacheStatistics();
+        return statistics == null ? 0 : statistics.getExecutionCount() - statistics.getHitCount();
+    }
+
+    @ManagedOperation(description = "Resets the cache statistics")
+    public void resetStatistics() {
+        CacheStatistics dataCacheStatistics = getDataCacheStatistics();
+        if (dataCacheStatistics != null) {
+            dataCacheStatistics.reset();
+        }
+        QueryStatistics<?> queryCacheStatistics = getQueryCacheStatistics();
+        if (queryCacheStatistics != null) {
+            queryCacheStatistics.reset();
+        }
+    }
+
+    @ManagedOperation(description = "Evicts all entries from the data cache and query cache")
+    public void evictAll() {
+        entityManagerFactory.getStoreCache().evictAll();
+        entityManagerFactory.getQueryResultCache().evictAll();
+    }
+
+    private CacheStatistics getDataCacheStatistics() {
+        StoreCache storeCache = entityManagerFactory.getStoreCache();
+        return storeCache == null ? null : storeCache.getStatistics();
+    }
+
+    private QueryStatistics<?> getQueryCacheStatistics() {
+        QueryResultCache queryResultCache = entityManagerFactory.getQueryResultCache();
+        QueryCache queryCache = queryResultCache == null ? null : queryResultCache.getDelegate();
+        return queryCache == null ? null : queryCache.getStatistics();
+    }
+}
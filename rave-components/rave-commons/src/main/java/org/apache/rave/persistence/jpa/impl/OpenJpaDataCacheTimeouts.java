@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.persistence.jpa.impl;
+
+import org.apache.openjpa.meta.ClassMetaData;
+import org.apache.openjpa.meta.MetaDataRepository;
+import org.apache.openjpa.persistence.OpenJPAEntityManagerFactory;
+import org.apache.openjpa.persistence.OpenJPAPersistence;
+
+import javax.persistence.Cache;
+import javax.persistence.EntityManagerFactory;
+import java.util.Map;
+
+/**
+ * Sets how long the entries of each entity stay in the OpenJPA second level (data) cache from configuration, so
+ * the timeouts can be tuned per deployment instead of being fixed by {@link org.apache.openjpa.persistence.DataCache}
+ * annotations.
+ * <p/>
+ * The timeouts are keyed by entity name, in milliseconds, with -1 keeping the entries until they are evicted by an
+ * update or by the size of the cache.  Entries cached before the timeouts were set are evicted so they do not outlive
+ * the configured timeout.
+ */
+public class OpenJpaDataCacheTimeouts {
+
+    public OpenJpaDataCacheTimeouts(EntityManagerFactory entityManagerFactory, Map<String, Integer> timeouts) {
+        OpenJPAEntityManagerFactory factory = OpenJPAPersistence.cast(entityManagerFactory);
+        MetaDataRepository repository = factory.getConfiguration().getMetaDataRepositoryInstance();
+        Cache cache = factory.getCache();
+        for (Map.Entry<String, Integer> entry : timeouts.entrySet()) {
+            ClassMetaData metaData = repository.getMetaData(entry.getKey(), getClass().getClassLoader(), true);
+            metaData.setDataCacheTimeout(entry.getValue());
+            if (cache != null) {
+                cache.evict(metaData.getDescribedType());
+            }
+        }
+    }
+}
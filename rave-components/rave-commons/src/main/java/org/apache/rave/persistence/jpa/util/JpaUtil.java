@@ -19,11 +19,19 @@
 
 package org.apache.rave.persistence.jpa.util;
 
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
+import javax.persistence.EntityExistsException;
 import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+import javax.persistence.Query;
 import javax.persistence.TypedQuery;
 
+import org.apache.rave.util.CollectionUtils;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.dao.IncorrectResultSizeDataAccessException;
@@ -36,6 +44,14 @@ public class JpaUtil {
     private static final Logger log = LoggerFactory.getLogger(JpaUtil.class);
 
     private static final int LARGE_PAGESIZE = 1000;
+    /**
+     * Maximum number of ids bound to one IN list, well below the parameter limits of the supported databases
+     */
+    public static final int MAX_IDS_PER_QUERY = 500;
+    /**
+     * Class of the SQL states of integrity constraint violations, such as a duplicate unique key
+     */
+    private static final String CONSTRAINT_VIOLATION_SQL_STATE_CLASS = "23";
 
 
     private JpaUtil() {}
@@ -95,4 +111,63 @@ public class JpaUtil {
         query.setFirstResult(offset).setMaxResults(pageSize);
         return query.getResultList();
     }
+
+    /**
+     * Performs a native query that selects rows by a list of ids.  The ids are bound in chunks of at most
+     * {@link #MAX_IDS_PER_QUERY}, one query per chunk.
+     *
+     * @param entityManager the entity manager to query
+     * @param sql           the query, with a %s where the id placeholders go in the IN list
+     * @param ids           the ids to select, without duplicates
+     * @param parameters    the parameters that come before the IN list in the query
+     * @return the rows of all chunks
+     */
+    @SuppressWarnings("unchecked")
+    public static List<Object[]> getNativeResultListByIds(EntityManager entityManager, String sql,
+                                                          Collection<Long> ids, Object... parameters) {
+        List<Object[]> results = new ArrayList<Object[]>();
+        for (List<Long> chunk : CollectionUtils.partition(ids, MAX_IDS_PER_QUERY)) {
+            Query query = entityManager.createNativeQuery(String.format(sql, getPlaceholders(chunk.size())));
+            int position = 1;
+            for (Object parameter : parameters) {
+                query.setParameter(position++, parameter);
+            }
+            for (Long id : chunk) {
+                query.setParameter(position++, id);
+            }
+            results.addAll((List<Object[]>) query.getResultList());
+        }
+        return results;
+    }
+
+    /**
+     * Checks whether a flush failed because it violated a database constraint.  Not every provider and database
+     * reports a duplicate key as an {@link EntityExistsException}, so the SQL state of the causing exception is
+     * checked as well.
+     *
+     * @param e the exception thrown by the flush
+     * @return true if the exception or one of its causes is a constraint violation
+     */
+    public static boolean isConstraintViolation(PersistenceException e) {
+        if (e instanceof EntityExistsException) {
+            return true;
+        }
+        for (Throwable cause = e.getCause(); cause != null && cause != cause.getCause(); cause = cause.getCause()) {
+            if (cause instanceof SQLException) {
+                String sqlState = ((SQLException) cause).getSQLState();
+                if (sqlState != null && sqlState.startsWith(CONSTRAINT_VIOLATION_SQL_STATE_CLASS)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static String getPlaceholders(int count) {
+        StringBuilder placeholders = new StringBuilder("?");
+        for (int i = 1; i < count; i++) {
+            placeholders.append(", ?");
+        }
+        return placeholders.toString();
+    }
 }
@@ -0,0 +1,266 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.service.impl;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.rave.service.LockService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link LockService} that keeps its locks in a {@link ConcurrentHashMap} and tracks the borrowers of each lock with an
+ * atomic reference count, so borrowing and returning locks for different keys never contend with each other.
+ * <p/>
+ * A lock is removed from the map when its last borrower returns it.  A lock whose count has dropped to zero is never
+ * handed out again; a borrower that finds one in the map removes it and creates a fresh lock instead.
+ * <p/>
+ * How long callers wait to acquire the locks and how long they hold them is exposed as JMX attributes.
+ */
+@ManagedResource(description = "Item level lock service")
+public class ConcurrentLockService implements LockService {
+    private static Logger logger = LoggerFactory.getLogger(ConcurrentLockService.class);
+
+    private final ConcurrentMap<String, CountingLock> locks = new ConcurrentHashMap<String, CountingLock>();
+
+    private final AtomicLong acquireCount = new AtomicLong();
+    private final AtomicLong contendedAcquireCount = new AtomicLong();
+    private final AtomicLong totalWaitTimeNanos = new AtomicLong();
+    private final AtomicLong maxWaitTimeNanos = new AtomicLong();
+    private final AtomicLong totalHoldTimeNanos = new AtomicLong();
+    private final AtomicLong maxHoldTimeNanos = new AtomicLong();
+
+    @Override
+    public Lock borrowLock(String key) {
+        while (true) {
+            CountingLock lock = locks.get(key);
+            if (lock == null) {
+                CountingLock created = new CountingLock(key);
+                lock = locks.putIfAbsent(key, created);
+                if (lock == null) {
+                    logger.debug("Created new lock with key [{}]", key);
+                    return created;
+                }
+            }
+            if (lock.retain()) {
+                return lock;
+            }
+            //the last borrower is returning this lock, get it out of the way and create a new one
+            locks.remove(key, lock);
+        }
+    }
+
+    @Override
+    public Lock borrowLock(String discriminator, String id) {
+        if (StringUtils.isEmpty(discriminator)) {
+            return borrowLock(id);
+        }
+        return borrowLock(new StringBuilder(discriminator).append("-").append(id).toString());
+    }
+
+    @Override
+    public void returnLock(Lock lock) {
+        CountingLock countingLock = (CountingLock) lock;
+        if (countingLock.release() == 0) {
+            logger.debug("Lock with key [{}] is being removed from service", countingLock.getKey());
+            locks.remove(countingLock.getKey(), countingLock);
+        }
+    }
+
+    @ManagedAttribute(description = "Number of locks currently borrowed")
+    public int getLiveLockCount() {
+        return locks.size();
+    }
+
+    @ManagedAttribute(description = "Number of times a lock was acquired")
+    public long getAcquireCount() {
+        return acquireCount.get();
+    }
+
+    @ManagedAttribute(description = "Number of times a lock was acquired after waiting for another holder")
+    public long getContendedAcquireCount() {
+        return contendedAcquireCount.get();
+    }
+
+    @ManagedAttribute(description = "Average time in milliseconds spent waiting to acquire a lock")
+    public double getAverageWaitTimeMillis() {
+        return average(totalWaitTimeNanos, acquireCount);
+    }
+
+    @ManagedAttribute(description = "Longest time in milliseconds spent waiting to acquire a lock")
+    public double getMaxWaitTimeMillis() {
+        return toMillis(maxWaitTimeNanos.get());
+    }
+
+    @ManagedAttribute(description = "Average time in milliseconds a lock was held")
+    public double getAverageHoldTimeMillis() {
+        return average(totalHoldTimeNanos, acquireCount);
+    }
+
+    @ManagedAttribute(description = "Longest time in milliseconds a lock was held")
+    public double getMaxHoldTimeMillis() {
+        return toMillis(maxHoldTimeNanos.get());
+    }
+
+    @ManagedOperation(description = "Resets the lock statistics")
+    public void resetStatistics() {
+        acquireCount.set(0);
+        contendedAcquireCount.set(0);
+        totalWaitTimeNanos.set(0);
+        maxWaitTimeNanos.set(0);
+        totalHoldTimeNanos.set(0);
+        maxHoldTimeNanos.set(0);
+    }
+
+    /*
+      Helper methods
+    */
+    private static double average(AtomicLong totalNanos, AtomicLong count) {
+        long n = count.get();
+        return n == 0 ? 0 : toMillis(totalNanos.get()) / n;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1000000.0;
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Lock that counts its borrowers and records how long the outermost acquisition waited for and held it
+     */
+    class CountingLock extends ReentrantLock {
+        private final String key;
+        private final AtomicInteger referenceCount = new AtomicInteger(1);
+        //only read and written by the thread holding the lock
+        private long acquiredAt;
+
+        private CountingLock(String key) {
+            super();
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public int getReferenceCount() {
+            return referenceCount.get();
+        }
+
+        @Override
+        public void lock() {
+            if (super.tryLock()) {
+                acquired(0);
+                return;
+            }
+            long start = System.nanoTime();
+            super.lock();
+            acquired(System.nanoTime() - start);
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            if (super.tryLock()) {
+                acquired(0);
+                return;
+            }
+            long start = System.nanoTime();
+            super.lockInterruptibly();
+            acquired(System.nanoTime() - start);
+        }
+
+        @Override
+        public boolean tryLock() {
+            if (super.tryLock()) {
+                acquired(0);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public boolean tryLock(long timeout, TimeUnit unit) throws InterruptedException {
+            if (super.tryLock()) {
+                acquired(0);
+                return true;
+            }
+            long start = System.nanoTime();
+            if (super.tryLock(timeout, unit)) {
+                acquired(System.nanoTime() - start);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void unlock() {
+            if (isHeldByCurrentThread() && getHoldCount() == 1) {
+                long held = System.nanoTime() - acquiredAt;
+                totalHoldTimeNanos.addAndGet(held);
+                updateMax(maxHoldTimeNanos, held);
+            }
+            super.unlock();
+        }
+
+        private boolean retain() {
+            int count = referenceCount.get();
+            while (count > 0) {
+                if (referenceCount.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+                count = referenceCount.get();
+            }
+            return false;
+        }
+
+        private int release() {
+            return referenceCount.decrementAndGet();
+        }
+
+        private void acquired(long waitNanos) {
+            if (getHoldCount() > 1) {
+                return;
+            }
+            acquiredAt = System.nanoTime();
+            acquireCount.incrementAndGet();
+            if (waitNanos > 0) {
+                contendedAcquireCount.incrementAndGet();
+                totalWaitTimeNanos.addAndGet(waitNanos);
+                updateMax(maxWaitTimeNanos, waitNanos);
+            }
+        }
+    }
+}
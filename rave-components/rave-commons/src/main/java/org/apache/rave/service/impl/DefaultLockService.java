@@ -23,14 +23,17 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.rave.service.LockService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.stereotype.Service;
 
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
-@Service
+/**
+ * Simple {@link LockService} that guards its map of locks with the service's monitor.
+ * <p/>
+ * Every borrow and return is serialized, so the portal uses {@link ConcurrentLockService} instead.
+ */
 public class DefaultLockService implements LockService {
     private static Logger logger = LoggerFactory.getLogger(DefaultLockService.class);
 
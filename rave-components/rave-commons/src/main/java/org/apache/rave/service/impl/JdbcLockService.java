@@ -0,0 +1,488 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.service.impl;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.rave.service.LockService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+import org.springframework.scheduling.TaskScheduler;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link LockService} that serializes lock holders across all portal nodes sharing a database.
+ * <p/>
+ * Each lock is a row in the lock table, leased to one node at a time.  A lease is taken by updating the row when it
+ * is free or its lease has expired, or by inserting it when it does not exist yet, and is given up again on unlock.
+ * While a lock is held its lease is renewed on the task scheduler every third of the lease time, so a critical section
+ * may run for longer than the lease.  A node that dies stops renewing, so its leases expire after the lease time and do
+ * not block the others forever.  A node that stalls for longer than the lease, or cannot reach the database, may have
+ * its lease taken over by another node; the renewal then finds the lease lost and unlock throws an
+ * {@link IllegalMonitorStateException}, telling the holder its critical section may have overlapped with another.
+ * Expiry is computed from the clock of each node, so the clocks of the nodes must be kept in sync to well within the
+ * lease time.
+ * <p/>
+ * Every lease taken increments the fencing token of the row.  {@link LeasedLock#getFencingToken()} lets a holder
+ * pass the token to the resource it protects, which can then reject writes from a holder whose lease has already
+ * been taken over.
+ * <p/>
+ * Threads on the same node first serialize on a local lock for the key, so only one thread per node contends for
+ * the database row at a time.
+ */
+public class JdbcLockService implements LockService, InitializingBean {
+    private static Logger logger = LoggerFactory.getLogger(JdbcLockService.class);
+
+    public static final String DEFAULT_TABLE_NAME = "lock_lease";
+
+    private final DataSource dataSource;
+    private final long leaseMillis;
+    private final long pollMillis;
+    private final TaskScheduler taskScheduler;
+    private final String owner = UUID.randomUUID().toString();
+    private final ConcurrentLockService localLocks = new ConcurrentLockService();
+    private final ConcurrentMap<String, Lease> leases = new ConcurrentHashMap<String, Lease>();
+    private final SQLExceptionTranslator exceptionTranslator;
+
+    private String tableName = DEFAULT_TABLE_NAME;
+    private boolean createTable = true;
+
+    public JdbcLockService(DataSource dataSource, long leaseMillis, long pollMillis, TaskScheduler taskScheduler) {
+        this.dataSource = dataSource;
+        this.leaseMillis = leaseMillis;
+        this.pollMillis = pollMillis;
+        this.taskScheduler = taskScheduler;
+        this.exceptionTranslator = new SQLErrorCodeSQLExceptionTranslator(dataSource);
+    }
+
+    public void setTableName(String tableName) {
+        this.tableName = tableName;
+    }
+
+    public void setCreateTable(boolean createTable) {
+        this.createTable = createTable;
+    }
+
+    /**
+     * @return the identifier this node records as the owner of the leases it holds
+     */
+    public String getOwner() {
+        return owner;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws SQLException {
+        if (createTable && !tableExists()) {
+            logger.info("Creating lock table {}", tableName);
+            try {
+                execute("CREATE TABLE " + tableName + " (lock_key VARCHAR(255) NOT NULL PRIMARY KEY, " +
+                        "owner VARCHAR(64), fencing_token BIGINT NOT NULL, expires_at BIGINT NOT NULL)");
+            } catch (SQLException e) {
+                //nodes starting at the same time race to create the table, the ones that lose find it created
+                if (!tableExists()) {
+                    throw e;
+                }
+                logger.debug("Lock table {} was created by another node", tableName);
+            }
+        }
+    }
+
+    @Override
+    public Lock borrowLock(String key) {
+        return new LeasedLock(key, localLocks.borrowLock(key));
+    }
+
+    @Override
+    public Lock borrowLock(String discriminator, String id) {
+        if (StringUtils.isEmpty(discriminator)) {
+            return borrowLock(id);
+        }
+        return borrowLock(new StringBuilder(discriminator).append("-").append(id).toString());
+    }
+
+    @Override
+    public void returnLock(Lock lock) {
+        localLocks.returnLock(((LeasedLock) lock).localLock);
+    }
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /*
+      Helper methods
+    */
+    /**
+     * @return the fencing token of the new lease, or null if another node holds an unexpired lease
+     */
+    private Long tryAcquireLease(String key) {
+        long now = currentTimeMillis();
+        Connection connection = null;
+        try {
+            connection = dataSource.getConnection();
+            connection.setAutoCommit(true);
+            PreparedStatement update = connection.prepareStatement("UPDATE " + tableName +
+                    " SET owner = ?, fencing_token = fencing_token + 1, expires_at = ?" +
+                    " WHERE lock_key = ? AND (expires_at <= ? OR owner = ?)");
+            try {
+                update.setString(1, owner);
+                update.setLong(2, now + leaseMillis);
+                update.setString(3, key);
+                update.setLong(4, now);
+                update.setString(5, owner);
+                if (update.executeUpdate() == 1) {
+                    return readFencingToken(connection, key);
+                }
+            } finally {
+                JdbcUtils.closeStatement(update);
+            }
+
+            PreparedStatement insert = connection.prepareStatement("INSERT INTO " + tableName +
+                    " (lock_key, owner, fencing_token, expires_at) VALUES (?, ?, 1, ?)");
+            try {
+                insert.setString(1, key);
+                insert.setString(2, owner);
+                insert.setLong(3, now + leaseMillis);
+                insert.executeUpdate();
+                return 1L;
+            } catch (SQLException e) {
+                if (exceptionTranslator.translate("insert lock lease", null, e) instanceof DataIntegrityViolationException) {
+                    //the row exists and is leased to another node
+                    return null;
+                }
+                throw e;
+            } finally {
+                JdbcUtils.closeStatement(insert);
+            }
+        } catch (SQLException e) {
+            throw exceptionTranslator.translate("acquire lock lease for key " + key, null, e);
+        } finally {
+            JdbcUtils.closeConnection(connection);
+        }
+    }
+
+    /**
+     * @return true if the lease was still held and has been extended, false if it was taken over by another node
+     */
+    private boolean renewLease(String key, long fencingToken) throws SQLException {
+        Connection connection = dataSource.getConnection();
+        try {
+            connection.setAutoCommit(true);
+            PreparedStatement update = connection.prepareStatement("UPDATE " + tableName +
+                    " SET expires_at = ? WHERE lock_key = ? AND owner = ? AND fencing_token = ?");
+            try {
+                update.setLong(1, currentTimeMillis() + leaseMillis);
+                update.setString(2, key);
+                update.setString(3, owner);
+                update.setLong(4, fencingToken);
+                return update.executeUpdate() == 1;
+            } finally {
+                JdbcUtils.closeStatement(update);
+            }
+        } finally {
+            JdbcUtils.closeConnection(connection);
+        }
+    }
+
+    /**
+     * @return true if the lease was still held when it was released, false if it was taken over by another node
+     */
+    private boolean releaseLease(String key, long fencingToken) {
+        Connection connection = null;
+        try {
+            connection = dataSource.getConnection();
+            connection.setAutoCommit(true);
+            PreparedStatement update = connection.prepareStatement("UPDATE " + tableName +
+                    " SET owner = NULL, expires_at = 0 WHERE lock_key = ? AND owner = ? AND fencing_token = ?");
+            try {
+                update.setString(1, key);
+                update.setString(2, owner);
+                update.setLong(3, fencingToken);
+                return update.executeUpdate() == 1;
+            } finally {
+                JdbcUtils.closeStatement(update);
+            }
+        } catch (SQLException e) {
+            throw exceptionTranslator.translate("release lock lease for key " + key, null, e);
+        } finally {
+            JdbcUtils.closeConnection(connection);
+        }
+    }
+
+    private Long readFencingToken(Connection connection, String key) throws SQLException {
+        PreparedStatement select = connection.prepareStatement("SELECT fencing_token FROM " + tableName + " WHERE lock_key = ?");
+        ResultSet resultSet = null;
+        try {
+            select.setString(1, key);
+            resultSet = select.executeQuery();
+            return resultSet.next() ? resultSet.getLong(1) : null;
+        } finally {
+            JdbcUtils.closeResultSet(resultSet);
+            JdbcUtils.closeStatement(select);
+        }
+    }
+
+    private boolean tableExists() {
+        Connection connection = null;
+        Statement statement = null;
+        try {
+            connection = dataSource.getConnection();
+            statement = connection.createStatement();
+            statement.executeQuery("SELECT COUNT(*) FROM " + tableName + " WHERE 1 = 0").close();
+            return true;
+        } catch (SQLException e) {
+            return false;
+        } finally {
+            JdbcUtils.closeStatement(statement);
+            JdbcUtils.closeConnection(connection);
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+        Connection connection = dataSource.getConnection();
+        Statement statement = null;
+        try {
+            statement = connection.createStatement();
+            statement.execute(sql);
+        } finally {
+            JdbcUtils.closeStatement(statement);
+            JdbcUtils.closeConnection(connection);
+        }
+    }
+
+    /**
+     * Lock that is held once the calling thread holds the local lock for the key and this node holds the lease on
+     * the key's row
+     */
+    public class LeasedLock implements Lock {
+        private final String key;
+        private final Lock localLock;
+
+        private LeasedLock(String key, Lock localLock) {
+            this.key = key;
+            this.localLock = localLock;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * @return the fencing token of the lease this node holds on the lock, or null when the lock is not held or its
+         *         lease was found to be lost
+         */
+        public Long getFencingToken() {
+            Lease lease = leases.get(key);
+            return lease == null || lease.lost ? null : lease.fencingToken;
+        }
+
+        @Override
+        public void lock() {
+            localLock.lock();
+            if (!isOutermostHold()) {
+                return;
+            }
+            boolean interrupted = false;
+            try {
+                while (!acquireLease()) {
+                    try {
+                        Thread.sleep(pollMillis);
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            } catch (RuntimeException e) {
+                localLock.unlock();
+                throw e;
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            localLock.lockInterruptibly();
+            if (!isOutermostHold()) {
+                return;
+            }
+            boolean acquired = false;
+            try {
+                while (!acquireLease()) {
+                    Thread.sleep(pollMillis);
+                }
+                acquired = true;
+            } finally {
+                if (!acquired) {
+                    localLock.unlock();
+                }
+            }
+        }
+
+        @Override
+        public boolean tryLock() {
+            if (!localLock.tryLock()) {
+                return false;
+            }
+            return acquireLeaseOrUnlock();
+        }
+
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            long deadline = System.nanoTime() + unit.toNanos(time);
+            if (!localLock.tryLock(time, unit)) {
+                return false;
+            }
+            if (!isOutermostHold()) {
+                return true;
+            }
+            boolean acquired = false;
+            try {
+                while (!(acquired = acquireLease())) {
+                    long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                    if (remainingMillis <= 0) {
+                        return false;
+                    }
+                    Thread.sleep(Math.min(pollMillis, remainingMillis));
+                }
+                return true;
+            } finally {
+                if (!acquired) {
+                    localLock.unlock();
+                }
+            }
+        }
+
+        /**
+         * Releases the lock
+         *
+         * @throws IllegalMonitorStateException if the lease expired and was taken over by another node while the lock
+         *                                      was held, the lock is released nonetheless
+         */
+        @Override
+        public void unlock() {
+            try {
+                if (isOutermostHold()) {
+                    Lease lease = leases.remove(key);
+                    if (lease != null) {
+                        lease.renewal.cancel(false);
+                        if (!releaseLease(key, lease.fencingToken) || lease.lost) {
+                            throw new IllegalMonitorStateException("Lease on lock [" + key + "] with fencing token " +
+                                    lease.fencingToken + " was taken over by another node while it was held");
+                        }
+                    }
+                }
+            } finally {
+                localLock.unlock();
+            }
+        }
+
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException("Conditions are not supported by locks shared between nodes");
+        }
+
+        private boolean isOutermostHold() {
+            return ((ReentrantLock) localLock).getHoldCount() == 1;
+        }
+
+        private boolean acquireLease() {
+            Long fencingToken = tryAcquireLease(key);
+            if (fencingToken == null) {
+                return false;
+            }
+            final Lease lease = new Lease(fencingToken);
+            long renewalMillis = Math.max(1, leaseMillis / 3);
+            lease.renewal = taskScheduler.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    renew(lease);
+                }
+            }, new Date(System.currentTimeMillis() + renewalMillis), renewalMillis);
+            leases.put(key, lease);
+            return true;
+        }
+
+        private void renew(Lease lease) {
+            if (lease.lost) {
+                return;
+            }
+            try {
+                if (!renewLease(key, lease.fencingToken)) {
+                    lease.lost = true;
+                    lease.renewal.cancel(false);
+                    logger.error("Lease on lock [{}] with fencing token {} was taken over by another node while it " +
+                            "was held", key, lease.fencingToken);
+                }
+            } catch (SQLException e) {
+                //keep the schedule, the lease is held until it expires and the next renewal may succeed
+                logger.warn("Unable to renew the lease on lock [" + key + "]", e);
+            }
+        }
+
+        private boolean acquireLeaseOrUnlock() {
+            if (!isOutermostHold()) {
+                return true;
+            }
+            boolean acquired = false;
+            try {
+                acquired = acquireLease();
+                return acquired;
+            } finally {
+                if (!acquired) {
+                    localLock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * A lease held by this node and its renewal
+     */
+    private static class Lease {
+        private final long fencingToken;
+        private volatile ScheduledFuture<?> renewal;
+        private volatile boolean lost;
+
+        private Lease(long fencingToken) {
+            this.fencingToken = fencingToken;
+        }
+    }
+}
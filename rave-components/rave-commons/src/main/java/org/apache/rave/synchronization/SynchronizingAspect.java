@@ -34,18 +34,21 @@ import org.slf4j.LoggerFactory;
 import org.springframework.aop.framework.AopProxyUtils;
 import org.springframework.aop.support.AopUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.core.LocalVariableTableParameterNameDiscoverer;
 import org.springframework.core.ParameterNameDiscoverer;
 import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.expression.EvaluationContext;
 import org.springframework.expression.Expression;
+import org.springframework.expression.spel.ast.Literal;
+import org.springframework.expression.spel.standard.SpelExpression;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.expression.spel.support.StandardEvaluationContext;
 import org.springframework.stereotype.Component;
 
 import java.lang.reflect.Method;
-import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.Lock;
 
 /**
@@ -67,13 +70,10 @@ public class SynchronizingAspect {
     private SpelExpressionParser parser = new SpelExpressionParser();
     private ParameterNameDiscoverer paramNameDiscoverer = new LocalVariableTableParameterNameDiscoverer();
 
-    private Map<Method, Expression> conditionCache = new ConcurrentHashMap<Method, Expression>();
-    private Map<Method, Expression> discriminatorCache = new ConcurrentHashMap<Method, Expression>();
-    private Map<Method, Expression> idCache = new ConcurrentHashMap<Method, Expression>();
-    private Map<Method, Method> targetMethodCache = new ConcurrentHashMap<Method, Method>();
+    private ConcurrentMap<PlanKey, InvocationPlan> planCache = new ConcurrentHashMap<PlanKey, InvocationPlan>();
 
     @Autowired
-    public SynchronizingAspect(LockService lockService) {
+    public SynchronizingAspect(@Qualifier("lockService") LockService lockService) {
         this.lockService = lockService;
     }
 
@@ -85,21 +85,22 @@ public class SynchronizingAspect {
     public Object synchronizeInvocation(ProceedingJoinPoint proceedingJoinPoint) throws Throwable {
         MethodSignature methodSignature = (MethodSignature) proceedingJoinPoint.getSignature();
         Method method = methodSignature.getMethod();
-        Object target = proceedingJoinPoint.getTarget();
-        Object[] args = proceedingJoinPoint.getArgs();
-        Class<?> targetClass = AopProxyUtils.ultimateTargetClass(target);
-        Synchronized annotation = getAnnotation(targetClass, method);
-        Validate.notNull(annotation, "Could not find @Synchronized annotation!");
+        Class<?> targetClass = AopProxyUtils.ultimateTargetClass(proceedingJoinPoint.getTarget());
+        InvocationPlan plan = getInvocationPlan(targetClass, method);
 
-        Lock lock = getLock(targetClass, method, args, annotation);
+        Lock lock = getLock(plan, proceedingJoinPoint.getArgs());
         if (lock == null) {
-            logger.debug("No lock obtained for call [{}] on targetClass [{}] - proceeding without synchronization on " +
-                    "thread {}", new Object[]{method.getName(), targetClass.getName(), Thread.currentThread().getId()});
+            if (logger.isDebugEnabled()) {
+                logger.debug("No lock obtained for call [{}] on targetClass [{}] - proceeding without synchronization on " +
+                        "thread {}", new Object[]{plan.methodName, plan.targetClassName, Thread.currentThread().getId()});
+            }
             return proceedingJoinPoint.proceed();
         } else {
             try {
-                logger.debug("Lock obtained for call [{}] on targetClass [{}] - proceeding with synchronization on thread {}",
-                        new Object[]{method.getName(), targetClass.getName(), Thread.currentThread().getId()});
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Lock obtained for call [{}] on targetClass [{}] - proceeding with synchronization on thread {}",
+                            new Object[]{plan.methodName, plan.targetClassName, Thread.currentThread().getId()});
+                }
                 lock.lock();
                 return proceedingJoinPoint.proceed();
             } finally {
@@ -109,104 +110,174 @@ public class SynchronizingAspect {
         }
     }
 
-    private Lock getLock(Class<?> targetClass, Method method, Object[] args, Synchronized annotation) {
-        logger.debug("Fetching lock for call [{}] on targetClass [{}] with SpEl condition [{}], SpEl discriminator " +
-                "[{}], and SpEl id [{}] on thread {}", new Object[]{method.getName(), targetClass.getName(),
-                annotation.condition(), annotation.discriminator(), annotation.id(), Thread.currentThread().getId()});
+    private Lock getLock(InvocationPlan plan, Object[] args) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("Fetching lock for call [{}] on targetClass [{}] with SpEl condition [{}], SpEl discriminator " +
+                    "[{}], and SpEl id [{}] on thread {}", new Object[]{plan.methodName, plan.targetClassName,
+                    plan.annotation.condition(), plan.annotation.discriminator(), plan.annotation.id(),
+                    Thread.currentThread().getId()});
+        }
 
-        EvaluationContext context = getEvaluationContext(targetClass, method, args);
-        if (conditionPasses(annotation, method, context)) {
-            logger.debug("Condition check passes for SpEl condition [{}] on thread {}", annotation.condition(),
-                    Thread.currentThread().getId());
-            String discriminator = getDiscriminator(annotation, method, context);
-            String id = getId(annotation, method, context);
-            logger.debug("Fetching lock with discriminator [{}] and id [{}] on thread {}", new Object[]{discriminator,
-                    id, Thread.currentThread().getId()});
+        EvaluationContext context = plan.isConstant() ? null : getEvaluationContext(plan, args);
+        if (plan.condition == null || Boolean.TRUE.equals(plan.condition.getValue(context))) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Condition check passes for SpEl condition [{}] on thread {}", plan.annotation.condition(),
+                        Thread.currentThread().getId());
+            }
+            String discriminator = (String) plan.discriminator.getValue(context);
+            String id = (String) plan.id.getValue(context);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Fetching lock with discriminator [{}] and id [{}] on thread {}", new Object[]{discriminator,
+                        id, Thread.currentThread().getId()});
+            }
             return lockService.borrowLock(discriminator, id);
         }
 
-        logger.debug("Condition check fails for SpEl condition [{}] on thread {}", annotation.condition(),
-                Thread.currentThread().getId());
+        if (logger.isDebugEnabled()) {
+            logger.debug("Condition check fails for SpEl condition [{}] on thread {}", plan.annotation.condition(),
+                    Thread.currentThread().getId());
+        }
         return null;
     }
 
-    private boolean conditionPasses(Synchronized annotation, Method method, EvaluationContext context) {
-        String condition = annotation.condition();
-        if (StringUtils.isNotBlank(condition)) {
-            return parseConditionExpression(method, annotation).getValue(context, Boolean.class);
+    private InvocationPlan getInvocationPlan(Class<?> targetClass, Method method) {
+        PlanKey key = new PlanKey(method, targetClass);
+        InvocationPlan plan = planCache.get(key);
+        if (plan == null) {
+            //building a plan twice for the same method is harmless, both plans are equivalent
+            plan = createInvocationPlan(targetClass, method);
+            planCache.put(key, plan);
         }
-        return true;
-    }
-
-    private String getDiscriminator(Synchronized annotation, Method method, EvaluationContext context) {
-        return parseDiscriminatorExpression(method, annotation).getValue(context, String.class);
+        return plan;
     }
 
-    private String getId(Synchronized annotation, Method method, EvaluationContext context) {
-        return parseIdExpression(method, annotation).getValue(context, String.class);
-    }
-
-    private Expression parseConditionExpression(Method method, Synchronized annotation) {
-        Expression expression = conditionCache.get(method);
-        if (expression == null) {
-            expression = parser.parseExpression(annotation.condition());
-            conditionCache.put(method, expression);
-        }
-        return expression;
-    }
+    private InvocationPlan createInvocationPlan(Class<?> targetClass, Method method) {
+        Method targetMethod = AopUtils.getMostSpecificMethod(method, targetClass);
+        Synchronized annotation = AnnotationUtils.getAnnotation(targetMethod, Synchronized.class);
+        Validate.notNull(annotation, "Could not find @Synchronized annotation!");
 
-    private Expression parseDiscriminatorExpression(Method method, Synchronized annotation) {
-        Expression expression = discriminatorCache.get(method);
-        if (expression == null) {
-            expression = parser.parseExpression(annotation.discriminator());
-            discriminatorCache.put(method, expression);
-        }
-        return expression;
-    }
+        SynchronizedExpression condition = StringUtils.isNotBlank(annotation.condition()) ?
+                parseExpression(annotation.condition(), Boolean.class) : null;
+        SynchronizedExpression discriminator = StringUtils.isNotBlank(annotation.discriminator()) ?
+                parseExpression(annotation.discriminator(), String.class) :
+                new SynchronizedExpression(null, String.class, "");
+        SynchronizedExpression id = parseExpression(annotation.id(), String.class);
 
-    private Expression parseIdExpression(Method method, Synchronized annotation) {
-        Expression expression = idCache.get(method);
-        if (expression == null) {
-            expression = parser.parseExpression(annotation.id());
-            idCache.put(method, expression);
-        }
-        return expression;
+        return new InvocationPlan(method.getName(), targetClass.getName(), annotation,
+                paramNameDiscoverer.getParameterNames(targetMethod), condition, discriminator, id);
     }
 
-    private Method getTargetMethod(Class<?> targetClass, Method method) {
-        Method targetMethod = targetMethodCache.get(method);
-        if (targetMethod == null) {
-            targetMethod = AopUtils.getMostSpecificMethod(method, targetClass);
-            targetMethodCache.put(method, targetMethod);
+    private SynchronizedExpression parseExpression(String expressionString, Class<?> type) {
+        Expression expression = parser.parseExpression(expressionString);
+        if (expression instanceof SpelExpression && ((SpelExpression) expression).getAST() instanceof Literal) {
+            //literals such as 'ApplicationData' evaluate to the same value on every call
+            return new SynchronizedExpression(null, type, expression.getValue(type));
         }
-        return targetMethod;
+        return new SynchronizedExpression(expression, type, null);
     }
 
     //this method was roughly based on the implementation of:
     //org.springframework.cache.interceptor.LazyParamAwareEvaluationContext#loadArgsAsVariables(...)
-    private EvaluationContext getEvaluationContext(Class<?> targetClass, Method method, Object[] args) {
+    private EvaluationContext getEvaluationContext(InvocationPlan plan, Object[] args) {
         EvaluationContext context = new StandardEvaluationContext();
         if (ArrayUtils.isEmpty(args)) {
             return context;
         }
 
-        Method targetMethod = getTargetMethod(targetClass, method);
         for (int i = 0; i < args.length; i++) {
             context.setVariable("p" + i, args[i]);
         }
 
-        String[] parameterNames = paramNameDiscoverer.getParameterNames(targetMethod);
-        if (parameterNames != null) {
-            for (int i = 0; i < parameterNames.length; i++) {
-                context.setVariable(parameterNames[i], args[i]);
+        if (plan.parameterNames != null) {
+            for (int i = 0; i < plan.parameterNames.length; i++) {
+                context.setVariable(plan.parameterNames[i], args[i]);
             }
         }
 
         return context;
     }
 
-    private Synchronized getAnnotation(Class<?> targetClass, Method method) {
-        Method specificMethod = getTargetMethod(targetClass, method);
-        return AnnotationUtils.getAnnotation(specificMethod, Synchronized.class);
+    /**
+     * Everything about a @Synchronized method that does not depend on the arguments of a call, resolved on its first
+     * call so later calls only have to bind their arguments
+     */
+    private static class InvocationPlan {
+        private final String methodName;
+        private final String targetClassName;
+        private final Synchronized annotation;
+        private final String[] parameterNames;
+        private final SynchronizedExpression condition;
+        private final SynchronizedExpression discriminator;
+        private final SynchronizedExpression id;
+
+        private InvocationPlan(String methodName, String targetClassName, Synchronized annotation,
+                               String[] parameterNames, SynchronizedExpression condition,
+                               SynchronizedExpression discriminator, SynchronizedExpression id) {
+            this.methodName = methodName;
+            this.targetClassName = targetClassName;
+            this.annotation = annotation;
+            this.parameterNames = parameterNames;
+            this.condition = condition;
+            this.discriminator = discriminator;
+            this.id = id;
+        }
+
+        private boolean isConstant() {
+            return (condition == null || condition.isConstant()) && discriminator.isConstant() && id.isConstant();
+        }
+    }
+
+    /**
+     * A parsed expression, or the value of an expression that does not depend on the arguments of the call
+     */
+    private static class SynchronizedExpression {
+        private final Expression expression;
+        private final Class<?> type;
+        private final Object constant;
+
+        private SynchronizedExpression(Expression expression, Class<?> type, Object constant) {
+            this.expression = expression;
+            this.type = type;
+            this.constant = constant;
+        }
+
+        private boolean isConstant() {
+            return expression == null;
+        }
+
+        private Object getValue(EvaluationContext context) {
+            return expression == null ? constant : expression.getValue(context, type);
+        }
+    }
+
+    /**
+     * The method of a @Synchronized call together with the class it was called on, as the same interface method can be
+     * implemented with different annotations by different classes
+     */
+    private static class PlanKey {
+        private final Method method;
+        private final Class<?> targetClass;
+
+        private PlanKey(Method method, Class<?> targetClass) {
+            this.method = method;
+            this.targetClass = targetClass;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof PlanKey)) {
+                return false;
+            }
+            PlanKey other = (PlanKey) o;
+            return method.equals(other.method) && targetClass.equals(other.targetClass);
+        }
+
+        @Override
+        public int hashCode() {
+            return method.hashCode() * 29 + targetClass.hashCode();
+        }
     }
 }
\ No newline at end of file
@@ -150,4 +150,27 @@ public class CollectionUtils {
                 throw new IllegalArgumentException("Expected 0 or 1 items in the collection but found " + list.size());
         }
     }
+
+    /**
+     * Splits a collection into consecutive lists of at most the given size, e.g. to keep the number of parameters of
+     * an IN clause below the limit of the database
+     *
+     * @param items the items to split
+     * @param size  the maximum number of items in each list
+     * @param <T>   the type of the items
+     * @return the lists of items, in the iteration order of the collection
+     */
+    public static <T> List<List<T>> partition(Collection<? extends T> items, int size) {
+        Validate.isTrue(size > 0, "The size of a partition must be at least 1");
+        List<List<T>> partitions = new ArrayList<List<T>>();
+        List<T> partition = null;
+        for (T item : items) {
+            if (partition == null || partition.size() == size) {
+                partition = new ArrayList<T>(size);
+                partitions.add(partition);
+            }
+            partition.add(item);
+        }
+        return partitions;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A size bounded cache whose entries expire a fixed time after they are stored, or after the time given when storing
+ * them.
+ * <p/>
+ * The entries are kept in least recently used order, so storing an entry in a full cache drops the least recently
+ * used one in constant time.  Expired entries are dropped when they are looked up or reach the end of that order.
+ * All methods are synchronized.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public class ExpiringCache<K, V> {
+    private final long ttlMillis;
+    private final Map<K, Entry<V>> entries;
+
+    /**
+     * @param ttlMillis the time after which a stored value expires
+     * @param maxSize   the maximum number of values kept
+     */
+    public ExpiringCache(long ttlMillis, final int maxSize) {
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * @param key the key of the value
+     * @return the value stored for the key, or null when there is none or it has expired
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (currentTimeMillis() >= entry.expireTime) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * Stores a value, replacing the value stored for the same key
+     *
+     * @param key   the key of the value
+     * @param value the value
+     */
+    public synchronized void put(K key, V value) {
+        put(key, value, ttlMillis);
+    }
+
+    /**
+     * Stores a value that expires after its own ttl, replacing the value stored for the same key
+     *
+     * @param key       the key of the value
+     * @param value     the value
+     * @param ttlMillis the time after which the value expires
+     */
+    public synchronized void put(K key, V value, long ttlMillis) {
+        entries.put(key, new Entry<V>(value, currentTimeMillis() + ttlMillis));
+    }
+
+    /**
+     * Removes all values
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @return the number of stored values, including the expired ones that have not been dropped yet
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final long expireTime;
+
+        private Entry(V value, long expireTime) {
+            this.value = value;
+            this.expireTime = expireTime;
+        }
+    }
+}
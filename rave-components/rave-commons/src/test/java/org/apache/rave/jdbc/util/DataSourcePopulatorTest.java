@@ -41,7 +41,8 @@ import static org.junit.Assert.assertThat;
 
 public class DataSourcePopulatorTest {
 
-    public static final String INSERT = "INSERT INTO BAR VALUES('FOO'); INSERT INTO FOO VALUES ('BAR'); ";
+    public static final String INSERT_BAR = "INSERT INTO BAR VALUES('FOO')";
+    public static final String INSERT_FOO = "INSERT INTO FOO VALUES ('BAR')";
     private static final String CHECK_QUERY = "QUERY FOR TABLES";
     private static final String TABLE_NOT_FOUND_MSG = "TABLE \"BOO\" NOT FOUND";
 
@@ -67,9 +68,7 @@ public class DataSourcePopulatorTest {
 
     @Test
     public void null_check() throws SQLException {
-        Statement populate = createNiceMock(Statement.class);
-        expect(populate.execute(INSERT)).andReturn(true).once();
-        replay(populate);
+        Statement populate = createBatchStatement();
 
         expect(connection.createStatement()).andReturn(populate).once();
         connection.close();
@@ -87,9 +86,7 @@ public class DataSourcePopulatorTest {
         expect(check.executeQuery(CHECK_QUERY)).andThrow(new SQLException(TABLE_NOT_FOUND_MSG));
         replay(check);
 
-        Statement populate = createNiceMock(Statement.class);
-        expect(populate.execute(INSERT)).andReturn(true).once();
-        replay(populate);
+        Statement populate = createBatchStatement();
 
         expect(connection.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY)).andReturn(check).once();
         expect(connection.createStatement()).andReturn(populate).once();
@@ -112,9 +109,7 @@ public class DataSourcePopulatorTest {
         expect(check.executeQuery(CHECK_QUERY)).andReturn(rs);
         replay(check);
 
-        Statement populate = createNiceMock(Statement.class);
-        expect(populate.execute(INSERT)).andReturn(true).once();
-        replay(populate);
+        Statement populate = createBatchStatement();
 
         expect(connection.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY)).andReturn(check).once();
         expect(connection.createStatement()).andReturn(populate).once();
@@ -134,7 +129,7 @@ public class DataSourcePopulatorTest {
         replay(check);
 
         Statement populate = createNiceMock(Statement.class);
-        expect(populate.execute(INSERT)).andThrow(new SQLException());
+        expect(populate.executeBatch()).andThrow(new SQLException());
         replay(populate);
 
         expect(connection.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY)).andReturn(check).once();
@@ -187,6 +182,66 @@ public class DataSourcePopulatorTest {
 
     }
 
+    @Test
+    public void batchSize_executesFullBatches() throws SQLException {
+        Statement populate = createNiceMock(Statement.class);
+        populate.addBatch(INSERT_BAR);
+        expectLastCall().once();
+        populate.addBatch(INSERT_FOO);
+        expectLastCall().once();
+        expect(populate.executeBatch()).andReturn(new int[]{1}).times(2);
+        replay(populate);
+
+        expect(connection.createStatement()).andReturn(populate).once();
+        replay(connection);
+
+        populator = new DataSourcePopulator(resourceList, null);
+        populator.setBatchSize(1);
+        populator.initialize(dataSource);
+        verify(populate);
+    }
+
+    @Test
+    public void commitInterval_commitsDuringScript() throws SQLException {
+        Statement populate = createNiceMock(Statement.class);
+        expect(populate.executeBatch()).andReturn(new int[]{1}).times(2);
+        replay(populate);
+
+        expect(connection.getAutoCommit()).andReturn(true);
+        connection.setAutoCommit(false);
+        expectLastCall().once();
+        expect(connection.createStatement()).andReturn(populate).once();
+        //once for each statement and once at the end of the script
+        connection.commit();
+        expectLastCall().times(3);
+        connection.setAutoCommit(true);
+        expectLastCall().once();
+        replay(connection);
+
+        populator = new DataSourcePopulator(resourceList, null);
+        populator.setCommitInterval(1);
+        populator.initialize(dataSource);
+        verify(populate, connection);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalid_batchSize() {
+        populator = new DataSourcePopulator(resourceList, CHECK_QUERY);
+        populator.setBatchSize(0);
+        populator.initialize(dataSource);
+    }
+
+    private Statement createBatchStatement() throws SQLException {
+        Statement populate = createNiceMock(Statement.class);
+        populate.addBatch(INSERT_BAR);
+        expectLastCall().once();
+        populate.addBatch(INSERT_FOO);
+        expectLastCall().once();
+        expect(populate.executeBatch()).andReturn(new int[]{1, 1}).once();
+        replay(populate);
+        return populate;
+    }
+
     private List<Resource> createScriptList() {
         List<Resource> resourceList = new ArrayList<Resource>();
         resourceList.add(new ClassPathResource("test-data.sql"));
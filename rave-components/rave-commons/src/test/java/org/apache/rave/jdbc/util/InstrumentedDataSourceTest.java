@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.rave.jdbc.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class InstrumentedDataSourceTest {
+
+    private InstrumentedDataSource dataSource;
+
+    @Before
+    public void setup() {
+        dataSource = new InstrumentedDataSource();
+        dataSource.setDriverClassName("org.h2.Driver");
+        dataSource.setUrl("jdbc:h2:mem:instrumented;DB_CLOSE_DELAY=-1");
+        dataSource.setUsername("sa");
+        dataSource.setPassword("");
+        dataSource.setMaxActive(1);
+        dataSource.setMaxWait(50);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        dataSource.close();
+    }
+
+    @Test
+    public void getConnection_recordsRequest() throws SQLException {
+        Connection connection = dataSource.getConnection();
+        assertThat(dataSource.getNumActive(), is(1));
+        connection.close();
+
+        assertThat(dataSource.getNumActive(), is(0));
+        assertThat(dataSource.getNumIdle(), is(1));
+        assertThat(dataSource.getConnectionRequestCount(), is(1L));
+        assertThat(dataSource.getConnectionTimeoutCount(), is(0L));
+    }
+
+    @Test
+    public void getConnection_poolExhausted() throws SQLException {
+        Connection connection = dataSource.getConnection();
+        try {
+            dataSource.getConnection();
+            fail("Expected the pool to be exhausted");
+        } catch (SQLException e) {
+            assertThat(dataSource.getConnectionTimeoutCount(), is(1L));
+            assertThat(dataSource.getConnectionRequestCount(), is(2L));
+            assertThat(dataSource.getMaxWaitTimeMillis() >= 50L, is(true));
+        } finally {
+            connection.close();
+        }
+    }
+
+    @Test
+    public void resetStatistics() throws SQLException {
+        dataSource.getConnection().close();
+        dataSource.resetStatistics();
+
+        assertThat(dataSource.getConnectionRequestCount(), is(0L));
+        assertThat(dataSource.getTotalWaitTimeMillis(), is(0L));
+        assertThat(dataSource.getAverageWaitTimeMillis(), is(0.0));
+    }
+}
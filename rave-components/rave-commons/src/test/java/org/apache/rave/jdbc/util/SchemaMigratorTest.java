@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.jdbc.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class SchemaMigratorTest {
+    private static final Resource CREATE_FOO = new ClassPathResource("migration/V1__create_foo.sql");
+    private static final Resource INDEX_FOO = new ClassPathResource("migration/V2__index_foo_name.sql");
+    private static final Resource FAIL = new ClassPathResource("migration/V3__fail.sql");
+
+    private InstrumentedDataSource dataSource;
+    private SchemaMigrator migrator;
+
+    @Before
+    public void setup() {
+        dataSource = new InstrumentedDataSource();
+        dataSource.setDriverClassName("org.h2.Driver");
+        dataSource.setUrl("jdbc:h2:mem:migration;DB_CLOSE_DELAY=-1");
+        dataSource.setUsername("sa");
+        dataSource.setPassword("");
+        migrator = new SchemaMigrator();
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        execute("DROP ALL OBJECTS");
+        dataSource.close();
+    }
+
+    @Test
+    public void migrate_inVersionOrder() throws SQLException {
+        migrator.setMigrationLocations(new Resource[]{INDEX_FOO, CREATE_FOO});
+
+        assertThat(migrator.migrate(dataSource), is(2));
+        assertThat(count("SELECT COUNT(*) FROM foo"), is(1));
+        assertThat(count("SELECT COUNT(*) FROM schema_version"), is(2));
+        assertThat(count("SELECT COUNT(*) FROM information_schema.indexes WHERE index_name = 'IDX_FOO_NAME'"), is(1));
+    }
+
+    @Test
+    public void migrate_appliesEachVersionOnce() throws SQLException {
+        migrator.setMigrationLocations(new Resource[]{CREATE_FOO});
+        migrator.migrate(dataSource);
+
+        migrator.setMigrationLocations(new Resource[]{CREATE_FOO, INDEX_FOO});
+        assertThat(migrator.migrate(dataSource), is(1));
+        assertThat(migrator.migrate(dataSource), is(0));
+        assertThat(count("SELECT COUNT(*) FROM foo"), is(1));
+    }
+
+    @Test
+    public void migrate_versionTable() throws SQLException {
+        migrator.setVersionTable("rave_test_schema_version");
+        migrator.setMigrationLocations(new Resource[]{CREATE_FOO});
+        migrator.migrate(dataSource);
+
+        assertThat(count("SELECT COUNT(*) FROM rave_test_schema_version WHERE version = 1"), is(1));
+    }
+
+    @Test
+    public void migrate_failureNotRecorded() throws SQLException {
+        migrator.setMigrationLocations(new Resource[]{CREATE_FOO, FAIL});
+        try {
+            migrator.migrate(dataSource);
+            fail("Expected the migration to fail");
+        } catch (RuntimeException e) {
+            assertThat(count("SELECT COUNT(*) FROM foo"), is(1));
+            assertThat(count("SELECT COUNT(*) FROM schema_version"), is(1));
+        }
+    }
+
+    @Test
+    public void migrate_jdbcMigrationInVersionOrder() throws SQLException {
+        migrator.setMigrationLocations(new Resource[]{CREATE_FOO});
+        migrator.setJdbcMigrations(Collections.singletonMap(2, (JdbcMigration) new RenameFoo()));
+
+        assertThat(migrator.migrate(dataSource), is(2));
+        assertThat(count("SELECT COUNT(*) FROM foo WHERE name = 'renamed'"), is(1));
+        assertThat(count("SELECT COUNT(*) FROM schema_version WHERE version = 2 AND description = 'rename foo'"),
+                is(1));
+    }
+
+    @Test
+    public void migrate_jdbcMigrationFailureNotRecorded() throws SQLException {
+        migrator.setMigrationLocations(new Resource[]{CREATE_FOO});
+        migrator.setJdbcMigrations(Collections.singletonMap(2, (JdbcMigration) new RenameFoo() {
+            @Override
+            public void migrate(Connection connection) throws SQLException {
+                super.migrate(connection);
+                throw new SQLException("broken migration");
+            }
+        }));
+        try {
+            migrator.migrate(dataSource);
+            fail("Expected the migration to fail");
+        } catch (RuntimeException e) {
+            assertThat(count("SELECT COUNT(*) FROM foo WHERE name = 'renamed'"), is(0));
+            assertThat(count("SELECT COUNT(*) FROM schema_version"), is(1));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void migrate_jdbcMigrationSameVersionAsScript() {
+        migrator.setMigrationLocations(new Resource[]{CREATE_FOO});
+        migrator.setJdbcMigrations(Collections.singletonMap(1, (JdbcMigration) new RenameFoo()));
+        migrator.migrate(dataSource);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void migrate_invalidName() {
+        migrator.setMigrationLocations(new Resource[]{new ClassPathResource("test-data.sql")});
+        migrator.migrate(dataSource);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void migrate_noLocations() {
+        migrator.migrate(dataSource);
+    }
+
+    private static class RenameFoo implements JdbcMigration {
+        @Override
+        public String getDescription() {
+            return "rename foo";
+        }
+
+        @Override
+        public void migrate(Connection connection) throws SQLException {
+            Statement statement = connection.createStatement();
+            try {
+                statement.executeUpdate("UPDATE foo SET name = 'renamed'");
+            } finally {
+                statement.close();
+            }
+        }
+    }
+
+    private int count(String sql) throws SQLException {
+        Connection connection = dataSource.getConnection();
+        try {
+            ResultSet resultSet = connection.createStatement().executeQuery(sql);
+            resultSet.next();
+            return resultSet.getInt(1);
+        } finally {
+            connection.close();
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+        Connection connection = dataSource.getConnection();
+        try {
+            Statement statement = connection.createStatement();
+            statement.execute(sql);
+        } finally {
+            connection.close();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.rave.jdbc.util;
+
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+
+/**
+ * Measures how long a generated seed script of 1,000,000 inserts (or the number given as the first argument), split over a parent and a child script, takes to
+ * parse and to load into an in-memory H2 database: as a single string in one statement, the way scripts used to be
+ * executed, and streamed in JDBC batches of several sizes.  Reports the heap in use after each run.
+ * <p/>
+ * Not run as part of the build.  Run it from the rave-commons module with:
+ * <code>
+ *    mvn test-compile exec:java -Dexec.mainClass=org.apache.rave.jdbc.util.SqlFileParserBenchmark -Dexec.classpathScope=test
+ * </code>
+ * Executing the whole script as one string does not finish for 1,000,000 inserts: H2 copies the remainder of the
+ * string for every statement it executes.  Pass a smaller number, e.g. -Dexec.args=50000, to compare it with the
+ * batches.
+ */
+public class SqlFileParserBenchmark {
+
+    private static final int DEFAULT_ROWS = 1000000;
+    private static final int[] BATCH_SIZES = {1, 100, 1000};
+    private static final int COMMIT_INTERVAL = 10000;
+
+    private static int databaseCount;
+    private static int rows;
+
+    public static void main(String[] args) throws Exception {
+        rows = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ROWS;
+        File directory = createSeedScripts();
+        Resource seed = new FileSystemResource(new File(directory, "seed.sql"));
+
+        System.out.println(String.format("%-24s %12s %12s", "run", "ms", "heap MB"));
+        long start = System.currentTimeMillis();
+        int statements = 0;
+        SqlFileParser parser = new SqlFileParser(seed);
+        while (parser.nextStatement() != null) {
+            statements++;
+        }
+        report("parse streamed", start);
+
+        start = System.currentTimeMillis();
+        String sql = new SqlFileParser(seed).getSQL();
+        report("parse to string", start);
+
+        Connection connection = createConnection();
+        start = System.currentTimeMillis();
+        Statement statement = connection.createStatement();
+        statement.execute(sql);
+        statement.close();
+        report("execute string", start);
+        verifyRows(connection);
+        sql = null;
+
+        for (int batchSize : BATCH_SIZES) {
+            connection = createConnection();
+            DataSourcePopulator populator = new DataSourcePopulator(Collections.singletonList(seed), null);
+            populator.setBatchSize(batchSize);
+            populator.setCommitInterval(COMMIT_INTERVAL);
+            start = System.currentTimeMillis();
+            populator.executeStatements(new SqlFileParser(seed), connection, seed.getFilename());
+            report("execute batches of " + batchSize, start);
+            verifyRows(connection);
+        }
+        System.out.println(statements + " statements");
+    }
+
+    private static void report(String run, long start) {
+        long elapsed = System.currentTimeMillis() - start;
+        Runtime runtime = Runtime.getRuntime();
+        long heap = (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024);
+        System.out.println(String.format("%-24s %12d %12d", run, elapsed, heap));
+        System.gc();
+    }
+
+    private static File createSeedScripts() throws IOException {
+        File directory = new File(System.getProperty("java.io.tmpdir"), "rave-seed-benchmark");
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create " + directory);
+        }
+        BufferedWriter parent = new BufferedWriter(new FileWriter(new File(directory, "seed.sql")));
+        BufferedWriter child = new BufferedWriter(new FileWriter(new File(directory, "seed-child.sql")));
+        try {
+            parent.write("-- generated seed script\n");
+            parent.write("CREATE TABLE seed (\n    id BIGINT PRIMARY KEY,\n    name VARCHAR(64));\n");
+            parent.write("@@seed-child.sql\n");
+            for (int i = 0; i < rows; i++) {
+                BufferedWriter writer = i < rows / 2 ? child : parent;
+                writer.write("INSERT INTO seed (id, name)\n    VALUES (" + i + ", 'name " + i + "');\n");
+            }
+        } finally {
+            child.close();
+            parent.close();
+        }
+        return directory;
+    }
+
+    private static Connection createConnection() throws SQLException {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource();
+        dataSource.setDriverClassName("org.h2.Driver");
+        dataSource.setUrl("jdbc:h2:mem:seed" + (++databaseCount));
+        dataSource.setUsername("sa");
+        dataSource.setPassword("");
+        return dataSource.getConnection();
+    }
+
+    private static void verifyRows(Connection connection) throws SQLException {
+        Statement statement = connection.createStatement();
+        try {
+            ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM seed");
+            result.next();
+            if (result.getInt(1) != rows) {
+                throw new IllegalStateException("Expected " + rows + " rows but found " + result.getInt(1));
+            }
+        } finally {
+            statement.close();
+            connection.close();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.rave.jdbc.util;
+
+import org.junit.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class SqlFileParserTest {
+
+    @Test
+    public void getSQL() throws IOException {
+        String sql = new SqlFileParser(new ClassPathResource("test-data.sql")).getSQL();
+        assertThat(sql, is(equalTo("INSERT INTO BAR VALUES('FOO'); INSERT INTO FOO VALUES ('BAR'); ")));
+    }
+
+    @Test
+    public void nextStatement_readsChildScriptsInPlace() throws IOException {
+        SqlFileParser parser = new SqlFileParser(new ClassPathResource("test-data.sql"));
+        assertThat(parser.nextStatement(), is(equalTo("INSERT INTO BAR VALUES('FOO')")));
+        assertThat(parser.nextStatement(), is(equalTo("INSERT INTO FOO VALUES ('BAR')")));
+        assertThat(parser.nextStatement(), is(nullValue()));
+        assertThat(parser.nextStatement(), is(nullValue()));
+    }
+
+    @Test
+    public void nextStatement_multipleLines() throws IOException {
+        SqlFileParser parser = parser("-- a comment\n" +
+                "create table foo (\n" +
+                "  id int);\n" +
+                "\n" +
+                "select * from foo;\n" +
+                "  Insert into foo values (1);\n" +
+                "COMMIT;\n");
+        assertThat(parser.nextStatement(), is(equalTo("create table foo (   id int)")));
+        assertThat(parser.nextStatement(), is(equalTo("Insert into foo values (1)")));
+        assertThat(parser.nextStatement(), is(equalTo("COMMIT")));
+        assertThat(parser.nextStatement(), is(nullValue()));
+    }
+
+    @Test
+    public void nextStatement_unterminated() throws IOException {
+        SqlFileParser parser = parser("delete from foo\nwhere id = 1");
+        assertThat(parser.nextStatement(), is(equalTo("delete from foo where id = 1")));
+        assertThat(parser.nextStatement(), is(nullValue()));
+    }
+
+    private static SqlFileParser parser(String script) {
+        return new SqlFileParser(new ByteArrayResource(script.getBytes()));
+    }
+}
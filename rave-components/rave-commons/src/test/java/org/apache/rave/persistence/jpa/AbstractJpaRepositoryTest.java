@@ -24,7 +24,9 @@ import org.apache.rave.persistence.Repository;
 import org.junit.Before;
 import org.junit.Test;
 
+import javax.persistence.Cache;
 import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
 
 import static org.easymock.EasyMock.createNiceMock;
 import static org.easymock.EasyMock.expect;
@@ -103,6 +105,36 @@ public class AbstractJpaRepositoryTest {
     }
 
 
+    @Test
+    public void delete_evictsRelated() {
+        TestEntity entity = new TestEntity(ID);
+        Cache cache = createNiceMock(Cache.class);
+        cache.evict(TestEntity.class, ID);
+        expectLastCall();
+        replay(cache);
+        EntityManagerFactory factory = createNiceMock(EntityManagerFactory.class);
+        expect(factory.getCache()).andReturn(cache);
+        replay(factory);
+        expect(manager.getEntityManagerFactory()).andReturn(factory);
+        replay(manager);
+
+        new EvictingTestJpaRepository(manager).delete(entity);
+        verify(cache);
+    }
+
+    @Test
+    public void save_noCacheConfigured() {
+        TestEntity entity = new TestEntity(ID);
+        expect(manager.merge(entity)).andReturn(entity);
+        expect(manager.getEntityManagerFactory()).andReturn(null);
+        replay(manager);
+
+        TestEntity result = new EvictingTestJpaRepository(manager).save(entity);
+        assertThat(result, is(sameInstance(entity)));
+        verify(manager);
+    }
+
+
     private class TestJpaRepository extends AbstractJpaRepository<TestEntity> {
 
         protected TestJpaRepository(EntityManager manager) {
@@ -111,6 +143,18 @@ public class AbstractJpaRepositoryTest {
         }
     }
 
+    private class EvictingTestJpaRepository extends TestJpaRepository {
+
+        protected EvictingTestJpaRepository(EntityManager manager) {
+            super(manager);
+        }
+
+        @Override
+        protected void evictRelated(TestEntity item) {
+            evictFromCache(TestEntity.class, item.getEntityId());
+        }
+    }
+
     private class TestEntity implements BasicEntity{
         private Long entityId;
 
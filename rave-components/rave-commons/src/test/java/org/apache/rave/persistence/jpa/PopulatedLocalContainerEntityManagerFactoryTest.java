@@ -20,6 +20,8 @@
 package org.apache.rave.persistence.jpa;
 
 import org.apache.rave.jdbc.util.DataSourcePopulator;
+import org.apache.rave.jdbc.util.SchemaMigrator;
+import org.apache.rave.service.LockService;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -27,6 +29,7 @@ import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.spi.PersistenceUnitInfo;
 import javax.sql.DataSource;
+import java.util.concurrent.locks.Lock;
 
 import static org.easymock.EasyMock.*;
 
@@ -84,5 +87,39 @@ public class PopulatedLocalContainerEntityManagerFactoryTest {
         verify(manager);
     }
 
+    @Test
+    public void postProcess_migratesHoldingLock() {
+        SchemaMigrator migrator = createMock(SchemaMigrator.class);
+        LockService lockService = createMock(LockService.class);
+        Lock lock = createMock(Lock.class);
+        expect(innerFactory.createEntityManager()).andReturn(manager);
+        expect(lockService.borrowLock("SchemaMigration", "testUnit")).andReturn(lock);
+        lock.lock();
+        expect(migrator.migrate(dataSource)).andReturn(1);
+        lock.unlock();
+        lockService.returnLock(lock);
+        replay(innerFactory, manager, info, migrator, lockService, lock);
+
+        factory.setPersistenceUnitName("testUnit");
+        factory.setMigrator(migrator);
+        factory.setLockService(lockService);
+        factory.setDataSource(dataSource);
+        factory.postProcessEntityManagerFactory(innerFactory, info);
+
+        verify(migrator, lockService, lock);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void postProcess_failedMigration() {
+        SchemaMigrator migrator = createMock(SchemaMigrator.class);
+        expect(innerFactory.createEntityManager()).andReturn(manager);
+        expect(migrator.migrate(dataSource)).andThrow(new IllegalStateException("broken script"));
+        replay(innerFactory, manager, info, migrator);
+
+        factory.setMigrator(migrator);
+        factory.setDataSource(dataSource);
+        factory.postProcessEntityManagerFactory(innerFactory, info);
+    }
+
     private class TestPopulatedLocalContainerEntityManagerFactory extends PopulatedLocalContainerEntityManagerFactory {}
 }
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.persistence.jpa.impl;
+
+import org.apache.openjpa.datacache.CacheStatistics;
+import org.apache.openjpa.datacache.QueryCache;
+import org.apache.openjpa.kernel.QueryStatistics;
+import org.apache.openjpa.persistence.OpenJPAEntityManagerFactory;
+import org.apache.openjpa.persistence.QueryResultCache;
+import org.apache.openjpa.persistence.StoreCache;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class OpenJpaCacheStatisticsTest {
+
+    private OpenJPAEntityManagerFactory factory;
+    private StoreCache storeCache;
+    private QueryResultCache queryResultCache;
+    private QueryCache queryCache;
+    private CacheStatistics cacheStatistics;
+    private QueryStatistics queryStatistics;
+    private OpenJpaCacheStatistics statistics;
+
+    @Before
+    public void setup() {
+        factory = createNiceMock(OpenJPAEntityManagerFactory.class);
+        storeCache = createNiceMock(StoreCache.class);
+        queryResultCache = createNiceMock(QueryResultCache.class);
+        queryCache = createNiceMock(QueryCache.class);
+        cacheStatistics = createNiceMock(CacheStatistics.class);
+        queryStatistics = createNiceMock(QueryStatistics.class);
+        expect(factory.getStoreCache()).andReturn(storeCache).anyTimes();
+        expect(factory.getQueryResultCache()).andReturn(queryResultCache).anyTimes();
+        expect(storeCache.getStatistics()).andReturn(cacheStatistics).anyTimes();
+        expect(queryResultCache.getDelegate()).andReturn(queryCache).anyTimes();
+        expect(queryCache.getStatistics()).andReturn(queryStatistics).anyTimes();
+        replay(factory, storeCache, queryResultCache, queryCache);
+        statistics = new OpenJpaCacheStatistics(factory);
+    }
+
+    @Test
+    public void dataCacheCounters() {
+        expect(cacheStatistics.getReadCount()).andReturn(10L).anyTimes();
+        expect(cacheStatistics.getHitCount()).andReturn(7L).anyTimes();
+        expect(cacheStatistics.getWriteCount()).andReturn(3L).anyTimes();
+        replay(cacheStatistics);
+
+        assertThat(statistics.getDataCacheHitCount(), is(7L));
+        assertThat(statistics.getDataCacheMissCount(), is(3L));
+        assertThat(statistics.getDataCacheWriteCount(), is(3L));
+    }
+
+    @Test
+    public void queryCacheCounters() {
+        expect(queryStatistics.getExecutionCount()).andReturn(20L).anyTimes();
+        expect(queryStatistics.getHitCount()).andReturn(15L).anyTimes();
+        replay(queryStatistics);
+
+        assertThat(statistics.getQueryCacheHitCount(), is(15L));
+        assertThat(statistics.getQueryCacheMissCount(), is(5L));
+    }
+
+    @Test
+    public void resetStatistics() {
+        cacheStatistics.reset();
+        expectLastCall();
+        queryStatistics.reset();
+        expectLastCall();
+        replay(cacheStatistics, queryStatistics);
+
+        statistics.resetStatistics();
+        verify(cacheStatistics, queryStatistics);
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.persistence.jpa.impl;
+
+import org.apache.openjpa.conf.OpenJPAConfiguration;
+import org.apache.openjpa.meta.ClassMetaData;
+import org.apache.openjpa.meta.MetaDataRepository;
+import org.apache.openjpa.persistence.OpenJPAEntityManagerFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.persistence.Cache;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.easymock.EasyMock.*;
+
+public class OpenJpaDataCacheTimeoutsTest {
+
+    private OpenJPAEntityManagerFactory factory;
+    private MetaDataRepository repository;
+    private Cache cache;
+
+    @Before
+    public void setup() {
+        factory = createNiceMock(OpenJPAEntityManagerFactory.class);
+        OpenJPAConfiguration configuration = createNiceMock(OpenJPAConfiguration.class);
+        repository = createMock(MetaDataRepository.class);
+        cache = createMock(Cache.class);
+        expect(factory.getConfiguration()).andReturn(configuration).anyTimes();
+        expect(factory.getCache()).andReturn(cache).anyTimes();
+        expect(configuration.getMetaDataRepositoryInstance()).andReturn(repository).anyTimes();
+        replay(factory, configuration);
+    }
+
+    @Test
+    public void timeoutsSetPerEntity() {
+        ClassMetaData widgetMetaData = createMock(ClassMetaData.class);
+        ClassMetaData tagMetaData = createMock(ClassMetaData.class);
+        expect(repository.getMetaData(eq("Widget"), anyObject(ClassLoader.class), eq(true))).andReturn(widgetMetaData);
+        expect(repository.getMetaData(eq("Tag"), anyObject(ClassLoader.class), eq(true))).andReturn(tagMetaData);
+        widgetMetaData.setDataCacheTimeout(300000);
+        expectLastCall();
+        expect(widgetMetaData.getDescribedType()).andReturn((Class) String.class);
+        tagMetaData.setDataCacheTimeout(-1);
+        expectLastCall();
+        expect(tagMetaData.getDescribedType()).andReturn((Class) Integer.class);
+        //entries cached before the timeouts were set are evicted
+        cache.evict(String.class);
+        expectLastCall();
+        cache.evict(Integer.class);
+        expectLastCall();
+        replay(repository, cache, widgetMetaData, tagMetaData);
+
+        Map<String, Integer> timeouts = new LinkedHashMap<String, Integer>();
+        timeouts.put("Widget", 300000);
+        timeouts.put("Tag", -1);
+        new OpenJpaDataCacheTimeouts(factory, timeouts);
+
+        verify(repository, cache, widgetMetaData, tagMetaData);
+    }
+}
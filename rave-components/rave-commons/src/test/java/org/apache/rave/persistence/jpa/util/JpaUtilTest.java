@@ -24,9 +24,14 @@ import org.junit.Before;
 import org.junit.Test;
 import org.springframework.dao.IncorrectResultSizeDataAccessException;
 
+import javax.persistence.EntityExistsException;
 import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+import javax.persistence.Query;
 import javax.persistence.TypedQuery;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import static org.easymock.EasyMock.*;
@@ -114,6 +119,57 @@ public class JpaUtilTest {
         verify(query);
     }
 
+    @Test
+    public void getNativeResultListByIds_chunked() {
+        List<Long> ids = new ArrayList<Long>();
+        for (long id = 1; id <= JpaUtil.MAX_IDS_PER_QUERY + 1; id++) {
+            ids.add(id);
+        }
+        Object[] first = new Object[]{1L};
+        Object[] last = new Object[]{(long) JpaUtil.MAX_IDS_PER_QUERY + 1};
+        Query fullQuery = createNiceMock(Query.class);
+        Query lastQuery = createMock(Query.class);
+        expect(mockManager.createNativeQuery(startsWith("SELECT id FROM t WHERE x = ? AND id IN (?, ?")))
+                .andReturn(fullQuery);
+        expect(fullQuery.getResultList()).andReturn(Collections.singletonList(first));
+        expect(mockManager.createNativeQuery("SELECT id FROM t WHERE x = ? AND id IN (?)")).andReturn(lastQuery);
+        expect(lastQuery.setParameter(1, "x")).andReturn(lastQuery);
+        expect(lastQuery.setParameter(2, (long) JpaUtil.MAX_IDS_PER_QUERY + 1)).andReturn(lastQuery);
+        expect(lastQuery.getResultList()).andReturn(Collections.singletonList(last));
+        replay(mockManager, fullQuery, lastQuery);
+
+        List<Object[]> results = JpaUtil.getNativeResultListByIds(mockManager,
+                "SELECT id FROM t WHERE x = ? AND id IN (%s)", ids, "x");
+
+        assertThat(results.size(), is(2));
+        assertThat(results.get(0), is(sameInstance(first)));
+        assertThat(results.get(1), is(sameInstance(last)));
+        verify(mockManager, lastQuery);
+    }
+
+    @Test
+    public void isConstraintViolation_entityExists() {
+        assertThat(JpaUtil.isConstraintViolation(new EntityExistsException()), is(true));
+    }
+
+    @Test
+    public void isConstraintViolation_nestedSqlState() {
+        SQLException duplicateKey = new SQLException("Unique index or primary key violation", "23505");
+        PersistenceException e = new PersistenceException(new PersistenceException(duplicateKey));
+        assertThat(JpaUtil.isConstraintViolation(e), is(true));
+    }
+
+    @Test
+    public void isConstraintViolation_otherSqlState() {
+        SQLException connectionFailure = new SQLException("Connection refused", "08001");
+        assertThat(JpaUtil.isConstraintViolation(new PersistenceException(connectionFailure)), is(false));
+    }
+
+    @Test
+    public void isConstraintViolation_noCause() {
+        assertThat(JpaUtil.isConstraintViolation(new PersistenceException()), is(false));
+    }
+
     // Private helper functions for the tests
     private List<Object> generatePopulatedList(int size) {
         List<Object> list = new ArrayList<Object>();
@@ -0,0 +1,381 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.service.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Simulates several portal nodes by pointing multiple {@link JdbcLockService} instances at the same H2 database
+ */
+public class JdbcLockServiceTest {
+    private static final String KEY = "KEY";
+    private static final long LEASE_MILLIS = 30000;
+    private static final long POLL_MILLIS = 5;
+    private static final AtomicInteger DATABASE_COUNT = new AtomicInteger();
+
+    private DataSource dataSource;
+    private ThreadPoolTaskScheduler taskScheduler;
+    private JdbcLockService nodeA;
+    private JdbcLockService nodeB;
+
+    @Before
+    public void setup() throws Exception {
+        DriverManagerDataSource driverManagerDataSource = new DriverManagerDataSource();
+        driverManagerDataSource.setDriverClassName("org.h2.Driver");
+        driverManagerDataSource.setUrl("jdbc:h2:mem:locks" + DATABASE_COUNT.incrementAndGet() + ";DB_CLOSE_DELAY=-1");
+        driverManagerDataSource.setUsername("sa");
+        driverManagerDataSource.setPassword("");
+        dataSource = driverManagerDataSource;
+        taskScheduler = new ThreadPoolTaskScheduler();
+        taskScheduler.initialize();
+
+        nodeA = createNode(0);
+        nodeB = createNode(0);
+    }
+
+    @After
+    public void tearDown() {
+        taskScheduler.shutdown();
+    }
+
+    @Test
+    public void createTable_existingTable() throws Exception {
+        //a node started against a database that already has the table must not fail
+        createNode(0);
+        Lock lock = nodeA.borrowLock(KEY);
+        assertThat(lock.tryLock(), is(true));
+        lock.unlock();
+        nodeA.returnLock(lock);
+    }
+
+    @Test
+    public void createTable_nodesStartingTogether() throws Exception {
+        //every node finds the table missing and creates it at the same time, the nodes that lose must not fail
+        DriverManagerDataSource freshDataSource = new DriverManagerDataSource();
+        freshDataSource.setDriverClassName("org.h2.Driver");
+        freshDataSource.setUrl("jdbc:h2:mem:locks" + DATABASE_COUNT.incrementAndGet() + ";DB_CLOSE_DELAY=-1");
+        freshDataSource.setUsername("sa");
+        freshDataSource.setPassword("");
+        dataSource = freshDataSource;
+        final int nodes = 8;
+        final CyclicBarrier start = new CyclicBarrier(nodes);
+
+        ExecutorService executor = Executors.newFixedThreadPool(nodes);
+        List<Future<JdbcLockService>> started = new ArrayList<Future<JdbcLockService>>();
+        for (int n = 0; n < nodes; n++) {
+            started.add(executor.submit(new Callable<JdbcLockService>() {
+                @Override
+                public JdbcLockService call() throws Exception {
+                    start.await();
+                    return createNode(0);
+                }
+            }));
+        }
+        for (Future<JdbcLockService> node : started) {
+            Lock lock = node.get(60, TimeUnit.SECONDS).borrowLock(KEY);
+            assertThat(lock.tryLock(), is(true));
+            lock.unlock();
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    public void borrowLockByDiscriminatorAndId() {
+        JdbcLockService.LeasedLock lock = (JdbcLockService.LeasedLock) nodeA.borrowLock("FOO", "1");
+        assertThat(lock.getKey(), is("FOO-1"));
+        nodeA.returnLock(lock);
+    }
+
+    @Test
+    public void lock_excludesOtherNode() {
+        Lock lockA = nodeA.borrowLock(KEY);
+        Lock lockB = nodeB.borrowLock(KEY);
+
+        lockA.lock();
+        assertThat(lockB.tryLock(), is(false));
+        lockA.unlock();
+        assertThat(lockB.tryLock(), is(true));
+        assertThat(lockA.tryLock(), is(false));
+        lockB.unlock();
+
+        nodeA.returnLock(lockA);
+        nodeB.returnLock(lockB);
+    }
+
+    @Test
+    public void lock_differentKeysDoNotExclude() {
+        Lock lockA = nodeA.borrowLock(KEY);
+        Lock lockB = nodeB.borrowLock("OTHER");
+
+        lockA.lock();
+        assertThat(lockB.tryLock(), is(true));
+        lockB.unlock();
+        lockA.unlock();
+
+        nodeA.returnLock(lockA);
+        nodeB.returnLock(lockB);
+    }
+
+    @Test
+    public void lock_reentrant() {
+        Lock lockA = nodeA.borrowLock(KEY);
+        Lock lockB = nodeB.borrowLock(KEY);
+
+        lockA.lock();
+        lockA.lock();
+        lockA.unlock();
+        assertThat(lockB.tryLock(), is(false));
+        lockA.unlock();
+        assertThat(lockB.tryLock(), is(true));
+        lockB.unlock();
+
+        nodeA.returnLock(lockA);
+        nodeB.returnLock(lockB);
+    }
+
+    @Test
+    public void fencingToken_increasesWithEveryLease() {
+        JdbcLockService.LeasedLock lockA = (JdbcLockService.LeasedLock) nodeA.borrowLock(KEY);
+        JdbcLockService.LeasedLock lockB = (JdbcLockService.LeasedLock) nodeB.borrowLock(KEY);
+
+        assertThat(lockA.getFencingToken(), is(nullValue()));
+        lockA.lock();
+        long first = lockA.getFencingToken();
+        lockA.unlock();
+        assertThat(lockA.getFencingToken(), is(nullValue()));
+
+        lockB.lock();
+        long second = lockB.getFencingToken();
+        lockB.unlock();
+
+        lockA.lock();
+        long third = lockA.getFencingToken();
+        lockA.unlock();
+
+        assertThat(second, is(greaterThan(first)));
+        assertThat(third, is(greaterThan(second)));
+
+        nodeA.returnLock(lockA);
+        nodeB.returnLock(lockB);
+    }
+
+    @Test
+    public void expiredLease_takenOverByOtherNode() throws Exception {
+        //node C's clock is past the end of node A's lease, as if node A had stalled for longer than the lease
+        JdbcLockService nodeC = createNode(LEASE_MILLIS);
+        JdbcLockService.LeasedLock lockA = (JdbcLockService.LeasedLock) nodeA.borrowLock(KEY);
+        JdbcLockService.LeasedLock lockB = (JdbcLockService.LeasedLock) nodeB.borrowLock(KEY);
+        JdbcLockService.LeasedLock lockC = (JdbcLockService.LeasedLock) nodeC.borrowLock(KEY);
+
+        lockA.lock();
+        assertThat(lockB.tryLock(), is(false));
+        assertThat(lockC.tryLock(), is(true));
+        assertThat(lockC.getFencingToken(), is(greaterThan(lockA.getFencingToken())));
+
+        //releasing the lost lease tells node A it lost the lock, but must not release node C's lease
+        try {
+            lockA.unlock();
+            fail("Expected unlocking a lost lease to fail");
+        } catch (IllegalMonitorStateException e) {
+            assertThat(lockB.tryLock(), is(false));
+        }
+
+        lockC.unlock();
+        assertThat(lockB.tryLock(), is(true));
+        lockB.unlock();
+
+        nodeA.returnLock(lockA);
+        nodeB.returnLock(lockB);
+        nodeC.returnLock(lockC);
+    }
+
+    @Test
+    public void lease_renewedWhileHeld() throws Exception {
+        //node A holds the lock for several times its lease
+        long leaseMillis = 300;
+        JdbcLockService shortLeaseNode = createNode(0, leaseMillis);
+        JdbcLockService.LeasedLock lockA = (JdbcLockService.LeasedLock) shortLeaseNode.borrowLock(KEY);
+        Lock lockB = nodeB.borrowLock(KEY);
+
+        lockA.lock();
+        long deadline = System.currentTimeMillis() + 4 * leaseMillis;
+        while (System.currentTimeMillis() < deadline) {
+            Thread.sleep(leaseMillis / 2);
+            assertThat(lockB.tryLock(), is(false));
+        }
+        assertThat(lockA.getFencingToken(), is(notNullValue()));
+        lockA.unlock();
+        assertThat(lockB.tryLock(), is(true));
+        lockB.unlock();
+
+        shortLeaseNode.returnLock(lockA);
+        nodeB.returnLock(lockB);
+    }
+
+    @Test
+    public void lease_lostWhileHeld() throws Exception {
+        //node C's clock is a lease ahead, so it takes over node A's lease before node A renews it
+        long leaseMillis = 300;
+        JdbcLockService shortLeaseNode = createNode(0, leaseMillis);
+        JdbcLockService nodeC = createNode(leaseMillis, leaseMillis);
+        JdbcLockService.LeasedLock lockA = (JdbcLockService.LeasedLock) shortLeaseNode.borrowLock(KEY);
+        Lock lockC = nodeC.borrowLock(KEY);
+
+        lockA.lock();
+        assertThat(lockC.tryLock(), is(true));
+        long deadline = System.currentTimeMillis() + 10 * leaseMillis;
+        while (lockA.getFencingToken() != null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(lockA.getFencingToken(), is(nullValue()));
+        try {
+            lockA.unlock();
+            fail("Expected unlocking a lost lease to fail");
+        } catch (IllegalMonitorStateException e) {
+            assertThat(lockA.tryLock(), is(false));
+        }
+        lockC.unlock();
+
+        shortLeaseNode.returnLock(lockA);
+        nodeC.returnLock(lockC);
+    }
+
+    @Test
+    public void tryLock_waitsForOtherNode() throws Exception {
+        final Lock lockA = nodeA.borrowLock(KEY);
+        Lock lockB = nodeB.borrowLock(KEY);
+        final CountDownLatch locked = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            //a lock is released by the thread holding it, so node A holds it on the other thread
+            Future<Boolean> acquired = executor.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    lockA.lock();
+                    locked.countDown();
+                    Thread.sleep(100);
+                    lockA.unlock();
+                    return true;
+                }
+            });
+            locked.await();
+            assertThat(lockB.tryLock(10, TimeUnit.MILLISECONDS), is(false));
+            assertThat(lockB.tryLock(10, TimeUnit.SECONDS), is(true));
+            assertThat(acquired.get(), is(true));
+            lockB.unlock();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        nodeA.returnLock(lockA);
+        nodeB.returnLock(lockB);
+    }
+
+    @Test
+    public void lock_mutualExclusionAcrossNodes() throws Exception {
+        final int nodes = 3;
+        final int threadsPerNode = 4;
+        final int iterations = 25;
+        final AtomicInteger holders = new AtomicInteger();
+        final AtomicInteger maxHolders = new AtomicInteger();
+        final AtomicInteger completed = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(nodes * threadsPerNode);
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int n = 0; n < nodes; n++) {
+            final JdbcLockService node = createNode(0);
+            for (int t = 0; t < threadsPerNode; t++) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        for (int i = 0; i < iterations; i++) {
+                            Lock lock = node.borrowLock(KEY);
+                            lock.lock();
+                            try {
+                                int current = holders.incrementAndGet();
+                                int max = maxHolders.get();
+                                while (current > max && !maxHolders.compareAndSet(max, current)) {
+                                    max = maxHolders.get();
+                                }
+                                completed.incrementAndGet();
+                                holders.decrementAndGet();
+                            } finally {
+                                lock.unlock();
+                                node.returnLock(lock);
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+        }
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(maxHolders.get(), is(1));
+        assertThat(completed.get(), is(nodes * threadsPerNode * iterations));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void newCondition() {
+        nodeA.borrowLock(KEY).newCondition();
+    }
+
+    /* Helper methods */
+    private JdbcLockService createNode(long clockOffsetMillis) throws Exception {
+        return createNode(clockOffsetMillis, LEASE_MILLIS);
+    }
+
+    private JdbcLockService createNode(final long clockOffsetMillis, long leaseMillis) throws Exception {
+        JdbcLockService node = new JdbcLockService(dataSource, leaseMillis, POLL_MILLIS, taskScheduler) {
+            @Override
+            protected long currentTimeMillis() {
+                return super.currentTimeMillis() + clockOffsetMillis;
+            }
+        };
+        node.afterPropertiesSet();
+        return node;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.service.impl;
+
+import org.apache.rave.service.LockService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Measures the borrow / lock / unlock / return throughput of the {@link LockService} implementations at 1 to 64
+ * threads, with every thread using its own key and with all threads sharing a small set of keys.
+ * <p/>
+ * Not run as part of the build.  Run it from the rave-commons module with:
+ * <code>
+ *    mvn test-compile exec:java -Dexec.mainClass=org.apache.rave.service.impl.LockServiceBenchmark -Dexec.classpathScope=test
+ * </code>
+ */
+public class LockServiceBenchmark {
+
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32, 64};
+    private static final int SHARED_KEYS = 4;
+    private static final long WARMUP_MILLIS = 1000;
+    private static final long MEASURE_MILLIS = 3000;
+
+    public static void main(String[] args) throws InterruptedException {
+        System.out.println(String.format("%-24s %-8s %8s %16s", "service", "keys", "threads", "ops/ms"));
+        for (boolean sharedKeys : new boolean[]{false, true}) {
+            for (int threads : THREAD_COUNTS) {
+                report("DefaultLockService", sharedKeys, threads, run(new DefaultLockService(), sharedKeys, threads));
+                report("ConcurrentLockService", sharedKeys, threads, run(new ConcurrentLockService(), sharedKeys, threads));
+            }
+        }
+    }
+
+    private static void report(String name, boolean sharedKeys, int threads, double opsPerMilli) {
+        System.out.println(String.format("%-24s %-8s %8d %16.1f", name, sharedKeys ? "shared" : "unique", threads, opsPerMilli));
+    }
+
+    private static double run(final LockService service, final boolean sharedKeys, int threads) throws InterruptedException {
+        final AtomicBoolean measuring = new AtomicBoolean();
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicLong operations = new AtomicLong();
+        final CountDownLatch done = new CountDownLatch(threads);
+
+        List<Thread> workers = new ArrayList<Thread>();
+        for (int i = 0; i < threads; i++) {
+            final String key = sharedKeys ? "key-" + (i % SHARED_KEYS) : "key-" + i;
+            workers.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    long count = 0;
+                    while (running.get()) {
+                        Lock lock = service.borrowLock("benchmark", key);
+                        lock.lock();
+                        try {
+                            if (measuring.get()) {
+                                count++;
+                            }
+                        } finally {
+                            lock.unlock();
+                            service.returnLock(lock);
+                        }
+                    }
+                    operations.addAndGet(count);
+                    done.countDown();
+                }
+            }));
+        }
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        Thread.sleep(WARMUP_MILLIS);
+        measuring.set(true);
+        Thread.sleep(MEASURE_MILLIS);
+        measuring.set(false);
+        running.set(false);
+        done.await();
+        return (double) operations.get() / MEASURE_MILLIS;
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.synchronization;
+
+import org.apache.rave.service.LockService;
+import org.apache.rave.synchronization.annotation.Synchronized;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Measures the time {@link SynchronizingAspect} adds to a call of a @Synchronized method, for constant and for
+ * argument dependent expressions, against calling the method directly.  The lock service hands out a single
+ * uncontended lock so the figures are the overhead of the aspect itself.
+ * <p/>
+ * Not run as part of the build.  Run it from the rave-commons module with:
+ * <code>
+ *    mvn test-compile exec:java -Dexec.mainClass=org.apache.rave.synchronization.SynchronizingAspectBenchmark -Dexec.classpathScope=test
+ * </code>
+ */
+public class SynchronizingAspectBenchmark {
+
+    private static final int WARMUP_CALLS = 200000;
+    private static final int MEASURED_CALLS = 2000000;
+
+    private static volatile Object sink;
+
+    public static void main(String[] args) throws Throwable {
+        final Lock lock = new ReentrantLock();
+        SynchronizingAspect aspect = new SynchronizingAspect(new LockService() {
+            @Override
+            public Lock borrowLock(String key) {
+                return lock;
+            }
+
+            @Override
+            public Lock borrowLock(String discriminator, String id) {
+                return lock;
+            }
+
+            @Override
+            public void returnLock(Lock lock) {
+            }
+        });
+        BenchmarkService service = new BenchmarkService();
+        Item item = new Item(42L, "benchmark");
+
+        System.out.println(String.format("%-24s %16s", "call", "ns/call"));
+        report("direct", runDirect(service, item));
+        report("constant expressions", runAspect(aspect, service, "constantExpressions", item));
+        report("argument expressions", runAspect(aspect, service, "argumentExpressions", item));
+    }
+
+    private static void report(String name, double nanosPerCall) {
+        System.out.println(String.format("%-24s %16.1f", name, nanosPerCall));
+    }
+
+    private static double runDirect(BenchmarkService service, Item item) {
+        for (int i = 0; i < WARMUP_CALLS; i++) {
+            sink = service.argumentExpressions(item);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_CALLS; i++) {
+            sink = service.argumentExpressions(item);
+        }
+        return (double) (System.nanoTime() - start) / MEASURED_CALLS;
+    }
+
+    private static double runAspect(SynchronizingAspect aspect, BenchmarkService service, String methodName, Item item)
+            throws Throwable {
+        ProceedingJoinPoint joinPoint = createJoinPoint(service, BenchmarkService.class.getMethod(methodName, Item.class),
+                new Object[]{item});
+        for (int i = 0; i < WARMUP_CALLS; i++) {
+            sink = aspect.synchronizeInvocation(joinPoint);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_CALLS; i++) {
+            sink = aspect.synchronizeInvocation(joinPoint);
+        }
+        return (double) (System.nanoTime() - start) / MEASURED_CALLS;
+    }
+
+    private static ProceedingJoinPoint createJoinPoint(final Object target, final Method method, final Object[] args) {
+        final MethodSignature signature = (MethodSignature) Proxy.newProxyInstance(
+                SynchronizingAspectBenchmark.class.getClassLoader(), new Class[]{MethodSignature.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method invoked, Object[] invokedArgs) {
+                        if (invoked.getName().equals("getMethod")) {
+                            return method;
+                        }
+                        throw new UnsupportedOperationException(invoked.getName());
+                    }
+                });
+        return (ProceedingJoinPoint) Proxy.newProxyInstance(SynchronizingAspectBenchmark.class.getClassLoader(),
+                new Class[]{ProceedingJoinPoint.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method invoked, Object[] invokedArgs) throws Throwable {
+                        String name = invoked.getName();
+                        if (name.equals("getSignature")) {
+                            return signature;
+                        } else if (name.equals("getTarget")) {
+                            return target;
+                        } else if (name.equals("getArgs")) {
+                            return args;
+                        } else if (name.equals("proceed")) {
+                            return method.invoke(target, args);
+                        }
+                        throw new UnsupportedOperationException(name);
+                    }
+                });
+    }
+
+    public static class BenchmarkService {
+        @Synchronized(discriminator = "'Benchmark'", id = "'constant'")
+        public String constantExpressions(Item item) {
+            return item.getName();
+        }
+
+        @Synchronized(discriminator = "'Benchmark'", id = "#item.id", condition = "#item.id > 0")
+        public String argumentExpressions(Item item) {
+            return item.getName();
+        }
+    }
+
+    public static class Item {
+        private final long id;
+        private final String name;
+
+        public Item(long id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+}
@@ -135,6 +135,41 @@ public class SynchronizingAspectTest {
         assertThat(result, is(expectedResult));
     }
 
+    @Test
+    public void testEmptyDiscriminatorDynamicId() throws Throwable {
+        String expectedResult = "testEmptyDiscriminatorDynamicId";
+        TestService service = new DefaultTestService();
+        Method expectedMethod = service.getClass().getDeclaredMethod("testEmptyDiscriminatorDynamicId",
+                TestObject.class);
+        TestObject argument = new TestObject(1L, "Jesse");
+        Object[] joinPointArgs = {argument};
+
+        ProceedingJoinPoint joinPoint = prepareJoinPoint("", "Jesse", service, expectedMethod, argument, joinPointArgs);
+
+        String result = (String) aspect.synchronizeInvocation(joinPoint);
+        assertThat(result, is(expectedResult));
+    }
+
+    @Test
+    public void testInterfaceMethodResolvedPerTargetClass() throws Throwable {
+        //the same interface method is annotated differently by each implementation
+        Method interfaceMethod = TestService.class.getMethod("testStaticDiscriminatorStaticIdEmptyCondition",
+                TestObject.class);
+        TestObject argument = new TestObject(1L, "Jesse");
+        Object[] joinPointArgs = {argument};
+
+        TestService service = new DefaultTestService();
+        ProceedingJoinPoint joinPoint = prepareJoinPoint("StaticDiscriminator", "staticId", service,
+                interfaceMethod, argument, joinPointArgs);
+        assertThat((String) aspect.synchronizeInvocation(joinPoint), is("testStaticDiscriminatorStaticIdEmptyCondition"));
+
+        reset(lockService);
+        TestService otherService = new OtherTestService();
+        joinPoint = prepareJoinPoint("OtherDiscriminator", "otherId", otherService, interfaceMethod, argument,
+                joinPointArgs);
+        assertThat((String) aspect.synchronizeInvocation(joinPoint), is("otherTestService"));
+    }
+
     @Test
     public void synchronizePointcutCoverageTest() {
         aspect.synchronizePointcut();
@@ -173,6 +208,8 @@ public class SynchronizingAspectTest {
         public String testStaticDiscriminatorStaticIdEmptyCondition(TestObject testObject);
 
         public String testStaticDiscriminatorDynamicIdDynamicCondition(TestObject testObject);
+
+        public String testEmptyDiscriminatorDynamicId(TestObject testObject);
     }
 
     private class DefaultTestService implements TestService {
@@ -186,6 +223,26 @@ public class SynchronizingAspectTest {
         public String testStaticDiscriminatorDynamicIdDynamicCondition(TestObject testObject) {
             return "testStaticDiscriminatorDynamicIdDynamicCondition";
         }
+
+        @Synchronized(id = "#p0.name")
+        public String testEmptyDiscriminatorDynamicId(TestObject testObject) {
+            return "testEmptyDiscriminatorDynamicId";
+        }
+    }
+
+    private class OtherTestService implements TestService {
+        @Synchronized(discriminator = "'OtherDiscriminator'", id = "'otherId'")
+        public String testStaticDiscriminatorStaticIdEmptyCondition(TestObject testObject) {
+            return "otherTestService";
+        }
+
+        public String testStaticDiscriminatorDynamicIdDynamicCondition(TestObject testObject) {
+            return "otherTestService";
+        }
+
+        public String testEmptyDiscriminatorDynamicId(TestObject testObject) {
+            return "otherTestService";
+        }
     }
 
     private class TestObject {
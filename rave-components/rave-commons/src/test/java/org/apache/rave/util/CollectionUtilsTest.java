@@ -24,6 +24,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 
@@ -210,6 +211,21 @@ public class CollectionUtilsTest {
         assertThat(target.contains(testObject3), is(true));
     }
 
+    @Test
+    public void partition() {
+        List<List<Integer>> partitions = CollectionUtils.partition(Arrays.asList(1, 2, 3, 4, 5), 2);
+        assertThat(partitions.size(), is(equalTo(3)));
+        assertThat(partitions.get(0), is(equalTo(Arrays.asList(1, 2))));
+        assertThat(partitions.get(1), is(equalTo(Arrays.asList(3, 4))));
+        assertThat(partitions.get(2), is(equalTo(Arrays.asList(5))));
+        assertThat(CollectionUtils.partition(new ArrayList<Integer>(), 2).isEmpty(), is(true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void partition_invalidSize() {
+        CollectionUtils.partition(Arrays.asList(1, 2), 0);
+    }
+
     private class SubTestObject extends TestObject {
         private SubTestObject(String name, String value) {
             super(name, value);
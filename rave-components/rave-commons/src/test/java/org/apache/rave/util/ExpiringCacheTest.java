@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class ExpiringCacheTest {
+    private static final long TTL = 1000L;
+
+    private TestCache cache;
+
+    @Before
+    public void setup() {
+        cache = new TestCache(3);
+    }
+
+    @Test
+    public void get() {
+        cache.put("a", "1");
+        assertThat(cache.get("a"), is("1"));
+        assertThat(cache.get("b"), is(nullValue()));
+    }
+
+    @Test
+    public void put_replaces() {
+        cache.put("a", "1");
+        cache.put("a", "2");
+        assertThat(cache.get("a"), is("2"));
+        assertThat(cache.size(), is(1));
+    }
+
+    @Test
+    public void get_expired() {
+        cache.put("a", "1");
+        cache.now += TTL - 1;
+        assertThat(cache.get("a"), is("1"));
+
+        cache.now += 1;
+        assertThat(cache.get("a"), is(nullValue()));
+        assertThat(cache.size(), is(0));
+    }
+
+    @Test
+    public void put_replacingRestartsTtl() {
+        cache.put("a", "1");
+        cache.now += TTL - 1;
+        cache.put("a", "2");
+        cache.now += 1;
+        assertThat(cache.get("a"), is("2"));
+    }
+
+    @Test
+    public void put_ownTtl() {
+        cache.put("a", "1", 3 * TTL);
+        cache.put("b", "2");
+        cache.now += TTL;
+        assertThat(cache.get("a"), is("1"));
+        assertThat(cache.get("b"), is(nullValue()));
+
+        cache.now += 2 * TTL;
+        assertThat(cache.get("a"), is(nullValue()));
+    }
+
+    @Test
+    public void put_full_dropsLeastRecentlyUsed() {
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.put("c", "3");
+        //reading a makes b the least recently used
+        cache.get("a");
+
+        cache.put("d", "4");
+
+        assertThat(cache.size(), is(3));
+        assertThat(cache.get("b"), is(nullValue()));
+        assertThat(cache.get("a"), is("1"));
+        assertThat(cache.get("c"), is("3"));
+        assertThat(cache.get("d"), is("4"));
+    }
+
+    @Test
+    public void clear() {
+        cache.put("a", "1");
+        cache.clear();
+        assertThat(cache.size(), is(0));
+        assertThat(cache.get("a"), is(nullValue()));
+    }
+
+    private static class TestCache extends ExpiringCache<String, String> {
+        private long now = 1000L;
+
+        private TestCache(int maxSize) {
+            super(TTL, maxSize);
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+    }
+}
@@ -39,7 +39,7 @@ public class Address {
     @Column(name = "entity_id")
     @GeneratedValue(strategy = GenerationType.TABLE, generator = "addressIdGenerator")
     @TableGenerator(name = "addressIdGenerator", table = "RAVE_SHINDIG_SEQUENCES", pkColumnName = "SEQ_NAME",
-            valueColumnName = "SEQ_COUNT", pkColumnValue = "address", allocationSize = 1, initialValue = 1)
+            valueColumnName = "SEQ_COUNT", pkColumnValue = "address", allocationSize = 20, initialValue = 1)
     private Long entityId;
 
     @Basic
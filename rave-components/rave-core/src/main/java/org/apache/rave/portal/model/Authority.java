@@ -23,6 +23,7 @@ import org.apache.rave.persistence.BasicEntity;
 import org.springframework.security.core.GrantedAuthority;
 
 import javax.persistence.Basic;
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
@@ -43,6 +44,7 @@ import java.util.Collection;
  * The {@link GrantedAuthority} a {@link User} can have
  */
 @Entity
+@Cacheable
 @Table(name = "granted_authority")
 @NamedQueries({
         @NamedQuery(name = Authority.GET_BY_AUTHORITY_NAME, query = "SELECT a FROM Authority a WHERE a.authority = :authority"),
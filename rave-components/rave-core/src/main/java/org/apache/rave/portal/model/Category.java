@@ -28,6 +28,7 @@ import java.util.List;
  * A category for a widget.
  */
 @Entity
+@Cacheable
 @Table(name = "category")
 @XmlRootElement
 @NamedQueries({
@@ -68,7 +69,7 @@ public class Category implements BasicEntity, Serializable {
     @Temporal(javax.persistence.TemporalType.TIMESTAMP)
     private Date lastModifiedDate;
 
-    @ManyToMany(fetch = FetchType.EAGER)
+    @ManyToMany(fetch = FetchType.LAZY)
     @JoinTable(name="widget_category",
                joinColumns=@JoinColumn(name="category_id", referencedColumnName = "entity_id"),
                inverseJoinColumns=@JoinColumn(name="widget_id", referencedColumnName = "entity_id")
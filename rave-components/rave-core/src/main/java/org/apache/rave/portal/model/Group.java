@@ -29,12 +29,14 @@ import java.util.List;
  */
 @Entity
 @Table(name = "groups")
-@NamedQueries(
-        @NamedQuery(name = Group.FIND_BY_TITLE, query="select g from Group g where g.title = :groupId")
-)
+@NamedQueries({
+        @NamedQuery(name = Group.FIND_BY_TITLE, query="select g from Group g where g.title = :groupId"),
+        @NamedQuery(name = Group.FIND_MEMBER_IDS_BY_TITLE, query="select m.entityId from Group g join g.members m where g.title = :groupId")
+})
 public class Group implements BasicEntity {
 
     public static final String FIND_BY_TITLE = "Group.findById";
+    public static final String FIND_MEMBER_IDS_BY_TITLE = "Group.findMemberIdsById";
     public static final String GROUP_ID_PARAM = "groupId";
 
     /**
@@ -18,6 +18,8 @@
  */
 package org.apache.rave.portal.model;
 
+import org.apache.openjpa.persistence.FetchAttribute;
+import org.apache.openjpa.persistence.FetchGroup;
 import org.apache.rave.persistence.BasicEntity;
 import org.codehaus.jackson.annotate.JsonManagedReference;
 
@@ -34,6 +36,9 @@ import java.util.List;
 /**
  * A page, which consists of regions, and which may be owned by a {@link User} (note the ownership will likely need to
  * become more flexible to enable things like group ownership in the future).
+ * <p/>
+ * The {@link #FETCH_GROUP_RENDER} fetch group names the graph a page is rendered with: its sub pages and regions,
+ * the region widgets of the regions, and the preferences and widget of each region widget.
  * 
  * TODO RAVE-231: not all database providers will be able to support deferrable constraints
  * so for the time being I'm commenting out the owner/render sequence since it
@@ -45,6 +50,10 @@ import java.util.List;
 @XmlRootElement
 @XmlAccessorType(XmlAccessType.NONE)
 @Table(name="page", uniqueConstraints={@UniqueConstraint(columnNames={"owner_id","name","page_type"})})
+@FetchGroup(name = Page.FETCH_GROUP_RENDER, attributes = {
+        @FetchAttribute(name = "subPages"),
+        @FetchAttribute(name = "regions")
+})
 @NamedQueries({
         @NamedQuery(name = Page.GET_BY_USER_ID_AND_PAGE_TYPE, query="SELECT p FROM Page p WHERE p.owner.entityId = :userId and p.pageType = :pageType ORDER BY p.renderSequence"),
         @NamedQuery(name = Page.DELETE_BY_USER_ID_AND_PAGE_TYPE, query="DELETE FROM Page p WHERE p.owner.entityId = :userId and p.pageType = :pageType"),
@@ -58,11 +67,13 @@ public class Page implements BasicEntity, Serializable {
     public static final String DELETE_BY_USER_ID_AND_PAGE_TYPE = "Page.deleteByUserIdAndPageType";
     public static final String USER_HAS_PERSON_PAGE = "Page.hasPersonPage";
 
+    public static final String FETCH_GROUP_RENDER = "page-render";
+
     @XmlAttribute(name="id")
     @Id @Column(name="entity_id")
     @GeneratedValue(strategy = GenerationType.TABLE, generator = "pageIdGenerator")
     @TableGenerator(name = "pageIdGenerator", table = "RAVE_PORTAL_SEQUENCES", pkColumnName = "SEQ_NAME",
-            valueColumnName = "SEQ_COUNT", pkColumnValue = "page", allocationSize = 1, initialValue = 1)
+            valueColumnName = "SEQ_COUNT", pkColumnValue = "page", allocationSize = 100, initialValue = 1)
     private Long entityId;
 
     @XmlElement
@@ -22,6 +22,7 @@ package org.apache.rave.portal.model;
 import org.apache.rave.persistence.BasicEntity;
 
 import javax.persistence.Basic;
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
@@ -37,6 +38,7 @@ import java.io.Serializable;
  * Represents an organization of regions within a page that is supported by the rendering engine
  */
 @Entity
+@Cacheable
 @Table(name="page_layout")
 @NamedQueries({
     @NamedQuery(name=PageLayout.PAGELAYOUT_GET_BY_LAYOUT_CODE, query = "select pl from PageLayout pl where pl.code = :code"),
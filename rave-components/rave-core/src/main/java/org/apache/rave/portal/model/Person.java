@@ -51,6 +51,9 @@ import java.util.Map;
     @NamedQuery(name = Person.FIND_BY_USERNAME, query = "select p from Person p where p.username like :username"),
     @NamedQuery(name = Person.FIND_FRIENDS_BY_USERNAME, query = "select a.followed from PersonAssociation a where a.follower.username = :username"),
     @NamedQuery(name = Person.FIND_BY_GROUP_MEMBERSHIP, query = "select m from Group g join g.members m where exists " +
+            "(select 'found' from g.members b where b.username = :username) and m.username <> :username"),
+    @NamedQuery(name = Person.FIND_FRIEND_IDS_BY_USERNAME, query = "select a.followed.entityId from PersonAssociation a where a.follower.username = :username"),
+    @NamedQuery(name = Person.FIND_IDS_BY_GROUP_MEMBERSHIP, query = "select m.entityId from Group g join g.members m where exists " +
             "(select 'found' from g.members b where b.username = :username) and m.username <> :username")
 })
 public class Person implements BasicEntity {
@@ -58,13 +61,15 @@ public class Person implements BasicEntity {
     public static final String FIND_BY_USERNAME = "Person.findByUsername";
     public static final String FIND_FRIENDS_BY_USERNAME = "Person.findFriendsByUsername";
     public static final String FIND_BY_GROUP_MEMBERSHIP = "Person.findByGroupMembership";
+    public static final String FIND_FRIEND_IDS_BY_USERNAME = "Person.findFriendIdsByUsername";
+    public static final String FIND_IDS_BY_GROUP_MEMBERSHIP = "Person.findIdsByGroupMembership";
     public static final String USERNAME_PARAM = "username";
 
     @Id
     @Column(name = "entity_id")
     @GeneratedValue(strategy = GenerationType.TABLE, generator = "personIdGenerator")
     @TableGenerator(name = "personIdGenerator", table = "RAVE_PORTAL_SEQUENCES", pkColumnName = "SEQ_NAME",
-            valueColumnName = "SEQ_COUNT", pkColumnValue = "person", allocationSize = 1, initialValue = 1)
+            valueColumnName = "SEQ_COUNT", pkColumnValue = "person", allocationSize = 50, initialValue = 1)
     protected Long entityId;
 
     @Basic
@@ -35,7 +35,7 @@ public class PersonAssociation implements BasicEntity {
     @Column(name = "entity_id")
     @GeneratedValue(strategy = GenerationType.TABLE, generator = "personAssociationIdGenerator")
     @TableGenerator(name = "personAssociationIdGenerator", table = "RAVE_PORTAL_SEQUENCES", pkColumnName = "SEQ_NAME",
-            valueColumnName = "SEQ_COUNT", pkColumnValue = "person_association", allocationSize = 1, initialValue = 1)
+            valueColumnName = "SEQ_COUNT", pkColumnValue = "person_association", allocationSize = 20, initialValue = 1)
     private Long entityId;
 
     @OneToOne
@@ -34,7 +34,7 @@ public class PersonProperty implements BasicEntity {
     @Column(name = "entity_id")
     @GeneratedValue(strategy = GenerationType.TABLE, generator = "personPropertyIdGenerator")
     @TableGenerator(name = "personPropertyIdGenerator", table = "RAVE_PORTAL_SEQUENCES", pkColumnName = "SEQ_NAME",
-            valueColumnName = "SEQ_COUNT", pkColumnValue = "person_property", allocationSize = 1, initialValue = 1)
+            valueColumnName = "SEQ_COUNT", pkColumnValue = "person_property", allocationSize = 20, initialValue = 1)
     private Long entityId;
 
     /**
@@ -23,6 +23,7 @@ import org.apache.rave.exception.NotSupportedException;
 import org.apache.rave.persistence.BasicEntity;
 
 import javax.persistence.Basic;
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.ElementCollection;
 import javax.persistence.Entity;
@@ -43,6 +44,7 @@ import java.util.List;
  * Bean to manage portal preferences like title suffix, logo, number of items per page etc
  */
 @Entity
+@Cacheable
 @Table(name = "portal_preference")
 @NamedQueries({
         @NamedQuery(name = PortalPreference.GET_ALL, query = "SELECT pp FROM PortalPreference pp"),
@@ -75,6 +77,20 @@ public class PortalPreference implements BasicEntity, Serializable {
         super();
     }
 
+    /**
+     * Creates a detached copy of the preference, with its own list of values
+     *
+     * @param preference the preference to copy
+     */
+    public PortalPreference(PortalPreference preference) {
+        super();
+        this.entityId = preference.getEntityId();
+        this.key = preference.getKey();
+        if (preference.getValues() != null) {
+            this.values = new LinkedList<String>(preference.getValues());
+        }
+    }
+
     public PortalPreference(String key, String value) {
         super();
         this.key = key;
@@ -18,6 +18,8 @@
  */
 package org.apache.rave.portal.model;
 
+import org.apache.openjpa.persistence.FetchAttribute;
+import org.apache.openjpa.persistence.FetchGroup;
 import org.apache.rave.persistence.BasicEntity;
 import org.codehaus.jackson.annotate.JsonBackReference;
 import org.codehaus.jackson.annotate.JsonManagedReference;
@@ -51,6 +53,9 @@ import javax.xml.bind.annotation.XmlElement;
 @XmlAccessorType(XmlAccessType.NONE)
 @Entity
 @Table(name="region")
+@FetchGroup(name = Page.FETCH_GROUP_RENDER, attributes = {
+        @FetchAttribute(name = "regionWidgets")
+})
 @Access(AccessType.FIELD)
 public class Region implements BasicEntity, Serializable {
     private static final long serialVersionUID = 1L;
@@ -58,7 +63,7 @@ public class Region implements BasicEntity, Serializable {
     @Id @Column(name="entity_id")
     @GeneratedValue(strategy = GenerationType.TABLE, generator = "regionIdGenerator")
     @TableGenerator(name = "regionIdGenerator", table = "RAVE_PORTAL_SEQUENCES", pkColumnName = "SEQ_NAME",
-            valueColumnName = "SEQ_COUNT", pkColumnValue = "region", allocationSize = 1, initialValue = 1)
+            valueColumnName = "SEQ_COUNT", pkColumnValue = "region", allocationSize = 100, initialValue = 1)
     private Long entityId;
 
     @ManyToOne
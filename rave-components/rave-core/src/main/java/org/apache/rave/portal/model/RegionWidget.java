@@ -18,6 +18,8 @@
  */
 package org.apache.rave.portal.model;
 
+import org.apache.openjpa.persistence.FetchAttribute;
+import org.apache.openjpa.persistence.FetchGroup;
 import org.apache.rave.persistence.BasicEntity;
 import org.codehaus.jackson.annotate.JsonBackReference;
 
@@ -30,6 +32,10 @@ import java.util.List;
  */
 @Entity
 @Table(name = "region_widget")
+@FetchGroup(name = Page.FETCH_GROUP_RENDER, attributes = {
+        @FetchAttribute(name = "preferences"),
+        @FetchAttribute(name = "widget")
+})
 @NamedQueries({
         @NamedQuery(name = RegionWidget.REGION_WIDGET_GET_DISTINCT_USER_COUNT_ALL_WIDGETS,
                     query = "select rw.widget.entityId, count(distinct rw.region.page.owner) from RegionWidget rw group by rw.widget.entityId"),
@@ -48,7 +54,7 @@ public class RegionWidget implements BasicEntity, Serializable {
     @Column(name = "entity_id")
     @GeneratedValue(strategy = GenerationType.TABLE, generator = "regionWidgetIdGenerator")
     @TableGenerator(name = "regionWidgetIdGenerator", table = "RAVE_PORTAL_SEQUENCES", pkColumnName = "SEQ_NAME",
-            valueColumnName = "SEQ_COUNT", pkColumnValue = "region_widget", allocationSize = 1, initialValue = 1)
+            valueColumnName = "SEQ_COUNT", pkColumnValue = "region_widget", allocationSize = 100, initialValue = 1)
     private Long entityId;
 
     @ManyToOne
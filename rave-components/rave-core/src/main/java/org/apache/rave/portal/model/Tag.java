@@ -24,12 +24,14 @@ import javax.persistence.*;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Locale;
 
 /**
  * Represents a group in the social database. The assumption in this object is that groups are
  * associated with individuals and are used by those individuals to manage people.
  */
 @Entity
+@Cacheable
 @Table(name = "tag")
 @NamedQueries({
         @NamedQuery(name = Tag.GET_ALL, query = "select t from Tag t order by t.keyword asc"),
@@ -37,7 +39,7 @@ import java.util.List;
         @NamedQuery(name = Tag.GET_ALL_NOT_IN_WIDGET, query = "select tag from Tag tag where tag.keyword not in " +
                         "(select t.keyword from Tag t join t.widgets w where w.widgetId =:widgetId)"),
 
-        @NamedQuery(name = Tag.FIND_BY_KEYWORD, query = "select t from Tag t where UPPER(t.keyword) = UPPER(:keyword)")
+        @NamedQuery(name = Tag.FIND_BY_KEYWORD, query = "select t from Tag t where t.normalizedKeyword = :keyword")
 })
 
 public class Tag implements BasicEntity {
@@ -55,13 +57,20 @@ public class Tag implements BasicEntity {
     @Column(name = "entity_id")
     @GeneratedValue(strategy = GenerationType.TABLE, generator = "tagIdGenerator")
     @TableGenerator(name = "tagIdGenerator", table = "RAVE_PORTAL_SEQUENCES", pkColumnName = "SEQ_NAME",
-            valueColumnName = "SEQ_COUNT", pkColumnValue = "tag", allocationSize = 1, initialValue = 1)
+            valueColumnName = "SEQ_COUNT", pkColumnValue = "tag", allocationSize = 20, initialValue = 1)
     private Long entityId;
 
     @Basic
     @Column(name = "keyword", unique = true)
     private String keyword;
 
+    /**
+     * The keyword as compared by the queries, so they can use an index instead of comparing UPPER(keyword)
+     */
+    @Basic
+    @Column(name = "normalized_keyword")
+    private String normalizedKeyword;
+
     @OneToMany(mappedBy="tag")
     public List<WidgetTag> widgets;
 
@@ -72,7 +81,7 @@ public class Tag implements BasicEntity {
 
     public Tag(Long entityId, String keyword) {
         this.entityId = entityId;
-        this.keyword = keyword;
+        setKeyword(keyword);
     }
 
     public String getKeyword() {
@@ -81,6 +90,21 @@ public class Tag implements BasicEntity {
 
     public void setKeyword(String keyword) {
         this.keyword = keyword;
+        this.normalizedKeyword = normalizeKeyword(keyword);
+    }
+
+    public String getNormalizedKeyword() {
+        return normalizedKeyword;
+    }
+
+    /**
+     * Converts a keyword to the form stored in the normalized_keyword column
+     *
+     * @param keyword the keyword as entered
+     * @return the keyword without surrounding whitespace, in lower case
+     */
+    public static String normalizeKeyword(String keyword) {
+        return keyword == null ? null : keyword.trim().toLowerCase(Locale.ENGLISH);
     }
 
     public Long getEntityId() {
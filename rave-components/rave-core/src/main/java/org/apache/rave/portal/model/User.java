@@ -39,6 +39,10 @@ import java.util.Date;
         @NamedQuery(name = User.USER_GET_BY_USERNAME, query = "select u from User u where u.username = :"+User.PARAM_USERNAME),
         @NamedQuery(name = User.USER_GET_BY_USER_EMAIL, query = "select u from User u where u.email = :"+User.PARAM_EMAIL),
         @NamedQuery(name = User.USER_GET_ALL, query = "select u from User u order by u.username asc"),
+        @NamedQuery(name = User.USER_GET_ALL_AFTER, query = "select u from User u where u.username > :" +
+                User.PARAM_USERNAME + " order by u.username asc"),
+        @NamedQuery(name = User.USER_GET_USERNAMES_IN, query = "select u.username from User u where u.username in :" + User.PARAM_USERNAMES),
+        @NamedQuery(name = User.USER_GET_EMAILS_IN, query = "select u.email from User u where u.email in :" + User.PARAM_EMAILS),
         @NamedQuery(name = User.USER_GET_BY_FORGOT_PASSWORD_HASH, query = "select u from User u where u.forgotPasswordHash = :" + User.PARAM_FORGOT_PASSWORD_HASH),
         @NamedQuery(name = User.USER_COUNT_ALL, query = "select count(u) from User u"),
         @NamedQuery(name = User.USER_FIND_BY_USERNAME_OR_EMAIL, query = "select u from User u " +
@@ -53,16 +57,21 @@ public class User extends Person implements UserDetails, BasicEntity, Serializab
     public static final String USER_GET_BY_USERNAME = "User.getByUsername";
     public static final String USER_GET_BY_USER_EMAIL = "User.getByUserEmail";
     public static final String USER_GET_ALL = "User.getAll";
+    public static final String USER_GET_ALL_AFTER = "User.getAllAfter";
     public static final String USER_COUNT_ALL = "User.countAll";
     public static final String USER_FIND_BY_USERNAME_OR_EMAIL = "User.findByUsernameOrEmail";
     public static final String USER_COUNT_FIND_BY_USERNAME_OR_EMAIL = "User.countFindByUsernameOrEmail";
     public static final String USER_GET_COMMENTERS = "User.getCommenters";
     public static final String USER_GET_ALL_FOR_ADDED_WIDGET = "User.getAllForAddedWidget";
     public static final String USER_GET_BY_FORGOT_PASSWORD_HASH = "User.getByForgotPasswordHash";
+    public static final String USER_GET_USERNAMES_IN = "User.getUsernamesIn";
+    public static final String USER_GET_EMAILS_IN = "User.getEmailsIn";
 
     public static final String PARAM_USERNAME = "username";
     public static final String PARAM_FORGOT_PASSWORD_HASH = "forgotPasswordHash";
     public static final String PARAM_EMAIL = "email";
+    public static final String PARAM_USERNAMES = "usernames";
+    public static final String PARAM_EMAILS = "emails";
     public static final String PARAM_SEARCHTERM = "searchTerm";
     public static final String PARAM_WIDGET_ID = "widgetId";
 
@@ -18,6 +18,9 @@
  */
 package org.apache.rave.portal.model;
 
+import org.apache.openjpa.persistence.FetchAttribute;
+import org.apache.openjpa.persistence.FetchGroup;
+import org.apache.openjpa.persistence.FetchGroups;
 import org.apache.rave.persistence.BasicEntity;
 
 import javax.persistence.*;
@@ -29,10 +32,32 @@ import java.util.List;
 
 /**
  * A widget
+ * <p/>
+ * The comments, ratings, tags and categories of a widget are loaded lazily.  Queries that hand widgets to a view
+ * add the fetch group of their use case, so the collections that view shows are loaded with the widgets:
+ * {@link #FETCH_GROUP_STORE_LISTING} for lists of widgets and {@link #FETCH_GROUP_WIDGET_DETAIL}, which loads all of
+ * them, for a single widget.  Widgets rendered on a page load none of the collections, so they need no fetch group.
+ * <p/>
+ * The description is a LOB, which the provider only selects when the widget table is queried directly and loads with
+ * a statement of its own when a widget is reached through a join.  {@link #WIDGET_GET_ON_PAGES_OF_OWNER} loads the
+ * widgets of a user's pages ahead of the pages, so rendering them does not take one statement per widget.
  */
 @XmlAccessorType(XmlAccessType.NONE)
 @Entity
+@Cacheable
 @Table(name = "widget")
+@FetchGroups({
+        @FetchGroup(name = Widget.FETCH_GROUP_STORE_LISTING, attributes = {
+                @FetchAttribute(name = "tags"),
+                @FetchAttribute(name = "categories")
+        }),
+        @FetchGroup(name = Widget.FETCH_GROUP_WIDGET_DETAIL, attributes = {
+                @FetchAttribute(name = "comments"),
+                @FetchAttribute(name = "ratings"),
+                @FetchAttribute(name = "tags"),
+                @FetchAttribute(name = "categories")
+        })
+})
 @NamedQueries({
         @NamedQuery(name = Widget.WIDGET_GET_ALL, query = Widget.SELECT_W_FROM_WIDGET_W + Widget.ORDER_BY_TITLE_ASC),
         @NamedQuery(name = Widget.WIDGET_COUNT_ALL, query = Widget.SELECT_COUNT_W_FROM_WIDGET_W),
@@ -48,14 +73,28 @@ import java.util.List;
                 query = Widget.SELECT_COUNT_W_FROM_WIDGET_W + Widget.WHERE_CLAUSE_FREE_TEXT),
 
         @NamedQuery(name = Widget.WIDGET_GET_BY_STATUS,
-                query = Widget.SELECT_W_FROM_WIDGET_W + Widget.WHERE_CLAUSE_STATUS + Widget.ORDER_BY_TITLE_ASC),
+                query = Widget.SELECT_W_AND_SORT_TITLE_FROM_WIDGET_W + Widget.WHERE_CLAUSE_STATUS +
+                        Widget.ORDER_BY_SORT_TITLE_ASC),
         @NamedQuery(name = Widget.WIDGET_COUNT_BY_STATUS,
                 query = Widget.SELECT_COUNT_W_FROM_WIDGET_W + Widget.WHERE_CLAUSE_STATUS),
+        @NamedQuery(name = Widget.WIDGET_GET_BY_STATUS_AFTER_FEATURED,
+                query = Widget.SELECT_W_AND_SORT_TITLE_FROM_WIDGET_W + Widget.WHERE_CLAUSE_STATUS +
+                        Widget.AND_AFTER_FEATURED + Widget.ORDER_BY_SORT_TITLE_ASC),
+        @NamedQuery(name = Widget.WIDGET_GET_BY_STATUS_AFTER_NOT_FEATURED,
+                query = Widget.SELECT_W_AND_SORT_TITLE_FROM_WIDGET_W + Widget.WHERE_CLAUSE_STATUS +
+                        Widget.AND_AFTER_NOT_FEATURED + Widget.ORDER_BY_SORT_TITLE_ASC),
 
         @NamedQuery(name = Widget.WIDGET_GET_BY_URL, query = Widget.SELECT_W_FROM_WIDGET_W + Widget.WHERE_CLAUSE_URL) ,
+        @NamedQuery(name = Widget.WIDGET_GET_BY_IDS, query = Widget.SELECT_W_FROM_WIDGET_W + Widget.WHERE_CLAUSE_IDS),
+        @NamedQuery(name = Widget.WIDGET_GET_ON_PAGES_OF_OWNER,
+                query = Widget.SELECT_W_FROM_WIDGET_W + Widget.WHERE_CLAUSE_ON_PAGES_OF_OWNER),
 
         @NamedQuery(name = Widget.WIDGET_GET_BY_TAG, query = Widget.SELECT_W_FROM_WIDGET_W + Widget.JOIN_TAGS+Widget.ORDER_BY_TITLE_ASC),
         @NamedQuery(name = Widget.WIDGET_COUNT_BY_TAG, query = Widget.SELECT_COUNT_W_FROM_WIDGET_W + Widget.JOIN_TAGS),
+        @NamedQuery(name = Widget.WIDGET_GET_BY_CATEGORY,
+                query = Widget.SELECT_W_FROM_WIDGET_W + Widget.WHERE_CLAUSE_CATEGORY + Widget.ORDER_BY_TITLE_ASC),
+        @NamedQuery(name = Widget.WIDGET_COUNT_BY_CATEGORY,
+                query = Widget.SELECT_COUNT_W_FROM_WIDGET_W + Widget.WHERE_CLAUSE_CATEGORY),
         @NamedQuery(name = Widget.WIDGET_UNASSIGN_OWNER, query = "UPDATE Widget w SET w.owner = null WHERE w.owner.entityId = :owner")
 })
 public class Widget implements BasicEntity, Serializable {
@@ -66,6 +105,11 @@ public class Widget implements BasicEntity, Serializable {
     public static final String PARAM_URL = "url";
     public static final String PARAM_OWNER = "owner";
     public static final String PARAM_TAG = "keyword";
+    public static final String PARAM_IDS = "ids";
+    public static final String PARAM_PAGE_OWNER_ID = "pageOwnerId";
+    public static final String PARAM_CATEGORY_ID = "categoryId";
+    public static final String PARAM_AFTER_TITLE = "afterTitle";
+    public static final String PARAM_AFTER_ID = "afterId";
 
     public static final String WIDGET_GET_ALL = "Widget.getAll";
     public static final String WIDGET_COUNT_ALL = "Widget.countAll";
@@ -75,11 +119,20 @@ public class Widget implements BasicEntity, Serializable {
     public static final String WIDGET_COUNT_BY_FREE_TEXT = "Widget.countByFreeText";
     public static final String WIDGET_GET_BY_STATUS = "Widget.getByStatus";
     public static final String WIDGET_COUNT_BY_STATUS = "Widget.countByStatus";
+    public static final String WIDGET_GET_BY_STATUS_AFTER_FEATURED = "Widget.getByStatusAfterFeatured";
+    public static final String WIDGET_GET_BY_STATUS_AFTER_NOT_FEATURED = "Widget.getByStatusAfterNotFeatured";
     public static final String WIDGET_GET_BY_URL = "Widget.getByUrl";
+    public static final String WIDGET_GET_BY_IDS = "Widget.getByIds";
+    public static final String WIDGET_GET_ON_PAGES_OF_OWNER = "Widget.getOnPagesOfOwner";
     public static final String WIDGET_GET_BY_TAG = "Widget.getByTag";
     public static final String WIDGET_COUNT_BY_TAG = "Widget.countByTag";
+    public static final String WIDGET_GET_BY_CATEGORY = "Widget.getByCategory";
+    public static final String WIDGET_COUNT_BY_CATEGORY = "Widget.countByCategory";
     public static final String WIDGET_UNASSIGN_OWNER = "Widget.unassignOwner";
 
+    public static final String FETCH_GROUP_STORE_LISTING = "store-listing";
+    public static final String FETCH_GROUP_WIDGET_DETAIL = "widget-detail";
+
     static final String SELECT_W_FROM_WIDGET_W = "SELECT w FROM Widget w ";
     static final String SELECT_COUNT_W_FROM_WIDGET_W = "SELECT count(w) FROM Widget w ";
 
@@ -87,18 +140,44 @@ public class Widget implements BasicEntity, Serializable {
             " WHERE lower(w.title) LIKE :" + PARAM_SEARCH_TERM + " OR w.description LIKE :description";
     static final String WHERE_CLAUSE_STATUS = " WHERE w.widgetStatus = :" + PARAM_STATUS;
     static final String WHERE_CLAUSE_URL = " WHERE w.url = :" + PARAM_URL;
+    static final String WHERE_CLAUSE_IDS = " WHERE w.entityId IN :" + PARAM_IDS;
+    static final String WHERE_CLAUSE_ON_PAGES_OF_OWNER = " WHERE w.entityId IN (SELECT rw.widget.entityId " +
+            "FROM RegionWidget rw WHERE rw.region.page.owner.entityId = :" + PARAM_PAGE_OWNER_ID + ")";
     static final String WHERE_CLAUSE_OWNER = " WHERE w.owner = :" + PARAM_OWNER;
-    static final String WIDGET_TAG_BY_KEYWORD=" (select t.widgetId from WidgetTag t where lower(t.tag.keyword)=:"+PARAM_TAG+")";
+    static final String WIDGET_TAG_BY_KEYWORD=" (select t.widgetId from WidgetTag t where t.tag.normalizedKeyword=:"+PARAM_TAG+")";
     static final String JOIN_TAGS=" WHERE w.entityId in"+WIDGET_TAG_BY_KEYWORD;
+    static final String WHERE_CLAUSE_CATEGORY =
+            " WHERE w.entityId IN (SELECT cw.entityId FROM Category c JOIN c.widgets cw WHERE c.entityId = :" +
+            PARAM_CATEGORY_ID + ")";
+
+    /**
+     * The published widget listing, which is also paged by sort key, sorts a widget without a title as an empty
+     * title.  Databases disagree on where NULL sorts and never match it with {@code >} or {@code =}, so without this
+     * those widgets would be skipped by the keyset queries.  JPQL only orders by paths and result variables, so the
+     * sort title is selected next to the widget.
+     */
+    static final String SORT_TITLE = "COALESCE(w.title, '')";
+    static final String SELECT_W_AND_SORT_TITLE_FROM_WIDGET_W = "SELECT w, " + SORT_TITLE + " AS sortTitle FROM Widget w ";
+    static final String ORDER_BY_SORT_TITLE_ASC = " ORDER BY w.featured DESC, sortTitle ASC, w.entityId ASC ";
+
+    /**
+     * Widgets that sort after a widget with the given title and id in {@link #ORDER_BY_SORT_TITLE_ASC}, so the next
+     * page is found by seeking past the last widget of the previous page instead of skipping all the rows before it.
+     * Booleans cannot be compared with {@code <} in JPQL, so the featured flag of the last widget picks the query.
+     */
+    static final String AFTER_TITLE_AND_ID = "(" + SORT_TITLE + " > :" + PARAM_AFTER_TITLE +
+            " OR (" + SORT_TITLE + " = :" + PARAM_AFTER_TITLE + " AND w.entityId > :" + PARAM_AFTER_ID + "))";
+    static final String AND_AFTER_FEATURED = " AND (w.featured = false OR " + AFTER_TITLE_AND_ID + ")";
+    static final String AND_AFTER_NOT_FEATURED = " AND w.featured = false AND " + AFTER_TITLE_AND_ID;
 
-    static final String ORDER_BY_TITLE_ASC = " ORDER BY w.featured DESC, w.title ASC ";
+    static final String ORDER_BY_TITLE_ASC = " ORDER BY w.featured DESC, w.title ASC, w.entityId ASC ";
 
 
     @Id
     @Column(name = "entity_id")
     @GeneratedValue(strategy = GenerationType.TABLE, generator = "widgetIdGenerator")
     @TableGenerator(name = "widgetIdGenerator", table = "RAVE_PORTAL_SEQUENCES", pkColumnName = "SEQ_NAME",
-            valueColumnName = "SEQ_COUNT", pkColumnValue = "widget", allocationSize = 1, initialValue = 1)
+            valueColumnName = "SEQ_COUNT", pkColumnValue = "widget", allocationSize = 10, initialValue = 1)
     private Long entityId;
 
     /*
@@ -155,7 +234,7 @@ public class Widget implements BasicEntity, Serializable {
     @Enumerated(EnumType.STRING)
     private WidgetStatus widgetStatus;
 
-    @OneToMany(fetch = FetchType.EAGER, cascade = CascadeType.ALL, orphanRemoval = true)
+    @OneToMany(fetch = FetchType.LAZY, cascade = CascadeType.ALL, orphanRemoval = true)
     @JoinColumn(name = "widget_id", referencedColumnName = "entity_id")
     private List<WidgetComment> comments;
 
@@ -173,15 +252,15 @@ public class Widget implements BasicEntity, Serializable {
     @Column(name = "disable_rendering_message")
     private String disableRenderingMessage;
 
-    @OneToMany(fetch = FetchType.EAGER, cascade = CascadeType.ALL, orphanRemoval = true)
+    @OneToMany(fetch = FetchType.LAZY, cascade = CascadeType.ALL, orphanRemoval = true)
     @JoinColumn(name = "widget_id", referencedColumnName = "entity_id")
     private List<WidgetRating> ratings;
 
-    @OneToMany(fetch = FetchType.EAGER, cascade = CascadeType.ALL, orphanRemoval = true)
+    @OneToMany(fetch = FetchType.LAZY, cascade = CascadeType.ALL, orphanRemoval = true)
     @JoinColumn(name = "widget_id", referencedColumnName = "entity_id")
     private List<WidgetTag> tags;
 
-    @ManyToMany(fetch = FetchType.EAGER)
+    @ManyToMany(fetch = FetchType.LAZY)
     @JoinTable(name="widget_category",
             joinColumns=@JoinColumn(name="widget_id", referencedColumnName = "entity_id"),
             inverseJoinColumns=@JoinColumn(name="category_id", referencedColumnName = "entity_id")
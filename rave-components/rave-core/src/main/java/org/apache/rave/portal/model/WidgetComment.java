@@ -39,7 +39,7 @@ public class WidgetComment implements BasicEntity, Serializable {
     @Column(name = "entity_id")
     @GeneratedValue(strategy = GenerationType.TABLE, generator = "widgetCommentIdGenerator")
     @TableGenerator(name = "widgetCommentIdGenerator", table = "RAVE_PORTAL_SEQUENCES", pkColumnName = "SEQ_NAME",
-            valueColumnName = "SEQ_COUNT", pkColumnValue = "widget_comment", allocationSize = 1, initialValue = 1)
+            valueColumnName = "SEQ_COUNT", pkColumnValue = "widget_comment", allocationSize = 20, initialValue = 1)
     private Long entityId;
 
     @Basic
@@ -75,7 +75,7 @@ public class WidgetRating implements BasicEntity, Serializable {
     @Column(name = "entity_id")
     @GeneratedValue(strategy = GenerationType.TABLE, generator = "widgetRatingIdGenerator")
     @TableGenerator(name = "widgetRatingIdGenerator", table = "RAVE_PORTAL_SEQUENCES", pkColumnName = "SEQ_NAME",
-            valueColumnName = "SEQ_COUNT", pkColumnValue = "widget_rating", allocationSize = 1, initialValue = 1)
+            valueColumnName = "SEQ_COUNT", pkColumnValue = "widget_rating", allocationSize = 20, initialValue = 1)
     private Long entityId;
     
     @Basic
@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.portal.model;
+
+import org.apache.rave.persistence.BasicEntity;
+
+import javax.persistence.Basic;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+import java.io.Serializable;
+
+/**
+ * Counters of the ratings and users of a Widget, kept up to date as ratings and region widgets change so the widget
+ * store does not have to count them on every request.  The entityId is the id of the Widget.
+ */
+@Entity
+@Table(name = "widget_stats")
+@NamedQueries({
+        @NamedQuery(name = WidgetStats.GET_BY_IDS,
+                query = "SELECT ws FROM WidgetStats ws WHERE ws.entityId IN :widgetIds"),
+        @NamedQuery(name = WidgetStats.ADJUST_RATING_COUNTS,
+                query = "UPDATE WidgetStats ws SET ws.likeCount = ws.likeCount + :likeDelta, " +
+                        "ws.dislikeCount = ws.dislikeCount + :dislikeDelta WHERE ws.entityId = :widgetId")
+})
+public class WidgetStats implements BasicEntity, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final String GET_BY_IDS = "WidgetStats.getByIds";
+    public static final String ADJUST_RATING_COUNTS = "WidgetStats.adjustRatingCounts";
+
+    public static final String PARAM_WIDGET_ID = "widgetId";
+    public static final String PARAM_WIDGET_IDS = "widgetIds";
+    public static final String PARAM_LIKE_DELTA = "likeDelta";
+    public static final String PARAM_DISLIKE_DELTA = "dislikeDelta";
+
+    @Id
+    @Column(name = "widget_id")
+    private Long entityId;
+
+    @Basic
+    @Column(name = "like_count", nullable = false)
+    private int likeCount;
+
+    @Basic
+    @Column(name = "dislike_count", nullable = false)
+    private int dislikeCount;
+
+    @Basic
+    @Column(name = "user_count", nullable = false)
+    private int userCount;
+
+    public WidgetStats() {
+    }
+
+    public WidgetStats(Long widgetId, int likeCount, int dislikeCount, int userCount) {
+        this.entityId = widgetId;
+        this.likeCount = likeCount;
+        this.dislikeCount = dislikeCount;
+        this.userCount = userCount;
+    }
+
+    /**
+     * Gets the id of the Widget these counters are for
+     *
+     * @return the id of the Widget
+     */
+    @Override
+    public Long getEntityId() {
+        return entityId;
+    }
+
+    @Override
+    public void setEntityId(Long entityId) {
+        this.entityId = entityId;
+    }
+
+    public int getLikeCount() {
+        return likeCount;
+    }
+
+    public void setLikeCount(int likeCount) {
+        this.likeCount = likeCount;
+    }
+
+    public int getDislikeCount() {
+        return dislikeCount;
+    }
+
+    public void setDislikeCount(int dislikeCount) {
+        this.dislikeCount = dislikeCount;
+    }
+
+    /**
+     * Gets the number of distinct users that have the Widget on one of their pages
+     *
+     * @return the number of users
+     */
+    public int getUserCount() {
+        return userCount;
+    }
+
+    public void setUserCount(int userCount) {
+        this.userCount = userCount;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final WidgetStats other = (WidgetStats) obj;
+        if (this.entityId != other.entityId && (this.entityId == null || !this.entityId.equals(other.entityId))) {
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 7;
+        hash = 67 * hash + (this.entityId != null ? this.entityId.hashCode() : 0);
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "WidgetStats{" +
+                "widgetId=" + entityId +
+                ", likeCount=" + likeCount +
+                ", dislikeCount=" + dislikeCount +
+                ", userCount=" + userCount +
+                '}';
+    }
+}
@@ -29,7 +29,7 @@ import java.util.Date;
 @Table(name = "widget_tag")
 @XmlRootElement
 @NamedQueries({
-        @NamedQuery(name = WidgetTag.FIND_BY_WIDGET_AND_KEYWORD, query = "select t from WidgetTag t where t.widgetId=:widgetId and UPPER(t.tag.keyword) = UPPER(:keyword)")
+        @NamedQuery(name = WidgetTag.FIND_BY_WIDGET_AND_KEYWORD, query = "select t from WidgetTag t where t.widgetId=:widgetId and t.tag.normalizedKeyword = :keyword")
 })
 
 public class WidgetTag implements BasicEntity, Serializable {
@@ -40,7 +40,7 @@ public class WidgetTag implements BasicEntity, Serializable {
     @Column(name = "entity_id")
     @GeneratedValue(strategy = GenerationType.TABLE, generator = "widgetTagIdGenerator")
     @TableGenerator(name = "widgetTagIdGenerator", table = "RAVE_PORTAL_SEQUENCES", pkColumnName = "SEQ_NAME",
-            valueColumnName = "SEQ_COUNT", pkColumnValue = "widget_tag", allocationSize = 1, initialValue = 1)
+            valueColumnName = "SEQ_COUNT", pkColumnValue = "widget_tag", allocationSize = 20, initialValue = 1)
     private Long entityId;
 
     @Basic
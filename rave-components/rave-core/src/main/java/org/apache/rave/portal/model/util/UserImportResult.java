@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.portal.model.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a bulk import of users: how many were created and why the others were not.
+ */
+public class UserImportResult {
+    private int importedCount;
+    private final List<Failure> failures = new ArrayList<Failure>();
+
+    /**
+     * @return the number of users created
+     */
+    public int getImportedCount() {
+        return importedCount;
+    }
+
+    public void addImported(int count) {
+        importedCount += count;
+    }
+
+    /**
+     * @return the users that were not created, in the order of the input
+     */
+    public List<Failure> getFailures() {
+        return failures;
+    }
+
+    public void addFailure(int row, String username, String message) {
+        failures.add(new Failure(row, username, message));
+    }
+
+    /**
+     * A user of the input that was not created
+     */
+    public static class Failure {
+        private final int row;
+        private final String username;
+        private final String message;
+
+        public Failure(int row, String username, String message) {
+            this.row = row;
+            this.username = username;
+            this.message = message;
+        }
+
+        /**
+         * @return the position of the user in the input, starting at 1
+         */
+        public int getRow() {
+            return row;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+}
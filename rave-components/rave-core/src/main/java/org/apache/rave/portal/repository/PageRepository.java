@@ -39,6 +39,16 @@ public interface PageRepository extends Repository<Page> {
      */
     List<Page> getAllPages(Long userId, PageType pageType);
 
+    /**
+     * Returns all pages of a given PageType owned by the user, with everything needed to render them loaded: their
+     * sub pages, regions, region widgets, preferences and widgets
+     *
+     * @param userId the userId to search by
+     * @param pageType the pageType to search by
+     * @return a list of all the Page objects owned by userId of type pageType
+     */
+    List<Page> getAllPagesForRendering(Long userId, PageType pageType);
+
     /**
      * Delete all pages for a userId of the supplied pageType
      * @param userId
@@ -29,7 +29,20 @@ import java.util.List;
  */
 public interface PortalPreferenceRepository extends Repository<PortalPreference> {
 
+    /**
+     * Gets all preferences from the database, bypassing the second level cache, which is not shared by the nodes
+     *
+     * @return all preferences
+     */
     List<PortalPreference> getAll();
 
     PortalPreference getByKey(String key);
+
+    /**
+     * Gets a version of all preferences from the database, which is incremented whenever a preference is saved or
+     * deleted on any node. Cheaper than loading the preferences to compare them.
+     *
+     * @return the current version of the preferences
+     */
+    long getVersion();
 }
@@ -21,8 +21,10 @@ package org.apache.rave.portal.repository;
 import org.apache.rave.persistence.Repository;
 import org.apache.rave.portal.model.User;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
 
 public interface UserRepository extends Repository<User> {
 
@@ -42,6 +44,22 @@ public interface UserRepository extends Repository<User> {
      */
     User getByUserEmail(String userEmail);
 
+    /**
+     * Gets which of the given usernames already belong to a {@link User}, in a few set based queries
+     *
+     * @param usernames the usernames to look for
+     * @return the usernames in use
+     */
+    Set<String> getExistingUsernames(Collection<String> usernames);
+
+    /**
+     * Gets which of the given email addresses already belong to a {@link User}, in a few set based queries
+     *
+     * @param emails the email addresses to look for
+     * @return the email addresses in use
+     */
+    Set<String> getExistingEmails(Collection<String> emails);
+
     /**
      * List of {@link User}'s with a limited resultset
      *
@@ -51,6 +69,17 @@ public interface UserRepository extends Repository<User> {
      */
     List<User> getLimitedList(int offset, int pageSize);
 
+    /**
+     * List of {@link User}'s that follow the given username, in the same order as {@link #getLimitedList(int, int)}.
+     * The page is found on the username instead of an offset, so the database does not read the rows of all
+     * previous pages.
+     *
+     * @param username the username of the last user of the previous page
+     * @param pageSize maximum number of items to be returned (for paging)
+     * @return a List of Users with of at most the number of items in pageSize
+     */
+    List<User> getLimitedListAfter(String username, int pageSize);
+
     /**
      * @return the total number of {@link User}'s in the repository. Useful for paging.
      */
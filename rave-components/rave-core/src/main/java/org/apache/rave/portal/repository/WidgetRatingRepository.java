@@ -22,6 +22,8 @@ package org.apache.rave.portal.repository;
 import org.apache.rave.persistence.Repository;
 import org.apache.rave.portal.model.WidgetRating;
 
+import java.util.List;
+
 public interface WidgetRatingRepository extends Repository<WidgetRating> {
 
     /**
@@ -33,6 +35,14 @@ public interface WidgetRatingRepository extends Repository<WidgetRating> {
      */
     WidgetRating getByWidgetIdAndUserId(Long widgetId, Long userId);
 
+    /**
+     * Gets all {@link WidgetRating}s of a User
+     *
+     * @param userId unique identifier of a User
+     * @return the ratings of the User, empty if there are none
+     */
+    List<WidgetRating> getByUserId(Long userId);
+
     /**
      * Delete all Widget Ratings for a userId
      *
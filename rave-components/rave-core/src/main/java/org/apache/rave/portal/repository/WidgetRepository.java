@@ -25,11 +25,25 @@ import org.apache.rave.portal.model.WidgetRating;
 import org.apache.rave.portal.model.WidgetStatus;
 import org.apache.rave.portal.model.util.WidgetStatistics;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
 
+/**
+ * Repository of {@link Widget}s.  The widgets of the lists returned here have their tags and categories loaded, the
+ * single widgets of {@link #get(long)}, {@link #getWidgetDetail(long)} and {@link #getByUrl(String)} also their
+ * comments and ratings.
+ */
 public interface WidgetRepository extends Repository<Widget> {
+    /**
+     * Gets a single widget with everything its detail page shows: its comments, ratings, tags and categories
+     *
+     * @param id the id of the widget
+     * @return the widget, or null if it does not exist
+     */
+    Widget getWidgetDetail(long id);
+
     /**
      * Gets a list of <strong>all</strong> widgets in the repository
      *
@@ -52,6 +66,14 @@ public interface WidgetRepository extends Repository<Widget> {
      */
     int getCountAll();
 
+    /**
+     * Gets the {@link Widget}'s with the given ids, in no particular order. Ids that do not match a widget are ignored.
+     *
+     * @param ids the ids of the widgets to get
+     * @return valid list of widgets, can be empty
+     */
+    List<Widget> getByIds(List<Long> ids);
+
     /**
      * Gets a List of {@link Widget}'s by performing a free text search
      *
@@ -80,6 +102,21 @@ public interface WidgetRepository extends Repository<Widget> {
      */
     List<Widget> getByStatus(WidgetStatus widgetStatus, int offset, int pageSize);
 
+    /**
+     * Gets the page of {@link Widget}'s by {@link WidgetStatus} that follows the given widget, in the same order as
+     * {@link #getByStatus(WidgetStatus, int, int)}. The page is found on the sort key instead of an offset, so the
+     * database does not read the rows of all previous pages.
+     *
+     * @param widgetStatus status of the widget (PREVIEW, PUBLISHED etc)
+     * @param featured     whether the last widget of the previous page is featured
+     * @param title        title of the last widget of the previous page
+     * @param widgetId     id of the last widget of the previous page
+     * @param pageSize     maximum number of items to be returned (for paging)
+     * @return valid list of widgets, can be empty
+     */
+    List<Widget> getByStatusAfter(WidgetStatus widgetStatus, boolean featured, String title, long widgetId,
+                                  int pageSize);
+
     /**
      * Counts the total number of {@link Widget}'s filtering on status. Useful for paging.
      *
@@ -142,6 +179,17 @@ public interface WidgetRepository extends Repository<Widget> {
      */
     Map<Long, WidgetStatistics> getAllWidgetStatistics(long userId);
 
+    /**
+     * Generates the widget statistics of the given widgets, including the user's rating, in a single query that only
+     * reads the ratings and region widgets of those widgets.
+     *
+     * @param widgetIds ids of the widgets, typically the ones on screen
+     * @param userId    id of the user
+     * @return Mapping of {@link WidgetStatistics} objects keyed off of the widget's entityId, for every widget that
+     *         exists
+     */
+    Map<Long, WidgetStatistics> getWidgetStatistics(Collection<Long> widgetIds, long userId);
+
     /**
      * Generates the mapping of widget ratings for the user.
      *
@@ -168,6 +216,24 @@ public interface WidgetRepository extends Repository<Widget> {
      */
      int getCountByTag(String tagKeyword);
 
+    /**
+     * Gets a List of {@link Widget}'s in the given category
+     *
+     * @param categoryId id of the category
+     * @param offset     start point within the resultSet (for paging)
+     * @param pageSize   maximum number of items to be returned (for paging)
+     * @return valid list of widgets, can be empty
+     */
+    List<Widget> getWidgetsByCategory(long categoryId, int offset, int pageSize);
+
+    /**
+     * Counts the total number of {@link Widget}'s in the given category. Useful for paging.
+     *
+     * @param categoryId id of the category
+     * @return total number of {@link Widget}'s in the category
+     */
+    int getCountByCategory(long categoryId);
+
     /**
      * Sets the widget owner to null for any widgets owned by the supplied userId
      *
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.portal.repository;
+
+import org.apache.rave.portal.model.WidgetStats;
+import org.apache.rave.portal.model.util.WidgetStatistics;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Provides access to the {@link WidgetStats} counters of widgets and keeps them up to date.  The counters are keyed
+ * by the id of their widget and only created by the repository itself, so it does not offer the generic
+ * {@link org.apache.rave.persistence.Repository} operations
+ */
+public interface WidgetStatsRepository {
+
+    /**
+     * Reads the counters of a single widget by its primary key, together with the user's rating of it
+     *
+     * @param widgetId id of the widget
+     * @param userId   id of the user
+     * @return the {@link WidgetStatistics}, or null if the counters of the widget were never created
+     */
+    WidgetStatistics getWidgetStatistics(long widgetId, long userId);
+
+    /**
+     * Reads the counters of the given widgets together with the user's rating of each of them
+     *
+     * @param widgetIds ids of the widgets
+     * @param userId    id of the user
+     * @return Mapping of {@link WidgetStatistics} keyed off of the widget's entityId, for the widgets that have
+     *         counters.  Widgets whose counters were never created are left out.
+     */
+    Map<Long, WidgetStatistics> getWidgetStatistics(Collection<Long> widgetIds, long userId);
+
+    /**
+     * Gets the ids of the widgets whose counters depend on the user: the widgets on the user's pages and the widgets
+     * the user rated
+     *
+     * @param userId id of the user
+     * @return the widget ids, without duplicates
+     */
+    List<Long> getWidgetIdsByUser(long userId);
+
+    /**
+     * Gets the ids of existing widgets in ascending order, to visit all widgets in batches
+     *
+     * @param afterWidgetId only ids greater than this id are returned
+     * @param maxResults    the maximum number of ids to return
+     * @return the widget ids
+     */
+    List<Long> getWidgetIds(long afterWidgetId, int maxResults);
+
+    /**
+     * Adds the given deltas to the rating counters of a widget, creating the counters if they do not exist yet
+     *
+     * @param widgetId     id of the widget
+     * @param likeDelta    change of the number of likes
+     * @param dislikeDelta change of the number of dislikes
+     */
+    void adjustRatingCounts(long widgetId, int likeDelta, int dislikeDelta);
+
+    /**
+     * Recounts the distinct users that have the widget on one of their pages, creating the counters if they do not
+     * exist yet
+     *
+     * @param widgetId id of the widget
+     */
+    void refreshUserCount(long widgetId);
+
+    /**
+     * Recounts all counters of a widget from its ratings and region widgets
+     *
+     * @param widgetId id of the widget
+     * @return the recounted {@link WidgetStats}, or null if the widget does not exist
+     */
+    WidgetStats recount(long widgetId);
+
+    /**
+     * Recounts all counters of the given widgets, creating the missing ones and deleting those of widgets that no
+     * longer exist.  The counters are locked until the end of the transaction, so concurrent adjustments are applied
+     * after the recount instead of being lost
+     *
+     * @param widgetIds ids of the widgets
+     * @return the number of widgets whose counters were created, changed or deleted
+     */
+    int recount(Collection<Long> widgetIds);
+
+    /**
+     * Deletes the counters of all widgets that no longer exist
+     *
+     * @return the number of counters deleted
+     */
+    int deleteOrphans();
+}
@@ -21,6 +21,7 @@ package org.apache.rave.portal.repository.impl;
 
 import org.apache.rave.persistence.jpa.AbstractJpaRepository;
 import org.apache.rave.portal.model.Category;
+import org.apache.rave.portal.model.Widget;
 import org.apache.rave.portal.repository.CategoryRepository;
 import org.springframework.stereotype.Repository;
 
@@ -40,4 +41,12 @@ public class JpaCategoryRepository extends AbstractJpaRepository<Category> imple
     public List<Category> getAll() {
         return manager.createNamedQuery(Category.GET_ALL, Category.class).getResultList();
     }
+
+    /**
+     * The widget_category join table is mapped from both sides, so cached widgets may hold stale categories
+     */
+    @Override
+    protected void evictRelated(Category item) {
+        evictFromCache(Widget.class);
+    }
 }
@@ -19,10 +19,14 @@
 
 package org.apache.rave.portal.repository.impl;
 
+import org.apache.openjpa.persistence.OpenJPAPersistence;
+import org.apache.openjpa.persistence.jdbc.FetchMode;
+import org.apache.openjpa.persistence.jdbc.JDBCFetchPlan;
 import org.apache.rave.persistence.jpa.AbstractJpaRepository;
 import org.apache.rave.portal.model.*;
 import org.apache.rave.portal.repository.PageRepository;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.TypedQuery;
 import java.util.ArrayList;
@@ -43,6 +47,25 @@ public class JpaPageRepository extends AbstractJpaRepository<Page> implements Pa
         return query.getResultList();
     }
 
+    @Override
+    @Transactional
+    public List<Page> getAllPagesForRendering(Long userId, PageType pageType) {
+        //the widgets are loaded first, in one statement with their descriptions. The pages below reach them through
+        //joins, which leave the description LOB out and would load it with one statement per widget
+        TypedQuery<Widget> widgetQuery = manager.createNamedQuery(Widget.WIDGET_GET_ON_PAGES_OF_OWNER, Widget.class);
+        widgetQuery.setParameter(Widget.PARAM_PAGE_OWNER_ID, userId);
+        widgetQuery.getResultList();
+
+        TypedQuery<Page> query = manager.createNamedQuery(Page.GET_BY_USER_ID_AND_PAGE_TYPE, Page.class);
+        query.setParameter("userId", userId);
+        query.setParameter("pageType", pageType);
+        //each collection of the page graph is loaded with one select for all of its owners
+        JDBCFetchPlan fetchPlan = (JDBCFetchPlan) OpenJPAPersistence.cast(query).getFetchPlan();
+        fetchPlan.addFetchGroup(Page.FETCH_GROUP_RENDER);
+        fetchPlan.setEagerFetchMode(FetchMode.PARALLEL);
+        return query.getResultList();
+    }
+
     @Override
     public int deletePages(Long userId, PageType pageType) {
         TypedQuery<Page> query = manager.createNamedQuery(Page.DELETE_BY_USER_ID_AND_PAGE_TYPE, Page.class);
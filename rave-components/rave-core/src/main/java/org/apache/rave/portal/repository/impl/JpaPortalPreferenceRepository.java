@@ -19,11 +19,16 @@
 
 package org.apache.rave.portal.repository.impl;
 
+import org.apache.openjpa.persistence.OpenJPAPersistence;
 import org.apache.rave.persistence.jpa.AbstractJpaRepository;
 import org.apache.rave.portal.model.PortalPreference;
 import org.apache.rave.portal.repository.PortalPreferenceRepository;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.CacheRetrieveMode;
+import javax.persistence.CacheStoreMode;
+import javax.persistence.Query;
 import javax.persistence.TypedQuery;
 import java.util.List;
 
@@ -39,10 +44,21 @@ public class JpaPortalPreferenceRepository extends AbstractJpaRepository<PortalP
         super(PortalPreference.class);
     }
 
+    private static final String RETRIEVE_MODE = "javax.persistence.cache.retrieveMode";
+    private static final String STORE_MODE = "javax.persistence.cache.storeMode";
+
+    // the version of the preferences is the single row of a table created by the V4 migration
+    private static final String SELECT_VERSION = "SELECT version_count FROM portal_preference_version";
+    private static final String INCREMENT_VERSION =
+            "UPDATE portal_preference_version SET version_count = version_count + 1";
+
     @Override
     public List<PortalPreference> getAll() {
         final TypedQuery<PortalPreference> query =
                 manager.createNamedQuery(PortalPreference.GET_ALL, PortalPreference.class);
+        query.setHint(RETRIEVE_MODE, CacheRetrieveMode.BYPASS);
+        query.setHint(STORE_MODE, CacheStoreMode.REFRESH);
+        OpenJPAPersistence.cast(query).getFetchPlan().setQueryResultCacheEnabled(false);
         return query.getResultList();
     }
 
@@ -53,4 +69,33 @@ public class JpaPortalPreferenceRepository extends AbstractJpaRepository<PortalP
         query.setParameter(PortalPreference.PARAM_KEY, key);
         return getSingleResult(query.getResultList());
     }
+
+    @Override
+    public long getVersion() {
+        final Query query = manager.createNativeQuery(SELECT_VERSION);
+        final List<?> result = query.getResultList();
+        return result.isEmpty() ? 0 : ((Number) result.get(0)).longValue();
+    }
+
+    @Override
+    @Transactional
+    public PortalPreference save(PortalPreference item) {
+        final PortalPreference saved = super.save(item);
+        incrementVersion();
+        return saved;
+    }
+
+    @Override
+    @Transactional
+    public void delete(PortalPreference item) {
+        super.delete(item);
+        incrementVersion();
+    }
+
+    /**
+     * Increments the version in the transaction of the change, so other nodes never see the new version without it
+     */
+    private void incrementVersion() {
+        manager.createNativeQuery(INCREMENT_VERSION).executeUpdate();
+    }
 }
@@ -58,11 +58,8 @@ public class JpaTagRepository extends AbstractJpaRepository<Tag>
 
     @Override
     public Tag getByKeyword(String keyword) {
-        if (keyword != null) {
-            keyword = keyword.trim();
-        }
         TypedQuery<Tag> query = manager.createNamedQuery(Tag.FIND_BY_KEYWORD, Tag.class);
-        query.setParameter("keyword", keyword);
+        query.setParameter("keyword", Tag.normalizeKeyword(keyword));
         return getSingleResult(query.getResultList());
     }
 
@@ -20,18 +20,23 @@
 package org.apache.rave.portal.repository.impl;
 
 import org.apache.rave.persistence.jpa.AbstractJpaRepository;
+import org.apache.rave.portal.model.Authority;
 import org.apache.rave.portal.model.Page;
 import org.apache.rave.portal.model.User;
 import org.apache.rave.portal.model.WidgetComment;
 import org.apache.rave.portal.model.WidgetRating;
 import org.apache.rave.portal.repository.UserRepository;
+import org.apache.rave.util.CollectionUtils;
 import org.springframework.stereotype.Repository;
 
 import javax.persistence.Query;
 import javax.persistence.TypedQuery;
 
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static org.apache.rave.persistence.jpa.util.JpaUtil.getPagedResultList;
 import static org.apache.rave.persistence.jpa.util.JpaUtil.getSingleResult;
@@ -41,6 +46,9 @@ import static org.apache.rave.persistence.jpa.util.JpaUtil.getSingleResult;
 @Repository
 public class JpaUserRepository extends AbstractJpaRepository<User> implements UserRepository {
 
+    //keeps the IN clauses below the parameter limits of the databases
+    private static final int IN_CLAUSE_SIZE = 500;
+
     public JpaUserRepository() {
         super(User.class);
     }
@@ -59,12 +67,29 @@ public class JpaUserRepository extends AbstractJpaRepository<User> implements Us
         return getSingleResult(query.getResultList());
     }
 
+    @Override
+    public Set<String> getExistingUsernames(Collection<String> usernames) {
+        return getExisting(User.USER_GET_USERNAMES_IN, User.PARAM_USERNAMES, usernames);
+    }
+
+    @Override
+    public Set<String> getExistingEmails(Collection<String> emails) {
+        return getExisting(User.USER_GET_EMAILS_IN, User.PARAM_EMAILS, emails);
+    }
+
     @Override
     public List<User> getLimitedList(int offset, int pageSize) {
         TypedQuery<User> query = manager.createNamedQuery(User.USER_GET_ALL, User.class);
         return getPagedResultList(query, offset, pageSize);
     }
 
+    @Override
+    public List<User> getLimitedListAfter(String username, int pageSize) {
+        TypedQuery<User> query = manager.createNamedQuery(User.USER_GET_ALL_AFTER, User.class);
+        query.setParameter(User.PARAM_USERNAME, username);
+        return getPagedResultList(query, 0, pageSize);
+    }
+
     @Override
     public int getCountAll() {
         Query query = manager.createNamedQuery(User.USER_COUNT_ALL);
@@ -101,4 +126,24 @@ public class JpaUserRepository extends AbstractJpaRepository<User> implements Us
         return getSingleResult(query.getResultList());
     }
 
+    /**
+     * Users are mapped into the cached {@link Authority#getUsers()} through the user_authorities join table owned by
+     * the user, so the cached authorities must be reloaded.  All of them are evicted since an authority taken away
+     * from the user is no longer reachable from it, and there are only a handful of authorities.
+     */
+    @Override
+    protected void evictRelated(User item) {
+        evictFromCache(Authority.class);
+    }
+
+    private Set<String> getExisting(String queryName, String parameterName, Collection<String> values) {
+        Set<String> existing = new HashSet<String>();
+        for (List<String> chunk : CollectionUtils.partition(values, IN_CLAUSE_SIZE)) {
+            TypedQuery<String> query = manager.createNamedQuery(queryName, String.class);
+            query.setParameter(parameterName, chunk);
+            existing.addAll(query.getResultList());
+        }
+        return existing;
+    }
+
 }
@@ -16,6 +16,7 @@
 package org.apache.rave.portal.repository.impl;
 
 import org.apache.rave.persistence.jpa.AbstractJpaRepository;
+import org.apache.rave.portal.model.Widget;
 import org.apache.rave.portal.model.WidgetComment;
 import org.apache.rave.portal.repository.WidgetCommentRepository;
 import org.springframework.stereotype.Repository;
@@ -33,6 +34,16 @@ public class JpaWidgetCommentRepository extends AbstractJpaRepository<WidgetComm
     public int deleteAll(Long userId) {
         TypedQuery<WidgetComment> query = manager.createNamedQuery(WidgetComment.DELETE_ALL_BY_USER, WidgetComment.class);
         query.setParameter("userId", userId);
-        return query.executeUpdate();
+        int result = query.executeUpdate();
+        evictFromCache(Widget.class);
+        return result;
+    }
+
+    /**
+     * Comments are mapped into {@link Widget#getComments()} by foreign key, so the cached widget must be reloaded
+     */
+    @Override
+    protected void evictRelated(WidgetComment item) {
+        evictFromCache(Widget.class, item.getWidgetId());
     }
 }
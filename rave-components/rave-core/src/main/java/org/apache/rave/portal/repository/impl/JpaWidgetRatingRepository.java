@@ -20,6 +20,7 @@
 package org.apache.rave.portal.repository.impl;
 
 import org.apache.rave.persistence.jpa.AbstractJpaRepository;
+import org.apache.rave.portal.model.Widget;
 import org.apache.rave.portal.model.WidgetRating;
 import org.apache.rave.portal.repository.WidgetRatingRepository;
 import org.springframework.stereotype.Repository;
@@ -49,10 +50,28 @@ public class JpaWidgetRatingRepository extends AbstractJpaRepository<WidgetRatin
         return getSingleResult(resultList);
     }
 
+    @Override
+    public List<WidgetRating> getByUserId(Long userId) {
+        TypedQuery<WidgetRating> query = manager.createNamedQuery(WidgetRating.WIDGET_ALL_USER_RATINGS,
+                WidgetRating.class);
+        query.setParameter(WidgetRating.PARAM_USER_ID, userId);
+        return query.getResultList();
+    }
+
     @Override
     public int deleteAll(Long userId) {
         TypedQuery<WidgetRating> query = manager.createNamedQuery(WidgetRating.DELETE_ALL_BY_USER, WidgetRating.class);
         query.setParameter("userId", userId);
-        return query.executeUpdate();
+        int result = query.executeUpdate();
+        evictFromCache(Widget.class);
+        return result;
+    }
+
+    /**
+     * Ratings are mapped into {@link Widget#getRatings()} by foreign key, so the cached widget must be reloaded
+     */
+    @Override
+    protected void evictRelated(WidgetRating item) {
+        evictFromCache(Widget.class, item.getWidgetId());
     }
 }
\ No newline at end of file
@@ -22,6 +22,7 @@ package org.apache.rave.portal.repository.impl;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.openjpa.jdbc.kernel.exps.ToLowerCase;
+import org.apache.openjpa.persistence.OpenJPAPersistence;
 import org.apache.rave.persistence.jpa.AbstractJpaRepository;
 import org.apache.rave.portal.model.*;
 import org.apache.rave.portal.model.util.WidgetStatistics;
@@ -35,10 +36,15 @@ import javax.persistence.Query;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import static org.apache.rave.persistence.jpa.util.JpaUtil.getNativeResultListByIds;
 import static org.apache.rave.persistence.jpa.util.JpaUtil.getPagedResultList;
 import static org.apache.rave.persistence.jpa.util.JpaUtil.getSingleResult;
 
@@ -47,21 +53,38 @@ public class JpaWidgetRepository extends AbstractJpaRepository<Widget> implement
 
     private final Logger log = LoggerFactory.getLogger(JpaWidgetRepository.class);
 
+    private static final String WIDGET_STATISTICS_SQL = "SELECT w.entity_id" +
+            ", " + WidgetStatisticsSql.counts("w.entity_id") +
+            ", " + WidgetStatisticsSql.userRating("w.entity_id") +
+            " FROM widget w WHERE w.entity_id IN (%s)";
+
     public JpaWidgetRepository() {
         super(Widget.class);
     }
 
+    @Override
+    public Widget get(long id) {
+        return getWidgetDetail(id);
+    }
+
+    @Override
+    public Widget getWidgetDetail(long id) {
+        TypedQuery<Widget> query = manager.createNamedQuery(Widget.WIDGET_GET_BY_IDS, Widget.class);
+        query.setParameter(Widget.PARAM_IDS, Collections.singletonList(id));
+        return getSingleResult(withFetchGroup(query, Widget.FETCH_GROUP_WIDGET_DETAIL).getResultList());
+    }
+
     @Override
     public List<Widget> getAll() {
         log.warn("Requesting potentially large resultset of Widget. No pagesize set.");
         TypedQuery<Widget> query = manager.createNamedQuery(Widget.WIDGET_GET_ALL, Widget.class);
-        return query.getResultList();
+        return withFetchGroup(query, Widget.FETCH_GROUP_STORE_LISTING).getResultList();
     }
 
     @Override
     public List<Widget> getLimitedList(int offset, int pageSize) {
         TypedQuery<Widget> query = manager.createNamedQuery(Widget.WIDGET_GET_ALL, Widget.class);
-        return getPagedResultList(query, offset, pageSize);
+        return getPagedResultList(withFetchGroup(query, Widget.FETCH_GROUP_STORE_LISTING), offset, pageSize);
     }
 
     @Override
@@ -71,12 +94,22 @@ public class JpaWidgetRepository extends AbstractJpaRepository<Widget> implement
         return countResult.intValue();
     }
 
+    @Override
+    public List<Widget> getByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<Widget>();
+        }
+        TypedQuery<Widget> query = manager.createNamedQuery(Widget.WIDGET_GET_BY_IDS, Widget.class);
+        query.setParameter(Widget.PARAM_IDS, ids);
+        return withFetchGroup(query, Widget.FETCH_GROUP_STORE_LISTING).getResultList();
+    }
+
     @Override
     public List<Widget> getByFreeTextSearch(String searchTerm, int offset, int pageSize) {
         TypedQuery<Widget> query = manager.createNamedQuery(Widget.WIDGET_GET_BY_FREE_TEXT,
                 Widget.class);
         setFreeTextSearchTerm(query, searchTerm);
-        return getPagedResultList(query, offset, pageSize);
+        return getPagedResultList(withFetchGroup(query, Widget.FETCH_GROUP_STORE_LISTING), offset, pageSize);
     }
 
     @Override
@@ -89,10 +122,21 @@ public class JpaWidgetRepository extends AbstractJpaRepository<Widget> implement
 
     @Override
     public List<Widget> getByStatus(WidgetStatus widgetStatus, int offset, int pageSize) {
-        TypedQuery<Widget> query = manager.createNamedQuery(Widget.WIDGET_GET_BY_STATUS,
-                Widget.class);
+        TypedQuery<Object[]> query = manager.createNamedQuery(Widget.WIDGET_GET_BY_STATUS, Object[].class);
+        query.setParameter(Widget.PARAM_STATUS, widgetStatus);
+        return toWidgets(getPagedResultList(withFetchGroup(query, Widget.FETCH_GROUP_STORE_LISTING), offset, pageSize));
+    }
+
+    @Override
+    public List<Widget> getByStatusAfter(WidgetStatus widgetStatus, boolean featured, String title, long widgetId,
+                                         int pageSize) {
+        TypedQuery<Object[]> query = manager.createNamedQuery(featured ? Widget.WIDGET_GET_BY_STATUS_AFTER_FEATURED :
+                Widget.WIDGET_GET_BY_STATUS_AFTER_NOT_FEATURED, Object[].class);
         query.setParameter(Widget.PARAM_STATUS, widgetStatus);
-        return getPagedResultList(query, offset, pageSize);
+        //a widget without a title sorts as an empty title
+        query.setParameter(Widget.PARAM_AFTER_TITLE, title == null ? "" : title);
+        query.setParameter(Widget.PARAM_AFTER_ID, widgetId);
+        return toWidgets(getPagedResultList(withFetchGroup(query, Widget.FETCH_GROUP_STORE_LISTING), 0, pageSize));
     }
 
     @Override
@@ -112,7 +156,8 @@ public class JpaWidgetRepository extends AbstractJpaRepository<Widget> implement
         query.where(getStatusAndTypeAndFreeTextPredicates(cb, widgetType, widgetStatus, type, searchTerm));
         query.orderBy(getOrderByTitleAsc(cb, widgetType));
 
-        return getPagedResultList(manager.createQuery(query), offset, pageSize);
+        return getPagedResultList(withFetchGroup(manager.createQuery(query), Widget.FETCH_GROUP_STORE_LISTING),
+                offset, pageSize);
     }
 
     @Override
@@ -131,7 +176,7 @@ public class JpaWidgetRepository extends AbstractJpaRepository<Widget> implement
     public List<Widget> getByOwner(User owner, int offset, int pageSize) {
         TypedQuery<Widget> query = manager.createNamedQuery(Widget.WIDGET_GET_BY_OWNER, Widget.class);
         query.setParameter(Widget.PARAM_OWNER, owner);
-        return getPagedResultList(query, offset, pageSize);
+        return getPagedResultList(withFetchGroup(query, Widget.FETCH_GROUP_STORE_LISTING), offset, pageSize);
     }
 
     @Override
@@ -151,7 +196,7 @@ public class JpaWidgetRepository extends AbstractJpaRepository<Widget> implement
         TypedQuery<Widget> query = manager.createNamedQuery(Widget.WIDGET_GET_BY_URL, Widget.class);
         // url is a unique field, so no paging needed
         query.setParameter(Widget.PARAM_URL, widgetUrl);
-        final List<Widget> resultList = query.getResultList();
+        final List<Widget> resultList = withFetchGroup(query, Widget.FETCH_GROUP_WIDGET_DETAIL).getResultList();
         return getSingleResult(resultList);
     }
 
@@ -253,19 +298,40 @@ public class JpaWidgetRepository extends AbstractJpaRepository<Widget> implement
         return map;
     }
 
+    @Override
+    public Map<Long, WidgetStatistics> getWidgetStatistics(Collection<Long> widgetIds, long userId) {
+        Set<Long> ids = new LinkedHashSet<Long>(widgetIds);
+        ids.remove(null);
+        return WidgetStatisticsSql.toWidgetStatistics(
+                getNativeResultListByIds(manager, WIDGET_STATISTICS_SQL, ids, userId));
+    }
+
     @Override
     public List<Widget> getWidgetsByTag(String tagKeyword, int offset, int pageSize) {
-        if (tagKeyword!=null) tagKeyword =tagKeyword.toLowerCase();
         TypedQuery<Widget> query = manager.createNamedQuery(Widget.WIDGET_GET_BY_TAG, Widget.class);
-        query.setParameter(Widget.PARAM_TAG, tagKeyword.toLowerCase());
-        return getPagedResultList(query, offset, pageSize);
+        query.setParameter(Widget.PARAM_TAG, Tag.normalizeKeyword(tagKeyword));
+        return getPagedResultList(withFetchGroup(query, Widget.FETCH_GROUP_STORE_LISTING), offset, pageSize);
     }
 
     @Override
     public int getCountByTag(String tagKeyword) {
-        if (tagKeyword!=null) tagKeyword =tagKeyword.toLowerCase();
         Query query = manager.createNamedQuery(Widget.WIDGET_COUNT_BY_TAG);
-        query.setParameter(Widget.PARAM_TAG,tagKeyword);
+        query.setParameter(Widget.PARAM_TAG, Tag.normalizeKeyword(tagKeyword));
+        Number countResult = (Number) query.getSingleResult();
+        return countResult.intValue();
+    }
+
+    @Override
+    public List<Widget> getWidgetsByCategory(long categoryId, int offset, int pageSize) {
+        TypedQuery<Widget> query = manager.createNamedQuery(Widget.WIDGET_GET_BY_CATEGORY, Widget.class);
+        query.setParameter(Widget.PARAM_CATEGORY_ID, categoryId);
+        return getPagedResultList(withFetchGroup(query, Widget.FETCH_GROUP_STORE_LISTING), offset, pageSize);
+    }
+
+    @Override
+    public int getCountByCategory(long categoryId) {
+        Query query = manager.createNamedQuery(Widget.WIDGET_COUNT_BY_CATEGORY);
+        query.setParameter(Widget.PARAM_CATEGORY_ID, categoryId);
         Number countResult = (Number) query.getSingleResult();
         return countResult.intValue();
     }
@@ -274,7 +340,17 @@ public class JpaWidgetRepository extends AbstractJpaRepository<Widget> implement
     public int unassignWidgetOwner(long userId) {
         Query query = manager.createNamedQuery(Widget.WIDGET_UNASSIGN_OWNER);
         query.setParameter(Widget.PARAM_OWNER, userId);
-        return query.executeUpdate();
+        int result = query.executeUpdate();
+        evictFromCache(Widget.class);
+        return result;
+    }
+
+    /**
+     * The widget_category join table is mapped from both sides, so cached categories may hold stale widgets
+     */
+    @Override
+    protected void evictRelated(Widget item) {
+        evictFromCache(Category.class);
     }
 
     /**
@@ -329,6 +405,27 @@ public class JpaWidgetRepository extends AbstractJpaRepository<Widget> implement
         return widgetType.get("widgetStatus");
     }
 
+    /**
+     * Adds the fetch group of a use case to the query, so the collections it shows are loaded with the widgets instead
+     * of one select per widget later, or not at all once the widgets are detached
+     */
+    private static <T> TypedQuery<T> withFetchGroup(TypedQuery<T> query, String fetchGroup) {
+        OpenJPAPersistence.cast(query).getFetchPlan().addFetchGroup(fetchGroup);
+        return query;
+    }
+
+    /**
+     * @param rows rows of a widget and its sort title
+     * @return the widgets
+     */
+    private static List<Widget> toWidgets(List<Object[]> rows) {
+        List<Widget> widgets = new ArrayList<Widget>(rows.size());
+        for (Object[] row : rows) {
+            widgets.add((Widget) row[0]);
+        }
+        return widgets;
+    }
+
     private String getLowercaseWildcardSearchTerm(String searchTerm) {
         if (StringUtils.isBlank(searchTerm)) {
             return searchTerm;
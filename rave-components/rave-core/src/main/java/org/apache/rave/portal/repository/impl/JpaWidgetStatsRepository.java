@@ -0,0 +1,246 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.portal.repository.impl;
+
+import org.apache.rave.persistence.jpa.util.JpaUtil;
+import org.apache.rave.portal.model.Widget;
+import org.apache.rave.portal.model.WidgetRating;
+import org.apache.rave.portal.model.WidgetStats;
+import org.apache.rave.portal.model.util.WidgetStatistics;
+import org.apache.rave.portal.repository.WidgetStatsRepository;
+import org.apache.rave.util.CollectionUtils;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.apache.rave.persistence.jpa.util.JpaUtil.getNativeResultListByIds;
+import static org.apache.rave.persistence.jpa.util.JpaUtil.getSingleResult;
+
+/**
+ * JPA implementation for {@link org.apache.rave.portal.repository.WidgetStatsRepository}
+ */
+@Repository
+public class JpaWidgetStatsRepository implements WidgetStatsRepository {
+
+    private static final String RECOUNT_SQL = "SELECT w.entity_id, " + WidgetStatisticsSql.counts("w.entity_id") +
+            " FROM widget w WHERE w.entity_id IN (%s)";
+
+    private static final String REFRESH_USER_COUNT_SQL = "UPDATE widget_stats SET user_count = (" +
+            WidgetStatisticsSql.userCount("?") + ") WHERE widget_id = ?";
+
+    private static final String WIDGET_STATISTICS_SQL = "SELECT s.widget_id, s.like_count, s.dislike_count" +
+            ", s.user_count, " + WidgetStatisticsSql.userRating("s.widget_id") +
+            " FROM widget_stats s WHERE s.widget_id IN (%s)";
+
+    private static final String WIDGET_IDS_BY_USER_SQL = "SELECT rw.widget_id FROM region_widget rw" +
+            " JOIN region rg ON rw.region_id = rg.entity_id JOIN page p ON rg.page_id = p.entity_id" +
+            " WHERE p.owner_id = ?" +
+            " UNION SELECT r.widget_id FROM widget_rating r WHERE r.user_id = ?";
+
+    private static final String WIDGET_IDS_SQL = "SELECT w.entity_id FROM widget w WHERE w.entity_id > ?" +
+            " ORDER BY w.entity_id";
+
+    private static final String DELETE_ORPHANS_SQL = "DELETE FROM widget_stats" +
+            " WHERE widget_id NOT IN (SELECT w.entity_id FROM widget w)";
+
+    @PersistenceContext
+    private EntityManager manager;
+
+    @Override
+    public WidgetStatistics getWidgetStatistics(long widgetId, long userId) {
+        WidgetStats stats = manager.find(WidgetStats.class, widgetId);
+        if (stats == null) {
+            return null;
+        }
+        TypedQuery<Integer> query = manager.createNamedQuery(WidgetRating.WIDGET_USER_RATING, Integer.class);
+        query.setParameter(WidgetRating.PARAM_WIDGET_ID, widgetId);
+        query.setParameter(WidgetRating.PARAM_USER_ID, userId);
+        Integer userRating = getSingleResult(query.getResultList());
+        return WidgetStatisticsSql.toWidgetStatistics(stats.getLikeCount(), stats.getDislikeCount(),
+                stats.getUserCount(), userRating);
+    }
+
+    @Override
+    public Map<Long, WidgetStatistics> getWidgetStatistics(Collection<Long> widgetIds, long userId) {
+        return WidgetStatisticsSql.toWidgetStatistics(
+                getNativeResultListByIds(manager, WIDGET_STATISTICS_SQL, toIdSet(widgetIds), userId));
+    }
+
+    @Override
+    public List<Long> getWidgetIdsByUser(long userId) {
+        Query query = manager.createNativeQuery(WIDGET_IDS_BY_USER_SQL);
+        query.setParameter(1, userId);
+        query.setParameter(2, userId);
+        return toIds(query.getResultList());
+    }
+
+    @Override
+    public List<Long> getWidgetIds(long afterWidgetId, int maxResults) {
+        Query query = manager.createNativeQuery(WIDGET_IDS_SQL);
+        query.setParameter(1, afterWidgetId);
+        query.setMaxResults(maxResults);
+        return toIds(query.getResultList());
+    }
+
+    @Override
+    @Transactional
+    public void adjustRatingCounts(long widgetId, int likeDelta, int dislikeDelta) {
+        //a single update statement, so concurrent ratings of the same widget cannot lose each other's changes
+        Query query = manager.createNamedQuery(WidgetStats.ADJUST_RATING_COUNTS);
+        query.setParameter(WidgetStats.PARAM_LIKE_DELTA, likeDelta);
+        query.setParameter(WidgetStats.PARAM_DISLIKE_DELTA, dislikeDelta);
+        query.setParameter(WidgetStats.PARAM_WIDGET_ID, widgetId);
+        updateOrCreate(widgetId, query);
+    }
+
+    @Override
+    @Transactional
+    public void refreshUserCount(long widgetId) {
+        //the count must include the region widgets saved earlier in the transaction
+        manager.flush();
+        Query query = manager.createNativeQuery(REFRESH_USER_COUNT_SQL);
+        query.setParameter(1, widgetId);
+        query.setParameter(2, widgetId);
+        updateOrCreate(widgetId, query);
+    }
+
+    @Override
+    @Transactional
+    public WidgetStats recount(long widgetId) {
+        recount(Collections.singleton(widgetId));
+        return manager.find(WidgetStats.class, widgetId);
+    }
+
+    @Override
+    @Transactional
+    public int recount(Collection<Long> widgetIds) {
+        Set<Long> ids = toIdSet(widgetIds);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        manager.flush();
+
+        //lock the counters before counting, so a concurrent adjustment waits and then applies its change to the
+        //recounted value instead of being overwritten by a count that does not include it
+        Map<Long, WidgetStats> existing = new HashMap<Long, WidgetStats>();
+        for (WidgetStats stats : getByIdsForUpdate(ids)) {
+            existing.put(stats.getEntityId(), stats);
+        }
+        for (Long id : ids) {
+            if (!existing.containsKey(id)) {
+                //the same lock the first adjustment of a widget takes before creating its counters
+                manager.find(Widget.class, id, LockModeType.PESSIMISTIC_WRITE);
+            }
+        }
+        List<Object[]> counts = getNativeResultListByIds(manager, RECOUNT_SQL, ids);
+
+        int changed = 0;
+        for (Object[] result : counts) {
+            WidgetStats counted = new WidgetStats(((Number) result[0]).longValue(), ((Number) result[1]).intValue(),
+                    ((Number) result[2]).intValue(), ((Number) result[3]).intValue());
+            WidgetStats stats = existing.remove(counted.getEntityId());
+            if (stats == null) {
+                manager.persist(counted);
+                changed++;
+            } else if (!hasSameCounts(stats, counted)) {
+                stats.setLikeCount(counted.getLikeCount());
+                stats.setDislikeCount(counted.getDislikeCount());
+                stats.setUserCount(counted.getUserCount());
+                changed++;
+            }
+        }
+        //what is left belongs to widgets that no longer exist
+        for (WidgetStats orphan : existing.values()) {
+            manager.remove(orphan);
+            changed++;
+        }
+        //later bulk updates of the counters in this transaction must find the rows
+        manager.flush();
+        return changed;
+    }
+
+    @Override
+    @Transactional
+    public int deleteOrphans() {
+        return manager.createNativeQuery(DELETE_ORPHANS_SQL).executeUpdate();
+    }
+
+    /*
+      Helper methods
+    */
+
+    /**
+     * Runs the update of the counters of a widget, and counts them from scratch when the widget has no counters yet.
+     * The widget row is locked before the counters are created, so a concurrent first update waits for them and then
+     * updates them instead of creating them a second time.
+     */
+    private void updateOrCreate(long widgetId, Query update) {
+        if (update.executeUpdate() > 0) {
+            return;
+        }
+        manager.find(Widget.class, widgetId, LockModeType.PESSIMISTIC_WRITE);
+        if (update.executeUpdate() == 0) {
+            recount(widgetId);
+        }
+    }
+
+    private List<WidgetStats> getByIdsForUpdate(Set<Long> ids) {
+        List<WidgetStats> stats = new ArrayList<WidgetStats>();
+        for (List<Long> chunk : CollectionUtils.partition(ids, JpaUtil.MAX_IDS_PER_QUERY)) {
+            TypedQuery<WidgetStats> query = manager.createNamedQuery(WidgetStats.GET_BY_IDS, WidgetStats.class);
+            query.setParameter(WidgetStats.PARAM_WIDGET_IDS, chunk);
+            query.setLockMode(LockModeType.PESSIMISTIC_WRITE);
+            stats.addAll(query.getResultList());
+        }
+        return stats;
+    }
+
+    private static boolean hasSameCounts(WidgetStats stats, WidgetStats other) {
+        return stats.getLikeCount() == other.getLikeCount() && stats.getDislikeCount() == other.getDislikeCount()
+                && stats.getUserCount() == other.getUserCount();
+    }
+
+    private static Set<Long> toIdSet(Collection<Long> widgetIds) {
+        Set<Long> ids = new LinkedHashSet<Long>(widgetIds);
+        ids.remove(null);
+        return ids;
+    }
+
+    private static List<Long> toIds(List<?> results) {
+        List<Long> ids = new ArrayList<Long>(results.size());
+        for (Object result : results) {
+            ids.add(((Number) result).longValue());
+        }
+        return ids;
+    }
+}
@@ -16,6 +16,8 @@
 package org.apache.rave.portal.repository.impl;
 
 import org.apache.rave.persistence.jpa.AbstractJpaRepository;
+import org.apache.rave.portal.model.Tag;
+import org.apache.rave.portal.model.Widget;
 import org.apache.rave.portal.model.WidgetTag;
 import org.apache.rave.portal.repository.WidgetTagRepository;
 import org.springframework.stereotype.Repository;
@@ -33,14 +35,22 @@ public class JpaWidgetTagRepository extends AbstractJpaRepository<WidgetTag> imp
 
     @Override
     public WidgetTag getByWidgetIdAndTag(Long widgetId, String keyword) {
-        if (keyword != null) {
-            keyword = keyword.trim();
-        }
         TypedQuery<WidgetTag> query = manager.createNamedQuery(WidgetTag.FIND_BY_WIDGET_AND_KEYWORD, WidgetTag.class);
-        query.setParameter("keyword", keyword);
+        query.setParameter("keyword", Tag.normalizeKeyword(keyword));
         query.setParameter("widgetId", widgetId);
         return getSingleResult(query.getResultList());
     }
 
+    /**
+     * Widget tags are mapped into both {@link Widget#getTags()} and {@link Tag#getWidgets()}, so both cached
+     * parents must be reloaded
+     */
+    @Override
+    protected void evictRelated(WidgetTag item) {
+        evictFromCache(Widget.class, item.getWidgetId());
+        if (item.getTag() != null) {
+            evictFromCache(Tag.class, item.getTag().getEntityId());
+        }
+    }
 
 }
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.portal.repository.impl;
+
+import org.apache.rave.portal.model.WidgetRating;
+import org.apache.rave.portal.model.util.WidgetStatistics;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The native SQL that counts widget statistics, shared by the repository that counts them on every request and the
+ * one that keeps them as counters.  Every statistic is a correlated subquery on the widget id, so only the rows of
+ * the requested widgets are read.
+ */
+final class WidgetStatisticsSql {
+
+    private WidgetStatisticsSql() {}
+
+    /**
+     * @param widgetId the column or parameter holding the widget id
+     * @return the like, dislike and user count columns of the widget
+     */
+    static String counts(String widgetId) {
+        return "(SELECT COUNT(*) FROM widget_rating r WHERE r.widget_id = " + widgetId + " AND r.score = 10)" +
+                ", (SELECT COUNT(*) FROM widget_rating r WHERE r.widget_id = " + widgetId + " AND r.score = 0)" +
+                ", (" + userCount(widgetId) + ")";
+    }
+
+    /**
+     * @param widgetId the column or parameter holding the widget id
+     * @return a query for the number of users with the widget on one of their pages
+     */
+    static String userCount(String widgetId) {
+        return "SELECT COUNT(DISTINCT p.owner_id) FROM region_widget rw" +
+                " JOIN region rg ON rw.region_id = rg.entity_id JOIN page p ON rg.page_id = p.entity_id" +
+                " WHERE rw.widget_id = " + widgetId;
+    }
+
+    /**
+     * @param widgetId the column or parameter holding the widget id
+     * @return the rating column of the widget for the user bound to the next parameter, null when not rated
+     */
+    static String userRating(String widgetId) {
+        return "(SELECT MAX(r.score) FROM widget_rating r WHERE r.widget_id = " + widgetId + " AND r.user_id = ?)";
+    }
+
+    /**
+     * @param rows rows of widget id, like count, dislike count, user count and user rating
+     * @return the statistics by widget id
+     */
+    static Map<Long, WidgetStatistics> toWidgetStatistics(List<Object[]> rows) {
+        Map<Long, WidgetStatistics> map = new HashMap<Long, WidgetStatistics>();
+        for (Object[] row : rows) {
+            map.put(((Number) row[0]).longValue(), toWidgetStatistics(((Number) row[1]).intValue(),
+                    ((Number) row[2]).intValue(), ((Number) row[3]).intValue(), (Number) row[4]));
+        }
+        return map;
+    }
+
+    static WidgetStatistics toWidgetStatistics(int likeCount, int dislikeCount, int userCount, Number userRating) {
+        WidgetStatistics widgetStatistics = new WidgetStatistics();
+        widgetStatistics.setTotalLike(likeCount);
+        widgetStatistics.setTotalDislike(dislikeCount);
+        widgetStatistics.setTotalUserCount(userCount);
+        widgetStatistics.setUserRating(userRating == null ? WidgetRating.UNSET : userRating.intValue());
+        return widgetStatistics;
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.portal.search;
+
+import java.util.List;
+
+/**
+ * One page of the ids matching a search, in order of relevance, and the total number of matches
+ */
+public class SearchHits {
+    private final List<Long> ids;
+    private final int totalHits;
+
+    public SearchHits(List<Long> ids, int totalHits) {
+        this.ids = ids;
+        this.totalHits = totalHits;
+    }
+
+    /**
+     * @return the ids of the matching items on the requested page, most relevant first
+     */
+    public List<Long> getIds() {
+        return ids;
+    }
+
+    /**
+     * @return the total number of items that match the search
+     */
+    public int getTotalHits() {
+        return totalHits;
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.portal.search;
+
+import org.apache.rave.portal.model.Widget;
+import org.apache.rave.portal.model.WidgetStatus;
+
+import java.util.Collection;
+
+/**
+ * Full text index over the title, description, tags and categories of the {@link Widget}s in the store
+ */
+public interface WidgetSearchIndex {
+
+    /**
+     * Searches the index for widgets matching all words of the search term
+     *
+     * @param searchTerm   free text search term
+     * @param widgetStatus only return widgets with this status, or any status when null
+     * @param type         only return widgets of this type, or any type when empty
+     * @param offset       start point within the resultset (for paging)
+     * @param pageSize     maximum number of items to be returned (for paging)
+     * @return the ids of the matching widgets on the requested page, most relevant first, and the total match count
+     */
+    SearchHits search(String searchTerm, WidgetStatus widgetStatus, String type, int offset, int pageSize);
+
+    /**
+     * Updates the index entries of the given widgets from the repository, removing the entries of widgets that no
+     * longer exist.  When called inside a transaction the index is updated once the transaction commits.
+     *
+     * @param widgetIds the ids of the widgets that were added, changed or deleted
+     */
+    void reindex(Collection<Long> widgetIds);
+
+    /**
+     * Replaces the contents of the index with all widgets in the repository
+     *
+     * @return the number of widgets indexed
+     */
+    int rebuild();
+}
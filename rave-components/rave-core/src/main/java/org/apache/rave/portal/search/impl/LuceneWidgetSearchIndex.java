@@ -0,0 +1,387 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.portal.search.impl;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.CharArraySet;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Version;
+import org.apache.rave.portal.model.Category;
+import org.apache.rave.portal.model.Widget;
+import org.apache.rave.portal.model.WidgetStatus;
+import org.apache.rave.portal.model.WidgetTag;
+import org.apache.rave.portal.repository.WidgetRepository;
+import org.apache.rave.portal.search.SearchHits;
+import org.apache.rave.portal.search.WidgetSearchIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * {@link WidgetSearchIndex} kept in an embedded Lucene index on local disk, or in memory when no directory is
+ * configured.
+ * <p/>
+ * Every word of a search term has to match the title, description, tags or categories of a widget, either as a whole
+ * word or as the start of a word in the title or description.  Matches in the title weigh most, followed by tags and
+ * categories.  Results are ordered by relevance, then featured widgets first, then by title.
+ * <p/>
+ * Each portal node keeps its own index, which is updated with the changes made through that node.  The index is
+ * rebuilt from the repository in the background on startup and then every rebuild interval, so the changes made
+ * through other nodes are picked up.  It can also be rebuilt at any time through JMX.  Searches wait for the first
+ * rebuild when there is no index yet, an index left on disk by a previous run is searched while it is rebuilt.
+ */
+@Component
+@ManagedResource(description = "Widget store search index")
+public class LuceneWidgetSearchIndex implements WidgetSearchIndex, InitializingBean, DisposableBean {
+    private static Logger logger = LoggerFactory.getLogger(LuceneWidgetSearchIndex.class);
+
+    static final String FIELD_ID = "id";
+    static final String FIELD_TITLE = "title";
+    static final String FIELD_TITLE_SORT = "titleSort";
+    static final String FIELD_DESCRIPTION = "description";
+    static final String FIELD_TAGS = "tags";
+    static final String FIELD_CATEGORIES = "categories";
+    static final String FIELD_STATUS = "status";
+    static final String FIELD_TYPE = "type";
+    static final String FIELD_FEATURED = "featured";
+
+    private static final Version LUCENE_VERSION = Version.LUCENE_36;
+    private static final int REBUILD_PAGE_SIZE = 100;
+    private static final float TITLE_BOOST = 4.0f;
+    private static final float TAG_BOOST = 2.0f;
+    private static final float CATEGORY_BOOST = 2.0f;
+    private static final float PREFIX_BOOST = 0.5f;
+    private static final Sort RELEVANCE_ORDER = new Sort(SortField.FIELD_SCORE,
+            new SortField(FIELD_FEATURED, SortField.STRING, true), new SortField(FIELD_TITLE_SORT, SortField.STRING));
+
+    private final WidgetRepository widgetRepository;
+    private final TaskScheduler taskScheduler;
+    private final String indexDirectory;
+    private final long rebuildIntervalMillis;
+    //widget titles are short, so stop words like "the" are kept searchable
+    private final Analyzer analyzer = new StandardAnalyzer(LUCENE_VERSION, CharArraySet.EMPTY_SET);
+    private final Object writeLock = new Object();
+
+    private Directory directory;
+    private IndexWriter writer;
+    private SearcherManager searcherManager;
+    private volatile boolean rebuildRequired;
+
+    @Autowired
+    public LuceneWidgetSearchIndex(WidgetRepository widgetRepository, TaskScheduler taskScheduler,
+                                   @Value("${portal.widgetSearchIndex.directory}") String indexDirectory,
+                                   @Value("${portal.widgetSearchIndex.rebuildIntervalMillis}") long rebuildIntervalMillis) {
+        this.widgetRepository = widgetRepository;
+        this.taskScheduler = taskScheduler;
+        this.indexDirectory = indexDirectory;
+        this.rebuildIntervalMillis = rebuildIntervalMillis;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws IOException {
+        if (StringUtils.isBlank(indexDirectory)) {
+            directory = new RAMDirectory();
+        } else {
+            logger.info("Opening widget search index in {}", indexDirectory);
+            directory = FSDirectory.open(new File(indexDirectory));
+        }
+        rebuildRequired = !IndexReader.indexExists(directory);
+
+        IndexWriterConfig config = new IndexWriterConfig(LUCENE_VERSION, analyzer);
+        config.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+        writer = new IndexWriter(directory, config);
+        //commit right away so a new, empty index can be searched
+        writer.commit();
+        searcherManager = new SearcherManager(writer, true, null);
+
+        Runnable rebuildTask = new Runnable() {
+            @Override
+            public void run() {
+                rebuild();
+            }
+        };
+        if (rebuildIntervalMillis > 0) {
+            taskScheduler.scheduleWithFixedDelay(rebuildTask, new Date(), rebuildIntervalMillis);
+        } else {
+            taskScheduler.schedule(rebuildTask, new Date());
+        }
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        searcherManager.close();
+        writer.close();
+        directory.close();
+    }
+
+    @Override
+    public SearchHits search(String searchTerm, WidgetStatus widgetStatus, String type, int offset, int pageSize) {
+        if (rebuildRequired) {
+            rebuildIfRequired();
+        }
+        Query query = createQuery(searchTerm, widgetStatus, type);
+        if (query == null) {
+            return new SearchHits(Collections.<Long>emptyList(), 0);
+        }
+
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                TopDocs topDocs = searcher.search(query, null, Math.max(offset + pageSize, 1), RELEVANCE_ORDER);
+                List<Long> ids = new ArrayList<Long>();
+                for (int i = offset; i < topDocs.scoreDocs.length; i++) {
+                    ids.add(Long.valueOf(searcher.doc(topDocs.scoreDocs[i].doc).get(FIELD_ID)));
+                }
+                return new SearchHits(ids, topDocs.totalHits);
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to search the widget index for " + searchTerm, e);
+        }
+    }
+
+    @Override
+    public void reindex(Collection<Long> widgetIds) {
+        final Set<Long> ids = new LinkedHashSet<Long>(widgetIds);
+        ids.remove(null);
+        if (ids.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            //the changes are not visible to the index until they are committed, and must not be indexed if rolled back
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    updateIndex(ids);
+                }
+            });
+        } else {
+            updateIndex(ids);
+        }
+    }
+
+    @Override
+    @ManagedOperation(description = "Rebuilds the widget search index from the database")
+    public int rebuild() {
+        synchronized (writeLock) {
+            boolean rebuilt = false;
+            try {
+                writer.deleteAll();
+                int count = 0;
+                List<Widget> page;
+                do {
+                    page = widgetRepository.getLimitedList(count, REBUILD_PAGE_SIZE);
+                    for (Widget widget : page) {
+                        writer.addDocument(createDocument(widget));
+                    }
+                    count += page.size();
+                } while (page.size() == REBUILD_PAGE_SIZE);
+                writer.commit();
+                searcherManager.maybeRefresh();
+                rebuilt = true;
+                logger.info("Rebuilt the widget search index with {} widgets", count);
+                return count;
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to rebuild the widget search index", e);
+            } finally {
+                //a failed rebuild is retried on the next search
+                rebuildRequired = !rebuilt;
+            }
+        }
+    }
+
+    @ManagedAttribute(description = "Number of widgets in the search index")
+    public int getDocumentCount() throws IOException {
+        return writer.numDocs();
+    }
+
+    /*
+      Helper methods
+    */
+    private void rebuildIfRequired() {
+        synchronized (writeLock) {
+            if (rebuildRequired) {
+                rebuild();
+            }
+        }
+    }
+
+    private void updateIndex(Set<Long> ids) {
+        try {
+            List<Widget> widgets = widgetRepository.getByIds(new ArrayList<Long>(ids));
+            Set<Long> deleted = new LinkedHashSet<Long>(ids);
+            synchronized (writeLock) {
+                for (Widget widget : widgets) {
+                    writer.updateDocument(new Term(FIELD_ID, String.valueOf(widget.getEntityId())),
+                            createDocument(widget));
+                    deleted.remove(widget.getEntityId());
+                }
+                for (Long id : deleted) {
+                    writer.deleteDocuments(new Term(FIELD_ID, String.valueOf(id)));
+                }
+                writer.commit();
+                searcherManager.maybeRefresh();
+            }
+        } catch (IOException e) {
+            //the change itself has been committed, so only log that the index is out of date
+            logger.error("Unable to update the widget search index for widgets " + ids, e);
+        }
+    }
+
+    private Document createDocument(Widget widget) {
+        Document document = new Document();
+        document.add(new Field(FIELD_ID, String.valueOf(widget.getEntityId()), Field.Store.YES,
+                Field.Index.NOT_ANALYZED_NO_NORMS));
+        addText(document, FIELD_TITLE, widget.getTitle());
+        if (widget.getTitle() != null) {
+            document.add(new Field(FIELD_TITLE_SORT, widget.getTitle().toLowerCase(), Field.Store.NO,
+                    Field.Index.NOT_ANALYZED_NO_NORMS));
+        }
+        addText(document, FIELD_DESCRIPTION, widget.getDescription());
+        if (widget.getTags() != null) {
+            for (WidgetTag widgetTag : widget.getTags()) {
+                if (widgetTag.getTag() != null) {
+                    addText(document, FIELD_TAGS, widgetTag.getTag().getKeyword());
+                }
+            }
+        }
+        if (widget.getCategories() != null) {
+            for (Category category : widget.getCategories()) {
+                addText(document, FIELD_CATEGORIES, category.getText());
+            }
+        }
+        addKeyword(document, FIELD_STATUS, widget.getWidgetStatus() == null ? null : widget.getWidgetStatus().toString());
+        addKeyword(document, FIELD_TYPE, widget.getType());
+        addKeyword(document, FIELD_FEATURED, widget.isFeatured() ? "1" : "0");
+        return document;
+    }
+
+    private static void addText(Document document, String field, String value) {
+        if (StringUtils.isNotBlank(value)) {
+            document.add(new Field(field, value, Field.Store.NO, Field.Index.ANALYZED));
+        }
+    }
+
+    private static void addKeyword(Document document, String field, String value) {
+        if (StringUtils.isNotBlank(value)) {
+            document.add(new Field(field, value, Field.Store.NO, Field.Index.NOT_ANALYZED_NO_NORMS));
+        }
+    }
+
+    private Query createQuery(String searchTerm, WidgetStatus widgetStatus, String type) {
+        List<String> words = analyze(searchTerm);
+        if (words.isEmpty()) {
+            return null;
+        }
+        BooleanQuery query = new BooleanQuery();
+        for (String word : words) {
+            BooleanQuery wordQuery = new BooleanQuery();
+            wordQuery.add(boost(new TermQuery(new Term(FIELD_TITLE, word)), TITLE_BOOST), BooleanClause.Occur.SHOULD);
+            wordQuery.add(boost(new TermQuery(new Term(FIELD_TAGS, word)), TAG_BOOST), BooleanClause.Occur.SHOULD);
+            wordQuery.add(boost(new TermQuery(new Term(FIELD_CATEGORIES, word)), CATEGORY_BOOST),
+                    BooleanClause.Occur.SHOULD);
+            wordQuery.add(new TermQuery(new Term(FIELD_DESCRIPTION, word)), BooleanClause.Occur.SHOULD);
+            //partially typed words still find the widget, as they did with the LIKE queries this index replaces
+            wordQuery.add(boost(new PrefixQuery(new Term(FIELD_TITLE, word)), PREFIX_BOOST), BooleanClause.Occur.SHOULD);
+            wordQuery.add(boost(new PrefixQuery(new Term(FIELD_DESCRIPTION, word)), PREFIX_BOOST),
+                    BooleanClause.Occur.SHOULD);
+            query.add(wordQuery, BooleanClause.Occur.MUST);
+        }
+        if (widgetStatus != null) {
+            query.add(new TermQuery(new Term(FIELD_STATUS, widgetStatus.toString())), BooleanClause.Occur.MUST);
+        }
+        if (StringUtils.isNotBlank(type)) {
+            query.add(new TermQuery(new Term(FIELD_TYPE, type)), BooleanClause.Occur.MUST);
+        }
+        return query;
+    }
+
+    private List<String> analyze(String text) {
+        List<String> words = new ArrayList<String>();
+        if (StringUtils.isBlank(text)) {
+            return words;
+        }
+        try {
+            TokenStream tokenStream = analyzer.tokenStream(FIELD_TITLE, new StringReader(text));
+            CharTermAttribute term = tokenStream.addAttribute(CharTermAttribute.class);
+            try {
+                tokenStream.reset();
+                while (tokenStream.incrementToken()) {
+                    words.add(term.toString());
+                }
+                tokenStream.end();
+            } finally {
+                tokenStream.close();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to analyze search term " + text, e);
+        }
+        return words;
+    }
+
+    private static Query boost(Query query, float boost) {
+        query.setBoost(boost);
+        return query;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.portal.service;
+
+import org.apache.rave.portal.model.NewUser;
+import org.apache.rave.portal.model.util.UserImportResult;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
+/**
+ * Creates many user accounts at once, e.g. when onboarding the employees of an organization
+ */
+public interface UserImportService {
+
+    /**
+     * The formats users can be imported from
+     */
+    enum Format {
+        /**
+         * Comma separated values with a header line naming the {@link NewUser} property of each column, e.g.
+         * {@literal username,password,email,firstName,lastName}
+         */
+        CSV,
+        /**
+         * LDAP Data Interchange Format, of which the entries with a uid are imported as users
+         */
+        LDIF
+    }
+
+    /**
+     * Reads users from the input and creates an account for each of them, see {@link #importUsers(java.util.List)}
+     *
+     * @param input  the users to create
+     * @param format the format of the input
+     * @return the number of accounts created and the users for which no account was created
+     * @throws IOException if the input cannot be read
+     */
+    UserImportResult importUsers(Reader input, Format format) throws IOException;
+
+    /**
+     * Creates an account with the default authorities and a profile page for each user, like
+     * {@link NewAccountService#createNewAccount(NewUser)} does for a single user.  A user that cannot be created is
+     * reported in the result and does not keep the other users from being created.
+     *
+     * @param newUsers the users to create
+     * @return the number of accounts created and the users for which no account was created
+     */
+    UserImportResult importUsers(List<NewUser> newUsers);
+}
@@ -54,6 +54,13 @@ public interface UserService extends UserDetailsService {
      */
     void registerNewUser(User user);
 
+    /**
+     * Registers new user objects in a single transaction, giving each of them a profile page
+     *
+     * @param users the new user objects to register with the data management system.
+     */
+    void registerNewUsers(List<User> users);
+
     /**
      * Return the requested user object using the user's name.
      *
@@ -94,6 +101,17 @@ public interface UserService extends UserDetailsService {
      */
     SearchResult<User> getLimitedListOfUsers(int offset, int pageSize);
 
+    /**
+     * Gets the page of {@link User}'s that follows the given username, without reading the users of the previous
+     * pages. The total number of users is cached.
+     *
+     * @param username the username of the last user of the previous page
+     * @param offset   start point of the page within the resultset, only used to number the results
+     * @param pageSize maximum number of items to be returned (for paging)
+     * @return SearchResult
+     */
+    SearchResult<User> getLimitedListOfUsersAfter(String username, int offset, int pageSize);
+
     /**
      * Gets a {@link SearchResult} for {@link User}'s that match the search term
      *
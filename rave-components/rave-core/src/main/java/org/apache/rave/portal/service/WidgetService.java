@@ -25,6 +25,7 @@ import org.apache.rave.portal.model.util.WidgetStatistics;
 import org.springframework.security.access.prepost.PostAuthorize;
 import org.springframework.security.access.prepost.PreAuthorize;
 
+import java.util.Collection;
 import java.util.Map;
 
 /**
@@ -80,6 +81,20 @@ public interface WidgetService {
      */
     SearchResult<Widget> getPublishedWidgets(int offset, int pageSize);
 
+    /**
+     * Gets the page of published {@link Widget}'s that follows the given widget, without reading the widgets of the
+     * previous pages. The total number of published widgets is cached.
+     *
+     * @param featured whether the last widget of the previous page is featured
+     * @param title    title of the last widget of the previous page
+     * @param widgetId id of the last widget of the previous page
+     * @param offset   start point of the page within the resultset, only used to number the results
+     * @param pageSize maximum number of items to be returned (for paging)
+     * @return SearchResult
+     */
+    SearchResult<Widget> getPublishedWidgetsAfter(boolean featured, String title, long widgetId,
+                                                  int offset, int pageSize);
+
     /**
      * Gets a SearchResult for published {@link Widget}'s by performing a free text search
      *
@@ -149,6 +164,15 @@ public interface WidgetService {
      */
     Map<Long, WidgetStatistics> getAllWidgetStatistics(long userId);
 
+    /**
+     * Generates the widget statistics of the given widgets, typically the ones on screen, for the user.
+     *
+     * @param widgetIds ids of the widgets
+     * @param userId    id of the user
+     * @return Mapping of {@link WidgetStatistics} objects keyed off of the widget's entityId
+     */
+    Map<Long, WidgetStatistics> getWidgetStatistics(Collection<Long> widgetIds, long userId);
+
     /**
      * Updates {@link Widget}
      *
@@ -0,0 +1,34 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.portal.service;
+
+/**
+ * Repairs the widget statistics counters when they drift from the ratings and region widgets they count, for example
+ * after changes made directly in the database or by a failed update.
+ */
+public interface WidgetStatsReconciliationService {
+
+    /**
+     * Recounts the counters of all widgets, creating missing counters and deleting those of deleted widgets
+     *
+     * @return the number of widgets whose counters were repaired, or -1 if another reconciliation was running
+     */
+    int reconcile();
+}
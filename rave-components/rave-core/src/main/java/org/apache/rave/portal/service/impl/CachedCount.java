@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.portal.service.impl;
+
+/**
+ * Total number of items of a listing that is counted again at most once per time to live, so paging through the
+ * listing does not count all of its rows for every page. A time to live of 0 counts on every call.
+ */
+abstract class CachedCount {
+    private final long timeToLiveMillis;
+    private int count;
+    private long expires;
+
+    CachedCount(long timeToLiveMillis) {
+        this.timeToLiveMillis = timeToLiveMillis;
+    }
+
+    /**
+     * @return the cached count, or a new count when the cached one expired or was invalidated
+     */
+    synchronized int get() {
+        final long now = currentTimeMillis();
+        if (now >= expires) {
+            count = count();
+            expires = now + timeToLiveMillis;
+        }
+        return count;
+    }
+
+    /**
+     * Drops the cached count, to be called when items are added to or removed from the listing
+     */
+    synchronized void invalidate() {
+        expires = 0;
+    }
+
+    /**
+     * @return the number of items in the listing
+     */
+    protected abstract int count();
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+}
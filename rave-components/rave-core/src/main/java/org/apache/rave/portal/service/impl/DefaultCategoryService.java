@@ -17,12 +17,15 @@ package org.apache.rave.portal.service.impl;
 
 import org.apache.rave.portal.model.Category;
 import org.apache.rave.portal.model.User;
+import org.apache.rave.portal.model.Widget;
 import org.apache.rave.portal.repository.CategoryRepository;
+import org.apache.rave.portal.search.WidgetSearchIndex;
 import org.apache.rave.portal.service.CategoryService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
@@ -31,10 +34,12 @@ import java.util.List;
 public class DefaultCategoryService implements CategoryService {
 
     private final CategoryRepository categoryRepository;
+    private final WidgetSearchIndex widgetSearchIndex;
 
     @Autowired
-    public DefaultCategoryService(CategoryRepository categoryRepository) {
+    public DefaultCategoryService(CategoryRepository categoryRepository, WidgetSearchIndex widgetSearchIndex) {
         this.categoryRepository = categoryRepository;
+        this.widgetSearchIndex = widgetSearchIndex;
     }
 
     @Override
@@ -71,6 +76,7 @@ public class DefaultCategoryService implements CategoryService {
         category.setLastModifiedDate(new Date());
         category.setLastModifiedUser(lastModifiedUser);
         categoryRepository.save(category);
+        widgetSearchIndex.reindex(getWidgetIds(category));
         return category;
     }
 
@@ -78,6 +84,18 @@ public class DefaultCategoryService implements CategoryService {
     @Transactional
     public void delete(Category category) {
         Category categoryToBeDeleted = categoryRepository.get(category.getEntityId());
+        List<Long> widgetIds = getWidgetIds(categoryToBeDeleted);
         categoryRepository.delete(categoryToBeDeleted);
+        widgetSearchIndex.reindex(widgetIds);
+    }
+
+    private List<Long> getWidgetIds(Category category) {
+        List<Long> widgetIds = new ArrayList<Long>();
+        if (category.getWidgets() != null) {
+            for (Widget widget : category.getWidgets()) {
+                widgetIds.add(widget.getEntityId());
+            }
+        }
+        return widgetIds;
     }
 }
@@ -51,41 +51,12 @@ public class DefaultNewAccountService implements NewAccountService {
 
     @Override
     public void createNewAccount(NewUser newUser) throws Exception {
-        final String userName = newUser.getUsername();
-        final String password = newUser.getPassword();
-        final String defaultPageLayoutCode = newUser.getPageLayout();
-        final String email = newUser.getEmail();
-        
-        //capture optional fields
-        final String givenName = newUser.getFirstName();
-        final String familyName = newUser.getLastName();
-        final String displayName = newUser.getDisplayName();
-        final String status = newUser.getStatus();
-        final String aboutMe = newUser.getAboutMe();
+        throwExceptionIfUserExists(newUser.getUsername(), newUser.getEmail());
 
-        throwExceptionIfUserExists(userName, email);
-                
-        User user = new User();
-        //set the required fields
-        user.setUsername(userName);
-        user.setEmail(email);
-        String hashedPassword = passwordEncoder.encode(password);
-        user.setPassword(hashedPassword);
-
-        user.setExpired(false);
-        user.setLocked(false);
-        user.setEnabled(true);
-        user.setDefaultPageLayout(pageLayoutService.getPageLayoutByCode(defaultPageLayoutCode));        
-        user.setAuthorities(authorityService.getDefaultAuthorities().getResultSet());
-        
-        //set the optional fields
-        user.setGivenName(givenName);
-        user.setFamilyName(familyName);
-        user.setDisplayName(displayName);
-        user.setStatus(status);
-        user.setAboutMe(aboutMe);
-        
-        userService.registerNewUser(user);  
+        User user = NewUserFactory.createUser(newUser, passwordEncoder.encode(newUser.getPassword()),
+                pageLayoutService.getPageLayoutByCode(newUser.getPageLayout()),
+                authorityService.getDefaultAuthorities().getResultSet());
+        userService.registerNewUser(user);
     }
 
     private void throwExceptionIfUserExists(String userName, String email) {
@@ -32,7 +32,11 @@ import org.springframework.transaction.annotation.Transactional;
 import javax.persistence.NoResultException;
 import javax.persistence.NonUniqueResultException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 @Service
 public class DefaultPageService implements PageService {
@@ -43,6 +47,8 @@ public class DefaultPageService implements PageService {
     private final PageLayoutRepository pageLayoutRepository;
     private final UserService userService;
     private final PageTemplateRepository pageTemplateRepository;
+    private final WidgetStatsRepository widgetStatsRepository;
+    private final boolean useStatisticsCounters;
     private final String defaultPageName;
     
     private final long MOVE_PAGE_DEFAULT_POSITION_INDEX = -1L;
@@ -55,6 +61,8 @@ public class DefaultPageService implements PageService {
                               RegionWidgetRepository regionWidgetRepository,
                               PageLayoutRepository pageLayoutRepository,
                               UserService userService,
+                              WidgetStatsRepository widgetStatsRepository,
+                              @Value("${portal.widgetStatistics.useCounters}") boolean useStatisticsCounters,
                               @Value("${portal.page.default_name}") String defaultPageName) {
         this.pageRepository = pageRepository;
         this.pageTemplateRepository = pageTemplateRepository;
@@ -63,6 +71,8 @@ public class DefaultPageService implements PageService {
         this.widgetRepository = widgetRepository;
         this.pageLayoutRepository = pageLayoutRepository;
         this.userService = userService;
+        this.widgetStatsRepository = widgetStatsRepository;
+        this.useStatisticsCounters = useStatisticsCounters;
         this.defaultPageName = defaultPageName;
     }
 
@@ -73,7 +83,7 @@ public class DefaultPageService implements PageService {
     
     @Override
     public List<Page> getAllUserPages(long userId) {
-        return pageRepository.getAllPages(userId, PageType.USER);
+        return pageRepository.getAllPagesForRendering(userId, PageType.USER);
     }
 
     @Override
@@ -83,6 +93,7 @@ public class DefaultPageService implements PageService {
         Page personPage = null;
         if (profilePages.isEmpty()){
             personPage = pageRepository.createPageForUser(userService.getUserById(userId), pageTemplateRepository.getDefaultPage(PageType.PERSON_PROFILE));
+            recountStatistics(getCountedWidgetIds(personPage));
         } else {
             personPage = profilePages.get(0);
         }
@@ -167,7 +178,10 @@ public class DefaultPageService implements PageService {
     public void deletePage(long pageId) {                    
         User user = userService.getAuthenticatedUser();
         // first delete the page        
-        pageRepository.delete(pageRepository.get(pageId));
+        Page page = pageRepository.get(pageId);
+        Set<Long> widgetIds = getCountedWidgetIds(page);
+        pageRepository.delete(page);
+        recountStatistics(widgetIds);
         // now re-sequence the page sequence numbers
 
         //TODO RAVE-237:  We should be able to delete these lines.  If there are gaps in the sequence numbers, then it will still
@@ -179,7 +193,10 @@ public class DefaultPageService implements PageService {
     @Override
     @Transactional
     public int deletePages(long userId, PageType pageType) {
-        return pageRepository.deletePages(userId, pageType);
+        Collection<Long> widgetIds = getCountedWidgetIds(userId);
+        int deleted = pageRepository.deletePages(userId, pageType);
+        recountStatistics(widgetIds);
+        return deleted;
     }
     
     @Override
@@ -230,6 +247,7 @@ public class DefaultPageService implements PageService {
         RegionWidget regionWidget = getFromRepository(regionWidgetId, regionWidgetRepository);
         verifyRegionWidgetIsNotLocked(regionWidget);
         regionWidgetRepository.delete(regionWidget);
+        refreshUserCount(regionWidget.getWidget().getEntityId());
         return getFromRepository(regionWidget.getRegion().getEntityId(), regionRepository);
     }
 
@@ -240,7 +258,9 @@ public class DefaultPageService implements PageService {
         Widget widget = getFromRepository(widgetId, widgetRepository);
         Region region = page.getRegions().get(0);
         verifyRegionIsNotLocked(region);
-        return createWidgetInstance(widget, region, 0);
+        RegionWidget regionWidget = createWidgetInstance(widget, region, 0);
+        refreshUserCount(widget.getEntityId());
+        return regionWidget;
     }
     
     @Override
@@ -410,7 +430,9 @@ public class DefaultPageService implements PageService {
         if (defaultUserPage.isEmpty()) {
             // Do we have a default User template defined, if so create the page based on the template
             try {
-                return pageRepository.createPageForUser(user, pageTemplateRepository.getDefaultPage(PageType.USER));
+                page = pageRepository.createPageForUser(user, pageTemplateRepository.getDefaultPage(PageType.USER));
+                recountStatistics(getCountedWidgetIds(page));
+                return page;
             } catch ( NoResultException nre ) {
                 // There are no default user page template records in DB
             } catch ( NonUniqueResultException nue ) {
@@ -433,6 +455,53 @@ public class DefaultPageService implements PageService {
         return page;
     }
 
+    /**
+     * @return the ids of the widgets on the page whose counters change with it, none when the counters are not used
+     */
+    private Set<Long> getCountedWidgetIds(Page page) {
+        return useStatisticsCounters ? getWidgetIds(page) : Collections.<Long>emptySet();
+    }
+
+    private Collection<Long> getCountedWidgetIds(long userId) {
+        return useStatisticsCounters ? widgetStatsRepository.getWidgetIdsByUser(userId) :
+                Collections.<Long>emptyList();
+    }
+
+    private void recountStatistics(Collection<Long> widgetIds) {
+        if (useStatisticsCounters) {
+            widgetStatsRepository.recount(widgetIds);
+        }
+    }
+
+    private void refreshUserCount(long widgetId) {
+        if (useStatisticsCounters) {
+            widgetStatsRepository.refreshUserCount(widgetId);
+        }
+    }
+
+    private static Set<Long> getWidgetIds(Page page) {
+        Set<Long> widgetIds = new HashSet<Long>();
+        if (page == null) {
+            return widgetIds;
+        }
+        if (page.getRegions() != null) {
+            for (Region region : page.getRegions()) {
+                if (region.getRegionWidgets() == null) {
+                    continue;
+                }
+                for (RegionWidget regionWidget : region.getRegionWidgets()) {
+                    widgetIds.add(regionWidget.getWidget().getEntityId());
+                }
+            }
+        }
+        if (page.getSubPages() != null) {
+            for (Page subPage : page.getSubPages()) {
+                widgetIds.addAll(getWidgetIds(subPage));
+            }
+        }
+        return widgetIds;
+    }
+
     private void updatePageRenderSequences(List<Page> pages) {       
         if (pages != null && !pages.isEmpty()) {
             for (int i = 0; i < pages.size(); i++) {
@@ -22,41 +22,82 @@ package org.apache.rave.portal.service.impl;
 import org.apache.rave.portal.model.PortalPreference;
 import org.apache.rave.portal.repository.PortalPreferenceRepository;
 import org.apache.rave.portal.service.PortalPreferenceService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
  * Default implementation of {@link PortalPreferenceService}
+ * <p/>
+ * Preferences are read from an immutable snapshot that is loaded on first use and replaced as a whole when a
+ * preference is saved, so reading them costs no queries.  Callers get copies, which they are free to change.
+ * When the poll interval is greater than zero, the version of the preferences in the database is checked on the task
+ * scheduler every interval and the snapshot is reloaded when another node has saved a preference.
  */
 @Service
-public class DefaultPortalPreferenceService implements PortalPreferenceService {
+@ManagedResource(description = "Portal preferences")
+public class DefaultPortalPreferenceService implements PortalPreferenceService, InitializingBean {
+    private static Logger logger = LoggerFactory.getLogger(DefaultPortalPreferenceService.class);
 
     private final PortalPreferenceRepository repository;
+    private final TaskScheduler taskScheduler;
+    private final long pollIntervalMillis;
+
+    private volatile Snapshot snapshot;
 
     @Autowired
-    public DefaultPortalPreferenceService(PortalPreferenceRepository repository) {
+    public DefaultPortalPreferenceService(PortalPreferenceRepository repository,
+                                          TaskScheduler taskScheduler,
+                                          @Value("${portal.preferences.pollIntervalMillis}") long pollIntervalMillis) {
         this.repository = repository;
+        this.taskScheduler = taskScheduler;
+        this.pollIntervalMillis = pollIntervalMillis;
     }
 
     @Override
-    public Map<String, PortalPreference> getPreferencesAsMap() {
-        final List<PortalPreference> portalPreferences = repository.getAll();
+    public void afterPropertiesSet() {
+        if (pollIntervalMillis <= 0) {
+            return;
+        }
+        taskScheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    refresh();
+                } catch (RuntimeException e) {
+                    //keep the schedule and the current snapshot, the next poll may succeed
+                    logger.warn("Unable to poll the portal preferences for changes", e);
+                }
+            }
+        }, new Date(System.currentTimeMillis() + pollIntervalMillis), pollIntervalMillis);
+    }
 
+    @Override
+    public Map<String, PortalPreference> getPreferencesAsMap() {
         Map<String, PortalPreference> preferenceMap = new HashMap<String, PortalPreference>();
-        for (PortalPreference preference : portalPreferences) {
-            preferenceMap.put(preference.getKey(), preference);
+        for (PortalPreference preference : getSnapshot().preferences.values()) {
+            preferenceMap.put(preference.getKey(), new PortalPreference(preference));
         }
         return preferenceMap;
     }
 
     @Override
     public PortalPreference getPreference(String key) {
-        return repository.getByKey(key);
+        PortalPreference preference = getSnapshot().preferences.get(key);
+        return preference == null ? null : new PortalPreference(preference);
     }
 
     @Override
@@ -68,7 +109,8 @@ public class DefaultPortalPreferenceService implements PortalPreferenceService {
 
     @Override
     public void savePreference(String key, List<String> values) {
-        PortalPreference preference = getPreference(key);
+        //read the preference from the database, the snapshot may not have caught up with another node yet
+        PortalPreference preference = repository.getByKey(key);
         if (preference == null) {
             preference = new PortalPreference(key, values);
         } else {
@@ -79,6 +121,77 @@ public class DefaultPortalPreferenceService implements PortalPreferenceService {
 
     @Override
     public void savePreference(PortalPreference preference) {
-        repository.save(preference);
+        PortalPreference saved = repository.save(preference);
+        replace(saved);
+    }
+
+    /**
+     * Reloads the preferences if their version in the database differs from the version of the snapshot
+     *
+     * @return {@literal true} if the preferences were reloaded
+     */
+    @ManagedOperation(description = "Reloads the portal preferences if they were changed in the database")
+    public boolean refresh() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            //nothing read yet, the first read loads the preferences
+            return false;
+        }
+        if (repository.getVersion() == current.version) {
+            return false;
+        }
+        synchronized (this) {
+            snapshot = load();
+        }
+        logger.debug("Reloaded the portal preferences");
+        return true;
+    }
+
+    /*
+      Helper methods
+    */
+    private Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                current = snapshot;
+                if (current == null) {
+                    current = load();
+                    snapshot = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private Snapshot load() {
+        //read the version first, a change made while loading is then picked up by the next poll
+        final long version = repository.getVersion();
+        final Map<String, PortalPreference> preferences = new HashMap<String, PortalPreference>();
+        for (PortalPreference preference : repository.getAll()) {
+            preferences.put(preference.getKey(), new PortalPreference(preference));
+        }
+        return new Snapshot(version, preferences);
+    }
+
+    private synchronized void replace(PortalPreference saved) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return;
+        }
+        Map<String, PortalPreference> preferences = new HashMap<String, PortalPreference>(current.preferences);
+        preferences.put(saved.getKey(), new PortalPreference(saved));
+        //keep the old version, the next poll reloads and picks up the version of this save
+        snapshot = new Snapshot(current.version, preferences);
+    }
+
+    private static final class Snapshot {
+        private final long version;
+        private final Map<String, PortalPreference> preferences;
+
+        private Snapshot(long version, Map<String, PortalPreference> preferences) {
+            this.version = version;
+            this.preferences = Collections.unmodifiableMap(preferences);
+        }
     }
 }
@@ -0,0 +1,260 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.portal.service.impl;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.rave.portal.model.Authority;
+import org.apache.rave.portal.model.NewUser;
+import org.apache.rave.portal.model.PageLayout;
+import org.apache.rave.portal.model.User;
+import org.apache.rave.portal.model.util.UserImportResult;
+import org.apache.rave.portal.repository.UserRepository;
+import org.apache.rave.portal.service.AuthorityService;
+import org.apache.rave.portal.service.PageLayoutService;
+import org.apache.rave.portal.service.UserImportService;
+import org.apache.rave.portal.service.UserService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Default implementation of {@link UserImportService}
+ * <p/>
+ * The users are imported in stages: the input is validated, the usernames and email addresses already in use are
+ * found with a few set based queries, the passwords are hashed on several threads and the accounts are created in
+ * batches, each in its own transaction.  When a batch fails, its users are created one at a time so only the users
+ * that cannot be created are reported.
+ */
+@Service
+public class DefaultUserImportService implements UserImportService {
+    private static Logger logger = LoggerFactory.getLogger(DefaultUserImportService.class);
+
+    private final UserService userService;
+    private final UserRepository userRepository;
+    private final PageLayoutService pageLayoutService;
+    private final AuthorityService authorityService;
+    private final PasswordEncoder passwordEncoder;
+    private final int hashThreads;
+    private final int batchSize;
+
+    @Autowired
+    public DefaultUserImportService(UserService userService, UserRepository userRepository,
+                                    PageLayoutService pageLayoutService, AuthorityService authorityService,
+                                    PasswordEncoder passwordEncoder,
+                                    @Value("${portal.userImport.hashThreads}") int hashThreads,
+                                    @Value("${portal.userImport.batchSize}") int batchSize) {
+        this.userService = userService;
+        this.userRepository = userRepository;
+        this.pageLayoutService = pageLayoutService;
+        this.authorityService = authorityService;
+        this.passwordEncoder = passwordEncoder;
+        this.hashThreads = hashThreads;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public UserImportResult importUsers(Reader input, Format format) throws IOException {
+        switch (format) {
+            case CSV:
+                return importUsers(UserImportReader.readCsv(input));
+            case LDIF:
+                return importUsers(UserImportReader.readLdif(input));
+            default:
+                throw new IllegalArgumentException("Unsupported format " + format);
+        }
+    }
+
+    @Override
+    public UserImportResult importUsers(List<NewUser> newUsers) {
+        final UserImportResult result = new UserImportResult();
+        final Map<Integer, NewUser> valid = validate(newUsers, result);
+        removeExisting(valid, result);
+
+        final Map<Integer, PageLayout> pageLayouts = getPageLayouts(valid, result);
+        final Map<Integer, String> hashedPasswords = hashPasswords(valid, result);
+        final List<Authority> authorities = authorityService.getDefaultAuthorities().getResultSet();
+
+        List<Integer> rows = new ArrayList<Integer>();
+        List<User> users = new ArrayList<User>();
+        for (Map.Entry<Integer, NewUser> entry : valid.entrySet()) {
+            rows.add(entry.getKey());
+            users.add(NewUserFactory.createUser(entry.getValue(), hashedPasswords.get(entry.getKey()),
+                    pageLayouts.get(entry.getKey()), authorities));
+            if (users.size() == batchSize) {
+                register(rows, users, result);
+                rows = new ArrayList<Integer>();
+                users = new ArrayList<User>();
+            }
+        }
+        if (!users.isEmpty()) {
+            register(rows, users, result);
+        }
+        logger.info("Imported {} users, {} failed", result.getImportedCount(), result.getFailures().size());
+        return result;
+    }
+
+    /*
+      Helper methods
+    */
+    private Map<Integer, NewUser> validate(List<NewUser> newUsers, UserImportResult result) {
+        final Map<Integer, NewUser> valid = new LinkedHashMap<Integer, NewUser>();
+        final Set<String> usernames = new HashSet<String>();
+        final Set<String> emails = new HashSet<String>();
+        int row = 0;
+        for (NewUser newUser : newUsers) {
+            row++;
+            final String username = newUser.getUsername();
+            if (StringUtils.isBlank(username)) {
+                result.addFailure(row, username, "A username is required");
+            } else if (StringUtils.isBlank(newUser.getPassword())) {
+                result.addFailure(row, username, "A password is required");
+            } else if (!usernames.add(username)) {
+                result.addFailure(row, username, "The username is used by an earlier user of the import");
+            } else if (StringUtils.isNotEmpty(newUser.getEmail()) && !emails.add(newUser.getEmail())) {
+                result.addFailure(row, username, "The email address is used by an earlier user of the import");
+            } else {
+                valid.put(row, newUser);
+            }
+        }
+        return valid;
+    }
+
+    private void removeExisting(Map<Integer, NewUser> valid, UserImportResult result) {
+        final Collection<String> usernames = new ArrayList<String>();
+        final Collection<String> emails = new ArrayList<String>();
+        for (NewUser newUser : valid.values()) {
+            usernames.add(newUser.getUsername());
+            if (StringUtils.isNotEmpty(newUser.getEmail())) {
+                emails.add(newUser.getEmail());
+            }
+        }
+        final Set<String> existingUsernames = userRepository.getExistingUsernames(usernames);
+        final Set<String> existingEmails = emails.isEmpty() ? new HashSet<String>() :
+                userRepository.getExistingEmails(emails);
+        for (Map.Entry<Integer, NewUser> entry : new ArrayList<Map.Entry<Integer, NewUser>>(valid.entrySet())) {
+            final NewUser newUser = entry.getValue();
+            if (existingUsernames.contains(newUser.getUsername())) {
+                result.addFailure(entry.getKey(), newUser.getUsername(),
+                        "A user already exists for username " + newUser.getUsername());
+                valid.remove(entry.getKey());
+            } else if (existingEmails.contains(newUser.getEmail())) {
+                result.addFailure(entry.getKey(), newUser.getUsername(),
+                        "A user already exists for email " + newUser.getEmail());
+                valid.remove(entry.getKey());
+            }
+        }
+    }
+
+    private Map<Integer, PageLayout> getPageLayouts(Map<Integer, NewUser> valid, UserImportResult result) {
+        final Map<String, PageLayout> byCode = new HashMap<String, PageLayout>();
+        final Map<Integer, PageLayout> pageLayouts = new HashMap<Integer, PageLayout>();
+        for (Map.Entry<Integer, NewUser> entry : new ArrayList<Map.Entry<Integer, NewUser>>(valid.entrySet())) {
+            final String code = entry.getValue().getPageLayout();
+            if (StringUtils.isBlank(code)) {
+                continue;
+            }
+            if (!byCode.containsKey(code)) {
+                byCode.put(code, pageLayoutService.getPageLayoutByCode(code));
+            }
+            final PageLayout pageLayout = byCode.get(code);
+            if (pageLayout == null) {
+                result.addFailure(entry.getKey(), entry.getValue().getUsername(), "Unknown page layout " + code);
+                valid.remove(entry.getKey());
+            } else {
+                pageLayouts.put(entry.getKey(), pageLayout);
+            }
+        }
+        return pageLayouts;
+    }
+
+    // hashing dominates the cost of creating an account, so the passwords are hashed on several threads
+    private Map<Integer, String> hashPasswords(Map<Integer, NewUser> valid, UserImportResult result) {
+        final Map<Integer, Future<String>> futures = new LinkedHashMap<Integer, Future<String>>();
+        final ExecutorService executor = Executors.newFixedThreadPool(hashThreads);
+        try {
+            for (Map.Entry<Integer, NewUser> entry : valid.entrySet()) {
+                final String password = entry.getValue().getPassword();
+                futures.put(entry.getKey(), executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() {
+                        return passwordEncoder.encode(password);
+                    }
+                }));
+            }
+            final Map<Integer, String> hashedPasswords = new HashMap<Integer, String>();
+            for (Map.Entry<Integer, Future<String>> entry : futures.entrySet()) {
+                try {
+                    hashedPasswords.put(entry.getKey(), entry.getValue().get());
+                } catch (ExecutionException e) {
+                    result.addFailure(entry.getKey(), valid.get(entry.getKey()).getUsername(),
+                            "Unable to hash the password: " + e.getCause().getMessage());
+                    valid.remove(entry.getKey());
+                }
+            }
+            return hashedPasswords;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing the passwords of the imported users", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void register(List<Integer> rows, List<User> users, UserImportResult result) {
+        try {
+            userService.registerNewUsers(users);
+            result.addImported(users.size());
+            return;
+        } catch (RuntimeException e) {
+            logger.info("Unable to import a batch of {} users, importing them one at a time: {}", users.size(),
+                    e.getMessage());
+        }
+        for (int i = 0; i < users.size(); i++) {
+            final User user = users.get(i);
+            //the rolled back batch may have assigned an id
+            user.setEntityId(null);
+            try {
+                userService.registerNewUser(user);
+                result.addImported(1);
+            } catch (RuntimeException e) {
+                result.addFailure(rows.get(i), user.getUsername(), e.getMessage());
+            }
+        }
+    }
+}
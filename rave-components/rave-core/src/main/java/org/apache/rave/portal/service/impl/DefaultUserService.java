@@ -22,6 +22,7 @@ package org.apache.rave.portal.service.impl;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.rave.portal.model.NewUser;
+import org.apache.rave.portal.model.PageTemplate;
 import org.apache.rave.portal.model.PageType;
 import org.apache.rave.portal.model.Person;
 import org.apache.rave.portal.model.User;
@@ -61,6 +62,9 @@ public class DefaultUserService implements UserService {
     private final WidgetRatingRepository widgetRatingRepository;
     private final WidgetCommentRepository widgetCommentRepository;
     private final WidgetRepository widgetRepository;
+    private final WidgetStatsRepository widgetStatsRepository;
+    private final boolean useStatisticsCounters;
+    private final CachedCount userCount;
 
     @Autowired
     private PasswordEncoder passwordEncoder;
@@ -85,17 +89,28 @@ public class DefaultUserService implements UserService {
 
     @Autowired
     public DefaultUserService(PageRepository pageRepository,
-                              UserRepository userRepository,
+                              final UserRepository userRepository,
                               WidgetRatingRepository widgetRatingRepository,
                               WidgetCommentRepository widgetCommentRepository,
                               WidgetRepository widgetRepository, 
-                              PageTemplateRepository pageTemplateRepository) {
+                              PageTemplateRepository pageTemplateRepository,
+                              WidgetStatsRepository widgetStatsRepository,
+                              @Value("${portal.widgetStatistics.useCounters}") boolean useStatisticsCounters,
+                              @Value("${portal.paging.countCacheMillis}") long countCacheMillis) {
         this.userRepository = userRepository;
         this.pageRepository = pageRepository;
         this.widgetRatingRepository = widgetRatingRepository;
         this.widgetCommentRepository = widgetCommentRepository;
         this.widgetRepository = widgetRepository;
         this.pageTemplateRepository = pageTemplateRepository;
+        this.widgetStatsRepository = widgetStatsRepository;
+        this.useStatisticsCounters = useStatisticsCounters;
+        this.userCount = new CachedCount(countCacheMillis) {
+            @Override
+            protected int count() {
+                return userRepository.getCountAll();
+            }
+        };
     }
 
     @Override
@@ -162,6 +177,29 @@ public class DefaultUserService implements UserService {
     public void registerNewUser(User user) {
         User managedUser = userRepository.save(user);
         pageRepository.createPageForUser(managedUser, pageTemplateRepository.getDefaultPage(PageType.PERSON_PROFILE));
+        // the profile page template may place widgets on the new user's page
+        recountStatistics(managedUser.getEntityId());
+        userCount.invalidate();
+    }
+
+    @Override
+    @Transactional
+    public void registerNewUsers(List<User> users) {
+        if (users.isEmpty()) {
+            return;
+        }
+        final PageTemplate profileTemplate = pageTemplateRepository.getDefaultPage(PageType.PERSON_PROFILE);
+        Long firstUserId = null;
+        for (User user : users) {
+            User managedUser = userRepository.save(user);
+            pageRepository.createPageForUser(managedUser, profileTemplate);
+            if (firstUserId == null) {
+                firstUserId = managedUser.getEntityId();
+            }
+        }
+        // every new user got the same profile page, so the widgets of one of them are the widgets of all of them
+        recountStatistics(firstUserId);
+        userCount.invalidate();
     }
 
     @Override
@@ -186,7 +224,7 @@ public class DefaultUserService implements UserService {
 
     @Override
     public SearchResult<User> getLimitedListOfUsers(int offset, int pageSize) {
-        final int count = userRepository.getCountAll();
+        final int count = userCount.get();
         final List<User> users = userRepository.getLimitedList(offset, pageSize);
         final SearchResult<User> searchResult = new SearchResult<User>(users, count);
         searchResult.setOffset(offset);
@@ -194,6 +232,16 @@ public class DefaultUserService implements UserService {
         return searchResult;
     }
 
+    @Override
+    public SearchResult<User> getLimitedListOfUsersAfter(String username, int offset, int pageSize) {
+        final int count = userCount.get();
+        final List<User> users = userRepository.getLimitedListAfter(username, pageSize);
+        final SearchResult<User> searchResult = new SearchResult<User>(users, count);
+        searchResult.setOffset(offset);
+        searchResult.setPageSize(pageSize);
+        return searchResult;
+    }
+
     @Override
     public SearchResult<User> getUsersByFreeTextSearch(String searchTerm, int offset, int pageSize) {
         final int count = userRepository.getCountByUsernameOrEmail(searchTerm);
@@ -216,6 +264,9 @@ public class DefaultUserService implements UserService {
         }
 
         final String username = user.getUsername();
+        // the counters of these widgets are recounted once the user's pages and ratings are gone
+        final List<Long> widgetIds = useStatisticsCounters ? widgetStatsRepository.getWidgetIdsByUser(userId) :
+                Collections.<Long>emptyList();
 
         // delete all User type pages
         int numDeletedPages = pageRepository.deletePages(userId, PageType.USER);
@@ -229,6 +280,10 @@ public class DefaultUserService implements UserService {
         int numWidgetsOwned = widgetRepository.unassignWidgetOwner(userId);
         // finally delete the user
         userRepository.delete(user);
+        if (useStatisticsCounters) {
+            widgetStatsRepository.recount(widgetIds);
+        }
+        userCount.invalidate();
         log.info("Deleted user [" + userId + ',' + username + "] - numPages: " + numDeletedPages + ", numPersonPages:" +
                  numDeletedPersonPages + ", numWidgetComments: " + numWidgetComments + ", numWidgetRatings: " +
                  numWidgetRatings + ", numWidgetsOwned: " + numWidgetsOwned);
@@ -322,4 +377,13 @@ public class DefaultUserService implements UserService {
         }
         return true;
     }
-}
\ No newline at end of file
+
+    /**
+     * Recounts the counters of the widgets on the pages of a user, if the counters are used
+     */
+    private void recountStatistics(Long userId) {
+        if (useStatisticsCounters) {
+            widgetStatsRepository.recount(widgetStatsRepository.getWidgetIdsByUser(userId));
+        }
+    }
+}
\ No newline at end of file
@@ -21,11 +21,16 @@ package org.apache.rave.portal.service.impl;
 
 import org.apache.rave.portal.model.WidgetRating;
 import org.apache.rave.portal.repository.WidgetRatingRepository;
+import org.apache.rave.portal.repository.WidgetStatsRepository;
 import org.apache.rave.portal.service.WidgetRatingService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Default implementation for {@link org.apache.rave.portal.service.WidgetRatingService}
  */
@@ -33,10 +38,16 @@ import org.springframework.transaction.annotation.Transactional;
 public class DefaultWidgetRatingService implements WidgetRatingService {
 
     private final WidgetRatingRepository repository;
+    private final WidgetStatsRepository widgetStatsRepository;
+    private final boolean useStatisticsCounters;
 
     @Autowired
-    public DefaultWidgetRatingService(WidgetRatingRepository repository) {
+    public DefaultWidgetRatingService(WidgetRatingRepository repository,
+                                      WidgetStatsRepository widgetStatsRepository,
+                                      @Value("${portal.widgetStatistics.useCounters}") boolean useStatisticsCounters) {
         this.repository = repository;
+        this.widgetStatsRepository = widgetStatsRepository;
+        this.useStatisticsCounters = useStatisticsCounters;
     }
 
     @Override
@@ -47,8 +58,10 @@ public class DefaultWidgetRatingService implements WidgetRatingService {
     @Override
     @Transactional
     public void updateScore(WidgetRating widgetRating, Integer score) {
+        Integer previousScore = widgetRating.getScore();
         widgetRating.setScore(score);
         repository.save(widgetRating);
+        adjustRatingCounts(widgetRating.getWidgetId(), previousScore, score);
     }
 
     @Override
@@ -57,6 +70,7 @@ public class DefaultWidgetRatingService implements WidgetRatingService {
         WidgetRating existingRating = getByWidgetIdAndUserId(rating.getWidgetId(), rating.getUserId());
         if (existingRating == null) {
             repository.save(rating);
+            adjustRatingCounts(rating.getWidgetId(), null, rating.getScore());
         } else {
             updateScore(existingRating, rating.getScore());
         }
@@ -70,11 +84,37 @@ public class DefaultWidgetRatingService implements WidgetRatingService {
             return;
         }
         repository.delete(widgetRating);
+        adjustRatingCounts(widgetId, widgetRating.getScore(), null);
     }
 
     @Override
     @Transactional
     public int removeAllWidgetRatings(Long userId) {
-        return repository.deleteAll(userId);
+        //the ratings are only read to adjust the counters
+        List<WidgetRating> ratings = useStatisticsCounters ? repository.getByUserId(userId) :
+                Collections.<WidgetRating>emptyList();
+        int count = repository.deleteAll(userId);
+        for (WidgetRating rating : ratings) {
+            adjustRatingCounts(rating.getWidgetId(), rating.getScore(), null);
+        }
+        return count;
+    }
+
+    /*
+      Helper methods
+    */
+    private void adjustRatingCounts(Long widgetId, Integer previousScore, Integer score) {
+        if (!useStatisticsCounters) {
+            return;
+        }
+        int likeDelta = count(WidgetRating.LIKE, score) - count(WidgetRating.LIKE, previousScore);
+        int dislikeDelta = count(WidgetRating.DISLIKE, score) - count(WidgetRating.DISLIKE, previousScore);
+        if (widgetId != null && (likeDelta != 0 || dislikeDelta != 0)) {
+            widgetStatsRepository.adjustRatingCounts(widgetId, likeDelta, dislikeDelta);
+        }
+    }
+
+    private static int count(Integer expected, Integer score) {
+        return expected.equals(score) ? 1 : 0;
     }
 }
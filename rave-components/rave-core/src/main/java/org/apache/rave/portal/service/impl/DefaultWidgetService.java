@@ -21,35 +21,57 @@ package org.apache.rave.portal.service.impl;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.rave.exception.DuplicateItemException;
-import org.apache.rave.portal.model.Category;
 import org.apache.rave.portal.model.User;
 import org.apache.rave.portal.model.Widget;
 import org.apache.rave.portal.model.WidgetStatus;
 import org.apache.rave.portal.model.util.SearchResult;
 import org.apache.rave.portal.model.util.WidgetStatistics;
-import org.apache.rave.portal.repository.CategoryRepository;
 import org.apache.rave.portal.repository.UserRepository;
 import org.apache.rave.portal.repository.WidgetRepository;
+import org.apache.rave.portal.repository.WidgetStatsRepository;
+import org.apache.rave.portal.search.SearchHits;
+import org.apache.rave.portal.search.WidgetSearchIndex;
 import org.apache.rave.portal.service.WidgetService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Service
 public class DefaultWidgetService implements WidgetService {
 
     private final WidgetRepository widgetRepository;
     private final UserRepository userRepository;
-    private final CategoryRepository categoryRepository;
+    private final WidgetSearchIndex widgetSearchIndex;
+    private final WidgetStatsRepository widgetStatsRepository;
+    private final boolean useStatisticsCounters;
+    private final CachedCount publishedWidgetCount;
 
     @Autowired
-    public DefaultWidgetService(WidgetRepository widgetRepository, UserRepository userRepository, CategoryRepository categoryRepository) {
+    public DefaultWidgetService(final WidgetRepository widgetRepository, UserRepository userRepository,
+                                WidgetSearchIndex widgetSearchIndex, WidgetStatsRepository widgetStatsRepository,
+                                @Value("${portal.widgetStatistics.useCounters}") boolean useStatisticsCounters,
+                                @Value("${portal.paging.countCacheMillis}") long countCacheMillis) {
         this.widgetRepository = widgetRepository;
         this.userRepository = userRepository;
-        this.categoryRepository = categoryRepository;
+        this.widgetSearchIndex = widgetSearchIndex;
+        this.widgetStatsRepository = widgetStatsRepository;
+        this.useStatisticsCounters = useStatisticsCounters;
+        this.publishedWidgetCount = new CachedCount(countCacheMillis) {
+            @Override
+            protected int count() {
+                return widgetRepository.getCountByStatus(WidgetStatus.PUBLISHED);
+            }
+        };
     }
 
     @Override
@@ -76,24 +98,17 @@ public class DefaultWidgetService implements WidgetService {
             return getLimitedListOfWidgets(offset, pageSize);
         }
 
-        final int count = widgetRepository.getCountFreeTextSearch(searchTerm);
-        final List<Widget> widgets = widgetRepository.getByFreeTextSearch(searchTerm,
-                offset, pageSize);
-
-        final SearchResult<Widget> searchResult = new SearchResult<Widget>(widgets, count);
-        searchResult.setOffset(offset);
-        searchResult.setPageSize(pageSize);
-        return searchResult;
+        return searchIndex(searchTerm, null, null, offset, pageSize);
     }
 
     @Override
     public Widget getWidget(long id) {
-        return widgetRepository.get(id);
+        return widgetRepository.getWidgetDetail(id);
     }
 
     @Override
     public SearchResult<Widget> getPublishedWidgets(int offset, int pageSize) {
-        final int count = widgetRepository.getCountByStatus(WidgetStatus.PUBLISHED);
+        final int count = publishedWidgetCount.get();
         final List<Widget> widgets = widgetRepository.getByStatus(WidgetStatus.PUBLISHED,
                 offset, pageSize);
         final SearchResult<Widget> searchResult = new SearchResult<Widget>(widgets, count);
@@ -102,6 +117,18 @@ public class DefaultWidgetService implements WidgetService {
         return searchResult;
     }
 
+    @Override
+    public SearchResult<Widget> getPublishedWidgetsAfter(boolean featured, String title, long widgetId,
+                                                         int offset, int pageSize) {
+        final int count = publishedWidgetCount.get();
+        final List<Widget> widgets = widgetRepository.getByStatusAfter(WidgetStatus.PUBLISHED,
+                featured, title, widgetId, pageSize);
+        final SearchResult<Widget> searchResult = new SearchResult<Widget>(widgets, count);
+        searchResult.setOffset(offset);
+        searchResult.setPageSize(pageSize);
+        return searchResult;
+    }
+
     @Override
     public SearchResult<Widget> getPublishedWidgetsByFreeTextSearch(String searchTerm,
                                                                     int offset, int pageSize) {
@@ -113,6 +140,10 @@ public class DefaultWidgetService implements WidgetService {
                                                            int offset, int pageSize) {
 
         final WidgetStatus status = StringUtils.isBlank(widgetStatus) ? null : WidgetStatus.get(widgetStatus);
+        if (StringUtils.isNotBlank(searchTerm)) {
+            return searchIndex(searchTerm, status, widgetType, offset, pageSize);
+        }
+
         final int count = widgetRepository.getCountByStatusAndTypeAndFreeText(status, widgetType, searchTerm);
         final List<Widget> widgets = widgetRepository.getByStatusAndTypeAndFreeTextSearch(status, widgetType,
                 searchTerm, offset, pageSize);
@@ -149,11 +180,20 @@ public class DefaultWidgetService implements WidgetService {
         if (getWidgetByUrl(widget.getUrl()) != null) {
             throw new DuplicateItemException("Trying to add an existing widget for url " + widget.getUrl());
         }
-        return widgetRepository.save(widget);
+        Widget saved = widgetRepository.save(widget);
+        widgetSearchIndex.reindex(Collections.singleton(saved.getEntityId()));
+        publishedWidgetCount.invalidate();
+        return saved;
     }
 
     @Override
     public WidgetStatistics getWidgetStatistics(long widgetId, long userId) {
+        if (useStatisticsCounters) {
+            WidgetStatistics statistics = widgetStatsRepository.getWidgetStatistics(widgetId, userId);
+            if (statistics != null) {
+                return statistics;
+            }
+        }
         return widgetRepository.getWidgetStatistics(widgetId, userId);
     }
 
@@ -162,10 +202,29 @@ public class DefaultWidgetService implements WidgetService {
         return widgetRepository.getAllWidgetStatistics(userId);
     }
 
+    @Override
+    public Map<Long, WidgetStatistics> getWidgetStatistics(Collection<Long> widgetIds, long userId) {
+        if (!useStatisticsCounters) {
+            return widgetRepository.getWidgetStatistics(widgetIds, userId);
+        }
+        Map<Long, WidgetStatistics> statistics = widgetStatsRepository.getWidgetStatistics(widgetIds, userId);
+        Set<Long> uncounted = new LinkedHashSet<Long>(widgetIds);
+        uncounted.removeAll(statistics.keySet());
+        uncounted.remove(null);
+        if (!uncounted.isEmpty()) {
+            //counters are only created once a widget is rated or placed on a page
+            statistics.putAll(widgetRepository.getWidgetStatistics(uncounted, userId));
+        }
+        return statistics;
+    }
+
     @Override
     @Transactional
     public void updateWidget(Widget widget) {
         widgetRepository.save(widget);
+        widgetSearchIndex.reindex(Collections.singleton(widget.getEntityId()));
+        //the status of the widget may have changed
+        publishedWidgetCount.invalidate();
     }
 
     @Override
@@ -181,10 +240,40 @@ public class DefaultWidgetService implements WidgetService {
 
     @Override
     public SearchResult<Widget> getWidgetsByCategory(long categoryId, int offset, int pageSize) {
-        List<Widget> widgets = categoryRepository.get(categoryId).getWidgets();
-        SearchResult<Widget> searchResult = new SearchResult<Widget>(widgets, widgets.size());
+        int count = widgetRepository.getCountByCategory(categoryId);
+        List<Widget> widgets = widgetRepository.getWidgetsByCategory(categoryId, offset, pageSize);
+        SearchResult<Widget> searchResult = new SearchResult<Widget>(widgets, count);
         searchResult.setOffset(offset);
         searchResult.setPageSize(pageSize);
         return searchResult;
     }
+
+    /*
+      Helper methods
+    */
+    private SearchResult<Widget> searchIndex(String searchTerm, WidgetStatus status, String widgetType,
+                                             int offset, int pageSize) {
+        final SearchHits hits = widgetSearchIndex.search(searchTerm, status, widgetType, offset, pageSize);
+        final SearchResult<Widget> searchResult = new SearchResult<Widget>(getInOrder(hits.getIds()),
+                hits.getTotalHits());
+        searchResult.setOffset(offset);
+        searchResult.setPageSize(pageSize);
+        return searchResult;
+    }
+
+    private List<Widget> getInOrder(List<Long> ids) {
+        final Map<Long, Widget> widgetsById = new HashMap<Long, Widget>();
+        for (Widget widget : widgetRepository.getByIds(ids)) {
+            widgetsById.put(widget.getEntityId(), widget);
+        }
+        final List<Widget> widgets = new ArrayList<Widget>(ids.size());
+        for (Long id : ids) {
+            //skip widgets deleted since the index was last updated
+            Widget widget = widgetsById.get(id);
+            if (widget != null) {
+                widgets.add(widget);
+            }
+        }
+        return widgets;
+    }
 }
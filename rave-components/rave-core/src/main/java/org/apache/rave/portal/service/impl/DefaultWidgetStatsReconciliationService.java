@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.portal.service.impl;
+
+import org.apache.rave.portal.repository.WidgetStatsRepository;
+import org.apache.rave.portal.service.WidgetStatsReconciliationService;
+import org.apache.rave.service.LockService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Default implementation for {@link org.apache.rave.portal.service.WidgetStatsReconciliationService}
+ * <p/>
+ * Widgets are recounted in batches of ascending id, each batch in its own transaction, so a reconciliation never
+ * holds locks on many counters at once.  The counters of a batch are locked while they are recounted, so the ratings
+ * saved meanwhile wait and then adjust the recounted values instead of being overwritten by them.  When the interval
+ * is greater than zero, a reconciliation runs on the task scheduler every interval.  The lock service keeps nodes
+ * sharing a database from reconciling at the same time.
+ */
+@Service
+@ManagedResource(description = "Widget statistics counters reconciliation")
+public class DefaultWidgetStatsReconciliationService implements WidgetStatsReconciliationService, InitializingBean {
+    private static Logger logger = LoggerFactory.getLogger(DefaultWidgetStatsReconciliationService.class);
+
+    private static final String LOCK_DISCRIMINATOR = "WidgetStats";
+    private static final String LOCK_ID = "reconcile";
+
+    private final WidgetStatsRepository widgetStatsRepository;
+    private final LockService lockService;
+    private final TaskScheduler taskScheduler;
+    private final long intervalMillis;
+    private final int batchSize;
+
+    private volatile int lastRepairCount;
+    private volatile long lastRunTime;
+
+    @Autowired
+    public DefaultWidgetStatsReconciliationService(WidgetStatsRepository widgetStatsRepository,
+                                                   @Qualifier("lockService") LockService lockService,
+                                                   TaskScheduler taskScheduler,
+                                                   @Value("${portal.widgetStatistics.reconcileIntervalMillis}")
+                                                   long intervalMillis,
+                                                   @Value("${portal.widgetStatistics.reconcileBatchSize}")
+                                                   int batchSize) {
+        this.widgetStatsRepository = widgetStatsRepository;
+        this.lockService = lockService;
+        this.taskScheduler = taskScheduler;
+        this.intervalMillis = intervalMillis;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (intervalMillis <= 0) {
+            return;
+        }
+        taskScheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                reconcile();
+            }
+        }, new Date(System.currentTimeMillis() + intervalMillis), intervalMillis);
+    }
+
+    @Override
+    @ManagedOperation(description = "Recounts the counters of all widgets and returns the number repaired")
+    public int reconcile() {
+        Lock lock = lockService.borrowLock(LOCK_DISCRIMINATOR, LOCK_ID);
+        try {
+            if (!lock.tryLock()) {
+                logger.debug("Widget statistics counters are being reconciled elsewhere");
+                return -1;
+            }
+            try {
+                int repaired = reconcileAll();
+                lastRepairCount = repaired;
+                lastRunTime = System.currentTimeMillis();
+                return repaired;
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            lockService.returnLock(lock);
+        }
+    }
+
+    @ManagedAttribute(description = "Number of widgets repaired by the last reconciliation")
+    public int getLastRepairCount() {
+        return lastRepairCount;
+    }
+
+    @ManagedAttribute(description = "Time the last reconciliation finished, in milliseconds since the epoch")
+    public long getLastRunTime() {
+        return lastRunTime;
+    }
+
+    /*
+      Helper methods
+    */
+    private int reconcileAll() {
+        int repaired = 0;
+        long afterWidgetId = 0;
+        List<Long> widgetIds = widgetStatsRepository.getWidgetIds(afterWidgetId, batchSize);
+        while (!widgetIds.isEmpty()) {
+            repaired += widgetStatsRepository.recount(widgetIds);
+            afterWidgetId = widgetIds.get(widgetIds.size() - 1);
+            widgetIds = widgetStatsRepository.getWidgetIds(afterWidgetId, batchSize);
+        }
+        repaired += widgetStatsRepository.deleteOrphans();
+        if (repaired > 0) {
+            logger.info("Repaired the statistics counters of {} widgets", repaired);
+        }
+        return repaired;
+    }
+}
@@ -17,21 +17,26 @@ package org.apache.rave.portal.service.impl;
 
 import org.apache.rave.portal.model.WidgetTag;
 import org.apache.rave.portal.repository.WidgetTagRepository;
+import org.apache.rave.portal.search.WidgetSearchIndex;
 import org.apache.rave.portal.service.WidgetTagService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collections;
+
 
 @Service
 public class DefaultWidgetTagService implements WidgetTagService {
 
     private final WidgetTagRepository widgetTagRepository;
+    private final WidgetSearchIndex widgetSearchIndex;
 
     @Autowired
 
-    public DefaultWidgetTagService(WidgetTagRepository widgetTagRepository) {
+    public DefaultWidgetTagService(WidgetTagRepository widgetTagRepository, WidgetSearchIndex widgetSearchIndex) {
         this.widgetTagRepository = widgetTagRepository;
+        this.widgetSearchIndex = widgetSearchIndex;
     }
 
     @Override
@@ -44,6 +49,7 @@ public class DefaultWidgetTagService implements WidgetTagService {
     @Transactional
     public void saveWidgetTag(WidgetTag widgetTag) {
         widgetTagRepository.save(widgetTag);
+        widgetSearchIndex.reindex(Collections.singleton(widgetTag.getWidgetId()));
     }
 
     @Override
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.portal.service.impl;
+
+import org.apache.rave.portal.model.Authority;
+import org.apache.rave.portal.model.NewUser;
+import org.apache.rave.portal.model.PageLayout;
+import org.apache.rave.portal.model.User;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates the account of a {@link NewUser}, for both the sign up form and the user import
+ */
+final class NewUserFactory {
+
+    private NewUserFactory() {
+    }
+
+    /**
+     * @param newUser        the properties of the account
+     * @param hashedPassword the hashed password of the account
+     * @param pageLayout     the default page layout of the account, or null for none
+     * @param authorities    the authorities granted to the account
+     * @return an enabled account that has not been saved yet
+     */
+    static User createUser(NewUser newUser, String hashedPassword, PageLayout pageLayout,
+                           List<Authority> authorities) {
+        User user = new User();
+        //set the required fields
+        user.setUsername(newUser.getUsername());
+        user.setEmail(newUser.getEmail());
+        user.setPassword(hashedPassword);
+
+        user.setExpired(false);
+        user.setLocked(false);
+        user.setEnabled(true);
+        user.setDefaultPageLayout(pageLayout);
+        user.setAuthorities(new ArrayList<Authority>(authorities));
+
+        //set the optional fields
+        user.setGivenName(newUser.getFirstName());
+        user.setFamilyName(newUser.getLastName());
+        user.setDisplayName(newUser.getDisplayName());
+        user.setStatus(newUser.getStatus());
+        user.setAboutMe(newUser.getAboutMe());
+        return user;
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.portal.service.impl;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.rave.portal.model.NewUser;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.security.crypto.codec.Base64;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads the users to import from CSV or LDIF input
+ */
+final class UserImportReader {
+    private static final Set<String> CSV_COLUMNS = new HashSet<String>(Arrays.asList("username", "password", "email",
+            "firstName", "lastName", "displayName", "pageLayout", "status", "aboutMe"));
+    private static final Map<String, String> LDIF_ATTRIBUTES = new HashMap<String, String>();
+
+    static {
+        LDIF_ATTRIBUTES.put("uid", "username");
+        LDIF_ATTRIBUTES.put("userpassword", "password");
+        LDIF_ATTRIBUTES.put("mail", "email");
+        LDIF_ATTRIBUTES.put("givenname", "firstName");
+        LDIF_ATTRIBUTES.put("sn", "lastName");
+        LDIF_ATTRIBUTES.put("displayname", "displayName");
+    }
+
+    private UserImportReader() {
+    }
+
+    /**
+     * Reads one user per line after a header line naming the {@link NewUser} property of each column.  Values
+     * containing commas or quotes are quoted, with quotes doubled.
+     *
+     * @param input the comma separated values
+     * @return the users, in the order of the input
+     * @throws IOException if the input cannot be read
+     * @throws IllegalArgumentException if the header names an unknown column
+     */
+    static List<NewUser> readCsv(Reader input) throws IOException {
+        BufferedReader reader = new BufferedReader(input);
+        List<NewUser> users = new ArrayList<NewUser>();
+        String line = reader.readLine();
+        if (line == null) {
+            return users;
+        }
+        List<String> columns = splitCsv(line);
+        for (String column : columns) {
+            if (!CSV_COLUMNS.contains(column.trim())) {
+                throw new IllegalArgumentException("Unknown column " + column + ", expected any of " + CSV_COLUMNS);
+            }
+        }
+        while ((line = reader.readLine()) != null) {
+            if (StringUtils.isBlank(line)) {
+                continue;
+            }
+            List<String> values = splitCsv(line);
+            BeanWrapper user = new BeanWrapperImpl(new NewUser());
+            //a short row leaves the missing properties empty, so it is reported by the validation of the import
+            for (int i = 0; i < columns.size() && i < values.size(); i++) {
+                user.setPropertyValue(columns.get(i).trim(), StringUtils.trimToNull(values.get(i)));
+            }
+            users.add((NewUser) user.getWrappedInstance());
+        }
+        return users;
+    }
+
+    /**
+     * Reads the entries with a uid as users, ignoring the other entries such as groups and organizational units.
+     * Passwords must be in clear text, as the portal hashes them itself.
+     *
+     * @param input the LDIF entries
+     * @return the users, in the order of the input
+     * @throws IOException if the input cannot be read
+     */
+    static List<NewUser> readLdif(Reader input) throws IOException {
+        BufferedReader reader = new BufferedReader(input);
+        List<NewUser> users = new ArrayList<NewUser>();
+        Map<String, String> entry = new HashMap<String, String>();
+        String attribute = null;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith("#")) {
+                continue;
+            }
+            if (line.length() == 0) {
+                addLdifUser(entry, users);
+                entry.clear();
+                attribute = null;
+            } else if (line.startsWith(" ") && attribute != null) {
+                //a folded line continues the value of the previous line
+                entry.put(attribute, entry.get(attribute) + line.substring(1));
+            } else {
+                int colon = line.indexOf(':');
+                if (colon < 1) {
+                    continue;
+                }
+                attribute = line.substring(0, colon).toLowerCase();
+                if (!entry.containsKey(attribute)) {
+                    entry.put(attribute, line.substring(colon + 1));
+                } else {
+                    //only the first value of an attribute is used, later ones are not continued either
+                    attribute = null;
+                }
+            }
+        }
+        addLdifUser(entry, users);
+        return users;
+    }
+
+    private static void addLdifUser(Map<String, String> entry, List<NewUser> users)
+            throws UnsupportedEncodingException {
+        if (!entry.containsKey("uid")) {
+            return;
+        }
+        BeanWrapper user = new BeanWrapperImpl(new NewUser());
+        for (Map.Entry<String, String> attribute : LDIF_ATTRIBUTES.entrySet()) {
+            String value = entry.get(attribute.getKey());
+            if (value != null) {
+                user.setPropertyValue(attribute.getValue(), StringUtils.trimToNull(decodeLdifValue(value)));
+            }
+        }
+        if (user.getPropertyValue("displayName") == null && entry.containsKey("cn")) {
+            user.setPropertyValue("displayName", StringUtils.trimToNull(decodeLdifValue(entry.get("cn"))));
+        }
+        users.add((NewUser) user.getWrappedInstance());
+    }
+
+    // "attribute:: value" holds the value in base64
+    private static String decodeLdifValue(String value) throws UnsupportedEncodingException {
+        if (value.startsWith(":")) {
+            return new String(Base64.decode(value.substring(1).trim().getBytes("UTF-8")), "UTF-8");
+        }
+        return value;
+    }
+
+    private static List<String> splitCsv(String line) {
+        List<String> values = new ArrayList<String>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString());
+        return values;
+    }
+}
@@ -21,7 +21,18 @@ package org.apache.rave.portal.web.renderer;
 
 import org.apache.rave.portal.model.RegionWidget;
 
+import java.util.List;
+
 /**
  * Scoped renderer that provides additional RegionWidget related rendering operations
  */
-public interface RegionWidgetRenderer extends Renderer<RegionWidget> {}
+public interface RegionWidgetRenderer extends Renderer<RegionWidget> {
+
+    /**
+     * Called with all of the widgets of the supported type on a page before any of them is rendered, so that data
+     * needed to render them can be retrieved in bulk rather than one widget at a time
+     *
+     * @param items the RegionWidgets that are about to be rendered
+     */
+    void prepareForRender(List<RegionWidget> items);
+}
@@ -19,6 +19,7 @@
 
 package org.apache.rave.portal.web.renderer;
 
+import org.apache.rave.portal.model.Page;
 import org.apache.rave.portal.model.RegionWidget;
 import org.apache.rave.portal.web.renderer.model.RenderContext;
 
@@ -44,4 +45,21 @@ public interface RenderService {
      */
     String render(RegionWidget widget, RenderContext context);
 
+    /**
+     * Gives the renderers a chance to retrieve what they need for all of the widgets on the
+     * {@link org.apache.rave.portal.model.Page} at once, before the widgets are rendered one by one
+     *
+     * @param page the page about to be rendered
+     */
+    void prepareForRender(Page page);
+
+    /**
+     * Renders all of the widgets on the {@link org.apache.rave.portal.model.Page} ahead of the view, so that
+     * subsequent calls to {@link #render(RegionWidget, RenderContext)} for those widgets return the precomputed output
+     *
+     * @param page the page about to be rendered
+     * @param context the context under which the page will be rendered
+     */
+    void preRender(Page page, RenderContext context);
+
 }
@@ -37,6 +37,16 @@ public interface ScriptManager {
      */
     List<String> getScriptBlocks(ScriptLocation location, RenderContext context);
 
+    /**
+     * Retrieves only the script blocks registered for the location under the given scope in order of their registration
+     *
+     * @param location where the script blocks are intended to be rendered
+     * @param scope the scope the script blocks were registered under
+     * @param context the context under which to operate
+     * @return a list of strings representing the script blocks for the location and scope
+     */
+    List<String> getScriptBlocks(ScriptLocation location, RenderScope scope, RenderContext context);
+
     /**
      * Registers a global script block for inclusion in every page
      * @param script the string representation of the script block
@@ -20,29 +20,71 @@
 package org.apache.rave.portal.web.renderer.impl;
 
 import org.apache.rave.exception.NotSupportedException;
+import org.apache.rave.portal.model.Page;
+import org.apache.rave.portal.model.Region;
 import org.apache.rave.portal.model.RegionWidget;
+import org.apache.rave.portal.model.RegionWidgetPreference;
+import org.apache.rave.portal.model.User;
+import org.apache.rave.portal.model.Widget;
 import org.apache.rave.portal.web.renderer.model.RenderContext;
 import org.apache.rave.portal.web.renderer.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * Default implementation of {@link RenderService}
  * <p/>
  * Retrieves a list of all {@link org.apache.rave.portal.web.renderer.Renderer} beans for supported operations
  * and delegates rendering operations to them
+ * <p/>
+ * When configured with a pre-render executor and timeout, the widgets of a page can be rendered concurrently ahead of
+ * the view with {@link #preRender(Page, RenderContext)}.  Each widget is rendered from a detached copy against its own
+ * RenderContext and the markup and request scoped script blocks it produced are replayed into the request's
+ * RenderContext when the view renders that widget, so scripts keep the order of the widgets on the page.
  */
 @Service
 public class DefaultRenderService implements RenderService {
+    private static Logger logger = LoggerFactory.getLogger(DefaultRenderService.class);
+
+    private static final String PRE_RENDERED_KEY = "_PRE_RENDERED_WIDGETS";
+
+    // Script block for a widget that did not render in time
+    private static final String TIMED_OUT_SCRIPT_BLOCK =
+            "<script>rave.registerWidget(widgetsByRegionIdMap, %1$s, {type: 'DISABLED'," +
+            " regionWidgetId: %2$s," +
+            " disabledMessage: 'This widget is currently unavailable. Please refresh the page to try again.'," +
+            " collapsed: %3$s," +
+            " widgetId: %4$s});</script>";
 
     private final Map<String, RegionWidgetRenderer> supportedWidgets;
+    private final ScriptManager scriptManager;
+    private final AsyncTaskExecutor preRenderExecutor;
+    private final long preRenderTimeoutMillis;
 
-    @Autowired
     public DefaultRenderService(List<RegionWidgetRenderer> widgetRenderers) {
+        this(widgetRenderers, null, null, 0);
+    }
+
+    @Autowired
+    public DefaultRenderService(List<RegionWidgetRenderer> widgetRenderers,
+                                ScriptManager scriptManager,
+                                @Qualifier("preRenderExecutor") AsyncTaskExecutor preRenderExecutor,
+                                @Value("${portal.render.pre_render_timeout_ms}") long preRenderTimeoutMillis) {
         this.supportedWidgets = new HashMap<String, RegionWidgetRenderer>();
         mapRenderersByType(this.supportedWidgets, widgetRenderers);
+        this.scriptManager = scriptManager;
+        this.preRenderTimeoutMillis = preRenderTimeoutMillis;
+        this.preRenderExecutor = preRenderTimeoutMillis > 0 && scriptManager != null ? preRenderExecutor : null;
     }
 
     @Override
@@ -52,7 +94,7 @@ public class DefaultRenderService implements RenderService {
 
     /**
      * Renders the given widget iff there is a {@link org.apache.rave.portal.web.renderer.RegionWidgetRenderer } for the
-     * widget type
+     * widget type.  Widgets rendered ahead of time by {@link #preRender(Page, RenderContext)} are not rendered again.
      *
      * @param widget widget to renderer
      * @param context
@@ -61,6 +103,10 @@ public class DefaultRenderService implements RenderService {
      */
     @Override
     public String render(RegionWidget widget, RenderContext context) {
+        PreRenderedWidget preRendered = takePreRendered(widget, context);
+        if (preRendered != null) {
+            return preRendered.replay(scriptManager, context);
+        }
         RegionWidgetRenderer renderer = supportedWidgets.get(widget.getWidget().getType());
         if(renderer == null) {
             throw new NotSupportedException(widget.getWidget().getType() + " is not supported");
@@ -68,9 +114,240 @@ public class DefaultRenderService implements RenderService {
         return renderer.render(widget, context);
     }
 
+    /**
+     * Hands each {@link org.apache.rave.portal.web.renderer.RegionWidgetRenderer} all of the widgets of its type on
+     * the page.  Widgets whose rendering is disabled are left out since they will not be rendered.  Failures are
+     * logged and otherwise ignored as each widget can still be rendered on its own.
+     *
+     * @param page the page about to be rendered
+     */
+    @Override
+    public void prepareForRender(Page page) {
+        for (Map.Entry<String, List<RegionWidget>> entry : getRenderableWidgetsByType(page).entrySet()) {
+            try {
+                supportedWidgets.get(entry.getKey()).prepareForRender(entry.getValue());
+            } catch (RuntimeException e) {
+                logger.warn("Unable to prepare " + entry.getKey() + " widgets for rendering", e);
+            }
+        }
+    }
+
+    /**
+     * Prepares the page and then renders all of its widgets concurrently.  Each widget gets the configured timeout to
+     * render once it has started, and a widget still waiting for a pre-render thread when the widgets ahead of it are
+     * done gets the timeout to start.  A widget that misses either is cancelled and replaced by a disabled widget
+     * script block.  Widgets that fail to render are left to be rendered, and to fail, in the view.
+     *
+     * @param page the page about to be rendered
+     * @param context the context under which the page will be rendered
+     */
+    @Override
+    public void preRender(Page page, RenderContext context) {
+        prepareForRender(page);
+        if (preRenderExecutor == null || context == null || context.getProperties() == null) {
+            return;
+        }
+
+        final SecurityContext securityContext = SecurityContextHolder.getContext();
+        Map<RegionWidget, PreRenderTask> tasks = new LinkedHashMap<RegionWidget, PreRenderTask>();
+        for (List<RegionWidget> regionWidgets : getRenderableWidgetsByType(page).values()) {
+            for (RegionWidget regionWidget : regionWidgets) {
+                if (regionWidget.getEntityId() == null) {
+                    continue;
+                }
+                //the workers render a copy so they never touch the request's EntityManager, even once abandoned
+                PreRenderTask task = new PreRenderTask(detachedCopy(regionWidget), context.getUser(), securityContext);
+                try {
+                    task.future = preRenderExecutor.submit(task);
+                    tasks.put(regionWidget, task);
+                } catch (RejectedExecutionException e) {
+                    logger.debug("Pre-render queue is full, widget {} will be rendered by the view", regionWidget.getEntityId());
+                }
+            }
+        }
+
+        Map<Long, PreRenderedWidget> preRendered = new HashMap<Long, PreRenderedWidget>();
+        for (Map.Entry<RegionWidget, PreRenderTask> entry : tasks.entrySet()) {
+            RegionWidget regionWidget = entry.getKey();
+            try {
+                preRendered.put(regionWidget.getEntityId(), entry.getValue().get(preRenderTimeoutMillis));
+            } catch (TimeoutException e) {
+                entry.getValue().future.cancel(true);
+                logger.warn("Widget {} did not render within {}ms", regionWidget.getEntityId(), preRenderTimeoutMillis);
+                preRendered.put(regionWidget.getEntityId(), timedOut(regionWidget));
+            } catch (ExecutionException e) {
+                logger.debug("Pre-rendering widget " + regionWidget.getEntityId() + " failed", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        getProperties(context).put(PRE_RENDERED_KEY, preRendered);
+    }
+
+    /*
+      Helper methods
+    */
+    private Map<String, List<RegionWidget>> getRenderableWidgetsByType(Page page) {
+        Map<String, List<RegionWidget>> widgetsByType = new HashMap<String, List<RegionWidget>>();
+        if (page.getRegions() == null) {
+            return widgetsByType;
+        }
+        for (Region region : page.getRegions()) {
+            if (region.getRegionWidgets() == null) {
+                continue;
+            }
+            for (RegionWidget regionWidget : region.getRegionWidgets()) {
+                String type = regionWidget.getWidget().getType();
+                if (regionWidget.getWidget().isDisableRendering() || !supportedWidgets.containsKey(type)) {
+                    continue;
+                }
+                if (!widgetsByType.containsKey(type)) {
+                    widgetsByType.put(type, new ArrayList<RegionWidget>());
+                }
+                widgetsByType.get(type).add(regionWidget);
+            }
+        }
+        return widgetsByType;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static PreRenderedWidget takePreRendered(RegionWidget widget, RenderContext context) {
+        if (context == null || context.getProperties() == null || widget.getEntityId() == null) {
+            return null;
+        }
+        Map<Long, PreRenderedWidget> preRendered = (Map<Long, PreRenderedWidget>) context.getProperties().get(PRE_RENDERED_KEY);
+        return preRendered == null ? null : preRendered.remove(widget.getEntityId());
+    }
+
+    private static PreRenderedWidget timedOut(RegionWidget regionWidget) {
+        PreRenderedWidget preRendered = new PreRenderedWidget("");
+        preRendered.scripts.put(ScriptLocation.AFTER_RAVE, Arrays.asList(String.format(TIMED_OUT_SCRIPT_BLOCK,
+                regionWidget.getRegion().getEntityId(),
+                regionWidget.getEntityId(),
+                regionWidget.isCollapsed(),
+                regionWidget.getWidget().getEntityId())));
+        return preRendered;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Object, Object> getProperties(RenderContext context) {
+        return context.getProperties();
+    }
+
+    /**
+     * Copies what the renderers read of a widget out of the persistence context, leaving out the entities and
+     * collections the renderers do not use
+     */
+    private static RegionWidget detachedCopy(RegionWidget regionWidget) {
+        Widget widget = regionWidget.getWidget();
+        Widget widgetCopy = new Widget(widget.getEntityId(), widget.getUrl());
+        widgetCopy.setType(widget.getType());
+        widgetCopy.setTitle(widget.getTitle());
+        widgetCopy.setTitleUrl(widget.getTitleUrl());
+        widgetCopy.setThumbnailUrl(widget.getThumbnailUrl());
+        widgetCopy.setScreenshotUrl(widget.getScreenshotUrl());
+        widgetCopy.setAuthor(widget.getAuthor());
+        widgetCopy.setAuthorEmail(widget.getAuthorEmail());
+        widgetCopy.setDescription(widget.getDescription());
+        widgetCopy.setWidgetStatus(widget.getWidgetStatus());
+        widgetCopy.setDisableRendering(widget.isDisableRendering());
+        widgetCopy.setDisableRenderingMessage(widget.getDisableRenderingMessage());
+        widgetCopy.setFeatured(widget.isFeatured());
+
+        Region region = regionWidget.getRegion();
+        RegionWidget copy = new RegionWidget(regionWidget.getEntityId(), widgetCopy,
+                region == null ? null : new Region(region.getEntityId()), regionWidget.getRenderOrder());
+        copy.setRenderPosition(regionWidget.getRenderPosition());
+        copy.setCollapsed(regionWidget.isCollapsed());
+        copy.setLocked(regionWidget.isLocked());
+        if (regionWidget.getPreferences() != null) {
+            List<RegionWidgetPreference> preferences = new ArrayList<RegionWidgetPreference>();
+            for (RegionWidgetPreference preference : regionWidget.getPreferences()) {
+                preferences.add(new RegionWidgetPreference(preference.getEntityId(), preference.getRegionWidgetId(),
+                        preference.getName(), preference.getValue()));
+            }
+            copy.setPreferences(preferences);
+        }
+        return copy;
+    }
+
     private static <T extends Renderer> void mapRenderersByType(Map<String, T> map, List<T> renderers) {
         for(T renderer : renderers) {
             map.put(renderer.getSupportedContext(), renderer);
         }
     }
+
+    /**
+     * Renders a single widget on a pre-render thread against a RenderContext of its own
+     */
+    private class PreRenderTask implements Callable<PreRenderedWidget> {
+        private final RegionWidget regionWidget;
+        private final User user;
+        private final SecurityContext securityContext;
+        private final CountDownLatch started = new CountDownLatch(1);
+        private volatile long startedAt;
+        private Future<PreRenderedWidget> future;
+
+        private PreRenderTask(RegionWidget regionWidget, User user, SecurityContext securityContext) {
+            this.regionWidget = regionWidget;
+            this.user = user;
+            this.securityContext = securityContext;
+        }
+
+        /**
+         * Waits for the widget to start rendering and then for it to render, at most the timeout each
+         */
+        private PreRenderedWidget get(long timeoutMillis) throws InterruptedException, ExecutionException, TimeoutException {
+            if (!started.await(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new TimeoutException();
+            }
+            return future.get(Math.max(0, startedAt + timeoutMillis - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public PreRenderedWidget call() {
+            startedAt = System.currentTimeMillis();
+            started.countDown();
+            SecurityContextHolder.setContext(securityContext);
+            try {
+                RenderContext widgetContext = new RenderContext();
+                widgetContext.setUser(user);
+                widgetContext.setProperties(new HashMap());
+                String markup = supportedWidgets.get(regionWidget.getWidget().getType()).render(regionWidget, widgetContext);
+
+                PreRenderedWidget preRendered = new PreRenderedWidget(markup);
+                for (ScriptLocation location : ScriptLocation.values()) {
+                    List<String> scripts = scriptManager.getScriptBlocks(location, RenderScope.CURRENT_REQUEST, widgetContext);
+                    if (!scripts.isEmpty()) {
+                        preRendered.scripts.put(location, scripts);
+                    }
+                }
+                return preRendered;
+            } finally {
+                SecurityContextHolder.clearContext();
+            }
+        }
+    }
+
+    /**
+     * The markup and request scoped script blocks a widget rendered to
+     */
+    private static class PreRenderedWidget {
+        private final String markup;
+        private final Map<ScriptLocation, List<String>> scripts = new EnumMap<ScriptLocation, List<String>>(ScriptLocation.class);
+
+        private PreRenderedWidget(String markup) {
+            this.markup = markup;
+        }
+
+        private String replay(ScriptManager scriptManager, RenderContext context) {
+            for (Map.Entry<ScriptLocation, List<String>> entry : scripts.entrySet()) {
+                for (String script : entry.getValue()) {
+                    scriptManager.registerScriptBlock(script, entry.getKey(), RenderScope.CURRENT_REQUEST, context);
+                }
+            }
+            return markup;
+        }
+    }
 }
@@ -51,6 +51,22 @@ public class DefaultScriptManager implements ScriptManager{
         return combined;
     }
 
+    @Override
+    public List<String> getScriptBlocks(ScriptLocation location, RenderScope scope, RenderContext context) {
+        List<String> scripts = new LinkedList<String>();
+        switch(scope) {
+            case GLOBAL:
+                getAndAdd(location, scripts, scriptRenderers);
+                break;
+            case CURRENT_REQUEST:
+                getAndAdd(location, scripts, getOrCreateScriptMap(context));
+                break;
+            default:
+                throw new NotSupportedException("The scope, " + scope + " , is not supported by the script manager");
+        }
+        return scripts;
+    }
+
     @Override
     public void registerScriptBlock(String script, ScriptLocation location) {
         addScriptToMap(script, location, scriptRenderers);
@@ -0,0 +1,34 @@
+ -- Licensed to the Apache Software Foundation (ASF) under one
+ -- or more contributor license agreements.  See the NOTICE file
+ -- distributed with this work for additional information
+ -- regarding copyright ownership.  The ASF licenses this file
+ -- to you under the Apache License, Version 2.0 (the
+ -- "License"); you may not use this file except in compliance
+ -- with the License.  You may obtain a copy of the License at
+
+ --   http://www.apache.org/licenses/LICENSE-2.0
+
+ -- Unless required by applicable law or agreed to in writing,
+ -- software distributed under the License is distributed on an
+ -- "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ -- KIND, either express or implied.  See the License for the
+ -- specific language governing permissions and limitations
+ -- under the License.
+
+-- Secondary indexes for the named queries run on every page view, OpenJPA only creates the primary keys, unique
+-- constraints and foreign keys of the mappings
+
+-- Page.GET_BY_USER_ID_AND_PAGE_TYPE, ordered by render sequence
+CREATE INDEX idx_page_owner_type ON page (owner_id, page_type, render_sequence);
+
+-- WidgetRating.WIDGET_RATING_BY_WIDGET_AND_USER, WIDGET_USER_RATING and the like and dislike counts of a widget
+CREATE INDEX idx_widget_rating_widget_user ON widget_rating (widget_id, user_id, score);
+
+-- WidgetRating.WIDGET_ALL_USER_RATINGS and DELETE_ALL_BY_USER
+CREATE INDEX idx_widget_rating_user ON widget_rating (user_id);
+
+-- WidgetTag.FIND_BY_WIDGET_AND_KEYWORD
+CREATE INDEX idx_widget_tag_widget_tag ON widget_tag (widget_id, tag_id);
+
+-- Widget.WIDGET_GET_BY_STATUS and the keyset paging of the widget store, in the order of Widget.ORDER_BY_TITLE_ASC
+CREATE INDEX idx_widget_status_title ON widget (widget_status, featured, title, entity_id);
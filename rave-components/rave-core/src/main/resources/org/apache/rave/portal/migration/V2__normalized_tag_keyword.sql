@@ -0,0 +1,22 @@
+ -- Licensed to the Apache Software Foundation (ASF) under one
+ -- or more contributor license agreements.  See the NOTICE file
+ -- distributed with this work for additional information
+ -- regarding copyright ownership.  The ASF licenses this file
+ -- to you under the Apache License, Version 2.0 (the
+ -- "License"); you may not use this file except in compliance
+ -- with the License.  You may obtain a copy of the License at
+
+ --   http://www.apache.org/licenses/LICENSE-2.0
+
+ -- Unless required by applicable law or agreed to in writing,
+ -- software distributed under the License is distributed on an
+ -- "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ -- KIND, either express or implied.  See the License for the
+ -- specific language governing permissions and limitations
+ -- under the License.
+
+-- Tags are looked up by the normalized_keyword column instead of UPPER(keyword), which no index can serve.  The
+-- column is added by OpenJPA, the existing tags are converted here.
+UPDATE tag SET normalized_keyword = LOWER(TRIM(keyword)) WHERE normalized_keyword IS NULL;
+
+CREATE INDEX idx_tag_normalized_keyword ON tag (normalized_keyword);
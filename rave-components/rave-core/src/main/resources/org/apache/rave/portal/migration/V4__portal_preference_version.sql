@@ -0,0 +1,23 @@
+ -- Licensed to the Apache Software Foundation (ASF) under one
+ -- or more contributor license agreements.  See the NOTICE file
+ -- distributed with this work for additional information
+ -- regarding copyright ownership.  The ASF licenses this file
+ -- to you under the Apache License, Version 2.0 (the
+ -- "License"); you may not use this file except in compliance
+ -- with the License.  You may obtain a copy of the License at
+
+ --   http://www.apache.org/licenses/LICENSE-2.0
+
+ -- Unless required by applicable law or agreed to in writing,
+ -- software distributed under the License is distributed on an
+ -- "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ -- KIND, either express or implied.  See the License for the
+ -- specific language governing permissions and limitations
+ -- under the License.
+
+
+-- The portal preferences of every node are reloaded when this counter changes, see JpaPortalPreferenceRepository.
+-- Saving or deleting a preference increments it in the same transaction.  The counter has a table of its own so
+-- incrementing it does not lock RAVE_PORTAL_SEQUENCES, from which other transactions allocate entity ids.
+CREATE TABLE portal_preference_version (version_count BIGINT NOT NULL);
+INSERT INTO portal_preference_version (version_count) VALUES (0);
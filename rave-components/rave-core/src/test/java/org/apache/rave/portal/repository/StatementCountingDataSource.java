@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.rave.portal.repository;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * DataSource used by the repository tests that counts the SQL statements prepared on its connections, so tests
+ * can assert how many round trips an operation makes to the database.  The SQL of the prepared statements is kept
+ * until the count is reset.
+ */
+public class StatementCountingDataSource extends DelegatingDataSource {
+
+    private final AtomicInteger statementCount = new AtomicInteger();
+    private final List<String> preparedSql = Collections.synchronizedList(new ArrayList<String>());
+
+    public StatementCountingDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return countingProxy(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return countingProxy(super.getConnection(username, password));
+    }
+
+    public int getStatementCount() {
+        return statementCount.get();
+    }
+
+    /**
+     * @return the SQL of the statements prepared since the count was reset, in the order they were prepared
+     */
+    public List<String> getPreparedSql() {
+        synchronized (preparedSql) {
+            return new ArrayList<String>(preparedSql);
+        }
+    }
+
+    public void resetStatementCount() {
+        statementCount.set(0);
+        preparedSql.clear();
+    }
+
+    private Connection countingProxy(final Connection connection) {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        String name = method.getName();
+                        if (name.equals("prepareStatement") || name.equals("prepareCall") || name.equals("createStatement")) {
+                            statementCount.incrementAndGet();
+                        }
+                        if (name.equals("prepareStatement")) {
+                            preparedSql.add((String) args[0]);
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getTargetException();
+                        }
+                    }
+                });
+    }
+}
@@ -21,9 +21,14 @@ package org.apache.rave.portal.repository.impl;
 import org.apache.rave.portal.model.Page;
 import org.apache.rave.portal.model.PageTemplate;
 import org.apache.rave.portal.model.PageType;
+import org.apache.rave.portal.model.Region;
+import org.apache.rave.portal.model.RegionWidget;
+import org.apache.rave.portal.model.RegionWidgetPreference;
 import org.apache.rave.portal.model.User;
+import org.apache.rave.portal.model.Widget;
 import org.apache.rave.portal.repository.PageRepository;
 import org.apache.rave.portal.repository.PageTemplateRepository;
+import org.apache.rave.portal.repository.StatementCountingDataSource;
 import org.apache.rave.portal.repository.UserRepository;
 import org.junit.Before;
 import org.junit.Test;
@@ -36,6 +41,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.hamcrest.CoreMatchers.*;
@@ -50,6 +56,10 @@ public class JpaPageRepositoryTest {
     private static final Long CREATED_USER_ID = 6L;
     private static final Long INVALID_USER = -1L;
     private static final String WIDGET_URL = "http://www.widget-dico.com/wikipedia/google/wikipedia.xml";
+    private static final String WIDGET_DESCRIPTION = "A Wikipedia Search and Go widget. Language choice.";
+    //the statements of the page view of USER_ID: the widgets, the owners of the widgets and the pages, the pages
+    //with their sub pages, regions, region widgets and preferences, and the regions of the sub pages
+    private static final int MAX_PAGE_VIEW_STATEMENTS = 23;
     private static final Long USER_PAGE_ID = 1L;
     private static final Long PERSON_PROFILE_PAGE_ID = 3L;
     private static final Long SUB_PAGE_ID = 4L;
@@ -69,6 +79,9 @@ public class JpaPageRepositoryTest {
     @Autowired
     private PageTemplateRepository pageTemplateRepository;
 
+    @Autowired
+    private StatementCountingDataSource dataSource;
+
     private User user;
     private PageTemplate defaultPageTemplate;
     
@@ -96,6 +109,48 @@ public class JpaPageRepositoryTest {
         }
     }
 
+    @Test
+    public void getAllPagesForRendering_validUser_graphLoaded() {
+        manager.clear();
+        List<Page> pages = repository.getAllPagesForRendering(USER_ID, PageType.USER);
+        //the views render and serialize the pages once they are detached
+        manager.clear();
+        assertThat(pages.size(), equalTo(2));
+        assertThat(pages.get(0).getRegions().size(), equalTo(2));
+        RegionWidget regionWidget = pages.get(0).getRegions().get(0).getRegionWidgets().get(0);
+        assertThat(regionWidget.getWidget().getUrl(), equalTo(WIDGET_URL));
+        assertThat(regionWidget.getWidget().getDescription(), equalTo(WIDGET_DESCRIPTION));
+        assertThat(regionWidget.getPreferences(), is(notNullValue()));
+    }
+
+    @Test
+    @Transactional(readOnly = false)
+    @Rollback(true)
+    public void getAllPagesForRendering_boundedStatementCount() {
+        int statements = countStatementsOfPageView(USER_ID);
+        assertTrue("statements of a page view: " + statements, statements <= MAX_PAGE_VIEW_STATEMENTS);
+
+        Region region = repository.getAllPages(USER_ID, PageType.USER).get(0).getRegions().get(0);
+        List<RegionWidget> added = new ArrayList<RegionWidget>();
+        for (long widgetId = 3L; widgetId <= 6L; widgetId++) {
+            RegionWidget regionWidget = new RegionWidget(null, manager.find(Widget.class, widgetId), region,
+                    region.getRegionWidgets().size());
+            manager.persist(regionWidget);
+            region.getRegionWidgets().add(regionWidget);
+            added.add(regionWidget);
+        }
+        manager.flush();
+        //the page view below reads everything from a cleared manager, so the preferences are only persisted
+        for (RegionWidget regionWidget : added) {
+            manager.persist(new RegionWidgetPreference(null, regionWidget.getEntityId(), "color", "blue"));
+        }
+        manager.flush();
+
+        statements = countStatementsOfPageView(USER_ID);
+        assertTrue("statements of a page view with four more widgets and preferences: " + statements,
+                statements <= MAX_PAGE_VIEW_STATEMENTS);
+    }
+
     @Test
     public void getAllPages_validUser_validPersonProfilePageSet() {
         List<Page> pages = repository.getAllPages(USER_ID, PageType.PERSON_PROFILE);
@@ -250,4 +305,21 @@ public class JpaPageRepositoryTest {
     public void hasPersonPage_false(){
         assertFalse(repository.hasPersonPage(CREATED_USER_ID));
     }
+
+    //loads the pages of the user from the database and touches everything a page view renders
+    private int countStatementsOfPageView(Long userId) {
+        manager.clear();
+        manager.getEntityManagerFactory().getCache().evictAll();
+        dataSource.resetStatementCount();
+        for (Page page : repository.getAllPagesForRendering(userId, PageType.USER)) {
+            for (Region region : page.getRegions()) {
+                for (RegionWidget regionWidget : region.getRegionWidgets()) {
+                    assertThat(regionWidget.getWidget().getUrl(), is(notNullValue()));
+                    regionWidget.getWidget().getDescription();
+                    regionWidget.getPreferences().size();
+                }
+            }
+        }
+        return dataSource.getStatementCount();
+    }
 }
\ No newline at end of file
@@ -84,6 +84,31 @@ public class JpaPortalPreferenceRepositoryTest {
         assertEquals(2, saved.getValues().size());
     }
 
+    @Test
+    public void testGetVersion_changedBySave() {
+        final long version = repository.getVersion();
+        PortalPreference preference = repository.getByKey("color");
+        preference.setValues(new ArrayList<String>());
+        repository.save(preference);
+        assertEquals(version + 1, repository.getVersion());
+
+        repository.save(new PortalPreference("foo", "bar"));
+        assertEquals(version + 2, repository.getVersion());
+    }
+
+    @Test
+    public void testGetVersion_changedByDelete() {
+        final long version = repository.getVersion();
+        repository.delete(repository.getByKey("color"));
+        assertEquals(version + 1, repository.getVersion());
+
+        //a delete followed by saves never brings the version back to an earlier value
+        PortalPreference preference = repository.getByKey("title");
+        repository.save(preference);
+        repository.save(preference);
+        assertEquals(version + 3, repository.getVersion());
+    }
+
     @Test
     @Rollback(true)
     public void testNoPreferences() {
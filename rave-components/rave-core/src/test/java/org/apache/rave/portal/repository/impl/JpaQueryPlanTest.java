@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.portal.repository.impl;
+
+import org.apache.openjpa.persistence.OpenJPAPersistence;
+import org.apache.openjpa.persistence.OpenJPAQuery;
+import org.apache.rave.portal.model.Page;
+import org.apache.rave.portal.model.PageType;
+import org.apache.rave.portal.model.Tag;
+import org.apache.rave.portal.model.User;
+import org.apache.rave.portal.model.Widget;
+import org.apache.rave.portal.model.WidgetRating;
+import org.apache.rave.portal.model.WidgetStatus;
+import org.apache.rave.portal.model.WidgetTag;
+import org.apache.rave.portal.repository.StatementCountingDataSource;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ * Asks H2 for the plan of the SQL OpenJPA generates for the named queries run on every request, so a query that
+ * no longer matches an index of the schema migrations fails the build instead of scanning a large table
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(locations = {"classpath:test-dataContext.xml", "classpath:test-applicationContext.xml"})
+public class JpaQueryPlanTest {
+    private static final String TABLE_SCAN = "tableScan";
+
+    @PersistenceContext
+    private EntityManager manager;
+
+    @Autowired
+    private StatementCountingDataSource dataSource;
+
+    @Test
+    public void pagesByUserAndType() throws SQLException {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("userId", 1L);
+        params.put("pageType", PageType.USER);
+        assertIndexed(Page.GET_BY_USER_ID_AND_PAGE_TYPE, params);
+    }
+
+    @Test
+    public void userByUsername() throws SQLException {
+        assertIndexed(User.USER_GET_BY_USERNAME, singleParam(User.PARAM_USERNAME, "canonical"));
+    }
+
+    @Test
+    public void userByEmail() throws SQLException {
+        assertIndexed(User.USER_GET_BY_USER_EMAIL, singleParam(User.PARAM_EMAIL, "canonical@example.com"));
+    }
+
+    @Test
+    public void ratingByWidgetAndUser() throws SQLException {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(WidgetRating.PARAM_WIDGET_ID, 1L);
+        params.put(WidgetRating.PARAM_USER_ID, 1L);
+        assertIndexed(WidgetRating.WIDGET_RATING_BY_WIDGET_AND_USER, params);
+    }
+
+    @Test
+    public void ratingsByUser() throws SQLException {
+        assertIndexed(WidgetRating.WIDGET_ALL_USER_RATINGS, singleParam(WidgetRating.PARAM_USER_ID, 1L));
+    }
+
+    @Test
+    public void tagByKeyword() throws SQLException {
+        assertIndexed(Tag.FIND_BY_KEYWORD, singleParam("keyword", "news"));
+    }
+
+    @Test
+    public void widgetTagByWidgetAndKeyword() throws SQLException {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("widgetId", 1L);
+        params.put("keyword", "news");
+        assertIndexed(WidgetTag.FIND_BY_WIDGET_AND_KEYWORD, params);
+    }
+
+    @Test
+    public void widgetsByStatus() throws SQLException {
+        assertIndexed(Widget.WIDGET_GET_BY_STATUS, singleParam(Widget.PARAM_STATUS, WidgetStatus.PUBLISHED));
+    }
+
+    @Test
+    public void widgetsByStatusAfterFeatured() throws SQLException {
+        assertIndexed(Widget.WIDGET_GET_BY_STATUS_AFTER_FEATURED, afterParams());
+    }
+
+    @Test
+    public void widgetsByStatusAfterNotFeatured() throws SQLException {
+        assertIndexed(Widget.WIDGET_GET_BY_STATUS_AFTER_NOT_FEATURED, afterParams());
+    }
+
+    /* Helper methods */
+    private void assertIndexed(String queryName, Map<String, Object> params) throws SQLException {
+        //the query cache hides the SQL of a query from getDataStoreActions, so run it and take the SQL it prepared
+        OpenJPAQuery query = OpenJPAPersistence.cast(manager.createNamedQuery(queryName));
+        query.getFetchPlan().setQueryResultCacheEnabled(false);
+        for (Map.Entry<String, Object> param : params.entrySet()) {
+            query.setParameter(param.getKey(), param.getValue());
+        }
+        dataSource.resetStatementCount();
+        query.getResultList();
+        String plan = explain(dataSource.getPreparedSql().get(0));
+        assertThat(queryName + " scans a table: " + plan, plan.contains(TABLE_SCAN), is(false));
+    }
+
+    private String explain(String sql) throws SQLException {
+        Connection connection = dataSource.getConnection();
+        try {
+            PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql);
+            //the plan does not depend on the values of the parameters
+            for (int i = 1; i <= statement.getParameterMetaData().getParameterCount(); i++) {
+                statement.setObject(i, null);
+            }
+            ResultSet resultSet = statement.executeQuery();
+            resultSet.next();
+            return resultSet.getString(1);
+        } finally {
+            connection.close();
+        }
+    }
+
+    private static Map<String, Object> afterParams() {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(Widget.PARAM_STATUS, WidgetStatus.PUBLISHED);
+        params.put(Widget.PARAM_AFTER_TITLE, "Widget");
+        params.put(Widget.PARAM_AFTER_ID, 1L);
+        return params;
+    }
+
+    private static Map<String, Object> singleParam(String name, Object value) {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(name, value);
+        return params;
+    }
+}
@@ -20,6 +20,7 @@
 package org.apache.rave.portal.repository.impl;
 
 import org.apache.rave.portal.model.Tag;
+import org.apache.rave.portal.repository.StatementCountingDataSource;
 import org.apache.rave.portal.repository.TagRepository;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -48,6 +49,9 @@ public class JpaTagRepositoryTest {
     @Autowired
     private TagRepository repository;
 
+    @Autowired
+    private StatementCountingDataSource dataSource;
+
 
     private static final Long VALID_ID = 1L;
 
@@ -90,5 +94,27 @@ public class JpaTagRepositoryTest {
 
     }
 
+    @Test
+    public void getByKeyword_saved() {
+        Tag tag = new Tag();
+        tag.setKeyword("Open Source");
+        repository.save(tag);
+        manager.flush();
+
+        assertEquals("open source", repository.getByKeyword("OPEN SOURCE ").getNormalizedKeyword());
+    }
+
+    @Test
+    public void save_idsAllocatedInBlocks() {
+        final int tags = 20;
+        dataSource.resetStatementCount();
+        for (int i = 0; i < tags; i++) {
+            repository.save(new Tag(null, "block" + i));
+            manager.flush();
+        }
+        // one insert per tag, the sequence table is read and updated once per block of ids instead of once per tag
+        assertTrue("Statements: " + dataSource.getStatementCount(), dataSource.getStatementCount() < 2 * tags);
+    }
+
 
 }
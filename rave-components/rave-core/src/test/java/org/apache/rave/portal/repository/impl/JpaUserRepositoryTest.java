@@ -33,13 +33,24 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.Cache;
 import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
 import javax.persistence.PersistenceContext;
 import javax.persistence.TypedQuery;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.*;
 
@@ -94,6 +105,31 @@ public class JpaUserRepositoryTest {
         assertThat(user.getEmail(), is(equalTo(USER_EMAIL)));
     }
 
+    @Test
+    public void getExistingUsernames() {
+        Set<String> existing = repository.getExistingUsernames(Arrays.asList(USER_NAME, "john.doe", "nobody"));
+        assertThat(existing.size(), is(2));
+        assertThat(existing.contains(USER_NAME), is(true));
+        assertThat(existing.contains("john.doe"), is(true));
+    }
+
+    @Test
+    public void getExistingUsernames_moreThanOneQuery() {
+        List<String> usernames = new ArrayList<String>();
+        for (int i = 0; i < 1200; i++) {
+            usernames.add("import" + i);
+        }
+        usernames.add(USER_NAME);
+        assertThat(repository.getExistingUsernames(usernames).contains(USER_NAME), is(true));
+    }
+
+    @Test
+    public void getExistingEmails() {
+        Set<String> existing = repository.getExistingEmails(Arrays.asList(USER_EMAIL, "nobody@example.com"));
+        assertThat(existing.size(), is(1));
+        assertThat(existing.contains(USER_EMAIL), is(true));
+    }
+
     @Test
     public void getByUsername_invalid() {
         User user = repository.get(INVALID_USER);
@@ -134,6 +170,27 @@ public class JpaUserRepositoryTest {
         Assert.assertEquals("Authority has original amount of users", usercount, authority.getUsers().size());
     }
 
+    @Test
+    public void save_evictsCachedAuthorities() {
+        User user = new User(USER_ID, USER_NAME);
+        Cache cache = createNiceMock(Cache.class);
+        cache.evict(Authority.class);
+        expectLastCall();
+        replay(cache);
+        EntityManagerFactory factory = createNiceMock(EntityManagerFactory.class);
+        expect(factory.getCache()).andReturn(cache);
+        replay(factory);
+        EntityManager mockManager = createNiceMock(EntityManager.class);
+        expect(mockManager.merge(user)).andReturn(user);
+        expect(mockManager.getEntityManagerFactory()).andReturn(factory);
+        replay(mockManager);
+
+        JpaUserRepository userRepository = new JpaUserRepository();
+        ReflectionTestUtils.setField(userRepository, "manager", mockManager);
+        userRepository.save(user);
+        verify(cache);
+    }
+
     @Test
     public void getLimitedList() {
         final int offset = 0;
@@ -143,6 +200,18 @@ public class JpaUserRepositoryTest {
         assertTrue(users.size() <= pageSize);
     }
 
+    @Test
+    public void getLimitedListAfter() {
+        final int pageSize = 3;
+        List<User> firstPage = repository.getLimitedList(0, pageSize);
+        List<User> secondPage = repository.getLimitedList(pageSize, pageSize);
+        String lastUsername = firstPage.get(pageSize - 1).getUsername();
+
+        List<User> users = repository.getLimitedListAfter(lastUsername, pageSize);
+        //the result lists of the provider do not compare equal to each other, so compare their contents
+        assertEquals(new ArrayList<User>(secondPage), new ArrayList<User>(users));
+    }
+
     @Test
     public void countAll() {
         int count = repository.getCountAll();
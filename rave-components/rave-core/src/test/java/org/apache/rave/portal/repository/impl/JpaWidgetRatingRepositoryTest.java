@@ -65,6 +65,12 @@ public class JpaWidgetRatingRepositoryTest {
         assertThat(repository.getByWidgetIdAndUserId(INVALID_WIDGET_ID, INVALID_USER_ID), is(nullValue(WidgetRating.class)));       
     }
 
+    @Test
+    public void getByUserId() {
+        assertThat(repository.getByUserId(VALID_USER_ID).size(), is(2));
+        assertThat(repository.getByUserId(INVALID_USER_ID).isEmpty(), is(true));
+    }
+
     @Test
     @Transactional(readOnly=false)
     @Rollback(true)
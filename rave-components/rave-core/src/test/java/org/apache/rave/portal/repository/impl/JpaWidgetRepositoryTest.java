@@ -19,8 +19,11 @@
 
 package org.apache.rave.portal.repository.impl;
 
+import org.apache.openjpa.persistence.OpenJPAEntityManager;
+import org.apache.openjpa.persistence.OpenJPAPersistence;
 import org.apache.rave.portal.model.*;
 import org.apache.rave.portal.model.util.WidgetStatistics;
+import org.apache.rave.portal.repository.StatementCountingDataSource;
 import org.apache.rave.portal.repository.WidgetRepository;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -34,7 +37,10 @@ import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceUnitUtil;
+import javax.persistence.TypedQuery;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -60,6 +66,9 @@ public class JpaWidgetRepositoryTest {
     @Autowired
     private WidgetRepository repository;
 
+    @Autowired
+    private StatementCountingDataSource dataSource;
+
     @Test
     public void getById_valid() {
         Widget widget = repository.get(1L);
@@ -111,6 +120,24 @@ public class JpaWidgetRepositoryTest {
         assertThat(widgets.size() > 4, is(true));
     }
 
+    @Test
+    public void getByIds() {
+        List<Long> ids = new ArrayList<Long>();
+        ids.add(1L);
+        ids.add(2L);
+        ids.add(-1L);
+        List<Widget> widgets = repository.getByIds(ids);
+        assertEquals(2, widgets.size());
+        for (Widget widget : widgets) {
+            assertTrue(ids.contains(widget.getEntityId()));
+        }
+    }
+
+    @Test
+    public void getByIds_empty() {
+        assertTrue(repository.getByIds(new ArrayList<Long>()).isEmpty());
+    }
+
     @Test
     public void getLimitedList() {
         final int pageSize = 3;
@@ -146,6 +173,66 @@ public class JpaWidgetRepositoryTest {
         assertEquals(0, shouldBeEmpty.size());
     }
 
+    @Test
+    public void getByStatusAfter_sameOrderAsOffsetPaging() {
+        final int pageSize = 2;
+        List<Widget> published = repository.getByStatus(WidgetStatus.PUBLISHED, 0, 999);
+        assertTrue(published.size() > pageSize);
+
+        List<Widget> seeked = new ArrayList<Widget>(repository.getByStatus(WidgetStatus.PUBLISHED, 0, pageSize));
+        List<Widget> page;
+        do {
+            Widget last = seeked.get(seeked.size() - 1);
+            page = repository.getByStatusAfter(WidgetStatus.PUBLISHED, last.isFeatured(), last.getTitle(),
+                    last.getEntityId(), pageSize);
+            assertTrue(page.size() <= pageSize);
+            seeked.addAll(page);
+        } while (page.size() == pageSize);
+
+        assertThat(seeked, is(equalTo(published)));
+    }
+
+    @Test
+    @Transactional(readOnly = false)
+    @Rollback
+    public void getByStatusAfter_widgetWithoutTitle() {
+        Widget untitled = new Widget();
+        untitled.setUrl("http://example.com/untitled.xml");
+        untitled.setWidgetStatus(WidgetStatus.PUBLISHED);
+        untitled = repository.save(untitled);
+        sharedManager.flush();
+
+        List<Widget> published = repository.getByStatus(WidgetStatus.PUBLISHED, 0, 999);
+        assertTrue(published.contains(untitled));
+
+        //seeking one widget at a time must neither skip nor repeat the widget without a title
+        List<Widget> seeked = new ArrayList<Widget>(repository.getByStatus(WidgetStatus.PUBLISHED, 0, 1));
+        List<Widget> page;
+        do {
+            Widget last = seeked.get(seeked.size() - 1);
+            page = repository.getByStatusAfter(WidgetStatus.PUBLISHED, last.isFeatured(), last.getTitle(),
+                    last.getEntityId(), 1);
+            seeked.addAll(page);
+        } while (!page.isEmpty());
+
+        assertThat(seeked, is(equalTo(published)));
+    }
+
+    @Test
+    public void getByStatusAfter_featured() {
+        Widget first = repository.getByStatus(WidgetStatus.PUBLISHED, 0, 1).get(0);
+        List<Widget> afterFeatured = repository.getByStatusAfter(WidgetStatus.PUBLISHED, true, first.getTitle(),
+                first.getEntityId(), 999);
+        List<Widget> afterNotFeatured = repository.getByStatusAfter(WidgetStatus.PUBLISHED, false, first.getTitle(),
+                first.getEntityId(), 999);
+
+        //every widget that is not featured sorts after a featured widget
+        assertTrue(afterFeatured.size() >= afterNotFeatured.size());
+        for (Widget widget : afterNotFeatured) {
+            assertThat(widget.isFeatured(), is(false));
+        }
+    }
+
     @Test
     public void countByStatus() {
         int publishedCount = repository.getCountByStatus(WidgetStatus.PUBLISHED);
@@ -205,6 +292,21 @@ public class JpaWidgetRepositoryTest {
         assertEquals(longDescription, widget.getDescription());
     }
 
+    @Test
+    public void getByStatus_loadsDescription() {
+        sharedManager.getEntityManagerFactory().getCache().evictAll();
+        List<Widget> published = repository.getByStatus(WidgetStatus.PUBLISHED, 0, 999);
+        //the description is a LOB the views serialize, the widgets must keep it once detached
+        sharedManager.clear();
+        for (Widget widget : published) {
+            if (widget.getEntityId().equals(2L)) {
+                assertEquals("Google Translation gadget.", widget.getDescription());
+                return;
+            }
+        }
+        fail("widget 2 is not published");
+    }
+
     @Test
     public void getAllWidgetStatistics() {
         Map<Long, WidgetStatistics> widgetStatistics = repository.getAllWidgetStatistics(1L);
@@ -222,6 +324,27 @@ public class JpaWidgetRepositoryTest {
         assertEquals(10, gadgetOne.getTotalUserCount());
     }
 
+    @Test
+    public void getWidgetStatistics_scopedToWidgets() {
+        dataSource.resetStatementCount();
+        Map<Long, WidgetStatistics> widgetStatistics = repository.getWidgetStatistics(Arrays.asList(1L, 2L, 3L), 1L);
+        assertThat(dataSource.getStatementCount(), is(1));
+
+        assertThat(widgetStatistics.size(), is(3));
+        Map<Long, WidgetStatistics> allWidgetStatistics = repository.getAllWidgetStatistics(1L);
+        for (long id = 1L; id <= 2L; id++) {
+            assertThat(widgetStatistics.get(id).toString(), is(equalTo(allWidgetStatistics.get(id).toString())));
+        }
+        assertEquals(0, widgetStatistics.get(3L).getTotalLike());
+        assertEquals(WidgetRating.UNSET.intValue(), widgetStatistics.get(3L).getUserRating());
+    }
+
+    @Test
+    public void getWidgetStatistics_unknownAndEmpty() {
+        assertThat(repository.getWidgetStatistics(Arrays.asList(Long.MAX_VALUE), 1L).isEmpty(), is(true));
+        assertThat(repository.getWidgetStatistics(new ArrayList<Long>(), 1L).isEmpty(), is(true));
+    }
+
     @Test
     public void getUserWidgetRatings() {
         Map<Long, WidgetRating> widgetRatings = repository.getUsersWidgetRatings(1L);
@@ -458,4 +581,106 @@ public class JpaWidgetRepositoryTest {
         sharedManager.refresh(widget);
         assertThat(widget.getOwner(), is(nullValue(User.class)));
     }
+
+    @Test
+    public void storeListing_loadsTagsAndCategoriesOnly() {
+        clearCaches();
+        Widget widget = repository.getByIds(Arrays.asList(1L)).get(0);
+
+        PersistenceUnitUtil util = sharedManager.getEntityManagerFactory().getPersistenceUnitUtil();
+        assertThat(util.isLoaded(widget, "tags"), is(true));
+        assertThat(util.isLoaded(widget, "categories"), is(true));
+        assertThat(util.isLoaded(widget, "comments"), is(false));
+        assertThat(util.isLoaded(widget, "ratings"), is(false));
+    }
+
+    @Test
+    public void getWidgetDetail() {
+        clearCaches();
+        Widget widget = repository.getWidgetDetail(1L);
+
+        PersistenceUnitUtil util = sharedManager.getEntityManagerFactory().getPersistenceUnitUtil();
+        assertThat(util.isLoaded(widget, "comments"), is(true));
+        assertThat(util.isLoaded(widget, "ratings"), is(true));
+        assertThat(widget.getComments().size(), is(2));
+        assertThat(widget.getRatings().size(), is(1));
+        assertThat(widget.getCategories().size(), is(2));
+    }
+
+    @Test
+    public void get_detachedWithDetail() {
+        clearCaches();
+        Widget widget = repository.get(1L);
+        sharedManager.clear();
+
+        assertDetailLoaded(widget);
+    }
+
+    @Test
+    public void getByUrl_detachedWithDetail() {
+        String url = repository.get(1L).getUrl();
+        clearCaches();
+        Widget widget = repository.getByUrl(url);
+        sharedManager.clear();
+
+        assertDetailLoaded(widget);
+    }
+
+    private static void assertDetailLoaded(Widget widget) {
+        assertThat(widget.getComments().size(), is(2));
+        assertThat(widget.getRatings().size(), is(1));
+        assertThat(widget.getTags(), is(notNullValue()));
+        assertThat(widget.getCategories().size(), is(2));
+    }
+
+    @Test
+    public void getWidgetDetail_invalid() {
+        assertThat(repository.getWidgetDetail(-1L), is(nullValue()));
+    }
+
+    @Test
+    public void getWidgetsByCategory() {
+        List<Widget> widgets = repository.getWidgetsByCategory(4L, 0, 10);
+        assertThat(widgets.size(), is(1));
+        assertThat(widgets.get(0).getEntityId(), is(1L));
+        assertThat(repository.getCountByCategory(4L), is(1));
+
+        assertThat(repository.getWidgetsByCategory(4L, 1, 10).isEmpty(), is(true));
+        assertThat(repository.getCountByCategory(-1L), is(0));
+    }
+
+    @Test
+    public void storeListing_managesFewerObjectsThanEagerLoading() {
+        OpenJPAEntityManager manager = OpenJPAPersistence.cast(sharedManager);
+        clearCaches();
+        List<Widget> widgets = repository.getAll();
+        int storeListing = manager.getManagedObjects().size();
+
+        //neither the comments nor the ratings of any widget are loaded
+        PersistenceUnitUtil util = sharedManager.getEntityManagerFactory().getPersistenceUnitUtil();
+        for (Widget widget : widgets) {
+            assertThat(util.isLoaded(widget, "comments"), is(false));
+            assertThat(util.isLoaded(widget, "ratings"), is(false));
+        }
+        for (Object managed : manager.getManagedObjects()) {
+            assertThat(managed.getClass().getName(), managed instanceof WidgetComment, is(false));
+            assertThat(managed.getClass().getName(), managed instanceof WidgetRating, is(false));
+        }
+
+        //the same page with the comments and ratings that used to be loaded eagerly
+        clearCaches();
+        TypedQuery<Widget> query = sharedManager.createNamedQuery(Widget.WIDGET_GET_ALL, Widget.class);
+        OpenJPAPersistence.cast(query).getFetchPlan()
+                .addFetchGroup(Widget.FETCH_GROUP_WIDGET_DETAIL)
+                .addField(Widget.class, "ratings");
+        query.getResultList();
+        int eager = manager.getManagedObjects().size();
+
+        assertThat(storeListing < eager, is(true));
+    }
+
+    private void clearCaches() {
+        sharedManager.getEntityManagerFactory().getCache().evictAll();
+        sharedManager.clear();
+    }
 }
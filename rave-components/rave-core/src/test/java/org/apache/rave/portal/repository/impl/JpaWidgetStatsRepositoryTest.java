@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.portal.repository.impl;
+
+import org.apache.rave.portal.model.WidgetRating;
+import org.apache.rave.portal.model.WidgetStats;
+import org.apache.rave.portal.model.util.WidgetStatistics;
+import org.apache.rave.portal.repository.WidgetStatsRepository;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link org.apache.rave.portal.repository.impl.JpaWidgetStatsRepository}
+ */
+@Transactional
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(locations = {"classpath:test-dataContext.xml", "classpath:test-applicationContext.xml"})
+public class JpaWidgetStatsRepositoryTest {
+    private static final long WIDGET_ID = 1L;
+    private static final long USER_ID = 1L;
+
+    @PersistenceContext
+    private EntityManager manager;
+
+    @Autowired
+    private WidgetStatsRepository repository;
+
+    @Test
+    public void getWidgetStatistics_noCounters() {
+        assertThat(repository.getWidgetStatistics(Arrays.asList(WIDGET_ID, 2L), USER_ID).isEmpty(), is(true));
+    }
+
+    @Test
+    public void recount() {
+        WidgetStats stats = repository.recount(WIDGET_ID);
+        assertThat(stats.getLikeCount(), is(0));
+        assertThat(stats.getDislikeCount(), is(1));
+        assertThat(stats.getUserCount(), is(10));
+
+        WidgetStatistics statistics = repository.getWidgetStatistics(Arrays.asList(WIDGET_ID), USER_ID).get(WIDGET_ID);
+        assertThat(statistics.getTotalDislike(), is(1));
+        assertThat(statistics.getTotalUserCount(), is(10));
+        assertThat(statistics.getUserRating(), is(WidgetRating.DISLIKE));
+    }
+
+    @Test
+    public void recount_unknownWidget() {
+        assertThat(repository.recount(Long.MAX_VALUE), is(nullValue()));
+    }
+
+    @Test
+    public void adjustRatingCounts_createsCounters() {
+        repository.adjustRatingCounts(WIDGET_ID, 0, 0);
+        assertThat(getStats(WIDGET_ID).getDislikeCount(), is(1));
+    }
+
+    @Test
+    public void adjustRatingCounts() {
+        repository.recount(WIDGET_ID);
+        repository.adjustRatingCounts(WIDGET_ID, 2, -1);
+        repository.adjustRatingCounts(WIDGET_ID, 1, 0);
+
+        WidgetStats stats = getStats(WIDGET_ID);
+        assertThat(stats.getLikeCount(), is(3));
+        assertThat(stats.getDislikeCount(), is(0));
+    }
+
+    @Test
+    public void refreshUserCount() {
+        manager.persist(new WidgetStats(WIDGET_ID, 0, 0, 0));
+        repository.refreshUserCount(WIDGET_ID);
+
+        Map<Long, WidgetStatistics> statistics = repository.getWidgetStatistics(Arrays.asList(WIDGET_ID), USER_ID);
+        assertThat(statistics.get(WIDGET_ID).getTotalUserCount(), is(10));
+    }
+
+    @Test
+    public void getWidgetStatistics_byPrimaryKey() {
+        repository.recount(WIDGET_ID);
+
+        WidgetStatistics statistics = repository.getWidgetStatistics(WIDGET_ID, USER_ID);
+        assertThat(statistics.getTotalDislike(), is(1));
+        assertThat(statistics.getTotalUserCount(), is(10));
+        assertThat(statistics.getUserRating(), is(WidgetRating.DISLIKE));
+        assertThat(repository.getWidgetStatistics(WIDGET_ID, Long.MAX_VALUE).getUserRating(), is(WidgetRating.UNSET));
+    }
+
+    @Test
+    public void getWidgetStatistics_byPrimaryKey_noCounters() {
+        assertThat(repository.getWidgetStatistics(WIDGET_ID, USER_ID), is(nullValue()));
+    }
+
+    @Test
+    public void getWidgetIdsByUser() {
+        assertThat(repository.getWidgetIdsByUser(USER_ID).containsAll(Arrays.asList(WIDGET_ID, 2L)), is(true));
+        assertThat(repository.getWidgetIdsByUser(Long.MAX_VALUE).isEmpty(), is(true));
+    }
+
+    @Test
+    public void getWidgetIds() {
+        assertThat(repository.getWidgetIds(0L, 2), is(equalTo(Arrays.asList(WIDGET_ID, 2L))));
+        assertThat(repository.getWidgetIds(2L, 1), is(equalTo(Arrays.asList(3L))));
+        assertThat(repository.getWidgetIds(Long.MAX_VALUE, 10).isEmpty(), is(true));
+    }
+
+    @Test
+    public void recount_batch() {
+        assertThat(repository.recount(Arrays.asList(WIDGET_ID, 2L)), is(2));
+        assertThat(repository.recount(Arrays.asList(WIDGET_ID, 2L)), is(0));
+
+        manager.persist(new WidgetStats(3L, 5, 5, 5));
+        manager.persist(new WidgetStats(Long.MAX_VALUE, 1, 1, 1));
+        assertThat(repository.recount(Arrays.asList(WIDGET_ID, 3L, Long.MAX_VALUE)), is(2));
+
+        assertThat(getStats(3L).getLikeCount(), is(0));
+        assertThat(getStats(Long.MAX_VALUE), is(nullValue()));
+        assertThat(getStats(2L).getLikeCount(), is(1));
+    }
+
+    @Test
+    public void deleteOrphans() {
+        repository.recount(WIDGET_ID);
+        manager.persist(new WidgetStats(Long.MAX_VALUE, 1, 1, 1));
+        manager.flush();
+
+        assertThat(repository.deleteOrphans(), is(1));
+        assertThat(getStats(Long.MAX_VALUE), is(nullValue()));
+        assertThat(getStats(WIDGET_ID), is(notNullValue()));
+    }
+
+    /* Helper methods */
+    private WidgetStats getStats(long widgetId) {
+        manager.flush();
+        manager.clear();
+        return manager.find(WidgetStats.class, widgetId);
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.portal.search.impl;
+
+import org.apache.rave.portal.model.Category;
+import org.apache.rave.portal.model.Tag;
+import org.apache.rave.portal.model.Widget;
+import org.apache.rave.portal.model.WidgetStatus;
+import org.apache.rave.portal.model.WidgetTag;
+import org.apache.rave.portal.repository.WidgetRepository;
+import org.apache.rave.portal.search.SearchHits;
+import org.easymock.Capture;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.easymock.EasyMock.*;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link LuceneWidgetSearchIndex}
+ */
+public class LuceneWidgetSearchIndexTest {
+    private WidgetRepository widgetRepository;
+    private TaskScheduler taskScheduler;
+    private LuceneWidgetSearchIndex index;
+    private List<Widget> widgets;
+
+    @Before
+    public void setup() throws Exception {
+        widgetRepository = createMock(WidgetRepository.class);
+        widgets = new ArrayList<Widget>();
+        widgets.add(createWidget(1L, "Weather forecast", "Shows the weather for your location", WidgetStatus.PUBLISHED,
+                "OpenSocial"));
+        widgets.add(createWidget(2L, "Stock ticker", "Follow the market, rain or shine", WidgetStatus.PUBLISHED,
+                "OpenSocial"));
+        widgets.add(createWidget(3L, "Rain radar", "Live precipitation map", WidgetStatus.PREVIEW, "W3C"));
+        widgets.add(createWidget(4L, "News reader", "Headlines from around the world", WidgetStatus.PUBLISHED,
+                "W3C"));
+        addTag(widgets.get(3), "weather");
+        addCategory(widgets.get(1), "Finance");
+
+        expect(widgetRepository.getLimitedList(0, 100)).andReturn(widgets).anyTimes();
+        replay(widgetRepository);
+
+        taskScheduler = createNiceMock(TaskScheduler.class);
+        replay(taskScheduler);
+
+        index = new LuceneWidgetSearchIndex(widgetRepository, taskScheduler, "", 0);
+        index.afterPropertiesSet();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        index.destroy();
+    }
+
+    @Test
+    public void search_buildsMissingIndex() throws Exception {
+        SearchHits hits = index.search("weather", null, null, 0, 10);
+        assertThat(hits.getTotalHits(), is(2));
+        assertThat(index.getDocumentCount(), is(4));
+    }
+
+    @Test
+    public void search_titleRanksAboveTagsAndDescription() {
+        SearchHits hits = index.search("rain", null, null, 0, 10);
+        assertThat(hits.getIds(), is(Arrays.asList(3L, 2L)));
+
+        hits = index.search("weather", null, null, 0, 10);
+        assertThat(hits.getIds(), is(Arrays.asList(1L, 4L)));
+    }
+
+    @Test
+    public void search_allWordsMustMatch() {
+        assertThat(index.search("weather forecast", null, null, 0, 10).getIds(), is(Arrays.asList(1L)));
+        assertThat(index.search("weather radar", null, null, 0, 10).getTotalHits(), is(0));
+    }
+
+    @Test
+    public void search_partialWords() {
+        assertThat(index.search("WEATH", null, null, 0, 10).getIds().get(0), is(1L));
+        assertThat(index.search("precip", null, null, 0, 10).getIds(), is(Arrays.asList(3L)));
+    }
+
+    @Test
+    public void search_categories() {
+        assertThat(index.search("finance", null, null, 0, 10).getIds(), is(Arrays.asList(2L)));
+    }
+
+    @Test
+    public void search_statusAndType() {
+        assertThat(index.search("rain", WidgetStatus.PUBLISHED, null, 0, 10).getIds(), is(Arrays.asList(2L)));
+        assertThat(index.search("rain", null, "W3C", 0, 10).getIds(), is(Arrays.asList(3L)));
+        assertThat(index.search("rain", WidgetStatus.PUBLISHED, "W3C", 0, 10).getTotalHits(), is(0));
+    }
+
+    @Test
+    public void search_paging() {
+        SearchHits hits = index.search("the", null, null, 1, 2);
+        assertThat(hits.getTotalHits(), is(3));
+        assertThat(hits.getIds().size(), is(2));
+
+        hits = index.search("the", null, null, 2, 2);
+        assertThat(hits.getIds().size(), is(1));
+    }
+
+    @Test
+    public void search_blank() {
+        assertThat(index.search(" ", null, null, 0, 10).getTotalHits(), is(0));
+    }
+
+    @Test
+    public void reindex_updatesAndRemoves() {
+        index.search("weather", null, null, 0, 10);
+
+        Widget changed = createWidget(1L, "Climate", "Long term trends", WidgetStatus.PUBLISHED, "OpenSocial");
+        reset(widgetRepository);
+        expect(widgetRepository.getByIds(Arrays.asList(1L, 4L))).andReturn(Collections.singletonList(changed));
+        replay(widgetRepository);
+
+        index.reindex(Arrays.asList(1L, 4L));
+
+        verify(widgetRepository);
+        assertThat(index.search("weather", null, null, 0, 10).getTotalHits(), is(0));
+        assertThat(index.search("climate", null, null, 0, 10).getIds(), is(Arrays.asList(1L)));
+    }
+
+    @Test
+    public void reindex_deferredUntilCommit() {
+        index.search("weather", null, null, 0, 10);
+
+        Widget changed = createWidget(1L, "Climate", "Long term trends", WidgetStatus.PUBLISHED, "OpenSocial");
+        reset(widgetRepository);
+        expect(widgetRepository.getByIds(Arrays.asList(1L))).andReturn(Collections.singletonList(changed));
+        replay(widgetRepository);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            index.reindex(Arrays.asList(1L));
+            assertThat(index.search("climate", null, null, 0, 10).getTotalHits(), is(0));
+
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCommit();
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(widgetRepository);
+        assertThat(index.search("climate", null, null, 0, 10).getIds(), is(Arrays.asList(1L)));
+    }
+
+    @Test
+    public void rebuild() {
+        assertThat(index.rebuild(), is(4));
+        assertThat(index.rebuild(), is(4));
+        assertThat(index.search("news", null, null, 0, 10).getIds(), is(Arrays.asList(4L)));
+    }
+
+    /* Helper methods */
+    private static Widget createWidget(long id, String title, String description, WidgetStatus status, String type) {
+        Widget widget = new Widget(id, "http://example.com/widget" + id + ".xml");
+        widget.setTitle(title);
+        widget.setDescription(description);
+        widget.setWidgetStatus(status);
+        widget.setType(type);
+        widget.setTags(new ArrayList<WidgetTag>());
+        widget.setCategories(new ArrayList<Category>());
+        return widget;
+    }
+
+    private static void addTag(Widget widget, String keyword) {
+        WidgetTag widgetTag = new WidgetTag();
+        widgetTag.setWidgetId(widget.getEntityId());
+        widgetTag.setTag(new Tag(widget.getEntityId(), keyword));
+        widget.getTags().add(widgetTag);
+    }
+
+    private static void addCategory(Widget widget, String text) {
+        Category category = new Category();
+        category.setText(text);
+        widget.getCategories().add(category);
+    }
+
+    @Test
+    public void afterPropertiesSet_schedulesPeriodicRebuild() throws Exception {
+        Capture<Runnable> rebuildTask = new Capture<Runnable>();
+        TaskScheduler periodicScheduler = createMock(TaskScheduler.class);
+        expect(periodicScheduler.scheduleWithFixedDelay(capture(rebuildTask), isA(Date.class), eq(60000L)))
+                .andReturn(null);
+        replay(periodicScheduler);
+
+        LuceneWidgetSearchIndex periodicIndex = new LuceneWidgetSearchIndex(widgetRepository, periodicScheduler, "",
+                60000L);
+        periodicIndex.afterPropertiesSet();
+        try {
+            verify(periodicScheduler);
+            assertThat(periodicIndex.getDocumentCount(), is(0));
+
+            rebuildTask.getValue().run();
+            assertThat(periodicIndex.getDocumentCount(), is(4));
+        } finally {
+            periodicIndex.destroy();
+        }
+    }
+}
@@ -21,12 +21,15 @@ package org.apache.rave.portal.service.impl;
 
 import org.apache.rave.portal.model.Category;
 import org.apache.rave.portal.model.User;
+import org.apache.rave.portal.model.Widget;
 import org.apache.rave.portal.repository.CategoryRepository;
+import org.apache.rave.portal.search.WidgetSearchIndex;
 import org.apache.rave.portal.service.CategoryService;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 
@@ -40,6 +43,7 @@ import static org.hamcrest.CoreMatchers.*;
 public class DefaultCategoryServiceTest {
     private CategoryService service;
     private CategoryRepository repository;
+    private WidgetSearchIndex widgetSearchIndex;
     
     private final Long VALID_ID = 4L;
     private final String VALID_TEXT = "category1";
@@ -56,7 +60,8 @@ public class DefaultCategoryServiceTest {
     @Before
     public void setup() {
         repository = createMock(CategoryRepository.class);
-        service = new DefaultCategoryService(repository);
+        widgetSearchIndex = createNiceMock(WidgetSearchIndex.class);
+        service = new DefaultCategoryService(repository, widgetSearchIndex);
 
         validCreatedUser = new User(VALID_CREATED_USER_ID);
         validLastModifiedUser = new User(VALID_LAST_MODIFIED_USER_ID);
@@ -144,6 +149,25 @@ public class DefaultCategoryServiceTest {
         verify(repository);
     }
 
+    @Test
+    public void update_reindexesWidgets() {
+        List<Widget> widgets = new ArrayList<Widget>();
+        widgets.add(new Widget(1L, "http://example.com/widget1.xml"));
+        widgets.add(new Widget(2L, "http://example.com/widget2.xml"));
+        validCategory.setWidgets(widgets);
+
+        expect(repository.get(VALID_ID)).andReturn(validCategory);
+        expect(repository.save(validCategory)).andReturn(validCategory);
+        replay(repository);
+        widgetSearchIndex.reindex(Arrays.asList(1L, 2L));
+        expectLastCall();
+        replay(widgetSearchIndex);
+
+        service.update(VALID_ID, "modified category", validLastModifiedUser);
+
+        verify(repository, widgetSearchIndex);
+    }
+
     @Test
     public void delete() {
         expect(repository.get(validCategory.getEntityId())).andReturn(validCategory);
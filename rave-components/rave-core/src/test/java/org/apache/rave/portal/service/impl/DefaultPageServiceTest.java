@@ -30,6 +30,8 @@ import org.junit.Test;
 import javax.persistence.NoResultException;
 import javax.persistence.NonUniqueResultException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 
 import static org.easymock.EasyMock.*;
@@ -47,6 +49,7 @@ public class DefaultPageServiceTest {
     private RegionWidgetRepository regionWidgetRepository;
     private PageLayoutRepository pageLayoutRepository;
     private UserService userService;
+    private WidgetStatsRepository widgetStatsRepository;
 
     private final long REGION_WIDGET_ID = 5L;
     private final long TO_REGION_ID = 1L;
@@ -77,9 +80,10 @@ public class DefaultPageServiceTest {
         regionWidgetRepository = createMock(RegionWidgetRepository.class);
         pageLayoutRepository = createMock(PageLayoutRepository.class);
         userService = createMock(UserService.class);
+        widgetStatsRepository = createMock(WidgetStatsRepository.class);
        
         pageService = new DefaultPageService(pageRepository, pageTemplateRepository, regionRepository, widgetRepository, regionWidgetRepository,
-                                             pageLayoutRepository, userService, defaultPageName);
+                                             pageLayoutRepository, userService, widgetStatsRepository, true, defaultPageName);
         
         validWidget = new Widget(1L, "http://dummy.apache.org/widgets/widget.xml");
 
@@ -133,7 +137,7 @@ public class DefaultPageServiceTest {
     public void getAllUserPages() {
         final List<Page> VALID_PAGES = new ArrayList<Page>();
 
-        expect(pageRepository.getAllPages(VALID_USER_ID, PageType.USER)).andReturn(VALID_PAGES);
+        expect(pageRepository.getAllPagesForRendering(VALID_USER_ID, PageType.USER)).andReturn(VALID_PAGES);
         replay(pageRepository);
 
         assertThat(pageService.getAllUserPages(VALID_USER_ID), CoreMatchers.sameInstance(VALID_PAGES));
@@ -167,11 +171,12 @@ public class DefaultPageServiceTest {
         expect(userService.getUserById(isA(Long.class))).andReturn(user).once();
         expect(pageTemplateRepository.getDefaultPage(PageType.PERSON_PROFILE)).andReturn(pageTemplate).once();
         expect(pageRepository.createPageForUser(user, pageTemplate)).andReturn(personPage);
-        replay(pageRepository, userService, pageTemplateRepository);
+        expect(widgetStatsRepository.recount(new HashSet<Long>())).andReturn(0);
+        replay(pageRepository, userService, pageTemplateRepository, widgetStatsRepository);
 
         assertThat(pageService.getPersonProfilePage(VALID_USER_ID), CoreMatchers.sameInstance(personPage));
 
-        verify(pageRepository, userService, pageTemplateRepository);
+        verify(pageRepository, userService, pageTemplateRepository, widgetStatsRepository);
     }
 
     @Test
@@ -287,12 +292,13 @@ public class DefaultPageServiceTest {
         expect(pageRepository.getAllPages(user.getEntityId(), PageType.USER)).andReturn(new ArrayList<Page>());
         expect(pageRepository.createPageForUser(user, pageTemplate)).andReturn(userPage);
         expect(pageTemplateRepository.getDefaultPage(PageType.USER)).andReturn(pageTemplate);
-        replay(userService, pageLayoutRepository, pageRepository, pageTemplateRepository);
+        expect(widgetStatsRepository.recount(new HashSet<Long>())).andReturn(0);
+        replay(userService, pageLayoutRepository, pageRepository, pageTemplateRepository, widgetStatsRepository);
         Page newPage = pageService.addNewUserPage(PAGE_NAME, PAGE_LAYOUT_CODE);
         assertThat(newPage.getName(), is("Page Template"));
         assertThat(newPage.getRegions().size(), is(pageLayout.getNumberOfRegions().intValue()));
 
-        verify(userService, pageLayoutRepository, pageRepository, pageTemplateRepository);
+        verify(userService, pageLayoutRepository, pageRepository, pageTemplateRepository, widgetStatsRepository);
     }
 
 
@@ -447,11 +453,14 @@ public class DefaultPageServiceTest {
         expectLastCall();
         expect(pageRepository.getAllPages(user.getEntityId(), PageType.USER)).andReturn(pageListAfterDelete);
         expect(pageRepository.save(page2)).andReturn(page2);
+        expect(widgetStatsRepository.recount(new HashSet<Long>())).andReturn(0);
         replay(userService);
         replay(pageRepository);
+        replay(widgetStatsRepository);
         pageService.deletePage(PAGE_ID);
         verify(userService);
         verify(pageRepository);
+        verify(widgetStatsRepository);
     }
     
     @Test
@@ -465,20 +474,45 @@ public class DefaultPageServiceTest {
         expect(pageRepository.getAllPages(user.getEntityId(), PageType.USER)).andReturn(pageList);
         expect(pageRepository.save(page2)).andReturn(page2);
         expect(pageRepository.save(page)).andReturn(page);
+        expect(widgetStatsRepository.recount(new HashSet<Long>())).andReturn(0);
         replay(userService);
         replay(pageRepository);
+        replay(widgetStatsRepository);
         pageService.deletePage(INVALID_PAGE_ID);
         verify(userService);
         verify(pageRepository);
+        verify(widgetStatsRepository);
     }
 
     @Test
     public void deletePages() {                      
         final int EXPECTED_DELETED_PAGE_COUNT = 7;
+        List<Long> widgetIds = Arrays.asList(validWidget.getEntityId());
+        expect(widgetStatsRepository.getWidgetIdsByUser(VALID_USER_ID)).andReturn(widgetIds);
         expect(pageRepository.deletePages(VALID_USER_ID, PageType.USER)).andReturn(EXPECTED_DELETED_PAGE_COUNT);     
-        replay(pageRepository);
+        expect(widgetStatsRepository.recount(widgetIds)).andReturn(1);
+        replay(pageRepository, widgetStatsRepository);
         assertThat(pageService.deletePages(VALID_USER_ID, PageType.USER), is(EXPECTED_DELETED_PAGE_COUNT));
-        verify(pageRepository);
+        verify(pageRepository, widgetStatsRepository);
+    }
+
+    @Test
+    public void deletePage_recountsWidgetsOnPage() {
+        Region region = new Region(1L);
+        region.setRegionWidgets(new ArrayList<RegionWidget>());
+        region.getRegionWidgets().add(new RegionWidget(1L, validWidget, region));
+        page.setRegions(new ArrayList<Region>());
+        page.getRegions().add(region);
+
+        expect(userService.getAuthenticatedUser()).andReturn(user);
+        expect(pageRepository.get(PAGE_ID)).andReturn(page);
+        pageRepository.delete(page);
+        expectLastCall();
+        expect(pageRepository.getAllPages(user.getEntityId(), PageType.USER)).andReturn(new ArrayList<Page>());
+        expect(widgetStatsRepository.recount(new HashSet<Long>(Arrays.asList(validWidget.getEntityId())))).andReturn(1);
+        replay(userService, pageRepository, widgetStatsRepository);
+        pageService.deletePage(PAGE_ID);
+        verify(userService, pageRepository, widgetStatsRepository);
     }    
     
     
@@ -641,20 +675,24 @@ public class DefaultPageServiceTest {
         value.setRegions(new ArrayList<Region>());
         value.getRegions().add(originalRegion);
         value.getRegions().add(targetRegion);
-        Widget widget = new Widget();
+        Widget widget = new Widget(WIDGET_ID, "http://dummy.apache.org/widgets/widget.xml");
 
         expect(pageRepository.get(PAGE_ID)).andReturn(value);
         expect(widgetRepository.get(WIDGET_ID)).andReturn(widget);
         expect(regionRepository.save(originalRegion)).andReturn(originalRegion);
+        widgetStatsRepository.refreshUserCount(WIDGET_ID);
+        expectLastCall();
         replay(pageRepository);
         replay(regionRepository);
         replay(widgetRepository);
+        replay(widgetStatsRepository);
 
         RegionWidget instance = pageService.addWidgetToPage(PAGE_ID, WIDGET_ID);
 
         verify(pageRepository);
         verify(regionRepository);
         verify(widgetRepository);
+        verify(widgetStatsRepository);
 
         verifyPositions(0, instance, true);
         assertThat(originalRegion.getRegionWidgets().get(0), is(sameInstance(instance)));
@@ -752,6 +790,7 @@ public class DefaultPageServiceTest {
         long REGION_ID = 2L;
         RegionWidget regionWidget = new RegionWidget(WIDGET_ID);
         regionWidget.setRegion(new Region(REGION_ID));
+        regionWidget.setWidget(validWidget);
         Region region = new Region();
 
         expect(regionWidgetRepository.get(WIDGET_ID)).andReturn(regionWidget);
@@ -760,13 +799,38 @@ public class DefaultPageServiceTest {
         replay(regionWidgetRepository);
         expect(regionRepository.get(REGION_ID)).andReturn(region);
         replay(regionRepository);
+        widgetStatsRepository.refreshUserCount(validWidget.getEntityId());
+        expectLastCall();
+        replay(widgetStatsRepository);
 
         Region result = pageService.removeWidgetFromPage(WIDGET_ID);
         verify(regionWidgetRepository);
         verify(regionRepository);
+        verify(widgetStatsRepository);
         assertThat(result, is(sameInstance(region)));
     }
 
+    @Test
+    public void removeWidgetFromPage_countersDisabled() {
+        pageService = new DefaultPageService(pageRepository, pageTemplateRepository, regionRepository, widgetRepository,
+                regionWidgetRepository, pageLayoutRepository, userService, widgetStatsRepository, false,
+                defaultPageName);
+        long WIDGET_ID = 1L;
+        long REGION_ID = 2L;
+        RegionWidget regionWidget = new RegionWidget(WIDGET_ID);
+        regionWidget.setRegion(new Region(REGION_ID));
+        regionWidget.setWidget(validWidget);
+
+        expect(regionWidgetRepository.get(WIDGET_ID)).andReturn(regionWidget);
+        regionWidgetRepository.delete(regionWidget);
+        expectLastCall();
+        expect(regionRepository.get(REGION_ID)).andReturn(new Region());
+        replay(regionWidgetRepository, regionRepository, widgetStatsRepository);
+
+        pageService.removeWidgetFromPage(WIDGET_ID);
+        verify(regionWidgetRepository, regionRepository, widgetStatsRepository);
+    }
+
     @Test(expected = UnsupportedOperationException.class)
     public void removeWidgetFromPage_lockedRegion() {
         long WIDGET_ID = 1L;
@@ -21,20 +21,24 @@ package org.apache.rave.portal.service.impl;
 
 import org.apache.rave.portal.model.PortalPreference;
 import org.apache.rave.portal.repository.PortalPreferenceRepository;
-import org.apache.rave.portal.service.PortalPreferenceService;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.scheduling.TaskScheduler;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertNull;
 import static junit.framework.Assert.assertTrue;
 import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.isA;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
 
@@ -43,17 +47,39 @@ import static org.easymock.EasyMock.verify;
  */
 public class DefaultPortalPreferenceServiceTest {
 
-    PortalPreferenceService service;
+    DefaultPortalPreferenceService service;
     PortalPreferenceRepository repository;
 
     @Before
     public void setUp() throws Exception {
         repository = createMock(PortalPreferenceRepository.class);
-        service = new DefaultPortalPreferenceService(repository);
+        service = new DefaultPortalPreferenceService(repository, createMock(TaskScheduler.class), 0L);
+    }
+
+    @Test
+    public void afterPropertiesSet_schedulesPoll() {
+        TaskScheduler taskScheduler = createMock(TaskScheduler.class);
+        expect(taskScheduler.scheduleWithFixedDelay(isA(Runnable.class), isA(Date.class), eq(30000L)))
+                .andReturn(null);
+        replay(taskScheduler);
+
+        new DefaultPortalPreferenceService(repository, taskScheduler, 30000L).afterPropertiesSet();
+        verify(taskScheduler);
+    }
+
+    @Test
+    public void afterPropertiesSet_pollingDisabled() {
+        TaskScheduler taskScheduler = createMock(TaskScheduler.class);
+        replay(taskScheduler);
+
+        service = new DefaultPortalPreferenceService(repository, taskScheduler, 0L);
+        service.afterPropertiesSet();
+        verify(taskScheduler);
     }
 
     @Test
     public void testGetPreferencesAsMap() {
+        expect(repository.getVersion()).andReturn(2L);
         expect(repository.getAll()).andReturn(portalPreferenceList());
         replay(repository);
 
@@ -71,6 +97,7 @@ public class DefaultPortalPreferenceServiceTest {
 
     @Test
     public void testGetPreferencesAsMap_noPreferences() {
+        expect(repository.getVersion()).andReturn(0L);
         expect(repository.getAll()).andReturn(Collections.<PortalPreference>emptyList());
         replay(repository);
 
@@ -80,10 +107,39 @@ public class DefaultPortalPreferenceServiceTest {
         assertTrue(map.isEmpty());
     }
 
+    @Test
+    public void testGetPreferencesAsMap_readOnce() {
+        expect(repository.getVersion()).andReturn(2L).once();
+        expect(repository.getAll()).andReturn(portalPreferenceList()).once();
+        replay(repository);
+
+        service.getPreferencesAsMap();
+        service.getPreferencesAsMap();
+        service.getPreference("title");
+        verify(repository);
+    }
+
+    @Test
+    public void testGetPreferencesAsMap_copies() {
+        expect(repository.getVersion()).andReturn(2L);
+        expect(repository.getAll()).andReturn(portalPreferenceList());
+        replay(repository);
+
+        final Map<String, PortalPreference> map = service.getPreferencesAsMap();
+        map.get("title").setValue("Changed");
+        map.get("colors").getValues().add("green");
+        map.remove("title");
+
+        final Map<String, PortalPreference> read = service.getPreferencesAsMap();
+        assertEquals("Rave", read.get("title").getValue());
+        assertEquals(3, read.get("colors").getValues().size());
+    }
+
     @Test
     public void testGetPreference() {
         final String key = "title";
-        expect(repository.getByKey(key)).andReturn(titlePreference());
+        expect(repository.getVersion()).andReturn(2L);
+        expect(repository.getAll()).andReturn(portalPreferenceList());
         replay(repository);
 
         final PortalPreference preference = service.getPreference(key);
@@ -95,7 +151,8 @@ public class DefaultPortalPreferenceServiceTest {
     @Test
     public void testGetPreference_notExisting() {
         final String key = "foo";
-        expect(repository.getByKey(key)).andReturn(null);
+        expect(repository.getVersion()).andReturn(2L);
+        expect(repository.getAll()).andReturn(portalPreferenceList());
         replay(repository);
 
         final PortalPreference preference = service.getPreference(key);
@@ -187,6 +244,61 @@ public class DefaultPortalPreferenceServiceTest {
         verify(repository);
     }
 
+    @Test
+    public void testSavePreference_replacesSnapshot() {
+        PortalPreference title = new PortalPreference("title", "Portal");
+        PortalPreference savedTitle = new PortalPreference("title", "Portal");
+        savedTitle.setEntityId(123L);
+
+        expect(repository.getVersion()).andReturn(2L).once();
+        expect(repository.getAll()).andReturn(portalPreferenceList()).once();
+        expect(repository.save(title)).andReturn(savedTitle).once();
+        replay(repository);
+
+        assertEquals("Rave", service.getPreference("title").getValue());
+        service.savePreference(title);
+        verify(repository);
+
+        assertEquals("Portal", service.getPreference("title").getValue());
+        assertEquals(2, service.getPreferencesAsMap().size());
+    }
+
+    @Test
+    public void testRefresh_unchanged() {
+        expect(repository.getVersion()).andReturn(2L).times(2);
+        expect(repository.getAll()).andReturn(portalPreferenceList()).once();
+        replay(repository);
+
+        service.getPreferencesAsMap();
+        assertFalse(service.refresh());
+        verify(repository);
+    }
+
+    @Test
+    public void testRefresh_changedOnOtherNode() {
+        List<PortalPreference> changed = portalPreferenceList();
+        changed.get(0).setValue("Changed");
+
+        expect(repository.getVersion()).andReturn(2L).once();
+        expect(repository.getAll()).andReturn(portalPreferenceList()).once();
+        expect(repository.getVersion()).andReturn(3L).times(2);
+        expect(repository.getAll()).andReturn(changed).once();
+        replay(repository);
+
+        service.getPreferencesAsMap();
+        assertTrue(service.refresh());
+        verify(repository);
+
+        assertEquals("Changed", service.getPreference("title").getValue());
+    }
+
+    @Test
+    public void testRefresh_nothingRead() {
+        replay(repository);
+        assertFalse(service.refresh());
+        verify(repository);
+    }
+
     private static List<PortalPreference> portalPreferenceList() {
         PortalPreference title = titlePreference();
 
@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.portal.service.impl;
+
+import org.apache.rave.portal.model.Authority;
+import org.apache.rave.portal.model.NewUser;
+import org.apache.rave.portal.model.PageLayout;
+import org.apache.rave.portal.model.User;
+import org.apache.rave.portal.model.util.SearchResult;
+import org.apache.rave.portal.model.util.UserImportResult;
+import org.apache.rave.portal.repository.UserRepository;
+import org.apache.rave.portal.service.AuthorityService;
+import org.apache.rave.portal.service.PageLayoutService;
+import org.apache.rave.portal.service.UserImportService;
+import org.apache.rave.portal.service.UserService;
+import org.easymock.Capture;
+import org.easymock.CaptureType;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.easymock.EasyMock.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test class for {@link DefaultUserImportService}
+ */
+public class DefaultUserImportServiceTest {
+    private static final String LAYOUT_CODE = "columns_3";
+
+    private UserService userService;
+    private UserRepository userRepository;
+    private PageLayoutService pageLayoutService;
+    private AuthorityService authorityService;
+    private DefaultUserImportService importService;
+    private PageLayout pageLayout;
+
+    @Before
+    public void setup() {
+        userService = createMock(UserService.class);
+        userRepository = createMock(UserRepository.class);
+        pageLayoutService = createMock(PageLayoutService.class);
+        authorityService = createMock(AuthorityService.class);
+        PasswordEncoder passwordEncoder = new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                return "hashed:" + rawPassword;
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return encodedPassword.equals(encode(rawPassword));
+            }
+        };
+        importService = new DefaultUserImportService(userService, userRepository, pageLayoutService,
+                authorityService, passwordEncoder, 2, 2);
+
+        pageLayout = new PageLayout();
+        pageLayout.setCode(LAYOUT_CODE);
+        Authority authority = new Authority();
+        authority.setAuthority("ROLE_USER");
+        List<Authority> authorities = Arrays.asList(authority);
+        expect(authorityService.getDefaultAuthorities())
+                .andReturn(new SearchResult<Authority>(authorities, authorities.size())).anyTimes();
+        replay(authorityService);
+    }
+
+    @Test
+    public void importUsers_inBatches() {
+        Capture<List<User>> batches = new Capture<List<User>>(CaptureType.ALL);
+        expect(userRepository.getExistingUsernames(isA(Collection.class))).andReturn(new HashSet<String>());
+        expect(userRepository.getExistingEmails(isA(Collection.class))).andReturn(new HashSet<String>());
+        expect(pageLayoutService.getPageLayoutByCode(LAYOUT_CODE)).andReturn(pageLayout).once();
+        userService.registerNewUsers(capture(batches));
+        expectLastCall().times(2);
+        replay(userService, userRepository, pageLayoutService);
+
+        UserImportResult result = importService.importUsers(Arrays.asList(newUser("john.doe", LAYOUT_CODE),
+                newUser("jane.doe", LAYOUT_CODE), newUser("jdoe", null)));
+
+        verify(userService, userRepository, pageLayoutService);
+        assertThat(result.getImportedCount(), is(3));
+        assertThat(result.getFailures().isEmpty(), is(true));
+        assertThat(batches.getValues().get(0).size(), is(2));
+        assertThat(batches.getValues().get(1).size(), is(1));
+        User user = batches.getValues().get(0).get(0);
+        assertThat(user.getUsername(), is(equalTo("john.doe")));
+        assertThat(user.getPassword(), is(equalTo("hashed:john.doe-password")));
+        assertThat(user.getDefaultPageLayout(), is(sameInstance(pageLayout)));
+        assertThat(user.isEnabled(), is(true));
+        assertThat(user.getAuthorities().size(), is(1));
+        assertThat(batches.getValues().get(1).get(0).getDefaultPageLayout(), is(nullValue()));
+    }
+
+    @Test
+    public void importUsers_failures() {
+        NewUser noPassword = newUser("nopassword", null);
+        noPassword.setPassword(null);
+        NewUser sameEmail = newUser("jane.doe", null);
+        sameEmail.setEmail("john.doe@example.com");
+        expect(userRepository.getExistingUsernames(isA(Collection.class)))
+                .andReturn(new HashSet<String>(Arrays.asList("canonical")));
+        expect(userRepository.getExistingEmails(isA(Collection.class))).andReturn(new HashSet<String>());
+        expect(pageLayoutService.getPageLayoutByCode("unknown")).andReturn(null);
+        userService.registerNewUsers(isA(List.class));
+        expectLastCall();
+        replay(userService, userRepository, pageLayoutService);
+
+        UserImportResult result = importService.importUsers(Arrays.asList(newUser("john.doe", null),
+                newUser(null, null), noPassword, newUser("john.doe", null), sameEmail, newUser("canonical", null),
+                newUser("unknown.layout", "unknown")));
+
+        verify(userService, userRepository, pageLayoutService);
+        assertThat(result.getImportedCount(), is(1));
+        assertThat(result.getFailures().size(), is(6));
+        assertThat(result.getFailures().get(0).getRow(), is(2));
+        assertThat(result.getFailures().get(1).getUsername(), is(equalTo("nopassword")));
+        assertThat(result.getFailures().get(2).getRow(), is(4));
+        assertThat(result.getFailures().get(3).getUsername(), is(equalTo("jane.doe")));
+        assertThat(result.getFailures().get(4).getUsername(), is(equalTo("canonical")));
+        assertThat(result.getFailures().get(5).getUsername(), is(equalTo("unknown.layout")));
+    }
+
+    @Test
+    public void importUsers_failedBatchImportedOneAtATime() {
+        expect(userRepository.getExistingUsernames(isA(Collection.class))).andReturn(new HashSet<String>());
+        expect(userRepository.getExistingEmails(isA(Collection.class))).andReturn(new HashSet<String>());
+        userService.registerNewUsers(isA(List.class));
+        expectLastCall().andThrow(new IllegalStateException("constraint violation"));
+        userService.registerNewUser(isA(User.class));
+        expectLastCall();
+        userService.registerNewUser(isA(User.class));
+        expectLastCall().andThrow(new IllegalStateException("constraint violation"));
+        replay(userService, userRepository, pageLayoutService);
+
+        UserImportResult result = importService.importUsers(Arrays.asList(newUser("john.doe", null),
+                newUser("jane.doe", null)));
+
+        verify(userService, userRepository, pageLayoutService);
+        assertThat(result.getImportedCount(), is(1));
+        assertThat(result.getFailures().size(), is(1));
+        assertThat(result.getFailures().get(0).getRow(), is(2));
+        assertThat(result.getFailures().get(0).getMessage(), is(equalTo("constraint violation")));
+    }
+
+    @Test
+    public void importUsers_csv() throws Exception {
+        expect(userRepository.getExistingUsernames(isA(Collection.class))).andReturn(new HashSet<String>());
+        expect(userRepository.getExistingEmails(isA(Collection.class))).andReturn(new HashSet<String>());
+        userService.registerNewUsers(isA(List.class));
+        expectLastCall();
+        replay(userService, userRepository, pageLayoutService);
+
+        UserImportResult result = importService.importUsers(new StringReader(
+                "username,password,email\njohn.doe,secret,john.doe@example.com\n"), UserImportService.Format.CSV);
+
+        verify(userService, userRepository, pageLayoutService);
+        assertThat(result.getImportedCount(), is(1));
+    }
+
+    private static NewUser newUser(String username, String pageLayout) {
+        NewUser newUser = new NewUser();
+        newUser.setUsername(username);
+        newUser.setPassword(username + "-password");
+        newUser.setEmail(username + "@example.com");
+        newUser.setPageLayout(pageLayout);
+        return newUser;
+    }
+}
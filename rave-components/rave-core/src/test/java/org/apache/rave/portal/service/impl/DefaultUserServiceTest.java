@@ -35,6 +35,7 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static org.easymock.EasyMock.*;
@@ -52,6 +53,7 @@ public class DefaultUserServiceTest {
     private WidgetCommentRepository widgetCommentRepository;
     private WidgetRatingRepository widgetRatingRepository;
     private WidgetRepository widgetRepository;
+    private WidgetStatsRepository widgetStatsRepository;
 
     private static final String USER_NAME = "1234";
     private static final String USER_EMAIL = "test@test.com";
@@ -66,8 +68,10 @@ public class DefaultUserServiceTest {
         widgetCommentRepository = createMock(WidgetCommentRepository.class);
         widgetRatingRepository = createMock(WidgetRatingRepository.class);
         widgetRepository = createMock(WidgetRepository.class);
+        widgetStatsRepository = createMock(WidgetStatsRepository.class);
 
-        service = new DefaultUserService(pageRepository, userRepository, widgetRatingRepository, widgetCommentRepository, widgetRepository, pageTemplateRepository);
+        service = new DefaultUserService(pageRepository, userRepository, widgetRatingRepository, widgetCommentRepository, widgetRepository, pageTemplateRepository,
+                                         widgetStatsRepository, true, 0L);
     }
 
     @After
@@ -223,6 +227,36 @@ public class DefaultUserServiceTest {
         verify(userRepository);
     }
 
+    @Test
+    public void getLimitedListOfUsersAfter() {
+        List<User> users = new ArrayList<User>();
+        users.add(new User(456L, "john.doe.jr"));
+        expect(userRepository.getCountAll()).andReturn(11);
+        expect(userRepository.getLimitedListAfter("jane.doe", 10)).andReturn(users);
+        replay(userRepository);
+
+        SearchResult<User> result = service.getLimitedListOfUsersAfter("jane.doe", 10, 10);
+        assertEquals(users, result.getResultSet());
+        assertEquals(11, result.getTotalResults());
+        assertEquals(2, result.getCurrentPage());
+        verify(userRepository);
+    }
+
+    @Test
+    public void getLimitedListOfUsers_cachedCount() {
+        service = new DefaultUserService(pageRepository, userRepository, widgetRatingRepository,
+                widgetCommentRepository, widgetRepository, pageTemplateRepository, widgetStatsRepository, true, 60000L);
+        List<User> users = new ArrayList<User>();
+        expect(userRepository.getCountAll()).andReturn(11).once();
+        expect(userRepository.getLimitedList(0, 10)).andReturn(users);
+        expect(userRepository.getLimitedListAfter("jane.doe", 10)).andReturn(users);
+        replay(userRepository);
+
+        service.getLimitedListOfUsers(0, 10);
+        assertEquals(11, service.getLimitedListOfUsersAfter("jane.doe", 10, 10).getTotalResults());
+        verify(userRepository);
+    }
+
     @Test
     public void getUsersByFreeTextSearch() {
         final String searchTerm = "Doe";
@@ -264,8 +298,10 @@ public class DefaultUserServiceTest {
         Page page = new Page(1L, user);
         List<Page> pages = new ArrayList<Page>();
         pages.add(page);
+        List<Long> widgetIds = Arrays.asList(VALID_WIDGET_ID);
         
         expect(userRepository.get(USER_ID)).andReturn(user);
+        expect(widgetStatsRepository.getWidgetIdsByUser(USER_ID)).andReturn(widgetIds);
         expect(pageRepository.deletePages(USER_ID, PageType.USER)).andReturn(pages.size());
         expect(pageRepository.deletePages(USER_ID, PageType.PERSON_PROFILE)).andReturn(pages.size());
         expect(widgetCommentRepository.deleteAll(USER_ID)).andReturn(NUM_COMMENTS);
@@ -273,11 +309,12 @@ public class DefaultUserServiceTest {
         expect(widgetRepository.unassignWidgetOwner(USER_ID)).andReturn( NUM_WIDGETS_OWNED);       
         userRepository.delete(user);
         expectLastCall();
-        replay(userRepository, pageRepository, widgetCommentRepository, widgetRatingRepository, widgetRepository);
+        expect(widgetStatsRepository.recount(widgetIds)).andReturn(1);
+        replay(userRepository, pageRepository, widgetCommentRepository, widgetRatingRepository, widgetRepository, widgetStatsRepository);
 
         service.deleteUser(USER_ID);
 
-        verify(userRepository, pageRepository, widgetCommentRepository, widgetRatingRepository, widgetRepository);
+        verify(userRepository, pageRepository, widgetCommentRepository, widgetRatingRepository, widgetRepository, widgetStatsRepository);
     }
 
     @Test
@@ -310,12 +347,40 @@ public class DefaultUserServiceTest {
 
     @Test
     public void registerNewUser_valid(){
-        User user = new User();
+        User user = new User(USER_ID);
+        List<Long> widgetIds = Arrays.asList(VALID_WIDGET_ID);
         expect(userRepository.save(user)).andReturn(user).once();
         expect(pageTemplateRepository.getDefaultPage(PageType.PERSON_PROFILE)).andReturn(new PageTemplate()).once();
         expect(pageRepository.createPageForUser(isA(User.class), isA(PageTemplate.class))).andReturn(new Page());
-        replay(userRepository, pageTemplateRepository, pageRepository);
+        expect(widgetStatsRepository.getWidgetIdsByUser(USER_ID)).andReturn(widgetIds);
+        expect(widgetStatsRepository.recount(widgetIds)).andReturn(1);
+        replay(userRepository, pageTemplateRepository, pageRepository, widgetStatsRepository);
         service.registerNewUser(user);
-        verify(userRepository, pageTemplateRepository, pageRepository);
+        verify(userRepository, pageTemplateRepository, pageRepository, widgetStatsRepository);
+    }
+
+    @Test
+    public void registerNewUsers_valid() {
+        User user = new User(USER_ID);
+        User other = new User(USER_ID + 1);
+        PageTemplate profileTemplate = new PageTemplate();
+        List<Long> widgetIds = Arrays.asList(VALID_WIDGET_ID);
+        expect(userRepository.save(user)).andReturn(user).once();
+        expect(userRepository.save(other)).andReturn(other).once();
+        expect(pageTemplateRepository.getDefaultPage(PageType.PERSON_PROFILE)).andReturn(profileTemplate).once();
+        expect(pageRepository.createPageForUser(user, profileTemplate)).andReturn(new Page());
+        expect(pageRepository.createPageForUser(other, profileTemplate)).andReturn(new Page());
+        expect(widgetStatsRepository.getWidgetIdsByUser(USER_ID)).andReturn(widgetIds).once();
+        expect(widgetStatsRepository.recount(widgetIds)).andReturn(1).once();
+        replay(userRepository, pageTemplateRepository, pageRepository, widgetStatsRepository);
+        service.registerNewUsers(Arrays.asList(user, other));
+        verify(userRepository, pageTemplateRepository, pageRepository, widgetStatsRepository);
+    }
+
+    @Test
+    public void registerNewUsers_empty() {
+        replay(userRepository, pageTemplateRepository, pageRepository, widgetStatsRepository);
+        service.registerNewUsers(new ArrayList<User>());
+        verify(userRepository, pageTemplateRepository, pageRepository, widgetStatsRepository);
     }
 }
@@ -21,10 +21,13 @@ package org.apache.rave.portal.service.impl;
 
 import org.apache.rave.portal.model.WidgetRating;
 import org.apache.rave.portal.repository.WidgetRatingRepository;
+import org.apache.rave.portal.repository.WidgetStatsRepository;
 import org.apache.rave.portal.service.WidgetRatingService;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
+
 import static org.junit.Assert.*;
 import static org.easymock.EasyMock.*;
 import static org.hamcrest.CoreMatchers.*;
@@ -36,11 +39,13 @@ public class DefaultWidgetRatingServiceTest {
 
     private WidgetRatingService service;
     private WidgetRatingRepository repository;
+    private WidgetStatsRepository widgetStatsRepository;
 
     @Before
     public void setUp() throws Exception {
         repository = createMock(WidgetRatingRepository.class);
-        service = new DefaultWidgetRatingService(repository);
+        widgetStatsRepository = createMock(WidgetStatsRepository.class);
+        service = new DefaultWidgetRatingService(repository, widgetStatsRepository, true);
     }
 
     @Test
@@ -56,14 +61,18 @@ public class DefaultWidgetRatingServiceTest {
     @Test
     public void updateScore() {
         WidgetRating widgetRating = createMock(WidgetRating.class);
+        expect(widgetRating.getScore()).andReturn(WidgetRating.DISLIKE);
+        expect(widgetRating.getWidgetId()).andReturn(2L);
         widgetRating.setScore(10);
 
         expectLastCall().once();
         expect(repository.save(widgetRating)).andReturn(widgetRating);
-        replay(repository, widgetRating);
+        widgetStatsRepository.adjustRatingCounts(2L, 1, -1);
+        expectLastCall();
+        replay(repository, widgetRating, widgetStatsRepository);
         service.updateScore(widgetRating, 10);
 
-        verify(repository, widgetRating);
+        verify(repository, widgetRating, widgetStatsRepository);
     }
 
     @Test
@@ -75,10 +84,12 @@ public class DefaultWidgetRatingServiceTest {
 
         expect(repository.getByWidgetIdAndUserId(2L, 1L)).andReturn(null);
         expect(repository.save(newRating)).andReturn(newRating);
-        replay(repository);
+        widgetStatsRepository.adjustRatingCounts(2L, 1, 0);
+        expectLastCall();
+        replay(repository, widgetStatsRepository);
 
         service.saveWidgetRating(newRating);
-        verify(repository);
+        verify(repository, widgetStatsRepository);
     }
 
     @Test
@@ -91,10 +102,12 @@ public class DefaultWidgetRatingServiceTest {
 
         expect(repository.getByWidgetIdAndUserId(1L, 1L)).andReturn(existingRating);
         expect(repository.save(existingRating)).andReturn(existingRating);
-        replay(repository);
+        widgetStatsRepository.adjustRatingCounts(1L, 1, 0);
+        expectLastCall();
+        replay(repository, widgetStatsRepository);
 
         service.saveWidgetRating(newRating);
-        verify(repository);
+        verify(repository, widgetStatsRepository);
 
         assertEquals("Updated score", Integer.valueOf(10), existingRating.getScore());
     }
@@ -112,6 +125,54 @@ public class DefaultWidgetRatingServiceTest {
         verify(repository);
     }
 
+    @Test
+    public void removeWidgetRating_adjustsCounts() {
+        final WidgetRating widgetRating = new WidgetRating(1L, 1L, 1L, WidgetRating.LIKE);
+
+        expect(repository.getByWidgetIdAndUserId(1L, 1L)).andReturn(widgetRating);
+        repository.delete(widgetRating);
+        expectLastCall();
+        widgetStatsRepository.adjustRatingCounts(1L, -1, 0);
+        expectLastCall();
+        replay(repository, widgetStatsRepository);
+
+        service.removeWidgetRating(1L, 1L);
+        verify(repository, widgetStatsRepository);
+    }
+
+    @Test
+    public void updateScore_unchangedCounts() {
+        WidgetRating widgetRating = new WidgetRating(1L, 1L, 1L, WidgetRating.LIKE);
+        expect(repository.save(widgetRating)).andReturn(widgetRating);
+        replay(repository, widgetStatsRepository);
+
+        service.updateScore(widgetRating, WidgetRating.LIKE);
+        verify(repository, widgetStatsRepository);
+    }
+
+    @Test
+    public void saveWidgetRating_countersDisabled() {
+        service = new DefaultWidgetRatingService(repository, widgetStatsRepository, false);
+        WidgetRating newRating = new WidgetRating(null, 2L, 1L, WidgetRating.LIKE);
+
+        expect(repository.getByWidgetIdAndUserId(2L, 1L)).andReturn(null);
+        expect(repository.save(newRating)).andReturn(newRating);
+        replay(repository, widgetStatsRepository);
+
+        service.saveWidgetRating(newRating);
+        verify(repository, widgetStatsRepository);
+    }
+
+    @Test
+    public void deleteAll_countersDisabled() {
+        service = new DefaultWidgetRatingService(repository, widgetStatsRepository, false);
+        expect(repository.deleteAll(33L)).andReturn(2);
+        replay(repository, widgetStatsRepository);
+
+        assertThat(service.removeAllWidgetRatings(33L), is(2));
+        verify(repository, widgetStatsRepository);
+    }
+
     @Test
     public void removeWidgetRating_notExisting() {
         expect(repository.getByWidgetIdAndUserId(1L, 2L)).andReturn(null);
@@ -126,9 +187,13 @@ public class DefaultWidgetRatingServiceTest {
         final Long USER_ID = 33L;
         final int EXPECTED_COUNT = 43;
         
+        expect(repository.getByUserId(USER_ID)).andReturn(Arrays.asList(new WidgetRating(1L, 1L, USER_ID, 10),
+                new WidgetRating(2L, 2L, USER_ID, 0)));
         expect(repository.deleteAll(USER_ID)).andReturn(EXPECTED_COUNT);
-        replay(repository);
+        widgetStatsRepository.adjustRatingCounts(1L, -1, 0);
+        widgetStatsRepository.adjustRatingCounts(2L, 0, -1);
+        replay(repository, widgetStatsRepository);
         assertThat(service.removeAllWidgetRatings(USER_ID), is(EXPECTED_COUNT));
-        verify(repository);
+        verify(repository, widgetStatsRepository);
     }
 }
@@ -26,16 +26,21 @@ import org.apache.rave.portal.model.Widget;
 import org.apache.rave.portal.model.WidgetStatus;
 import org.apache.rave.portal.model.util.SearchResult;
 import org.apache.rave.portal.model.util.WidgetStatistics;
-import org.apache.rave.portal.repository.CategoryRepository;
 import org.apache.rave.portal.repository.UserRepository;
 import org.apache.rave.portal.repository.WidgetRepository;
+import org.apache.rave.portal.repository.WidgetStatsRepository;
+import org.apache.rave.portal.search.SearchHits;
+import org.apache.rave.portal.search.WidgetSearchIndex;
 import org.apache.rave.portal.service.WidgetService;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.easymock.EasyMock.*;
 import static org.hamcrest.CoreMatchers.*;
@@ -49,14 +54,17 @@ public class DefaultWidgetServiceTest {
     private WidgetService widgetService;
     private WidgetRepository widgetRepository;
     private UserRepository userRepository;
-    private CategoryRepository categoryRepository;
+    private WidgetSearchIndex widgetSearchIndex;
+    private WidgetStatsRepository widgetStatsRepository;
 
     @Before
     public void setup() {
         widgetRepository = createMock(WidgetRepository.class);
         userRepository = createMock(UserRepository.class);
-        categoryRepository = createMock(CategoryRepository.class);
-        widgetService = new DefaultWidgetService(widgetRepository, userRepository, categoryRepository);
+        widgetSearchIndex = createMock(WidgetSearchIndex.class);
+        widgetStatsRepository = createMock(WidgetStatsRepository.class);
+        widgetService = new DefaultWidgetService(widgetRepository, userRepository, widgetSearchIndex,
+                widgetStatsRepository, false, 0L);
     }
 
     @Test
@@ -110,10 +118,61 @@ public class DefaultWidgetServiceTest {
         verify(widgetRepository);
     }
 
+    @Test
+    public void getPublishedWidgetsAfter() {
+        List<Widget> widgets = Arrays.asList(new Widget(3L, "http://example.com/widget3.xml"));
+        expect(widgetRepository.getCountByStatus(WidgetStatus.PUBLISHED)).andReturn(11);
+        expect(widgetRepository.getByStatusAfter(WidgetStatus.PUBLISHED, false, "Hamster", 2L, 10)).andReturn(widgets);
+        replay(widgetRepository);
+
+        SearchResult<Widget> result = widgetService.getPublishedWidgetsAfter(false, "Hamster", 2L, 10, 10);
+        assertThat(result.getResultSet(), is(sameInstance(widgets)));
+        assertThat(result.getTotalResults(), is(11));
+        assertThat(result.getOffset(), is(10));
+        assertThat(result.getCurrentPage(), is(2));
+        verify(widgetRepository);
+    }
+
+    @Test
+    public void getPublishedWidgets_cachedCount() {
+        widgetService = new DefaultWidgetService(widgetRepository, userRepository, widgetSearchIndex,
+                widgetStatsRepository, false, 60000L);
+        List<Widget> widgets = new ArrayList<Widget>();
+        expect(widgetRepository.getCountByStatus(WidgetStatus.PUBLISHED)).andReturn(11).once();
+        expect(widgetRepository.getByStatus(WidgetStatus.PUBLISHED, 0, 10)).andReturn(widgets);
+        expect(widgetRepository.getByStatusAfter(WidgetStatus.PUBLISHED, true, "Hamster", 2L, 10)).andReturn(widgets);
+        replay(widgetRepository);
+
+        widgetService.getPublishedWidgets(0, 10);
+        SearchResult<Widget> result = widgetService.getPublishedWidgetsAfter(true, "Hamster", 2L, 10, 10);
+        assertThat(result.getTotalResults(), is(11));
+        verify(widgetRepository);
+    }
+
+    @Test
+    public void getPublishedWidgets_countInvalidatedByUpdate() {
+        widgetService = new DefaultWidgetService(widgetRepository, userRepository, widgetSearchIndex,
+                widgetStatsRepository, false, 60000L);
+        Widget widget = new Widget(1L, "http://example.com/widget1.xml");
+        List<Widget> widgets = new ArrayList<Widget>();
+        expect(widgetRepository.getCountByStatus(WidgetStatus.PUBLISHED)).andReturn(11);
+        expect(widgetRepository.getCountByStatus(WidgetStatus.PUBLISHED)).andReturn(12);
+        expect(widgetRepository.getByStatus(WidgetStatus.PUBLISHED, 0, 10)).andReturn(widgets).times(2);
+        expect(widgetRepository.save(widget)).andReturn(widget);
+        widgetSearchIndex.reindex(Collections.singleton(1L));
+        expectLastCall();
+        replay(widgetRepository, widgetSearchIndex);
+
+        assertThat(widgetService.getPublishedWidgets(0, 10).getTotalResults(), is(11));
+        widgetService.updateWidget(widget);
+        assertThat(widgetService.getPublishedWidgets(0, 10).getTotalResults(), is(12));
+        verify(widgetRepository, widgetSearchIndex);
+    }
+
     @Test
     public void getWidget() {
         Widget w = new Widget();
-        expect(widgetRepository.get(1L)).andReturn(w);
+        expect(widgetRepository.getWidgetDetail(1L)).andReturn(w);
         replay(widgetRepository);
 
         Widget result = widgetService.getWidget(1L);
@@ -132,15 +191,34 @@ public class DefaultWidgetServiceTest {
         List<Widget> widgets = new ArrayList<Widget>();
         widgets.add(widget);
 
-        expect(widgetRepository.getCountFreeTextSearch(searchTerm)).andReturn(totalResults);
-        expect(widgetRepository.getByFreeTextSearch(searchTerm, offset, pageSize)).andReturn(widgets);
-        replay(widgetRepository);
+        expect(widgetSearchIndex.search(searchTerm, null, null, offset, pageSize))
+                .andReturn(new SearchHits(Arrays.asList(1L), totalResults));
+        expect(widgetRepository.getByIds(Arrays.asList(1L))).andReturn(widgets);
+        replay(widgetRepository, widgetSearchIndex);
 
         SearchResult<Widget> result = widgetService.getWidgetsByFreeTextSearch(searchTerm, offset, pageSize);
         assertEquals(widget, result.getResultSet().get(0));
         assertEquals(totalResults, result.getTotalResults());
         assertEquals(pageSize, result.getPageSize());
-        verify(widgetRepository);
+        verify(widgetRepository, widgetSearchIndex);
+    }
+
+    @Test
+    public void getWidgetsForSearchTerm_relevanceOrder() {
+        final String searchTerm = "gadget";
+        Widget widget1 = new Widget(1L, "http://example.com/widget1.xml");
+        Widget widget2 = new Widget(2L, "http://example.com/widget2.xml");
+        Widget widget3 = new Widget(3L, "http://example.com/widget3.xml");
+        List<Long> ids = Arrays.asList(3L, 1L, 4L, 2L);
+
+        expect(widgetSearchIndex.search(searchTerm, null, null, 0, 10)).andReturn(new SearchHits(ids, 4));
+        //widget 4 was deleted after it was indexed
+        expect(widgetRepository.getByIds(ids)).andReturn(Arrays.asList(widget1, widget2, widget3));
+        replay(widgetRepository, widgetSearchIndex);
+
+        SearchResult<Widget> result = widgetService.getWidgetsByFreeTextSearch(searchTerm, 0, 10);
+        assertThat(result.getResultSet(), is(Arrays.asList(widget3, widget1, widget2)));
+        verify(widgetRepository, widgetSearchIndex);
     }
 
 
@@ -156,18 +234,17 @@ public class DefaultWidgetServiceTest {
         List<Widget> widgets = new ArrayList<Widget>();
         widgets.add(widget);
 
-        expect(widgetRepository.getCountByStatusAndTypeAndFreeText(WidgetStatus.PUBLISHED, null, searchTerm))
-                .andReturn(totalResults);
-        expect(widgetRepository.getByStatusAndTypeAndFreeTextSearch(WidgetStatus.PUBLISHED, null, searchTerm,
-                offset, pageSize)).andReturn(widgets);
-        replay(widgetRepository);
+        expect(widgetSearchIndex.search(searchTerm, WidgetStatus.PUBLISHED, null, offset, pageSize))
+                .andReturn(new SearchHits(Arrays.asList(1L), totalResults));
+        expect(widgetRepository.getByIds(Arrays.asList(1L))).andReturn(widgets);
+        replay(widgetRepository, widgetSearchIndex);
 
         SearchResult<Widget> result = widgetService.getPublishedWidgetsByFreeTextSearch(searchTerm,
                 offset, pageSize);
         assertEquals(widget, result.getResultSet().get(0));
         assertEquals(totalResults, result.getTotalResults());
         assertEquals(pageSize, result.getPageSize());
-        verify(widgetRepository);
+        verify(widgetRepository, widgetSearchIndex);
     }
 
     @Test
@@ -184,18 +261,35 @@ public class DefaultWidgetServiceTest {
         List<Widget> widgets = new ArrayList<Widget>();
         widgets.add(widget);
 
-        expect(widgetRepository.getCountByStatusAndTypeAndFreeText(WidgetStatus.PUBLISHED, type, searchTerm))
-                .andReturn(totalResults);
-        expect(widgetRepository.getByStatusAndTypeAndFreeTextSearch(WidgetStatus.PUBLISHED, type, searchTerm,
-                offset, pageSize)).andReturn(widgets);
-        replay(widgetRepository);
+        expect(widgetSearchIndex.search(searchTerm, WidgetStatus.PUBLISHED, type, offset, pageSize))
+                .andReturn(new SearchHits(Arrays.asList(1L), totalResults));
+        expect(widgetRepository.getByIds(Arrays.asList(1L))).andReturn(widgets);
+        replay(widgetRepository, widgetSearchIndex);
 
         SearchResult<Widget> result = widgetService.getWidgetsBySearchCriteria(searchTerm, type,
                 WidgetStatus.PUBLISHED.toString(), offset, pageSize);
         assertEquals(widget, result.getResultSet().get(0));
         assertEquals(totalResults, result.getTotalResults());
         assertEquals(pageSize, result.getPageSize());
-        verify(widgetRepository);
+        verify(widgetRepository, widgetSearchIndex);
+    }
+
+    @Test
+    public void getWidgetsBySearchCriteria_noSearchTerm() {
+        final String type = "OpenSocial";
+        List<Widget> widgets = new ArrayList<Widget>();
+        widgets.add(new Widget(1L, "http://example.com/widget1.xml"));
+
+        expect(widgetRepository.getCountByStatusAndTypeAndFreeText(WidgetStatus.PUBLISHED, type, ""))
+                .andReturn(1);
+        expect(widgetRepository.getByStatusAndTypeAndFreeTextSearch(WidgetStatus.PUBLISHED, type, "", 0, 10))
+                .andReturn(widgets);
+        replay(widgetRepository, widgetSearchIndex);
+
+        SearchResult<Widget> result = widgetService.getWidgetsBySearchCriteria("", type,
+                WidgetStatus.PUBLISHED.toString(), 0, 10);
+        assertSame(widgets, result.getResultSet());
+        verify(widgetRepository, widgetSearchIndex);
     }
 
     @Test
@@ -226,7 +320,7 @@ public class DefaultWidgetServiceTest {
 
     @Test
     public void getWidget_null() {
-        expect(widgetRepository.get(1L)).andReturn(null);
+        expect(widgetRepository.getWidgetDetail(1L)).andReturn(null);
         replay(widgetRepository);
 
         Widget result = widgetService.getWidget(1L);
@@ -282,15 +376,19 @@ public class DefaultWidgetServiceTest {
         final String widgetUrl = "http://example.com/newwidget.xml";
         Widget widget = new Widget();
         widget.setUrl(widgetUrl);
+        Widget saved = new Widget(7L, widgetUrl);
         expect(widgetRepository.getByUrl(widgetUrl)).andReturn(null);
-        expect(widgetRepository.save(widget)).andReturn(widget);
+        expect(widgetRepository.save(widget)).andReturn(saved);
         replay(widgetRepository);
+        widgetSearchIndex.reindex(Collections.singleton(7L));
+        expectLastCall();
+        replay(widgetSearchIndex);
 
         Widget savedWidget = widgetService.registerNewWidget(widget);
         assertNotNull(savedWidget);
-        assertEquals(widget.getEntityId(), savedWidget.getEntityId());
+        assertEquals(saved.getEntityId(), savedWidget.getEntityId());
 
-        verify(widgetRepository);
+        verify(widgetRepository, widgetSearchIndex);
     }
 
     @Test(expected = DuplicateItemException.class)
@@ -311,13 +409,15 @@ public class DefaultWidgetServiceTest {
     public void updateWidget() {
         final String widgetUrl =
                 "http://hosting.gmodules.com/ig/gadgets/file/112581010116074801021/hamster.xml";
-        Widget widget = new Widget();
-        widget.setUrl(widgetUrl);
+        Widget widget = new Widget(1L, widgetUrl);
         expect(widgetRepository.save(widget)).andReturn(widget).once();
         replay(widgetRepository);
+        widgetSearchIndex.reindex(Collections.singleton(1L));
+        expectLastCall();
+        replay(widgetSearchIndex);
 
         widgetService.updateWidget(widget);
-        verify(widgetRepository);
+        verify(widgetRepository, widgetSearchIndex);
 
         assertTrue("Save called", true);
     }
@@ -341,6 +441,51 @@ public class DefaultWidgetServiceTest {
         verify(widgetRepository);
     }
 
+    @Test
+    public void widgetStatistics_scopedToWidgets() {
+        Map<Long, WidgetStatistics> statistics = new HashMap<Long, WidgetStatistics>();
+        expect(widgetRepository.getWidgetStatistics(Arrays.asList(1L, 2L), 1L)).andReturn(statistics);
+        replay(widgetRepository, widgetStatsRepository);
+
+        assertThat(widgetService.getWidgetStatistics(Arrays.asList(1L, 2L), 1L), is(sameInstance(statistics)));
+        verify(widgetRepository, widgetStatsRepository);
+    }
+
+    @Test
+    public void widgetStatistics_counters() {
+        widgetService = new DefaultWidgetService(widgetRepository, userRepository, widgetSearchIndex,
+                widgetStatsRepository, true, 0L);
+        WidgetStatistics counted = new WidgetStatistics();
+        WidgetStatistics uncounted = new WidgetStatistics();
+        Map<Long, WidgetStatistics> counters = new HashMap<Long, WidgetStatistics>();
+        counters.put(1L, counted);
+        expect(widgetStatsRepository.getWidgetStatistics(Arrays.asList(1L, 2L), 1L)).andReturn(counters);
+        expect(widgetRepository.getWidgetStatistics(Collections.singleton(2L), 1L))
+                .andReturn(Collections.singletonMap(2L, uncounted));
+        replay(widgetRepository, widgetStatsRepository);
+
+        Map<Long, WidgetStatistics> statistics = widgetService.getWidgetStatistics(Arrays.asList(1L, 2L), 1L);
+        assertThat(statistics.get(1L), is(sameInstance(counted)));
+        assertThat(statistics.get(2L), is(sameInstance(uncounted)));
+        verify(widgetRepository, widgetStatsRepository);
+    }
+
+    @Test
+    public void widgetStatistics_singleWidgetCounters() {
+        widgetService = new DefaultWidgetService(widgetRepository, userRepository, widgetSearchIndex,
+                widgetStatsRepository, true, 0L);
+        WidgetStatistics counted = new WidgetStatistics();
+        WidgetStatistics uncounted = new WidgetStatistics();
+        expect(widgetStatsRepository.getWidgetStatistics(1L, 1L)).andReturn(counted);
+        expect(widgetStatsRepository.getWidgetStatistics(2L, 1L)).andReturn(null);
+        expect(widgetRepository.getWidgetStatistics(2L, 1L)).andReturn(uncounted);
+        replay(widgetRepository, widgetStatsRepository);
+
+        assertThat(widgetService.getWidgetStatistics(1L, 1L), is(sameInstance(counted)));
+        assertThat(widgetService.getWidgetStatistics(2L, 1L), is(sameInstance(uncounted)));
+        verify(widgetRepository, widgetStatsRepository);
+    }
+
     @Test
     public void getWidgetsByCategory_valid(){
         long id = 1L;
@@ -352,16 +497,16 @@ public class DefaultWidgetServiceTest {
         Category c = new Category();
         List<Widget> widgets = new ArrayList<Widget>();
         widgets.add(w);
-        c.setWidgets(widgets);
         c.setEntityId(id);
         c.setText(categoryText);
         categories.add(c);
         w.setCategories(categories);
-        expect(categoryRepository.get(id)).andReturn(c);
-        replay(categoryRepository);
+        expect(widgetRepository.getCountByCategory(id)).andReturn(11);
+        expect(widgetRepository.getWidgetsByCategory(id, offset, pageSize)).andReturn(widgets);
+        replay(widgetRepository);
         SearchResult<Widget> result = widgetService.getWidgetsByCategory(id,offset,pageSize);
-        verify(categoryRepository);
-        assertEquals("number of widgets", 1, result.getTotalResults());
+        verify(widgetRepository);
+        assertEquals("number of widgets", 11, result.getTotalResults());
         assertSame(w, result.getResultSet().get(0));
         assertEquals(c.getEntityId(), result.getResultSet().get(0).getCategories().get(0).getEntityId());
     }
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.portal.service.impl;
+
+import org.apache.rave.portal.repository.WidgetStatsRepository;
+import org.apache.rave.service.LockService;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.scheduling.TaskScheduler;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.locks.Lock;
+
+import static org.easymock.EasyMock.*;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link DefaultWidgetStatsReconciliationService}
+ */
+public class DefaultWidgetStatsReconciliationServiceTest {
+    private static final int BATCH_SIZE = 2;
+
+    private WidgetStatsRepository widgetStatsRepository;
+    private LockService lockService;
+    private Lock lock;
+    private DefaultWidgetStatsReconciliationService service;
+
+    @Before
+    public void setup() {
+        widgetStatsRepository = createMock(WidgetStatsRepository.class);
+        lockService = createMock(LockService.class);
+        lock = createMock(Lock.class);
+        service = new DefaultWidgetStatsReconciliationService(widgetStatsRepository, lockService,
+                createMock(TaskScheduler.class), 0, BATCH_SIZE);
+
+        expect(lockService.borrowLock("WidgetStats", "reconcile")).andReturn(lock);
+        lockService.returnLock(lock);
+        expectLastCall();
+    }
+
+    @Test
+    public void reconcile() {
+        expect(lock.tryLock()).andReturn(true);
+        expect(widgetStatsRepository.getWidgetIds(0L, BATCH_SIZE)).andReturn(Arrays.asList(1L, 2L));
+        expect(widgetStatsRepository.recount(Arrays.asList(1L, 2L))).andReturn(1);
+        expect(widgetStatsRepository.getWidgetIds(2L, BATCH_SIZE)).andReturn(Arrays.asList(5L));
+        expect(widgetStatsRepository.recount(Arrays.asList(5L))).andReturn(0);
+        expect(widgetStatsRepository.getWidgetIds(5L, BATCH_SIZE)).andReturn(Collections.<Long>emptyList());
+        expect(widgetStatsRepository.deleteOrphans()).andReturn(2);
+        lock.unlock();
+        expectLastCall();
+        replay(widgetStatsRepository, lockService, lock);
+
+        assertThat(service.reconcile(), is(3));
+        assertThat(service.getLastRepairCount(), is(3));
+        verify(widgetStatsRepository, lockService, lock);
+    }
+
+    @Test
+    public void afterPropertiesSet_schedulesReconciliation() {
+        TaskScheduler taskScheduler = createMock(TaskScheduler.class);
+        expect(taskScheduler.scheduleWithFixedDelay(isA(Runnable.class), isA(Date.class), eq(60000L)))
+                .andReturn(null);
+        replay(taskScheduler);
+
+        new DefaultWidgetStatsReconciliationService(widgetStatsRepository, lockService, taskScheduler, 60000L,
+                BATCH_SIZE).afterPropertiesSet();
+        verify(taskScheduler);
+    }
+
+    @Test
+    public void reconcile_runningElsewhere() {
+        expect(lock.tryLock()).andReturn(false);
+        replay(widgetStatsRepository, lockService, lock);
+
+        assertThat(service.reconcile(), is(-1));
+        verify(widgetStatsRepository, lockService, lock);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void reconcile_failureReleasesLock() {
+        expect(lock.tryLock()).andReturn(true);
+        expect(widgetStatsRepository.getWidgetIds(0L, BATCH_SIZE)).andThrow(new IllegalStateException());
+        lock.unlock();
+        expectLastCall();
+        replay(widgetStatsRepository, lockService, lock);
+
+        try {
+            service.reconcile();
+        } finally {
+            verify(widgetStatsRepository, lockService, lock);
+        }
+    }
+}
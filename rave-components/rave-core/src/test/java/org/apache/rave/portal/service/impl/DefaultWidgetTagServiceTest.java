@@ -18,10 +18,13 @@ package org.apache.rave.portal.service.impl;
 import org.apache.rave.portal.model.Tag;
 import org.apache.rave.portal.model.WidgetTag;
 import org.apache.rave.portal.repository.WidgetTagRepository;
+import org.apache.rave.portal.search.WidgetSearchIndex;
 import org.apache.rave.portal.service.WidgetTagService;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Collections;
+
 import static org.easymock.EasyMock.*;
 import static org.junit.Assert.assertEquals;
 
@@ -29,12 +32,14 @@ public class DefaultWidgetTagServiceTest {
 
     private WidgetTagRepository widgetTagRepository;
     private WidgetTagService widgetTagService;
+    private WidgetSearchIndex widgetSearchIndex;
 
 
     @Before
     public void setup() {
         widgetTagRepository = createMock(WidgetTagRepository.class);
-        widgetTagService = new DefaultWidgetTagService(widgetTagRepository);
+        widgetSearchIndex = createMock(WidgetSearchIndex.class);
+        widgetTagService = new DefaultWidgetTagService(widgetTagRepository, widgetSearchIndex);
     }
 
     @Test
@@ -70,5 +75,20 @@ public class DefaultWidgetTagServiceTest {
 
     }
 
+    @Test
+    public void saveWidgetTag_reindexesWidget() {
+        WidgetTag wtag = new WidgetTag();
+        wtag.setEntityId(3L);
+        wtag.setWidgetId(5L);
+        wtag.setTag(new Tag(4L, "test"));
+        expect(widgetTagRepository.save(wtag)).andReturn(wtag);
+        replay(widgetTagRepository);
+        widgetSearchIndex.reindex(Collections.singleton(5L));
+        expectLastCall();
+        replay(widgetSearchIndex);
 
+        widgetTagService.saveWidgetTag(wtag);
+
+        verify(widgetTagRepository, widgetSearchIndex);
+    }
 }
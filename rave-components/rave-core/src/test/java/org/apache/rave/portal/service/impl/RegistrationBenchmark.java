@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.portal.service.impl;
+
+import org.apache.rave.portal.model.User;
+import org.apache.rave.portal.repository.StatementCountingDataSource;
+import org.apache.rave.portal.service.UserService;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Measures how many users per second register concurrently against the in-memory H2 database of the tests, each
+ * registration creating the user and its profile pages, regions and region widgets, and how many SQL statements a
+ * registration takes.  Compare the numbers with those of a build before the entity ids were allocated in blocks to
+ * see the effect of the contention on the RAVE_PORTAL_SEQUENCES table.  More than 8 threads exhaust the 10
+ * connections of the pool of the tests.
+ * <p/>
+ * Not run as part of the build.  Run it from the rave-core module with:
+ * <code>
+ *    mvn test-compile exec:java -Dexec.mainClass=org.apache.rave.portal.service.impl.RegistrationBenchmark -Dexec.classpathScope=test
+ * </code>
+ */
+public class RegistrationBenchmark {
+
+    private static final int USERS_PER_THREAD = 200;
+    private static final int[] THREADS = {1, 4, 8};
+
+    public static void main(String[] args) throws Exception {
+        ClassPathXmlApplicationContext context = new ClassPathXmlApplicationContext("test-dataContext.xml",
+                "test-applicationContext.xml");
+        try {
+            UserService userService = context.getBean(UserService.class);
+            StatementCountingDataSource dataSource = context.getBean(StatementCountingDataSource.class);
+
+            //warm up the caches, the enhanced classes and the first blocks of ids
+            register(userService, "warmup", 1, 50);
+
+            System.out.println(String.format("%-10s %12s %12s %16s", "threads", "users", "users/s", "statements/user"));
+            for (int threads : THREADS) {
+                dataSource.resetStatementCount();
+                long start = System.nanoTime();
+                int users = register(userService, "run" + threads, threads, USERS_PER_THREAD);
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.println(String.format("%-10d %12d %12.1f %16.1f", threads, users, users / seconds,
+                        dataSource.getStatementCount() / (double) users));
+            }
+        } finally {
+            context.close();
+        }
+    }
+
+    private static int register(final UserService userService, final String prefix, int threads,
+                                final int usersPerThread) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+            for (int t = 0; t < threads; t++) {
+                final String threadPrefix = prefix + "-" + t + "-";
+                results.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        for (int i = 0; i < usersPerThread; i++) {
+                            userService.registerNewUser(createUser(threadPrefix + i));
+                        }
+                        return usersPerThread;
+                    }
+                }));
+            }
+            int users = 0;
+            for (Future<Integer> result : results) {
+                users += result.get();
+            }
+            return users;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static User createUser(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(username + "@example.com");
+        user.setPassword("password");
+        user.setEnabled(true);
+        user.setExpired(false);
+        user.setLocked(false);
+        return user;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.portal.service.impl;
+
+import org.apache.rave.portal.model.NewUser;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+public class UserImportReaderTest {
+
+    @Test
+    public void readCsv() throws Exception {
+        String csv = "username,password,email,displayName,pageLayout\n" +
+                "john.doe,secret,john.doe@example.com,\"Doe, John\",columns_3\n" +
+                "\n" +
+                "jane.doe,secret,,\"Jane \"\"JD\"\" Doe\",\n";
+
+        List<NewUser> users = UserImportReader.readCsv(new StringReader(csv));
+
+        assertThat(users.size(), is(2));
+        assertThat(users.get(0).getUsername(), is(equalTo("john.doe")));
+        assertThat(users.get(0).getPassword(), is(equalTo("secret")));
+        assertThat(users.get(0).getEmail(), is(equalTo("john.doe@example.com")));
+        assertThat(users.get(0).getDisplayName(), is(equalTo("Doe, John")));
+        assertThat(users.get(0).getPageLayout(), is(equalTo("columns_3")));
+        assertThat(users.get(1).getEmail(), is(nullValue()));
+        assertThat(users.get(1).getDisplayName(), is(equalTo("Jane \"JD\" Doe")));
+        assertThat(users.get(1).getPageLayout(), is(nullValue()));
+    }
+
+    @Test
+    public void readCsv_shortRow() throws Exception {
+        List<NewUser> users = UserImportReader.readCsv(new StringReader("username,password,email\njohn.doe\n"));
+
+        assertThat(users.size(), is(1));
+        assertThat(users.get(0).getUsername(), is(equalTo("john.doe")));
+        assertThat(users.get(0).getPassword(), is(nullValue()));
+    }
+
+    @Test
+    public void readCsv_empty() throws Exception {
+        assertThat(UserImportReader.readCsv(new StringReader("")).isEmpty(), is(true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void readCsv_unknownColumn() throws Exception {
+        UserImportReader.readCsv(new StringReader("username,password,entityId\njohn.doe,secret,1\n"));
+    }
+
+    @Test
+    public void readLdif() throws Exception {
+        String ldif = "# exported users\n" +
+                "dn: ou=people,dc=example,dc=com\n" +
+                "objectClass: organizationalUnit\n" +
+                "ou: people\n" +
+                "\n" +
+                "dn: uid=john.doe,ou=people,dc=example,dc=com\n" +
+                "uid: john.doe\n" +
+                "userPassword: secret\n" +
+                "mail: john.doe@exam\n" +
+                " ple.com\n" +
+                "givenName: John\n" +
+                "sn: Doe\n" +
+                "cn: John Doe\n" +
+                "\n" +
+                "dn: uid=jane.doe,ou=people,dc=example,dc=com\n" +
+                "uid: jane.doe\n" +
+                "userPassword: secret\n" +
+                "displayName:: SmFuZSBEb2U=\n";
+
+        List<NewUser> users = UserImportReader.readLdif(new StringReader(ldif));
+
+        assertThat(users.size(), is(2));
+        assertThat(users.get(0).getUsername(), is(equalTo("john.doe")));
+        assertThat(users.get(0).getPassword(), is(equalTo("secret")));
+        assertThat(users.get(0).getEmail(), is(equalTo("john.doe@example.com")));
+        assertThat(users.get(0).getFirstName(), is(equalTo("John")));
+        assertThat(users.get(0).getLastName(), is(equalTo("Doe")));
+        assertThat(users.get(0).getDisplayName(), is(equalTo("John Doe")));
+        assertThat(users.get(1).getUsername(), is(equalTo("jane.doe")));
+        assertThat(users.get(1).getDisplayName(), is(equalTo("Jane Doe")));
+    }
+}
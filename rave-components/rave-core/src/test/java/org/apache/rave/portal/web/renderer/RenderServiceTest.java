@@ -20,16 +20,29 @@
 package org.apache.rave.portal.web.renderer;
 
 import org.apache.rave.exception.NotSupportedException;
+import org.apache.rave.portal.model.Page;
+import org.apache.rave.portal.model.Region;
 import org.apache.rave.portal.model.RegionWidget;
 import org.apache.rave.portal.model.Widget;
 import org.apache.rave.portal.web.renderer.impl.DefaultRenderService;
+import org.apache.rave.portal.web.renderer.impl.DefaultScriptManager;
 import org.apache.rave.portal.web.renderer.model.RenderContext;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.easymock.EasyMock.*;
 import static org.hamcrest.CoreMatchers.*;
@@ -47,9 +60,15 @@ public class RenderServiceTest {
     private RegionWidgetRenderer widgetRenderer2;
     private RegionWidgetRenderer widgetRenderer1;
     private RenderContext context;
+    private ThreadPoolTaskExecutor executor;
 
     @Before
     public void setup() {
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(2);
+        executor.initialize();
+
         widgetRenderers = new ArrayList<RegionWidgetRenderer>();
         widgetRenderer2 = createStrictMock(RegionWidgetRenderer.class);
         widgetRenderer1 = createStrictMock(RegionWidgetRenderer.class);
@@ -124,6 +143,201 @@ public class RenderServiceTest {
         service.render(rw, context);
     }
 
+    @Test
+    public void prepareForRender_groupsByType() {
+        RegionWidget foo1 = regionWidget(SUPPORTED_TYPE_1, false);
+        RegionWidget foo2 = regionWidget(SUPPORTED_TYPE_1, false);
+        RegionWidget fooDisabled = regionWidget(SUPPORTED_TYPE_1, true);
+        RegionWidget bar = regionWidget(SUPPORTED_TYPE_2, false);
+        RegionWidget unsupported = regionWidget("NONE", false);
+
+        Region region1 = new Region();
+        region1.setRegionWidgets(Arrays.asList(foo1, fooDisabled, bar));
+        Region region2 = new Region();
+        region2.setRegionWidgets(Arrays.asList(unsupported, foo2));
+        Page page = new Page();
+        page.setRegions(Arrays.asList(region1, region2));
+
+        widgetRenderer1.prepareForRender(Arrays.asList(foo1, foo2));
+        expectLastCall();
+        widgetRenderer2.prepareForRender(Arrays.asList(bar));
+        expectLastCall();
+        replayMocks();
+
+        constructFooBarRenderService();
+        service.prepareForRender(page);
+        verify(widgetRenderer1, widgetRenderer2);
+    }
+
+    @Test
+    public void prepareForRender_failureIgnored() {
+        RegionWidget foo = regionWidget(SUPPORTED_TYPE_1, false);
+        Region region = new Region();
+        region.setRegionWidgets(Arrays.asList(foo));
+        Page page = new Page();
+        page.setRegions(Arrays.asList(region));
+
+        widgetRenderer1.prepareForRender(Arrays.asList(foo));
+        expectLastCall().andThrow(new RuntimeException("unavailable"));
+        replayMocks();
+
+        constructFooBarRenderService();
+        service.prepareForRender(page);
+        verify(widgetRenderer1);
+    }
+
+    @Test
+    public void preRender_renderedAheadOfView() {
+        ScriptManager scriptManager = new DefaultScriptManager();
+        StubRenderer renderer = new StubRenderer(scriptManager);
+        DefaultRenderService preRenderingService = new DefaultRenderService(Arrays.<RegionWidgetRenderer>asList(renderer), scriptManager, executor, 1000);
+        RegionWidget rw1 = regionWidget(SUPPORTED_TYPE_1, 1L);
+        RegionWidget rw2 = regionWidget(SUPPORTED_TYPE_1, 2L);
+        RenderContext requestContext = requestContext();
+
+        preRenderingService.preRender(page(rw1, rw2), requestContext);
+        assertThat(renderer.renderCount.get(), is(equalTo(2)));
+        //the workers render copies of the widgets of the request
+        for (RegionWidget rendered : renderer.rendered) {
+            assertThat(rendered, is(not(sameInstance(rw1))));
+            assertThat(rendered, is(not(sameInstance(rw2))));
+        }
+
+        assertThat(preRenderingService.render(rw2, requestContext), is(equalTo(RENDERED_TYPE_1 + 2)));
+        assertThat(preRenderingService.render(rw1, requestContext), is(equalTo(RENDERED_TYPE_1 + 1)));
+        assertThat(renderer.renderCount.get(), is(equalTo(2)));
+
+        //scripts are registered in the order the view renders the widgets
+        List<String> scripts = scriptManager.getScriptBlocks(ScriptLocation.AFTER_RAVE, requestContext);
+        assertThat(scripts, is(equalTo(Arrays.asList("SCRIPT_2", "SCRIPT_1"))));
+    }
+
+    @Test
+    public void preRender_timeout() throws InterruptedException {
+        ScriptManager scriptManager = new DefaultScriptManager();
+        StubRenderer renderer = new StubRenderer(scriptManager);
+        renderer.delays.put(1L, 2000L);
+        DefaultRenderService preRenderingService = new DefaultRenderService(Arrays.<RegionWidgetRenderer>asList(renderer), scriptManager, executor, 50);
+        RegionWidget rw = regionWidget(SUPPORTED_TYPE_1, 1L);
+        RenderContext requestContext = requestContext();
+
+        preRenderingService.preRender(page(rw), requestContext);
+        assertThat(preRenderingService.render(rw, requestContext), is(equalTo("")));
+
+        List<String> scripts = scriptManager.getScriptBlocks(ScriptLocation.AFTER_RAVE, requestContext);
+        assertThat(scripts.size(), is(equalTo(1)));
+        assertThat(scripts.get(0).contains("type: 'DISABLED'"), is(true));
+        //the abandoned worker is interrupted
+        assertThat(renderer.interrupted.await(1, TimeUnit.SECONDS), is(true));
+    }
+
+    @Test
+    public void preRender_timeoutPerWidget() {
+        ScriptManager scriptManager = new DefaultScriptManager();
+        StubRenderer renderer = new StubRenderer(scriptManager);
+        renderer.delays.put(1L, 2000L);
+        renderer.delays.put(2L, 100L);
+        DefaultRenderService preRenderingService = new DefaultRenderService(Arrays.<RegionWidgetRenderer>asList(renderer), scriptManager, executor, 200);
+        RegionWidget slow = regionWidget(SUPPORTED_TYPE_1, 1L);
+        RegionWidget fast = regionWidget(SUPPORTED_TYPE_1, 2L);
+        RenderContext requestContext = requestContext();
+
+        //the fast widget waits for a thread until the slow one is cancelled and then still gets its own timeout
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        preRenderingService.preRender(page(slow, fast), requestContext);
+
+        assertThat(preRenderingService.render(slow, requestContext), is(equalTo("")));
+        assertThat(preRenderingService.render(fast, requestContext), is(equalTo(RENDERED_TYPE_1 + 2)));
+    }
+
+    @Test
+    public void preRender_disabled() {
+        RegionWidget rw = regionWidget(SUPPORTED_TYPE_1, 1L);
+        RenderContext requestContext = requestContext();
+        widgetRenderer1.prepareForRender(Arrays.asList(rw));
+        expectLastCall();
+        expect(widgetRenderer1.render(rw, requestContext)).andReturn(RENDERED_TYPE_1);
+        replayMocks();
+
+        constructFooBarRenderService();
+        service.preRender(page(rw), requestContext);
+        assertThat(service.render(rw, requestContext), is(equalTo(RENDERED_TYPE_1)));
+        verify(widgetRenderer1);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    private static RenderContext requestContext() {
+        RenderContext requestContext = new RenderContext();
+        requestContext.setProperties(new HashMap());
+        return requestContext;
+    }
+
+    private static Page page(RegionWidget... regionWidgets) {
+        Region region = new Region(10L);
+        region.setRegionWidgets(Arrays.asList(regionWidgets));
+        for (RegionWidget regionWidget : regionWidgets) {
+            regionWidget.setRegion(region);
+        }
+        Page page = new Page();
+        page.setRegions(Arrays.asList(region));
+        return page;
+    }
+
+    private static RegionWidget regionWidget(String type, Long entityId) {
+        RegionWidget rw = regionWidget(type, false);
+        rw.setEntityId(entityId);
+        rw.getWidget().setEntityId(entityId);
+        return rw;
+    }
+
+    private static RegionWidget regionWidget(String type, boolean disableRendering) {
+        Widget w = new Widget();
+        w.setType(type);
+        w.setDisableRendering(disableRendering);
+        RegionWidget rw = new RegionWidget();
+        rw.setWidget(w);
+        return rw;
+    }
+
+    private static class StubRenderer implements RegionWidgetRenderer {
+        private final ScriptManager scriptManager;
+        private final Map<Long, Long> delays = new ConcurrentHashMap<Long, Long>();
+        private final AtomicInteger renderCount = new AtomicInteger();
+        private final List<RegionWidget> rendered = new CopyOnWriteArrayList<RegionWidget>();
+        private final CountDownLatch interrupted = new CountDownLatch(1);
+
+        private StubRenderer(ScriptManager scriptManager) {
+            this.scriptManager = scriptManager;
+        }
+
+        @Override
+        public String getSupportedContext() {
+            return SUPPORTED_TYPE_1;
+        }
+
+        @Override
+        public String render(RegionWidget item, RenderContext context) {
+            renderCount.incrementAndGet();
+            rendered.add(item);
+            try {
+                Thread.sleep(delays.containsKey(item.getEntityId()) ? delays.get(item.getEntityId()) : 0);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                Thread.currentThread().interrupt();
+            }
+            scriptManager.registerScriptBlock("SCRIPT_" + item.getEntityId(), ScriptLocation.AFTER_RAVE, RenderScope.CURRENT_REQUEST, context);
+            return RENDERED_TYPE_1 + item.getEntityId();
+        }
+
+        @Override
+        public void prepareForRender(List<RegionWidget> items) {
+        }
+    }
 
     private void constructFooBarRenderService() {
         widgetRenderers.add(widgetRenderer1);
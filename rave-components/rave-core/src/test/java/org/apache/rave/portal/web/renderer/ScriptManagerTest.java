@@ -127,6 +127,18 @@ public class ScriptManagerTest {
         assertThat(scriptBlocks.get(1), is(equalTo(SCRIPT_2)));
     }
 
+    @Test
+    public void registerBlockAndRetrieve_byScope() {
+        manager.registerScriptBlock(SCRIPT_1, ScriptLocation.BEFORE_RAVE, RenderScope.GLOBAL, context);
+        manager.registerScriptBlock(SCRIPT_2, ScriptLocation.BEFORE_RAVE, RenderScope.CURRENT_REQUEST, context);
+        List<String> scriptBlocks = manager.getScriptBlocks(ScriptLocation.BEFORE_RAVE, RenderScope.CURRENT_REQUEST, context);
+        assertThat(scriptBlocks.size(), is(equalTo(1)));
+        assertThat(scriptBlocks.get(0), is(equalTo(SCRIPT_2)));
+        scriptBlocks = manager.getScriptBlocks(ScriptLocation.BEFORE_RAVE, RenderScope.GLOBAL, context);
+        assertThat(scriptBlocks.size(), is(equalTo(1)));
+        assertThat(scriptBlocks.get(0), is(equalTo(SCRIPT_1)));
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void nullContext() {
         manager.getScriptBlocks(ScriptLocation.AFTER_LIB, null);
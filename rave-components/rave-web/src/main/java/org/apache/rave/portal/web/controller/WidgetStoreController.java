@@ -23,7 +23,10 @@ import org.apache.rave.portal.model.PortalPreference;
 import org.apache.rave.portal.model.User;
 import org.apache.rave.portal.model.Widget;
 import org.apache.rave.portal.model.WidgetStatus;
+import org.apache.rave.portal.model.util.SearchResult;
+import org.apache.rave.portal.model.util.WidgetStatistics;
 import org.apache.rave.portal.service.*;
+import org.apache.rave.portal.web.util.ContinuationToken;
 import org.apache.rave.portal.web.util.ModelKeys;
 import org.apache.rave.portal.web.util.PortalPreferenceKeys;
 import org.apache.rave.portal.web.util.ViewNames;
@@ -34,6 +37,11 @@ import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
 @Controller
 @RequestMapping(value = { "/store/*", "/store" })
 public class WidgetStoreController {
@@ -72,14 +80,19 @@ public class WidgetStoreController {
      *            the source {@link org.apache.rave.portal.model.Page } ID
      * @param offset
      *            offset within the total amount of results (to enable paging)
+     * @param continuation
+     *            token of the previous page to continue after, which takes precedence over the offset
      * @return the view name of the main store page
      */
     @RequestMapping(method = RequestMethod.GET)
     public String view(Model model, @RequestParam long referringPageId,
-            @RequestParam(required = false, defaultValue = "0") int offset) {
+            @RequestParam(required = false, defaultValue = "0") int offset,
+            @RequestParam(required = false) String continuation) {
         User user = userService.getAuthenticatedUser();
         widgetStoreModelHelper(model, referringPageId, user);
-        model.addAttribute(ModelKeys.WIDGETS, widgetService.getPublishedWidgets(offset, getPageSize()));
+        final SearchResult<Widget> widgets = getPublishedWidgets(offset, continuation);
+        addWidgets(model, widgets, user);
+        addContinuation(model, widgets);
         return ViewNames.STORE;
     }
 
@@ -88,8 +101,7 @@ public class WidgetStoreController {
             @RequestParam(required = false, defaultValue = "0") int offset) {
         User user = userService.getAuthenticatedUser();
         widgetStoreModelHelper(model, referringPageId, user);
-        model.addAttribute(ModelKeys.WIDGETS,
-                widgetService.getWidgetsByOwner(user.getEntityId(), offset, getPageSize()));
+        addWidgets(model, widgetService.getWidgetsByOwner(user.getEntityId(), offset, getPageSize()), user);
         return ViewNames.STORE;
     }
 
@@ -108,8 +120,11 @@ public class WidgetStoreController {
     public String viewWidget(Model model, @PathVariable long widgetId, @RequestParam long referringPageId) {
         final User user = userService.getAuthenticatedUser();
         widgetStoreModelHelper(model, referringPageId, user);
+        final Map<Long, WidgetStatistics> widgetsStatistics =
+                widgetService.getWidgetStatistics(Collections.singleton(widgetId), user.getEntityId());
+        model.addAttribute(ModelKeys.WIDGETS_STATISTICS, widgetsStatistics);
         model.addAttribute(ModelKeys.WIDGET, widgetService.getWidget(widgetId));
-        model.addAttribute(ModelKeys.WIDGET_STATISTICS, widgetService.getWidgetStatistics(widgetId, user.getEntityId()));
+        model.addAttribute(ModelKeys.WIDGET_STATISTICS, widgetsStatistics.get(widgetId));
         model.addAttribute(ModelKeys.USER_PROFILE, user);
         return ViewNames.WIDGET;
     }
@@ -132,8 +147,7 @@ public class WidgetStoreController {
             @RequestParam(required = false, defaultValue = "0") int offset) {
         User user = userService.getAuthenticatedUser();
         widgetStoreModelHelper(model, referringPageId, user);
-        model.addAttribute(ModelKeys.WIDGETS,
-                widgetService.getPublishedWidgetsByFreeTextSearch(searchTerm, offset, getPageSize()));
+        addWidgets(model, widgetService.getPublishedWidgetsByFreeTextSearch(searchTerm, offset, getPageSize()), user);
         model.addAttribute(ModelKeys.SEARCH_TERM, searchTerm);
         model.addAttribute(ModelKeys.OFFSET, offset);
         return ViewNames.STORE;
@@ -157,7 +171,7 @@ public class WidgetStoreController {
             @RequestParam(required = false, defaultValue = "0") int offset) {
         User user = userService.getAuthenticatedUser();
         widgetStoreModelHelper(model, referringPageId, user);
-        model.addAttribute(ModelKeys.WIDGETS, widgetService.getWidgetsByTag(keyword, offset, getPageSize()));
+        addWidgets(model, widgetService.getWidgetsByTag(keyword, offset, getPageSize()), user);
         model.addAttribute(ModelKeys.OFFSET, offset);
         model.addAttribute(ModelKeys.SELECTED_TAG, keyword);
         return ViewNames.STORE;
@@ -170,9 +184,9 @@ public class WidgetStoreController {
         User authenticatedUser = userService.getAuthenticatedUser();
         widgetStoreModelHelper(model, referringPageId, authenticatedUser);
         if (categoryId > 0) {
-            model.addAttribute(ModelKeys.WIDGETS, widgetService.getWidgetsByCategory(categoryId, offset, getPageSize()));
+            addWidgets(model, widgetService.getWidgetsByCategory(categoryId, offset, getPageSize()), authenticatedUser);
         } else {
-            model.addAttribute(ModelKeys.WIDGETS, widgetService.getPublishedWidgets(offset, getPageSize()));
+            addWidgets(model, widgetService.getPublishedWidgets(offset, getPageSize()), authenticatedUser);
         }
         model.addAttribute(ModelKeys.OFFSET, offset);
         model.addAttribute(ModelKeys.SELECTED_CATEGORY, categoryId);
@@ -238,11 +252,62 @@ public class WidgetStoreController {
      */
     private void widgetStoreModelHelper(Model model, long referringPageId, User user) {
         model.addAttribute(ModelKeys.REFERRING_PAGE_ID, referringPageId);
-        model.addAttribute(ModelKeys.WIDGETS_STATISTICS, widgetService.getAllWidgetStatistics(user.getEntityId()));
         model.addAttribute(ModelKeys.TAGS, tagService.getAllTags());
         model.addAttribute(ModelKeys.CATEGORIES, categoryService.getAll());
     }
 
+    /**
+     * Adds the widgets to show to the model, together with the statistics of only these widgets
+     *
+     * @param model
+     *            Model to add to
+     * @param widgets
+     *            the widgets on the page
+     * @param user
+     *            Current authenticated User
+     */
+    private void addWidgets(Model model, SearchResult<Widget> widgets, User user) {
+        final List<Long> widgetIds = new ArrayList<Long>();
+        for (Widget widget : widgets.getResultSet()) {
+            widgetIds.add(widget.getEntityId());
+        }
+        model.addAttribute(ModelKeys.WIDGETS, widgets);
+        model.addAttribute(ModelKeys.WIDGETS_STATISTICS,
+                widgetService.getWidgetStatistics(widgetIds, user.getEntityId()));
+    }
+
+    /**
+     * Gets the page of published widgets after the widget in the continuation token, or at the offset if there is no
+     * valid token
+     */
+    private SearchResult<Widget> getPublishedWidgets(int offset, String continuation) {
+        final int pageSize = getPageSize();
+        final String[] after = ContinuationToken.decode(continuation, 3);
+        if (after != null) {
+            try {
+                return widgetService.getPublishedWidgetsAfter(Boolean.parseBoolean(after[0]), after[1],
+                        Long.parseLong(after[2]), offset, pageSize);
+            } catch (NumberFormatException e) {
+                // not a token of this listing, start at the offset instead
+            }
+        }
+        return widgetService.getPublishedWidgets(offset, pageSize);
+    }
+
+    /**
+     * Adds the token to continue after the last widget on the page, if there are more widgets
+     */
+    private static void addContinuation(Model model, SearchResult<Widget> widgets) {
+        final List<Widget> resultSet = widgets.getResultSet();
+        if (resultSet.size() < widgets.getPageSize()
+                || widgets.getOffset() + resultSet.size() >= widgets.getTotalResults()) {
+            return;
+        }
+        final Widget last = resultSet.get(resultSet.size() - 1);
+        model.addAttribute(ModelKeys.CONTINUATION, ContinuationToken.encode(String.valueOf(last.isFeatured()),
+                last.getTitle(), String.valueOf(last.getEntityId())));
+    }
+
     public int getPageSize() {
         final PortalPreference pageSizePref = preferenceService.getPreference(PortalPreferenceKeys.PAGE_SIZE);
         if (pageSizePref == null) {
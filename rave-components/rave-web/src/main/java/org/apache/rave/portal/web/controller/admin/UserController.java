@@ -24,10 +24,13 @@ import org.apache.rave.portal.model.NewUser;
 import org.apache.rave.portal.model.PortalPreference;
 import org.apache.rave.portal.model.User;
 import org.apache.rave.portal.model.util.SearchResult;
+import org.apache.rave.portal.model.util.UserImportResult;
 import org.apache.rave.portal.service.AuthorityService;
 import org.apache.rave.portal.service.NewAccountService;
 import org.apache.rave.portal.service.PortalPreferenceService;
+import org.apache.rave.portal.service.UserImportService;
 import org.apache.rave.portal.service.UserService;
+import org.apache.rave.portal.web.util.ContinuationToken;
 import org.apache.rave.portal.web.util.ModelKeys;
 import org.apache.rave.portal.web.util.PortalPreferenceKeys;
 import org.apache.rave.portal.web.util.ViewNames;
@@ -48,12 +51,18 @@ import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.SessionAttributes;
 import org.springframework.web.bind.support.SessionStatus;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import javax.servlet.http.HttpServletResponse;
 import java.beans.PropertyEditorSupport;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
 
 import static org.apache.rave.portal.web.controller.admin.AdminControllerUtil.DEFAULT_PAGE_SIZE;
 import static org.apache.rave.portal.web.controller.admin.AdminControllerUtil.addNavigationMenusToModel;
@@ -89,6 +98,9 @@ public class UserController {
     @Autowired
     private NewAccountService newAccountService;
 
+    @Autowired
+    private UserImportService userImportService;
+
     @Value("#{messages['page.newaccount.message.created']}")
     private String messageSuccess;
 
@@ -104,10 +116,20 @@ public class UserController {
     @RequestMapping(value = {"/admin/users"}, method = RequestMethod.GET)
     public String viewUsers(@RequestParam(required = false, defaultValue = "0") int offset,
                             @RequestParam(required = false) final String action,
+                            @RequestParam(required = false) String continuation,
                             Model model) {
         addNavigationMenusToModel(SELECTED_ITEM, model);
-        final SearchResult<User> users = userService.getLimitedListOfUsers(offset, getPageSize());
+        final String[] after = ContinuationToken.decode(continuation, 1);
+        final SearchResult<User> users = after == null ?
+                userService.getLimitedListOfUsers(offset, getPageSize()) :
+                userService.getLimitedListOfUsersAfter(after[0], offset, getPageSize());
         model.addAttribute(ModelKeys.SEARCHRESULT, users);
+        final List<User> resultSet = users.getResultSet();
+        if (resultSet.size() == users.getPageSize() && offset + resultSet.size() < users.getTotalResults()) {
+            // the next page continues after the last username instead of skipping all users before it
+            model.addAttribute(ModelKeys.CONTINUATION,
+                    ContinuationToken.encode(resultSet.get(resultSet.size() - 1).getUsername()));
+        }
 
         if (isDeleteOrUpdate(action)) {
             model.addAttribute("actionresult", action);
@@ -217,6 +239,38 @@ public class UserController {
     }
 
 
+    /**
+     * Creates the accounts of all users in the request body, e.g.
+     * <code>curl -u admin --data-binary @users.csv -H "Content-Type: text/plain" .../app/admin/users/import?format=csv</code>
+     *
+     * @param format {@literal csv} or {@literal ldif}
+     * @param content the users to create
+     * @param response the response, answered with a 400 when the format or a CSV column is unknown
+     * @return the number of accounts created and the users for which no account was created
+     * @throws IOException if the request body cannot be read
+     */
+    @ResponseBody
+    @RequestMapping(value = "/admin/users/import", method = RequestMethod.POST)
+    public UserImportResult importUsers(@RequestParam(required = false, defaultValue = "csv") String format,
+                                        @RequestBody String content,
+                                        HttpServletResponse response) throws IOException {
+        final UserImportService.Format importFormat;
+        try {
+            importFormat = UserImportService.Format.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown format " + format +
+                    ", expected csv or ldif");
+            return null;
+        }
+        try {
+            return userImportService.importUsers(new StringReader(content), importFormat);
+        } catch (IllegalArgumentException e) {
+            //the input names a CSV column that is not a property of a user
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return null;
+        }
+    }
+
     @ModelAttribute("authorities")
     public SearchResult<Authority> populateAuthorityList() {
         return authorityService.getAllAuthorities();
@@ -252,6 +306,10 @@ public class UserController {
         this.newAccountService = newAccountService;
     }
 
+    void setUserImportService(UserImportService userImportService) {
+        this.userImportService = userImportService;
+    }
+
 
     /**
      * Mapping between the submitted form value and an {@link Authority}
@@ -20,6 +20,7 @@
 package org.apache.rave.portal.web.tag;
 
 import org.apache.commons.lang.StringEscapeUtils;
+import org.apache.rave.portal.model.Page;
 import org.apache.rave.portal.model.RegionWidget;
 import org.apache.rave.portal.web.renderer.RenderScope;
 import org.apache.rave.portal.web.renderer.RenderService;
@@ -33,6 +34,8 @@ import javax.servlet.jsp.JspException;
  */
 public class RegionWidgetTag extends AbstractContextAwareSingletonBeanDependentTag<RenderService> {
 
+    private static final String PREPARED_PAGE_KEY = "_PREPARED_PAGE";
+
     private RegionWidget regionWidget;
 
     // Script block for disabled gadget
@@ -74,6 +77,7 @@ public class RegionWidgetTag extends AbstractContextAwareSingletonBeanDependentT
                         regionWidget.getWidget().getEntityId());
                 scriptManager.registerScriptBlock(widgetScript, ScriptLocation.AFTER_RAVE, RenderScope.CURRENT_REQUEST, getContext());
             } else {
+                prepareForRender();
                 writeString(getBean().render(regionWidget, getContext()));
             }
         }
@@ -85,4 +89,19 @@ public class RegionWidgetTag extends AbstractContextAwareSingletonBeanDependentT
         regionWidget = null;
         return EVAL_BODY_INCLUDE;
     }
+
+    /**
+     * Lets the RenderService render all widgets on the page the first time one of them is rendered in a request, so
+     * that each tag only has to emit the output that was already rendered
+     */
+    private void prepareForRender() throws JspException {
+        if (regionWidget.getRegion() == null || regionWidget.getRegion().getPage() == null) {
+            return;
+        }
+        Page page = regionWidget.getRegion().getPage();
+        if (this.pageContext.getRequest().getAttribute(PREPARED_PAGE_KEY) != page) {
+            getBean().preRender(page, getContext());
+            this.pageContext.getRequest().setAttribute(PREPARED_PAGE_KEY, page);
+        }
+    }
 }
@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.portal.web.util;
+
+import org.springframework.security.crypto.codec.Base64;
+
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Opaque tokens that continue a listing after the last item of the previous page. The token holds the sort key of
+ * that item, so the next page is read by seeking to the key instead of skipping an offset. A token that was tampered
+ * with only moves the start of the listing, so the tokens are not signed.
+ */
+public class ContinuationToken {
+    private static final String ENCODING = "UTF-8";
+    private static final String SEPARATOR = "\u0000";
+
+    private ContinuationToken() {
+    }
+
+    /**
+     * @param values the sort key of the last item of the page
+     * @return the token to request the next page with
+     */
+    public static String encode(String... values) {
+        final StringBuilder key = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                key.append(SEPARATOR);
+            }
+            key.append(values[i] == null ? "" : values[i]);
+        }
+        try {
+            return new String(Base64.encode(key.toString().getBytes(ENCODING)), ENCODING);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param token  a token created by {@link #encode(String...)}, can be null
+     * @param length the number of values in the sort key
+     * @return the sort key, or null if there is no token or it is not a token with the given number of values
+     */
+    public static String[] decode(String token, int length) {
+        if (token == null || token.length() == 0) {
+            return null;
+        }
+        try {
+            final String[] values = new String(Base64.decode(token.getBytes(ENCODING)), ENCODING).split(SEPARATOR, -1);
+            return values.length == length ? values : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -41,6 +41,7 @@ public class ModelKeys {
     public static final String USER_PROFILE = "userProfile";
     public static final String SEARCH_TERM = "searchTerm";
     public static final String OFFSET = "offset";
+    public static final String CONTINUATION = "continuation"; // token to request the page after the current one
     public static final String SEARCHRESULT = "searchResult";
     public static final String TOKENCHECK = "tokencheck";
     public static final String USER_MAP = "userMap";
@@ -31,6 +31,7 @@ import org.apache.rave.portal.service.TagService;
 import org.apache.rave.portal.service.CategoryService;
 import org.apache.rave.portal.service.UserService;
 import org.apache.rave.portal.service.WidgetService;
+import org.apache.rave.portal.web.util.ContinuationToken;
 import org.apache.rave.portal.web.util.ModelKeys;
 import org.apache.rave.portal.web.util.PortalPreferenceKeys;
 import org.apache.rave.portal.web.util.ViewNames;
@@ -43,6 +44,8 @@ import org.springframework.validation.BeanPropertyBindingResult;
 import org.springframework.validation.BindingResult;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -111,10 +114,11 @@ public class WidgetStoreControllerTest {
         SearchResult<Widget> emptyResult = new SearchResult<Widget>(widgets, 0);
 
         expect(widgetService.getPublishedWidgets(0, 10)).andReturn(emptyResult);
-        expect(widgetService.getAllWidgetStatistics(validUser.getEntityId())).andReturn(allWidgetStatisticsMap);
+        expect(widgetService.getWidgetStatistics(new ArrayList<Long>(), validUser.getEntityId()))
+                .andReturn(allWidgetStatisticsMap);
         replay(widgetService);
 
-        String view = controller.view(model, REFERRER_ID, 0);
+        String view = controller.view(model, REFERRER_ID, 0, null);
 
         verify(widgetService);
         assertThat(view, is(equalTo(ViewNames.STORE)));
@@ -127,6 +131,67 @@ public class WidgetStoreControllerTest {
 
     }
 
+    @Test
+    public void view_continuation() {
+        Model model = new ExtendedModelMap();
+        List<Widget> widgets = new ArrayList<Widget>();
+        List<Long> widgetIds = new ArrayList<Long>();
+        for (long id = 3; id < 13; id++) {
+            Widget widget = new Widget(id, "http://example.com/widget" + id + ".xml");
+            widget.setTitle("Widget " + id);
+            widgets.add(widget);
+            widgetIds.add(id);
+        }
+        SearchResult<Widget> result = new SearchResult<Widget>(widgets, 25);
+        result.setOffset(10);
+        result.setPageSize(10);
+
+        expect(widgetService.getPublishedWidgetsAfter(true, "Hamster", 2L, 10, 10)).andReturn(result);
+        expect(widgetService.getWidgetStatistics(widgetIds, validUser.getEntityId())).andReturn(allWidgetStatisticsMap);
+        replay(widgetService);
+
+        controller.view(model, REFERRER_ID, 10, ContinuationToken.encode("true", "Hamster", "2"));
+
+        verify(widgetService);
+        assertThat(model.asMap().get(ModelKeys.WIDGETS), is(sameInstance((Object) result)));
+        assertThat((String) model.asMap().get(ModelKeys.CONTINUATION),
+                is(equalTo(ContinuationToken.encode("false", "Widget 12", "12"))));
+    }
+
+    @Test
+    public void view_lastPageHasNoContinuation() {
+        Model model = new ExtendedModelMap();
+        Widget widget = new Widget(WIDGET_ID, "http://example.com/widget.xml");
+        SearchResult<Widget> result = new SearchResult<Widget>(Arrays.asList(widget), 11);
+        result.setOffset(10);
+        result.setPageSize(10);
+
+        expect(widgetService.getPublishedWidgetsAfter(false, "Hamster", 2L, 10, 10)).andReturn(result);
+        expect(widgetService.getWidgetStatistics(Arrays.asList(WIDGET_ID), validUser.getEntityId()))
+                .andReturn(allWidgetStatisticsMap);
+        replay(widgetService);
+
+        controller.view(model, REFERRER_ID, 10, ContinuationToken.encode("false", "Hamster", "2"));
+
+        verify(widgetService);
+        assertThat(model.containsAttribute(ModelKeys.CONTINUATION), is(false));
+    }
+
+    @Test
+    public void view_invalidContinuation() {
+        Model model = new ExtendedModelMap();
+        SearchResult<Widget> emptyResult = new SearchResult<Widget>(new ArrayList<Widget>(), 0);
+
+        expect(widgetService.getPublishedWidgets(10, 10)).andReturn(emptyResult);
+        expect(widgetService.getWidgetStatistics(new ArrayList<Long>(), validUser.getEntityId()))
+                .andReturn(allWidgetStatisticsMap);
+        replay(widgetService);
+
+        controller.view(model, REFERRER_ID, 10, ContinuationToken.encode("true", "Hamster", "not a number"));
+
+        verify(widgetService);
+    }
+
     @Test
     public void viewMine() {
         Model model = new ExtendedModelMap();
@@ -134,7 +199,8 @@ public class WidgetStoreControllerTest {
         SearchResult<Widget> emptyResult = new SearchResult<Widget>(widgets, 0);
 
         expect(widgetService.getWidgetsByOwner(validUser.getEntityId(), 0, 10)).andReturn(emptyResult);
-        expect(widgetService.getAllWidgetStatistics(validUser.getEntityId())).andReturn(allWidgetStatisticsMap);
+        expect(widgetService.getWidgetStatistics(new ArrayList<Long>(), validUser.getEntityId()))
+                .andReturn(allWidgetStatisticsMap);
         replay(widgetService);
 
         String view = controller.viewMine(model, REFERRER_ID, 0);
@@ -155,11 +221,11 @@ public class WidgetStoreControllerTest {
         Model model = new ExtendedModelMap();
         Widget w = new Widget(1L, "http://example.com/widget.xml");
 
-        expect(widgetService.getAllWidgetStatistics(validUser.getEntityId())).andReturn(allWidgetStatisticsMap);
         expect(tagService.getAllTags()).andReturn(new ArrayList<Tag>());
         expect(categoryService.getAll()).andReturn(new ArrayList<Category>());
         expect(widgetService.getWidget(WIDGET_ID)).andReturn(w);
-        expect(widgetService.getWidgetStatistics(WIDGET_ID, validUser.getEntityId())).andReturn(widgetStatistics);
+        expect(widgetService.getWidgetStatistics(Collections.singleton(WIDGET_ID), validUser.getEntityId()))
+                .andReturn(allWidgetStatisticsMap);
         replay(widgetService);
 
         String view = controller.viewWidget(model, WIDGET_ID, REFERRER_ID);
@@ -172,6 +238,8 @@ public class WidgetStoreControllerTest {
         assertThat(model.containsAttribute(ModelKeys.CATEGORIES), is(true));
         assertThat(model.containsAttribute(ModelKeys.REFERRING_PAGE_ID), is(true));
         assertThat(((Widget) model.asMap().get(ModelKeys.WIDGET)), is(sameInstance(w)));
+        assertThat(((WidgetStatistics) model.asMap().get(ModelKeys.WIDGET_STATISTICS)),
+                is(sameInstance(widgetStatistics)));
         assertNull(model.asMap().get("widgetRating"));
 
     }
@@ -183,10 +251,11 @@ public class WidgetStoreControllerTest {
         int offset = 0;
         int pageSize = 10;
         SearchResult<Widget> searchResults = new SearchResult<Widget>(new ArrayList<Widget>(),0);
-        expect(widgetService.getAllWidgetStatistics(validUser.getEntityId())).andReturn(allWidgetStatisticsMap);
         expect(tagService.getAllTags()).andReturn(new ArrayList<Tag>());
         expect(categoryService.getAll()).andReturn(new ArrayList<Category>());
         expect(widgetService.getWidgetsByCategory(categoryId, offset, pageSize)).andReturn(searchResults);
+        expect(widgetService.getWidgetStatistics(new ArrayList<Long>(), validUser.getEntityId()))
+                .andReturn(allWidgetStatisticsMap);
         replay(widgetService, tagService, categoryService);
 
         String view = controller.viewCategoryResult(REFERRER_ID, categoryId, offset, model);
@@ -220,7 +289,8 @@ public class WidgetStoreControllerTest {
         result.setPageSize(pagesize);
 
         expect(widgetService.getPublishedWidgetsByFreeTextSearch(searchTerm, offset, pagesize)).andReturn(result);
-        expect(widgetService.getAllWidgetStatistics(validUser.getEntityId())).andReturn(allWidgetStatisticsMap);
+        expect(widgetService.getWidgetStatistics(Arrays.asList(1L), validUser.getEntityId()))
+                .andReturn(allWidgetStatisticsMap);
         replay(widgetService);
 
         String view = controller.viewSearchResult(model, REFERRER_ID, searchTerm, offset);
@@ -233,6 +303,7 @@ public class WidgetStoreControllerTest {
         assertThat(model.containsAttribute(ModelKeys.WIDGETS_STATISTICS), is(true));
         assertEquals(offset, modelMap.get(ModelKeys.OFFSET));
         assertEquals(result, modelMap.get(ModelKeys.WIDGETS));
+        assertThat(modelMap.get(ModelKeys.WIDGETS_STATISTICS), is(sameInstance((Object) allWidgetStatisticsMap)));
         assertThat(model.containsAttribute(ModelKeys.TAGS), is(true));
         assertThat(model.containsAttribute(ModelKeys.CATEGORIES), is(true));
 
@@ -23,16 +23,20 @@ import org.apache.rave.portal.model.Authority;
 import org.apache.rave.portal.model.NewUser;
 import org.apache.rave.portal.model.User;
 import org.apache.rave.portal.model.util.SearchResult;
+import org.apache.rave.portal.model.util.UserImportResult;
 import org.apache.rave.portal.service.AuthorityService;
 import org.apache.rave.portal.service.NewAccountService;
 import org.apache.rave.portal.service.PortalPreferenceService;
+import org.apache.rave.portal.service.UserImportService;
 import org.apache.rave.portal.service.UserService;
+import org.apache.rave.portal.web.util.ContinuationToken;
 import org.apache.rave.portal.web.util.ModelKeys;
 import org.apache.rave.portal.web.util.ViewNames;
 import org.apache.rave.portal.web.validator.NewAccountValidator;
 import org.apache.rave.portal.web.validator.UserProfileValidator;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.ui.ExtendedModelMap;
 import org.springframework.ui.Model;
 import org.springframework.ui.ModelMap;
@@ -41,16 +45,20 @@ import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.support.SessionStatus;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.List;
 
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
 import static junit.framework.Assert.assertTrue;
 import static org.easymock.EasyMock.createMock;
 import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.isA;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
 
@@ -66,6 +74,7 @@ public class UserControllerTest {
     private NewAccountService newAccountService;
     private AuthorityService authorityService;
     private PortalPreferenceService preferenceService;
+    private UserImportService userImportService;
     private String validToken;
 
     @Test
@@ -79,12 +88,28 @@ public class UserControllerTest {
         expect(userService.getLimitedListOfUsers(offset, pageSize)).andReturn(searchResult);
         replay(userService);
 
-        String adminUsersView = controller.viewUsers(offset, referer, model);
+        String adminUsersView = controller.viewUsers(offset, referer, null, model);
         assertEquals(ViewNames.ADMIN_USERS, adminUsersView);
         assertEquals(searchResult, model.asMap().get(ModelKeys.SEARCHRESULT));
         assertTrue(model.containsAttribute(TABS));
     }
 
+    @Test
+    public void adminUsers_continuation() throws Exception {
+        Model model = new ExtendedModelMap();
+        SearchResult<User> searchResult = createSearchResultWithTwoUsers();
+        searchResult.setOffset(2);
+        searchResult.setPageSize(2);
+
+        expect(userService.getLimitedListOfUsersAfter("jane.doe", 2, 10)).andReturn(searchResult);
+        replay(userService);
+
+        controller.viewUsers(2, null, ContinuationToken.encode("jane.doe"), model);
+        verify(userService);
+        assertEquals(searchResult, model.asMap().get(ModelKeys.SEARCHRESULT));
+        assertEquals(ContinuationToken.encode("john.doe.jr"), model.asMap().get(ModelKeys.CONTINUATION));
+    }
+
     @Test
     public void searchUsers() throws Exception {
         Model model = new ExtendedModelMap();
@@ -306,6 +331,40 @@ public class UserControllerTest {
         assertEquals(ViewNames.ADMIN_NEW_ACCOUNT, result);
     }
 
+    @Test
+    public void importUsers() throws Exception {
+        final UserImportResult importResult = new UserImportResult();
+        expect(userImportService.importUsers(isA(Reader.class), eq(UserImportService.Format.LDIF)))
+                .andReturn(importResult);
+        replay(userImportService);
+
+        UserImportResult result = controller.importUsers("ldif", "dn: uid=john.doe\nuid: john.doe\n",
+                new MockHttpServletResponse());
+        verify(userImportService);
+        assertEquals(importResult, result);
+    }
+
+    @Test
+    public void importUsers_unknownFormat() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertNull(controller.importUsers("xml", "<users/>", response));
+        assertEquals(400, response.getStatus());
+        assertTrue(response.getErrorMessage().contains("xml"));
+    }
+
+    @Test
+    public void importUsers_unknownColumn() throws Exception {
+        expect(userImportService.importUsers(isA(Reader.class), eq(UserImportService.Format.CSV)))
+                .andThrow(new IllegalArgumentException("Unknown column nickname"));
+        replay(userImportService);
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertNull(controller.importUsers("csv", "username,nickname\n", response));
+        verify(userImportService);
+        assertEquals(400, response.getStatus());
+        assertEquals("Unknown column nickname", response.getErrorMessage());
+    }
+
     @Test
     public void getAuthoritiesForModelMap() {
         final SearchResult<Authority> authorities = createSearchResultWithTwoAuthorities();
@@ -338,6 +397,9 @@ public class UserControllerTest {
 
         newAccountService = createMock(NewAccountService.class);
         controller.setNewAccountService(newAccountService);
+
+        userImportService = createMock(UserImportService.class);
+        controller.setUserImportService(userImportService);
     }
 
 
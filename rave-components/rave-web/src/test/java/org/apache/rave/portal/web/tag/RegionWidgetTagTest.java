@@ -20,6 +20,7 @@
 package org.apache.rave.portal.web.tag;
 
 import org.apache.commons.lang.StringEscapeUtils;
+import org.apache.rave.portal.model.Page;
 import org.apache.rave.portal.model.Region;
 import org.apache.rave.portal.model.RegionWidget;
 import org.apache.rave.portal.model.Widget;
@@ -108,6 +109,41 @@ public class RegionWidgetTagTest {
         verify(writer);
     }
 
+    @Test
+    public void doStartTag_preparesPageOnce() throws IOException, JspException {
+        Page page = new Page(1L);
+        Region region = new Region(2L);
+        region.setPage(page);
+        RegionWidget regionWidget1 = new RegionWidget(3L);
+        RegionWidget regionWidget2 = new RegionWidget(4L);
+        Widget widget = new Widget();
+        widget.setType(WIDGET_TYPE);
+        regionWidget1.setWidget(widget);
+        regionWidget1.setRegion(region);
+        regionWidget2.setWidget(widget);
+        regionWidget2.setRegion(region);
+
+        Set<String> strings = new HashSet<String>();
+        strings.add(WIDGET_TYPE);
+
+        expect(service.getSupportedWidgetTypes()).andReturn(strings).anyTimes();
+        service.preRender(page, context);
+        expectLastCall().once();
+        expect(service.render(regionWidget1, context)).andReturn(RENDERED);
+        expect(service.render(regionWidget2, context)).andReturn(RENDERED);
+        replay(service);
+
+        JspWriter writer = createNiceMock(JspWriter.class);
+        expect(pageContext.getOut()).andReturn(writer).anyTimes();
+        replay(pageContext, writer);
+
+        tag.setRegionWidget(regionWidget1);
+        tag.doStartTag();
+        tag.setRegionWidget(regionWidget2);
+        tag.doStartTag();
+        verify(service);
+    }
+
     @Test(expected = JspException.class)
     public void doStartTag_nullWidget() throws JspException {
         replay(pageContext);
@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.portal.web.util;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test for {@link ContinuationToken}
+ */
+public class ContinuationTokenTest {
+
+    @Test
+    public void encodeAndDecode() {
+        String token = ContinuationToken.encode("true", "Wikipedia \u00e9 & co", "42");
+        String[] values = ContinuationToken.decode(token, 3);
+
+        assertThat(values.length, is(3));
+        assertThat(values[0], is(equalTo("true")));
+        assertThat(values[1], is(equalTo("Wikipedia \u00e9 & co")));
+        assertThat(values[2], is(equalTo("42")));
+    }
+
+    @Test
+    public void encode_emptyValues() {
+        String[] values = ContinuationToken.decode(ContinuationToken.encode("false", null, ""), 3);
+        assertThat(values[1], is(equalTo("")));
+        assertThat(values[2], is(equalTo("")));
+    }
+
+    @Test
+    public void decode_wrongLength() {
+        assertThat(ContinuationToken.decode(ContinuationToken.encode("john.doe"), 3), is(nullValue()));
+    }
+
+    @Test
+    public void decode_invalid() {
+        assertThat(ContinuationToken.decode(null, 1), is(nullValue()));
+        assertThat(ContinuationToken.decode("", 1), is(nullValue()));
+        assertThat(ContinuationToken.decode("not a token!", 1), is(nullValue()));
+    }
+}
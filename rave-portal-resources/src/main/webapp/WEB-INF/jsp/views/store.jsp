@@ -114,6 +114,14 @@
                                 </c:choose>
 
                             </c:forEach>
+                            <c:if test="${not empty continuation}">
+                                <c:url var="pageUrl" value="">
+                                    <c:param name="referringPageId" value="${referringPageId}"/>
+                                    <c:param name="offset" value="${widgets.offset + widgets.pageSize}"/>
+                                    <c:param name="continuation" value="${continuation}"/>
+                                </c:url>
+                                <li><a href="<c:out value="${pageUrl}"/>">&gt;</a></li>
+                            </c:if>
                         </ul>
                     </div>
 
@@ -263,6 +271,14 @@
                                     </c:otherwise>
                                 </c:choose>
                             </c:forEach>
+                            <c:if test="${not empty continuation}">
+                                <c:url var="pageUrl" value="">
+                                    <c:param name="referringPageId" value="${referringPageId}"/>
+                                    <c:param name="offset" value="${widgets.offset + widgets.pageSize}"/>
+                                    <c:param name="continuation" value="${continuation}"/>
+                                </c:url>
+                                <li><a href="<c:out value="${pageUrl}"/>">&gt;</a></li>
+                            </c:if>
                         </ul>
                     </div>
                 </c:if>
@@ -19,6 +19,9 @@
 
 package org.apache.rave.provider.opensocial.repository;
 
+import java.util.Collection;
+import java.util.Map;
+
 public interface GadgetMetadataRepository {
     /**
      * Fetches gadget metadata for the specified gadget URL.
@@ -27,4 +30,13 @@ public interface GadgetMetadataRepository {
      * @return The raw JSON response from the Shindig metadata RPC call.
      */
     public String getGadgetMetadata(String gadgetUrl);
+
+    /**
+     * Fetches gadget metadata for all of the specified gadget URLs in a single Shindig metadata RPC call.
+     *
+     * @param gadgetUrls The gadgets to fetch metadata for.
+     * @return The raw JSON metadata of each gadget keyed by gadget URL.  Gadgets Shindig returned no metadata for
+     *         are left out of the map.
+     */
+    public Map<String, String> getGadgetMetadata(Collection<String> gadgetUrls);
 }
\ No newline at end of file
@@ -31,7 +31,13 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 import org.springframework.web.client.RestOperations;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
 
 import static org.apache.rave.provider.opensocial.Constants.DATA_TYPE;
 import static org.apache.rave.provider.opensocial.Constants.HAS_PREFS_TO_EDIT;
@@ -56,26 +62,44 @@ public class ShindigGadgetMetadataRepository implements GadgetMetadataRepository
 
     @Override
     public String getGadgetMetadata(String gadgetUrl) {
+        String metadata = getGadgetMetadata(Collections.singletonList(gadgetUrl)).get(gadgetUrl);
+        if (metadata == null) {
+            throw new IllegalArgumentException("No metadata returned from shindig metadata call for gadget " + gadgetUrl);
+        }
+        return metadata;
+    }
+
+    @Override
+    public Map<String, String> getGadgetMetadata(Collection<String> gadgetUrls) {
+        Set<String> uniqueGadgetUrls = new LinkedHashSet<String>(gadgetUrls);
+        Map<String, String> metadataByUrl = new HashMap<String, String>();
+        if (uniqueGadgetUrls.isEmpty()) {
+            return metadataByUrl;
+        }
+
         //generate the json request to be sent to the shindig RPC service
         JSONArray rpcArray = new JSONArray();
         try {
+            JSONObject params = new JSONObject()
+                    .put("container", "default");
+            for (String gadgetUrl : uniqueGadgetUrls) {
+                params.append("ids", gadgetUrl);
+            }
+            params.append("fields", "iframeUrls")
+                    .append("fields", "modulePrefs.*")
+                    .append("fields", "needsTokenRefresh")
+                    .append("fields", "userPrefs.*")
+                    .append("fields", "views.preferredHeight")
+                    .append("fields", "views.preferredWidth")
+                    .append("fields", "expireTimeMs")
+                    .append("fields", "responseTimeMs")
+                    .put("userId", "@viewer")
+                    .put("groupId", "@self");
+
             JSONObject fetchMetadataRpcOperation = new JSONObject()
                     .put("method", "gadgets.metadata")
                     .put("id", "gadgets.metadata")
-                    .put("params", new JSONObject()
-                            .put("container", "default")
-                            .append("ids", gadgetUrl)
-                            .append("fields", "iframeUrls")
-                            .append("fields", "modulePrefs.*")
-                            .append("fields", "needsTokenRefresh")
-                            .append("fields", "userPrefs.*")
-                            .append("fields", "views.preferredHeight")
-                            .append("fields", "views.preferredWidth")
-                            .append("fields", "expireTimeMs")
-                            .append("fields", "responseTimeMs")
-                            .put("userId", "@viewer")
-                            .put("groupId", "@self")
-                    );
+                    .put("params", params);
 
             rpcArray.put(fetchMetadataRpcOperation);
         } catch (JSONException e) {
@@ -94,40 +118,50 @@ public class ShindigGadgetMetadataRepository implements GadgetMetadataRepository
             logger.debug("shindig metadata raw response: {}", responseString);
         }
 
-        //now trim back the response to just the metadata for the single gadget
+        //now split the response into the metadata for each gadget
         try {
-            JSONObject responseObject = new JSONArray(responseString).
+            JSONObject result = new JSONArray(responseString).
                     getJSONObject(0).
-                    getJSONObject("result").
-                    getJSONObject(gadgetUrl);
-
-            // check to see if this gadget has at least one non-hidden user pref
-            // to determine if we should display the edit prefs button
-            boolean hasPrefsToEdit = false;
-            if (responseObject.has(USER_PREFS)) {
-                JSONObject userPrefs = responseObject.getJSONObject(USER_PREFS);
-                Iterator keys = userPrefs.keys();
-                while(keys.hasNext()) {
-                    String userPrefName = (String) keys.next();
-                    JSONObject userPref = userPrefs.getJSONObject(userPrefName);
-                    if (!PrefDataTypes.HIDDEN.toString().equals(userPref.getString(DATA_TYPE))) {
-                        hasPrefsToEdit = true;
-                        break;
-                    }
-                }
-            }
+                    getJSONObject("result");
 
-            responseObject.put(HAS_PREFS_TO_EDIT, hasPrefsToEdit);
-            responseString = responseObject.toString();
+            for (String gadgetUrl : uniqueGadgetUrls) {
+                JSONObject responseObject = result.optJSONObject(gadgetUrl);
+                if (responseObject == null) {
+                    logger.warn("No metadata returned from shindig metadata call for gadget {}", gadgetUrl);
+                    continue;
+                }
+                responseObject.put(HAS_PREFS_TO_EDIT, hasPrefsToEdit(responseObject));
+                String metadata = responseObject.toString();
 
-            if (logger.isDebugEnabled()) {
-                logger.debug("shindig metadata trimmed response: {}", responseString);
+                if (logger.isDebugEnabled()) {
+                    logger.debug("shindig metadata trimmed response: {}", metadata);
+                }
+                metadataByUrl.put(gadgetUrl, metadata);
             }
         } catch (JSONException e) {
             throw new IllegalArgumentException("Error occurred while processing response from shindig metadata call", e);
         }
 
-        //return the raw JSON
-        return responseString;
+        return metadataByUrl;
+    }
+
+    /*
+      Helper methods
+    */
+    // check to see if this gadget has at least one non-hidden user pref
+    // to determine if we should display the edit prefs button
+    private static boolean hasPrefsToEdit(JSONObject responseObject) throws JSONException {
+        if (responseObject.has(USER_PREFS)) {
+            JSONObject userPrefs = responseObject.getJSONObject(USER_PREFS);
+            Iterator keys = userPrefs.keys();
+            while(keys.hasNext()) {
+                String userPrefName = (String) keys.next();
+                JSONObject userPref = userPrefs.getJSONObject(userPrefName);
+                if (!PrefDataTypes.HIDDEN.toString().equals(userPref.getString(DATA_TYPE))) {
+                    return true;
+                }
+            }
+        }
+        return false;
     }
 }
\ No newline at end of file
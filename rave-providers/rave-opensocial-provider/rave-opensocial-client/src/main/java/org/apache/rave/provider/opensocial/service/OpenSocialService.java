@@ -19,6 +19,9 @@
 
 package org.apache.rave.provider.opensocial.service;
 
+import java.util.Collection;
+import java.util.Map;
+
 public interface OpenSocialService {
     /**
      * Fetches gadget metadata for the specified gadget URL.
@@ -27,4 +30,13 @@ public interface OpenSocialService {
      * @return The raw JSON response from the Shindig metadata RPC call.
      */
     String getGadgetMetadata(String gadgetUrl);
+
+    /**
+     * Fetches gadget metadata for all of the specified gadget URLs, retrieving whatever is not already available
+     * in a single Shindig metadata RPC call.
+     *
+     * @param gadgetUrls The gadgets to fetch metadata for.
+     * @return The raw JSON metadata of each gadget keyed by gadget URL.
+     */
+    Map<String, String> getGadgetMetadata(Collection<String> gadgetUrls);
 }
\ No newline at end of file
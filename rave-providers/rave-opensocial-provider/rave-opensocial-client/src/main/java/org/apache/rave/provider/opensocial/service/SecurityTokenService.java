@@ -23,11 +23,22 @@ import org.apache.rave.portal.model.RegionWidget;
 import org.apache.rave.provider.opensocial.exception.SecurityTokenException;
 import org.apache.shindig.auth.SecurityToken;
 
+import java.util.List;
+import java.util.Map;
+
 public interface SecurityTokenService {
     SecurityToken getSecurityToken(RegionWidget regionWidget) throws SecurityTokenException;
 
     String getEncryptedSecurityToken(RegionWidget regionWidget) throws SecurityTokenException;
 
+    /**
+     * Gets the encrypted security tokens of all of the gadgets on a page for the authenticated user at once
+     *
+     * @param regionWidgets the RegionWidgets to get tokens for
+     * @return the encrypted tokens by RegionWidget id
+     */
+    Map<Long, String> getEncryptedSecurityTokens(List<RegionWidget> regionWidgets) throws SecurityTokenException;
+
     SecurityToken decryptSecurityToken(String encryptedSecurityToken) throws SecurityTokenException;
 
     String refreshEncryptedSecurityToken(String encryptedSecurityToken) throws SecurityTokenException;
@@ -21,21 +21,306 @@ package org.apache.rave.provider.opensocial.service.impl;
 
 import org.apache.rave.provider.opensocial.repository.GadgetMetadataRepository;
 import org.apache.rave.provider.opensocial.service.OpenSocialService;
+import org.apache.rave.util.ExpiringCache;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Caches the gadget metadata returned by the {@link GadgetMetadataRepository} by gadget url.
+ * <p/>
+ * An entry is fresh for the lifetime shindig reports for it (expireTimeMs - responseTimeMs), or for the default
+ * ttl when the response carries no expiry.  Once it expires the stale value keeps being served for the stale ttl
+ * while a single refresh runs on the task scheduler.  At most {@link #MAX_QUEUED_REFRESHES} refreshes are queued at a
+ * time, stale gadgets beyond that are refreshed by a later request.  Concurrent requests for a gadget that is not
+ * cached share one fetch, and batch requests retrieve all of their uncached gadgets from shindig in one call.
+ */
 @Service
 public class DefaultOpenSocialService implements OpenSocialService {
-    private GadgetMetadataRepository gadgetMetadataRepository;
+    private static Logger logger = LoggerFactory.getLogger(DefaultOpenSocialService.class);
+
+    private static final String EXPIRE_TIME_MS = "expireTimeMs";
+    private static final String RESPONSE_TIME_MS = "responseTimeMs";
+
+    private static final int DEFAULT_MAX_SIZE = 1000;
+    private static final long DEFAULT_TTL_MS = 5 * 60 * 1000;
+    private static final long DEFAULT_STALE_TTL_MS = 60 * 60 * 1000;
+    public static final int MAX_QUEUED_REFRESHES = 10;
+
+    private final GadgetMetadataRepository gadgetMetadataRepository;
+    private final TaskScheduler taskScheduler;
+    private final long defaultTtlMillis;
+    private final long staleTtlMillis;
+    private final ExpiringCache<String, CachedMetadata> cache;
+    private final ConcurrentMap<String, PendingMetadata> loading = new ConcurrentHashMap<String, PendingMetadata>();
+    private final AtomicInteger queuedRefreshes = new AtomicInteger();
+
+    public DefaultOpenSocialService(GadgetMetadataRepository gadgetMetadataRepository, TaskScheduler taskScheduler) {
+        this(gadgetMetadataRepository, taskScheduler, DEFAULT_MAX_SIZE, DEFAULT_TTL_MS, DEFAULT_STALE_TTL_MS);
+    }
 
     @Autowired
-    public DefaultOpenSocialService(GadgetMetadataRepository gadgetMetadataRepository) {
+    public DefaultOpenSocialService(GadgetMetadataRepository gadgetMetadataRepository,
+                                    TaskScheduler taskScheduler,
+                                    @Value("${portal.opensocial_metadata_cache.max_size}") int maxSize,
+                                    @Value("${portal.opensocial_metadata_cache.default_ttl_ms}") long defaultTtlMillis,
+                                    @Value("${portal.opensocial_metadata_cache.stale_ttl_ms}") long staleTtlMillis) {
         this.gadgetMetadataRepository = gadgetMetadataRepository;
+        this.taskScheduler = taskScheduler;
+        this.defaultTtlMillis = defaultTtlMillis;
+        this.staleTtlMillis = staleTtlMillis;
+        //an entry is kept for its own ttl plus the stale window, see store
+        this.cache = new ExpiringCache<String, CachedMetadata>(defaultTtlMillis + staleTtlMillis, maxSize) {
+            @Override
+            protected long currentTimeMillis() {
+                return DefaultOpenSocialService.this.currentTimeMillis();
+            }
+        };
     }
 
     @Override
     public String getGadgetMetadata(String gadgetUrl) {
-        //TODO RAVE-243 -- Add caching of gadget metadata in this service layer
-        return gadgetMetadataRepository.getGadgetMetadata(gadgetUrl);
+        CachedMetadata cached = cache.get(gadgetUrl);
+        if (cached != null) {
+            if (!isFresh(cached)) {
+                refreshInBackground(gadgetUrl);
+            }
+            return cached.metadata;
+        }
+        return load(gadgetUrl).metadata;
+    }
+
+    @Override
+    public Map<String, String> getGadgetMetadata(Collection<String> gadgetUrls) {
+        Map<String, String> metadataByUrl = new HashMap<String, String>();
+        Map<String, PendingMetadata> toLoad = new LinkedHashMap<String, PendingMetadata>();
+        Map<String, PendingMetadata> loadingElsewhere = new HashMap<String, PendingMetadata>();
+
+        for (String gadgetUrl : new LinkedHashSet<String>(gadgetUrls)) {
+            CachedMetadata cached = cache.get(gadgetUrl);
+            if (cached != null) {
+                if (!isFresh(cached)) {
+                    refreshInBackground(gadgetUrl);
+                }
+                metadataByUrl.put(gadgetUrl, cached.metadata);
+                continue;
+            }
+            PendingMetadata pending = new PendingMetadata();
+            PendingMetadata inFlight = loading.putIfAbsent(gadgetUrl, pending);
+            if (inFlight == null) {
+                toLoad.put(gadgetUrl, pending);
+            } else {
+                loadingElsewhere.put(gadgetUrl, inFlight);
+            }
+        }
+
+        //everything that is neither cached nor already being fetched goes to shindig in one request
+        if (!toLoad.isEmpty()) {
+            loadAll(toLoad, metadataByUrl);
+        }
+        for (Map.Entry<String, PendingMetadata> entry : loadingElsewhere.entrySet()) {
+            try {
+                metadataByUrl.put(entry.getKey(), entry.getValue().await().metadata);
+            } catch (RuntimeException e) {
+                logger.warn("Unable to load metadata for gadget " + entry.getKey(), e);
+            }
+        }
+        return metadataByUrl;
+    }
+
+    /**
+     * Removes all cached gadget metadata
+     */
+    public void clearCache() {
+        cache.clear();
+    }
+
+    /**
+     * @return the number of gadgets with cached metadata
+     */
+    public int getCacheSize() {
+        return cache.size();
+    }
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /*
+      Helper methods
+    */
+    private CachedMetadata load(String gadgetUrl) {
+        PendingMetadata pending = new PendingMetadata();
+        PendingMetadata inFlight = loading.putIfAbsent(gadgetUrl, pending);
+        if (inFlight != null) {
+            return inFlight.await();
+        }
+        return fetch(gadgetUrl, pending);
+    }
+
+    /**
+     * Fetches the metadata of a gadget whose load the caller has claimed with the pending metadata, unless a load that
+     * finished in the meantime has already stored fresh metadata
+     */
+    private CachedMetadata fetch(String gadgetUrl, PendingMetadata pending) {
+        try {
+            CachedMetadata cached = cache.get(gadgetUrl);
+            if (cached == null || !isFresh(cached)) {
+                cached = store(gadgetUrl, gadgetMetadataRepository.getGadgetMetadata(gadgetUrl));
+            }
+            pending.complete(cached);
+            return cached;
+        } catch (RuntimeException e) {
+            pending.fail(e);
+            throw e;
+        } finally {
+            loading.remove(gadgetUrl, pending);
+        }
+    }
+
+    private void loadAll(Map<String, PendingMetadata> pendingByUrl, Map<String, String> metadataByUrl) {
+        try {
+            Map<String, String> fetched = gadgetMetadataRepository.getGadgetMetadata(pendingByUrl.keySet());
+            for (Map.Entry<String, PendingMetadata> entry : pendingByUrl.entrySet()) {
+                String metadata = fetched.get(entry.getKey());
+                if (metadata == null) {
+                    entry.getValue().fail(new IllegalArgumentException("No metadata returned for gadget " + entry.getKey()));
+                } else {
+                    entry.getValue().complete(store(entry.getKey(), metadata));
+                    metadataByUrl.put(entry.getKey(), metadata);
+                }
+            }
+        } catch (RuntimeException e) {
+            for (PendingMetadata pending : pendingByUrl.values()) {
+                pending.fail(e);
+            }
+            throw e;
+        } finally {
+            for (Map.Entry<String, PendingMetadata> entry : pendingByUrl.entrySet()) {
+                loading.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private void refreshInBackground(final String gadgetUrl) {
+        if (queuedRefreshes.incrementAndGet() > MAX_QUEUED_REFRESHES) {
+            queuedRefreshes.decrementAndGet();
+            return;
+        }
+        //claim the refresh before queueing it, so the gadget is queued once however many requests find it stale
+        final PendingMetadata pending = new PendingMetadata();
+        if (loading.putIfAbsent(gadgetUrl, pending) != null) {
+            queuedRefreshes.decrementAndGet();
+            return;
+        }
+        try {
+            taskScheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    queuedRefreshes.decrementAndGet();
+                    try {
+                        fetch(gadgetUrl, pending);
+                    } catch (RuntimeException e) {
+                        logger.warn("Unable to refresh metadata for gadget " + gadgetUrl + ", serving stale metadata", e);
+                    }
+                }
+            }, new Date());
+        } catch (TaskRejectedException e) {
+            queuedRefreshes.decrementAndGet();
+            pending.fail(e);
+            loading.remove(gadgetUrl, pending);
+            logger.warn("Unable to queue the refresh of gadget " + gadgetUrl + ", serving stale metadata", e);
+        }
+    }
+
+    private CachedMetadata store(String gadgetUrl, String metadata) {
+        long ttlMillis = getTtlMillis(metadata);
+        CachedMetadata cached = new CachedMetadata(metadata, currentTimeMillis() + ttlMillis);
+        //the stale metadata keeps being served while it is refreshed, so it is only dropped after the stale window
+        cache.put(gadgetUrl, cached, ttlMillis + staleTtlMillis);
+        return cached;
+    }
+
+    private boolean isFresh(CachedMetadata cached) {
+        return currentTimeMillis() < cached.expireTime;
+    }
+
+    private long getTtlMillis(String metadata) {
+        try {
+            JSONObject metadataObject = new JSONObject(metadata);
+            if (metadataObject.has(EXPIRE_TIME_MS) && metadataObject.has(RESPONSE_TIME_MS)) {
+                //use shindig's own clock for both values so a skewed clock on either server does not matter
+                long ttl = metadataObject.getLong(EXPIRE_TIME_MS) - metadataObject.getLong(RESPONSE_TIME_MS);
+                if (ttl >= 0) {
+                    return ttl;
+                }
+            }
+        } catch (JSONException e) {
+            logger.debug("Unable to read the expiry time from gadget metadata, using the default ttl", e);
+        }
+        return defaultTtlMillis;
+    }
+
+    private static class CachedMetadata {
+        private final String metadata;
+        private final long expireTime;
+
+        private CachedMetadata(String metadata, long expireTime) {
+            this.metadata = metadata;
+            this.expireTime = expireTime;
+        }
+    }
+
+    /**
+     * A load in progress that other threads asking for the same gadget wait on instead of fetching it again
+     */
+    private static class PendingMetadata {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile CachedMetadata result;
+        private volatile RuntimeException failure;
+
+        private void complete(CachedMetadata result) {
+            if (done.getCount() > 0) {
+                this.result = result;
+                done.countDown();
+            }
+        }
+
+        private void fail(RuntimeException failure) {
+            if (done.getCount() > 0) {
+                this.failure = failure;
+                done.countDown();
+            }
+        }
+
+        private CachedMetadata await() {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for gadget metadata", e);
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return result;
+        }
     }
 }
\ No newline at end of file
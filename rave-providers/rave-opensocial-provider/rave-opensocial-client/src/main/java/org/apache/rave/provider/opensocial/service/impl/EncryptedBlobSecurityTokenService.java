@@ -20,10 +20,12 @@
 package org.apache.rave.provider.opensocial.service.impl;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.ObjectUtils;
 import org.apache.rave.portal.model.*;
 import org.apache.rave.portal.service.UserService;
 import org.apache.rave.provider.opensocial.exception.SecurityTokenException;
 import org.apache.rave.provider.opensocial.service.SecurityTokenService;
+import org.apache.rave.util.ExpiringCache;
 import org.apache.shindig.auth.AbstractSecurityToken;
 import org.apache.shindig.auth.BlobCrypterSecurityToken;
 import org.apache.shindig.auth.SecurityToken;
@@ -39,8 +41,17 @@ import org.springframework.stereotype.Service;
 import java.io.File;
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+/**
+ * Mints security tokens by encrypting them with a {@link BlobCrypter}.
+ * <p/>
+ * Encrypted tokens are cached per viewer, owner, module and gadget, so rendering a page again does not encrypt its
+ * tokens again.  A token is cached for a fraction of the time the container accepts it, so a cached token always
+ * leaves the gadget most of its lifetime before it has to be refreshed.  When the cache is full, storing a token drops
+ * the least recently used one.
+ */
 @Service
 public class EncryptedBlobSecurityTokenService implements SecurityTokenService {
     private static Logger logger = LoggerFactory.getLogger(EncryptedBlobSecurityTokenService.class);
@@ -48,20 +59,41 @@ public class EncryptedBlobSecurityTokenService implements SecurityTokenService {
     public static final String EMBEDDED_KEY_PREFIX = "embedded:";
     public static final String CLASSPATH_KEY_PREFIX = "classpath:";
 
+    private static final long DEFAULT_TOKEN_CACHE_TTL_MS = 10 * 60 * 1000;
+    private static final int DEFAULT_TOKEN_CACHE_MAX_SIZE = 10000;
+
     private UserService userService;
     private String container;
     private String domain;
 
     private BlobCrypter blobCrypter;
 
+    private final ExpiringCache<TokenKey, String> tokenCache;
+
+    public EncryptedBlobSecurityTokenService(UserService userService, String container, String domain,
+                                             String encryptionKey) {
+        this(userService, container, domain, encryptionKey, DEFAULT_TOKEN_CACHE_TTL_MS,
+                DEFAULT_TOKEN_CACHE_MAX_SIZE);
+    }
+
     @Autowired
     public EncryptedBlobSecurityTokenService(UserService userService,
                                              @Value("${portal.opensocial_security.container}") String container,
                                              @Value("${portal.opensocial_security.domain}") String domain,
-                                             @Value("${portal.opensocial_security.encryptionkey}") String encryptionKey) {
+                                             @Value("${portal.opensocial_security.encryptionkey}") String encryptionKey,
+                                             @Value("${portal.opensocial_security.tokenCacheMillis}")
+                                             long tokenCacheTtlMillis,
+                                             @Value("${portal.opensocial_security.tokenCacheMaxSize}")
+                                             int tokenCacheMaxSize) {
         this.userService = userService;
         this.container = container;
         this.domain = domain;
+        this.tokenCache = new ExpiringCache<TokenKey, String>(tokenCacheTtlMillis, tokenCacheMaxSize) {
+            @Override
+            protected long currentTimeMillis() {
+                return EncryptedBlobSecurityTokenService.this.currentTimeMillis();
+            }
+        };
 
         if (encryptionKey.startsWith(EMBEDDED_KEY_PREFIX)) {
             this.blobCrypter = new BasicBlobCrypter(encryptionKey.substring(EMBEDDED_KEY_PREFIX.length()));
@@ -89,16 +121,19 @@ public class EncryptedBlobSecurityTokenService implements SecurityTokenService {
 
     @Override
     public String getEncryptedSecurityToken(RegionWidget regionWidget) throws SecurityTokenException {
-        String encryptedToken = null;
+        return getEncryptedSecurityToken(regionWidget, userService.getAuthenticatedUser());
+    }
 
-        try {
-            BlobCrypterSecurityToken securityToken = this.getBlobCrypterSecurityToken(regionWidget);
-            encryptedToken = this.encryptSecurityToken(securityToken);
-        } catch (Exception e) {
-            throw new SecurityTokenException("Error creating security token from regionWidget", e);
+    @Override
+    public Map<Long, String> getEncryptedSecurityTokens(List<RegionWidget> regionWidgets)
+            throws SecurityTokenException {
+        //the viewer is the same for every gadget on the page
+        User user = userService.getAuthenticatedUser();
+        Map<Long, String> encryptedTokens = new HashMap<Long, String>();
+        for (RegionWidget regionWidget : regionWidgets) {
+            encryptedTokens.put(regionWidget.getEntityId(), getEncryptedSecurityToken(regionWidget, user));
         }
-
-        return encryptedToken;
+        return encryptedTokens;
     }
 
     @Override
@@ -141,14 +176,61 @@ public class EncryptedBlobSecurityTokenService implements SecurityTokenService {
                 new Widget(-1L, securityToken.getAppUrl()),
                 new Region(-1L, new Page(-1L, new User(Long.valueOf(securityToken.getOwnerId()))), -1));
 
-        //Create and return the newly encrypted token
-        return getEncryptedSecurityToken(regionWidget);
+        //Create and return the newly encrypted token, never the cached one that is being refreshed
+        User user = userService.getAuthenticatedUser();
+        String refreshedToken = mintEncryptedSecurityToken(regionWidget, user);
+        tokenCache.put(new TokenKey(regionWidget, user), refreshedToken);
+        return refreshedToken;
+    }
+
+    /**
+     * Removes all cached tokens, so every token is encrypted again the next time it is requested
+     */
+    public void clearTokenCache() {
+        tokenCache.clear();
+    }
+
+    /**
+     * @return the number of encrypted tokens in the cache, including expired ones not removed yet
+     */
+    public int getTokenCacheSize() {
+        return tokenCache.size();
+    }
+
+    /**
+     * @return the current time, overridden by tests that need to control the age of cached tokens
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private String getEncryptedSecurityToken(RegionWidget regionWidget, User user) throws SecurityTokenException {
+        TokenKey key = new TokenKey(regionWidget, user);
+        String cached = tokenCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        String encryptedToken = mintEncryptedSecurityToken(regionWidget, user);
+        tokenCache.put(key, encryptedToken);
+        return encryptedToken;
+    }
+
+    private String mintEncryptedSecurityToken(RegionWidget regionWidget, User user) throws SecurityTokenException {
+        try {
+            BlobCrypterSecurityToken securityToken = this.getBlobCrypterSecurityToken(regionWidget, user);
+            return this.encryptSecurityToken(securityToken);
+        } catch (Exception e) {
+            throw new SecurityTokenException("Error creating security token from regionWidget", e);
+        }
     }
 
     private BlobCrypterSecurityToken getBlobCrypterSecurityToken(RegionWidget regionWidget)
             throws SecurityTokenException {
-        User user = userService.getAuthenticatedUser();
+        return getBlobCrypterSecurityToken(regionWidget, userService.getAuthenticatedUser());
+    }
 
+    private BlobCrypterSecurityToken getBlobCrypterSecurityToken(RegionWidget regionWidget, User user)
+            throws SecurityTokenException {
         Map<String, String> values = new HashMap<String, String>();
         values.put(AbstractSecurityToken.Keys.APP_URL.getKey(), regionWidget.getWidget().getUrl());
         values.put(AbstractSecurityToken.Keys.MODULE_ID.getKey(), String.valueOf(regionWidget.getEntityId()));
@@ -181,4 +263,36 @@ public class EncryptedBlobSecurityTokenService implements SecurityTokenService {
 
         return encryptedToken;
     }
+
+    private static class TokenKey {
+        private final Long viewerId;
+        private final Long ownerId;
+        private final Long moduleId;
+        private final String appUrl;
+
+        private TokenKey(RegionWidget regionWidget, User viewer) {
+            this.viewerId = viewer.getEntityId();
+            this.ownerId = regionWidget.getRegion().getPage().getOwner().getEntityId();
+            this.moduleId = regionWidget.getEntityId();
+            this.appUrl = regionWidget.getWidget().getUrl();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof TokenKey)) {
+                return false;
+            }
+            TokenKey other = (TokenKey) o;
+            return ObjectUtils.equals(viewerId, other.viewerId) && ObjectUtils.equals(ownerId, other.ownerId)
+                    && ObjectUtils.equals(moduleId, other.moduleId) && ObjectUtils.equals(appUrl, other.appUrl);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = ObjectUtils.hashCode(viewerId);
+            result = 31 * result + ObjectUtils.hashCode(ownerId);
+            result = 31 * result + ObjectUtils.hashCode(moduleId);
+            return 31 * result + ObjectUtils.hashCode(appUrl);
+        }
+    }
 }
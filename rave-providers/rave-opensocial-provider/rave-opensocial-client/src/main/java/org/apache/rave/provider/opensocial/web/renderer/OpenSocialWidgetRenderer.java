@@ -37,6 +37,10 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
 /**
  * Creates the appropriate markup to represent an OpenSocial widget
  * <p/>
@@ -100,6 +104,23 @@ public class OpenSocialWidgetRenderer implements RegionWidgetRenderer {
         return String.format(MARKUP, item.getEntityId());
     }
 
+    /**
+     * Fetches the metadata of all of the gadgets in a single call so that rendering each gadget finds its metadata
+     * already cached by the {@link OpenSocialService}, and mints the security tokens of all of the gadgets in a single
+     * pass so that rendering each gadget finds its token cached by the {@link SecurityTokenService}
+     *
+     * @param items the RegionWidgets that are about to be rendered
+     */
+    @Override
+    public void prepareForRender(List<RegionWidget> items) {
+        Set<String> gadgetUrls = new LinkedHashSet<String>();
+        for (RegionWidget item : items) {
+            gadgetUrls.add(item.getWidget().getUrl());
+        }
+        openSocialService.getGadgetMetadata(gadgetUrls);
+        securityTokenService.getEncryptedSecurityTokens(items);
+    }
+
     private String getWidgetScript(RegionWidget item) {
         JSONObject userPrefs = new JSONObject();
         if (item.getPreferences() != null) {
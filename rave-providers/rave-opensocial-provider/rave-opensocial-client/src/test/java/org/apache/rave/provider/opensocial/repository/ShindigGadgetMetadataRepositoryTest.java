@@ -26,6 +26,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.client.RestOperations;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
 import static org.easymock.EasyMock.createNiceMock;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.replay;
@@ -66,6 +70,14 @@ public class ShindigGadgetMetadataRepositoryTest {
     private static final String EXPECTED_METADATA_ONLY_HIDDEN_USERPREFS_RESPONSE = "{\"userPrefs\":{\"age\":{\"dataType\":\"HIDDEN\",\"default\":\"0\",\"displayName\":\"Age\"}},\"hasPrefsToEdit\":false,\"data-snipped\":\"here-for-brevity\"}";
     
     
+    private static final String SECOND_GADGET_URL = "http://www.example.com/gadget2.xml";
+    private static final String VALID_SHINDIG_BATCH_METADATA_RPC_REQUEST = VALID_SHINDIG_METADATA_RPC_REQUEST.replace(
+            "\"ids\":[\"http://www.example.com/gadget.xml\"]",
+            "\"ids\":[\"http://www.example.com/gadget.xml\",\"http://www.example.com/gadget2.xml\"]");
+    private static final String VALID_BATCH_METADATA = "[{\"id\":\"gadgets.metadata\",\"result\"" +
+            ":{\"http://www.example.com/gadget.xml\":{\"data-snipped\":\"here-for-brevity\",\"userPrefs\":{\"age\":{\"dataType\":\"STRING\",\"default\":\"0\",\"displayName\":\"Age\"}}}," +
+            "\"http://www.example.com/gadget2.xml\":{\"data-snipped\":\"here-for-brevity\",\"userPrefs\":{}}}}]";
+
     @Before
     public void setup() {
         restOperations = createNiceMock(RestOperations.class);
@@ -115,4 +127,36 @@ public class ShindigGadgetMetadataRepositoryTest {
         
         verify(restOperations);
     }   
+
+    @Test
+    public void getGadgetMetadata_batch() {
+        expect(restOperations.postForObject(shindigUrl, VALID_SHINDIG_BATCH_METADATA_RPC_REQUEST, String.class)).andReturn(VALID_BATCH_METADATA).once();
+        replay(restOperations);
+
+        Map<String, String> result = gadgetMetadataRepository.getGadgetMetadata(Arrays.asList(VALID_GADGET_URL, SECOND_GADGET_URL, VALID_GADGET_URL));
+        assertThat(result.size(), is(2));
+        assertThat(result.get(VALID_GADGET_URL), is(EXPECTED_METADATA_RESPONSE));
+        assertThat(result.get(SECOND_GADGET_URL), is(EXPECTED_METADATA_NO_USERPREFS_RESPONSE));
+
+        verify(restOperations);
+    }
+
+    @Test
+    public void getGadgetMetadata_batchMissingGadget() {
+        expect(restOperations.postForObject(shindigUrl, VALID_SHINDIG_BATCH_METADATA_RPC_REQUEST, String.class)).andReturn(VALID_METADATA);
+        replay(restOperations);
+
+        Map<String, String> result = gadgetMetadataRepository.getGadgetMetadata(Arrays.asList(VALID_GADGET_URL, SECOND_GADGET_URL));
+        assertThat(result.size(), is(1));
+        assertThat(result.containsKey(SECOND_GADGET_URL), is(false));
+    }
+
+    @Test
+    public void getGadgetMetadata_batchEmpty() {
+        replay(restOperations);
+
+        Map<String, String> result = gadgetMetadataRepository.getGadgetMetadata(new ArrayList<String>());
+        assertThat(result.isEmpty(), is(true));
+        verify(restOperations);
+    }
 }
@@ -21,26 +21,54 @@ package org.apache.rave.provider.opensocial.service;
 
 import org.apache.rave.provider.opensocial.repository.GadgetMetadataRepository;
 import org.apache.rave.provider.opensocial.service.impl.DefaultOpenSocialService;
+import org.easymock.Capture;
+import org.easymock.CaptureType;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.easymock.EasyMock.*;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
 public class OpenSocialServiceTest {
     private OpenSocialService openSocialService;
     private GadgetMetadataRepository gadgetMetadataRepository;
+    private ThreadPoolTaskScheduler taskScheduler;
 
     private static final String VALID_GADGET_URL = "http://www.example.com/gadget.xml";
     private static final String VALID_METADATA = "[{\"id\":\"gadgets.metadata\",\"result\"" +
             ":{\"http://www.example.com/gadget.xml\":{\"data-snipped\":\"here-for-brevity\"}}}]";
+    private static final String EXPIRING_METADATA = "{\"responseTimeMs\":1000000,\"expireTimeMs\":1060000}";
 
     @Before
     public void setup() {
         gadgetMetadataRepository = createNiceMock(GadgetMetadataRepository.class);
-        openSocialService = new DefaultOpenSocialService(gadgetMetadataRepository);
+        taskScheduler = new ThreadPoolTaskScheduler();
+        taskScheduler.initialize();
+        openSocialService = new DefaultOpenSocialService(gadgetMetadataRepository, taskScheduler);
+    }
+
+    @After
+    public void tearDown() {
+        taskScheduler.shutdown();
     }
 
     @Test
@@ -51,4 +79,245 @@ public class OpenSocialServiceTest {
         String result = openSocialService.getGadgetMetadata(VALID_GADGET_URL);
         assertThat(result, is(sameInstance(VALID_METADATA)));
     }
+
+    @Test
+    public void getGadgetMetadata_cached() {
+        expect(gadgetMetadataRepository.getGadgetMetadata(VALID_GADGET_URL)).andReturn(VALID_METADATA).once();
+        replay(gadgetMetadataRepository);
+
+        openSocialService.getGadgetMetadata(VALID_GADGET_URL);
+        String result = openSocialService.getGadgetMetadata(VALID_GADGET_URL);
+        assertThat(result, is(sameInstance(VALID_METADATA)));
+        verify(gadgetMetadataRepository);
+    }
+
+    @Test
+    public void getGadgetMetadata_expiresPerShindigExpireTime() {
+        CountingRepository repository = new CountingRepository(EXPIRING_METADATA);
+        ClockedOpenSocialService service = new ClockedOpenSocialService(repository, taskScheduler, 0L);
+
+        service.getGadgetMetadata(VALID_GADGET_URL);
+        service.now = 59 * 1000;
+        service.getGadgetMetadata(VALID_GADGET_URL);
+        assertThat(repository.calls.get(), is(1));
+
+        //past both the shindig expiry and the stale window
+        service.now = 61 * 1000;
+        service.getGadgetMetadata(VALID_GADGET_URL);
+        assertThat(repository.calls.get(), is(2));
+    }
+
+    @Test
+    public void getGadgetMetadata_staleWhileRevalidate() throws Exception {
+        CountingRepository repository = new CountingRepository(EXPIRING_METADATA);
+        ClockedOpenSocialService service = new ClockedOpenSocialService(repository, taskScheduler, 60 * 1000L);
+
+        service.getGadgetMetadata(VALID_GADGET_URL);
+        repository.metadata = VALID_METADATA;
+        service.now = 61 * 1000;
+
+        String result = service.getGadgetMetadata(VALID_GADGET_URL);
+        assertThat(result, is(EXPIRING_METADATA));
+
+        repository.awaitCalls(2);
+        for (int i = 0; i < 50 && !VALID_METADATA.equals(service.getGadgetMetadata(VALID_GADGET_URL)); i++) {
+            Thread.sleep(10);
+        }
+        assertThat(service.getGadgetMetadata(VALID_GADGET_URL), is(VALID_METADATA));
+    }
+
+    @Test
+    public void getGadgetMetadata_staleRefreshQueuedOnce() {
+        CountingRepository repository = new CountingRepository(EXPIRING_METADATA);
+        TaskScheduler scheduler = createMock(TaskScheduler.class);
+        Capture<Runnable> refresh = new Capture<Runnable>();
+        expect(scheduler.schedule(capture(refresh), isA(Date.class))).andReturn(null).once();
+        replay(scheduler);
+        ClockedOpenSocialService service = new ClockedOpenSocialService(repository, scheduler, 60 * 1000L);
+
+        service.getGadgetMetadata(VALID_GADGET_URL);
+        service.now = 61 * 1000;
+        for (int i = 0; i < 5; i++) {
+            assertThat(service.getGadgetMetadata(VALID_GADGET_URL), is(EXPIRING_METADATA));
+        }
+        service.getGadgetMetadata(Arrays.asList(VALID_GADGET_URL));
+        verify(scheduler);
+
+        refresh.getValue().run();
+        assertThat(repository.calls.get(), is(2));
+        //a refresh that finds the metadata fresh again does not fetch it
+        refresh.getValue().run();
+        assertThat(repository.calls.get(), is(2));
+    }
+
+    @Test
+    public void getGadgetMetadata_staleRefreshesBounded() {
+        CountingRepository repository = new CountingRepository(EXPIRING_METADATA);
+        TaskScheduler scheduler = createMock(TaskScheduler.class);
+        Capture<Runnable> refreshes = new Capture<Runnable>(CaptureType.ALL);
+        expect(scheduler.schedule(capture(refreshes), isA(Date.class))).andReturn(null).anyTimes();
+        replay(scheduler);
+        ClockedOpenSocialService service = new ClockedOpenSocialService(repository, scheduler, 60 * 1000L);
+
+        int gadgets = DefaultOpenSocialService.MAX_QUEUED_REFRESHES + 5;
+        for (int i = 0; i < gadgets; i++) {
+            service.getGadgetMetadata("http://www.example.com/" + i + ".xml");
+        }
+        service.now = 61 * 1000;
+        for (int i = 0; i < gadgets; i++) {
+            service.getGadgetMetadata("http://www.example.com/" + i + ".xml");
+        }
+        assertThat(refreshes.getValues().size(), is(DefaultOpenSocialService.MAX_QUEUED_REFRESHES));
+
+        //once the queue drains, the remaining stale gadgets are refreshed by the next requests
+        for (Runnable refresh : refreshes.getValues()) {
+            refresh.run();
+        }
+        service.getGadgetMetadata("http://www.example.com/" + (gadgets - 1) + ".xml");
+        assertThat(refreshes.getValues().size(), is(DefaultOpenSocialService.MAX_QUEUED_REFRESHES + 1));
+    }
+
+    @Test
+    public void getGadgetMetadata_singleFlight() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountingRepository repository = new CountingRepository(VALID_METADATA) {
+            @Override
+            public String getGadgetMetadata(String gadgetUrl) {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.getGadgetMetadata(gadgetUrl);
+            }
+        };
+        final DefaultOpenSocialService service = new DefaultOpenSocialService(repository, taskScheduler);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<?>[] futures = new Future<?>[4];
+            for (int i = 0; i < futures.length; i++) {
+                futures[i] = executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        service.getGadgetMetadata(VALID_GADGET_URL);
+                    }
+                });
+            }
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<?> future : futures) {
+                future.get(5, TimeUnit.SECONDS);
+            }
+            assertThat(repository.calls.get(), is(1));
+        } finally {
+            executor.shutdownNow();
+            }
+    }
+
+    @Test
+    public void getGadgetMetadata_bounded() {
+        CountingRepository repository = new CountingRepository(VALID_METADATA);
+        DefaultOpenSocialService service = new DefaultOpenSocialService(repository, taskScheduler, 2, 1000L, 1000L);
+
+        service.getGadgetMetadata("http://www.example.com/1.xml");
+        service.getGadgetMetadata("http://www.example.com/2.xml");
+        service.getGadgetMetadata("http://www.example.com/3.xml");
+        assertThat(service.getCacheSize(), is(2));
+    }
+
+    @Test
+    public void getGadgetMetadata_errorNotCached() {
+        expect(gadgetMetadataRepository.getGadgetMetadata(VALID_GADGET_URL)).andThrow(new IllegalArgumentException());
+        expect(gadgetMetadataRepository.getGadgetMetadata(VALID_GADGET_URL)).andReturn(VALID_METADATA);
+        replay(gadgetMetadataRepository);
+
+        try {
+            openSocialService.getGadgetMetadata(VALID_GADGET_URL);
+            fail("the error of the first fetch should have been thrown");
+        } catch (IllegalArgumentException e) {
+            //expected
+        }
+        //the failure was not cached, so the metadata is fetched again
+        assertThat(openSocialService.getGadgetMetadata(VALID_GADGET_URL), is(VALID_METADATA));
+        verify(gadgetMetadataRepository);
+    }
+
+    @Test
+    public void getGadgetMetadata_batchFetchesOnlyUncached() {
+        final String SECOND_GADGET_URL = "http://www.example.com/gadget2.xml";
+        final String THIRD_GADGET_URL = "http://www.example.com/gadget3.xml";
+        Map<String, String> fetched = new HashMap<String, String>();
+        fetched.put(SECOND_GADGET_URL, VALID_METADATA);
+        fetched.put(THIRD_GADGET_URL, VALID_METADATA);
+
+        expect(gadgetMetadataRepository.getGadgetMetadata(VALID_GADGET_URL)).andReturn(VALID_METADATA).once();
+        expect(gadgetMetadataRepository.getGadgetMetadata(new LinkedHashSet<String>(Arrays.asList(SECOND_GADGET_URL, THIRD_GADGET_URL))))
+                .andReturn(fetched).once();
+        replay(gadgetMetadataRepository);
+
+        openSocialService.getGadgetMetadata(VALID_GADGET_URL);
+        Map<String, String> result = openSocialService.getGadgetMetadata(Arrays.asList(VALID_GADGET_URL, SECOND_GADGET_URL, THIRD_GADGET_URL));
+        assertThat(result.size(), is(3));
+
+        //everything is cached now
+        openSocialService.getGadgetMetadata(SECOND_GADGET_URL);
+        openSocialService.getGadgetMetadata(Arrays.asList(VALID_GADGET_URL, THIRD_GADGET_URL));
+        verify(gadgetMetadataRepository);
+    }
+
+    @Test
+    public void getGadgetMetadata_batchMissingGadget() {
+        Map<String, String> fetched = new HashMap<String, String>();
+        expect(gadgetMetadataRepository.getGadgetMetadata(new LinkedHashSet<String>(Arrays.asList(VALID_GADGET_URL))))
+                .andReturn(fetched);
+        replay(gadgetMetadataRepository);
+
+        Map<String, String> result = openSocialService.getGadgetMetadata(Arrays.asList(VALID_GADGET_URL));
+        assertThat(result.isEmpty(), is(true));
+    }
+
+    private static class CountingRepository implements GadgetMetadataRepository {
+        private final AtomicInteger calls = new AtomicInteger();
+        private volatile String metadata;
+
+        private CountingRepository(String metadata) {
+            this.metadata = metadata;
+        }
+
+        @Override
+        public String getGadgetMetadata(String gadgetUrl) {
+            calls.incrementAndGet();
+            return metadata;
+        }
+
+        @Override
+        public Map<String, String> getGadgetMetadata(Collection<String> gadgetUrls) {
+            calls.incrementAndGet();
+            Map<String, String> metadataByUrl = new HashMap<String, String>();
+            for (String gadgetUrl : gadgetUrls) {
+                metadataByUrl.put(gadgetUrl, metadata);
+            }
+            return metadataByUrl;
+        }
+
+        private void awaitCalls(int count) throws InterruptedException {
+            for (int i = 0; i < 500 && calls.get() < count; i++) {
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    private static class ClockedOpenSocialService extends DefaultOpenSocialService {
+        private volatile long now;
+
+        private ClockedOpenSocialService(GadgetMetadataRepository repository, TaskScheduler taskScheduler,
+                                         long staleTtlMillis) {
+            super(repository, taskScheduler, 100, 5 * 60 * 1000L, staleTtlMillis);
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+    }
 }
\ No newline at end of file
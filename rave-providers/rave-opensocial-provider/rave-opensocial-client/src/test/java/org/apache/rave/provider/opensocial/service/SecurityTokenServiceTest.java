@@ -34,15 +34,19 @@ import java.io.IOException;
 import java.net.MalformedURLException;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Map;
 
 import static org.easymock.EasyMock.*;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 
 @RunWith(Parameterized.class)
 public class SecurityTokenServiceTest {
+    private static final long TOKEN_CACHE_TTL = 60000L;
+
     private UserService userService;
-    private SecurityTokenService securityTokenService;
+    private TestEncryptedBlobSecurityTokenService securityTokenService;
     private String encryptionKey;
 
     private User validPerson;
@@ -77,8 +81,7 @@ public class SecurityTokenServiceTest {
     @Before
     public void setup() throws MalformedURLException {
         userService = createMock(UserService.class);
-        securityTokenService = new EncryptedBlobSecurityTokenService(userService, "default", "default",
-                encryptionKey);
+        securityTokenService = new TestEncryptedBlobSecurityTokenService(encryptionKey);
 
         validPerson = new User(VALID_USER_ID, VALID_USER_NAME);
 
@@ -150,6 +153,74 @@ public class SecurityTokenServiceTest {
         validateSecurityToken(securityToken);
     }
 
+    @Test
+    public void getEncryptedSecurityToken_cached() throws SecurityTokenException {
+        expect(userService.getAuthenticatedUser()).andReturn(validPerson).anyTimes();
+        replay(userService);
+
+        String token = securityTokenService.getEncryptedSecurityToken(validRegionWidget);
+        securityTokenService.now += TOKEN_CACHE_TTL - 1;
+        assertEquals(token, securityTokenService.getEncryptedSecurityToken(validRegionWidget));
+        assertEquals(1, securityTokenService.getTokenCacheSize());
+
+        securityTokenService.now += 1;
+        String minted = securityTokenService.getEncryptedSecurityToken(validRegionWidget);
+        assertFalse(token.equals(minted));
+        validateSecurityToken(securityTokenService.decryptSecurityToken(minted));
+    }
+
+    @Test
+    public void getEncryptedSecurityToken_cachedPerViewer() throws SecurityTokenException {
+        expect(userService.getAuthenticatedUser()).andReturn(validPerson);
+        expect(userService.getAuthenticatedUser()).andReturn(new User(2L, "john.doe"));
+        replay(userService);
+
+        securityTokenService.getEncryptedSecurityToken(validRegionWidget);
+        String token = securityTokenService.getEncryptedSecurityToken(validRegionWidget);
+
+        assertEquals("2", securityTokenService.decryptSecurityToken(token).getViewerId());
+        assertEquals(2, securityTokenService.getTokenCacheSize());
+    }
+
+    @Test
+    public void getEncryptedSecurityTokens_allWidgets() throws SecurityTokenException {
+        RegionWidget otherRegionWidget = new RegionWidget(2L, validWidget, validRegion);
+        expect(userService.getAuthenticatedUser()).andReturn(validPerson).once();
+        replay(userService);
+
+        Map<Long, String> tokens = securityTokenService.getEncryptedSecurityTokens(
+                Arrays.asList(validRegionWidget, otherRegionWidget));
+        verify(userService);
+
+        assertEquals(2, tokens.size());
+        validateSecurityToken(securityTokenService.decryptSecurityToken(tokens.get(VALID_REGION_WIDGET_ID)));
+        assertEquals(2L, securityTokenService.decryptSecurityToken(tokens.get(2L)).getModuleId());
+        assertEquals(2, securityTokenService.getTokenCacheSize());
+    }
+
+    @Test
+    public void refreshEncryptedSecurityToken_replacesCachedToken() throws SecurityTokenException {
+        expect(userService.getAuthenticatedUser()).andReturn(validPerson).anyTimes();
+        replay(userService);
+
+        String encryptedToken = securityTokenService.getEncryptedSecurityToken(validRegionWidget);
+        String refreshedToken = securityTokenService.refreshEncryptedSecurityToken(encryptedToken);
+
+        assertFalse(encryptedToken.equals(refreshedToken));
+        assertEquals(refreshedToken, securityTokenService.getEncryptedSecurityToken(validRegionWidget));
+    }
+
+    @Test
+    public void getEncryptedSecurityToken_cacheBounded() throws SecurityTokenException {
+        expect(userService.getAuthenticatedUser()).andReturn(validPerson).anyTimes();
+        replay(userService);
+
+        for (long id = 1; id <= 150; id++) {
+            securityTokenService.getEncryptedSecurityToken(new RegionWidget(id, validWidget, validRegion));
+        }
+        assertEquals(100, securityTokenService.getTokenCacheSize());
+    }
+
     private void validateSecurityToken(SecurityToken securityToken) {
         validateSecurityToken(securityToken, VALID_USER_ID);
     }
@@ -161,4 +232,17 @@ public class SecurityTokenServiceTest {
         assertEquals(VALID_USER_ID, Long.valueOf(securityToken.getViewerId()));
         assertEquals(VALID_URL, securityToken.getAppUrl());
     }
+
+    private class TestEncryptedBlobSecurityTokenService extends EncryptedBlobSecurityTokenService {
+        private long now = 1000000L;
+
+        private TestEncryptedBlobSecurityTokenService(String encryptionKey) {
+            super(userService, "default", "default", encryptionKey, TOKEN_CACHE_TTL, 100);
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+    }
 }
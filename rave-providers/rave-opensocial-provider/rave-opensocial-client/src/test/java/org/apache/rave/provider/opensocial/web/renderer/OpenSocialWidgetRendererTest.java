@@ -37,6 +37,8 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 
 import static org.easymock.EasyMock.*;
 import static org.hamcrest.CoreMatchers.equalTo;
@@ -152,4 +154,28 @@ public class OpenSocialWidgetRendererTest {
 
         renderer.render(rw, null);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void prepareForRender_fetchesAllMetadataAtOnce() {
+        final String SECOND_GADGET_URL = "http://www.example.com/gadget2.xml";
+        Widget w1 = new Widget();
+        w1.setUrl(VALID_GADGET_URL);
+        Widget w2 = new Widget();
+        w2.setUrl(SECOND_GADGET_URL);
+        RegionWidget rw1 = new RegionWidget(1L);
+        rw1.setWidget(w1);
+        RegionWidget rw2 = new RegionWidget(2L);
+        rw2.setWidget(w2);
+        RegionWidget rw3 = new RegionWidget(3L);
+        rw3.setWidget(w1);
+
+        expect(openSocialService.getGadgetMetadata(new LinkedHashSet<String>(Arrays.asList(VALID_GADGET_URL, SECOND_GADGET_URL))))
+                .andReturn(new HashMap<String, String>()).once();
+        expect(securityTokenService.getEncryptedSecurityTokens(Arrays.asList(rw1, rw2, rw3)))
+                .andReturn(new HashMap<Long, String>()).once();
+        replay(openSocialService, securityTokenService);
+
+        ((OpenSocialWidgetRenderer) renderer).prepareForRender(Arrays.asList(rw1, rw2, rw3));
+        verify(openSocialService, securityTokenService);
+    }
+}
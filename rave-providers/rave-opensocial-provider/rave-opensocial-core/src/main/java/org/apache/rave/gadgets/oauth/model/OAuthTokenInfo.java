@@ -88,7 +88,7 @@ public class OAuthTokenInfo implements BasicEntity {
     @Id
     @GeneratedValue(strategy = GenerationType.TABLE, generator = "tokenInfoIdGenerator")
     @TableGenerator(name = "tokenInfoIdGenerator", table = "RAVE_SHINDIG_SEQUENCES", pkColumnName = "SEQ_NAME",
-            valueColumnName = "SEQ_COUNT", pkColumnValue = "token_info", allocationSize = 1, initialValue = 1)
+            valueColumnName = "SEQ_COUNT", pkColumnValue = "token_info", allocationSize = 20, initialValue = 1)
     @Column(name = "entity_id")
     private Long entityId;
 
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.opensocial.migration;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.rave.jdbc.util.JdbcMigration;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Adds the (user_id, app_url) unique constraint to application data tables created before the constraint was mapped.
+ * <p/>
+ * Such tables may hold several rows of a user and application.  Their data is merged into the row written last, the
+ * one with the highest version and then the highest id, the keys of newer rows overriding those of older rows, before
+ * the other rows are deleted, so no key is lost.
+ */
+public class MergeDuplicateApplicationDataMigration implements JdbcMigration {
+    private static Logger logger = LoggerFactory.getLogger(MergeDuplicateApplicationDataMigration.class);
+
+    private static final String SELECT_DUPLICATES_SQL = "SELECT entity_id, user_id, app_url, version, serialized_data " +
+            "FROM application_data WHERE EXISTS (SELECT 1 FROM application_data other " +
+            "WHERE other.user_id = application_data.user_id AND other.app_url = application_data.app_url " +
+            "AND other.entity_id <> application_data.entity_id) ORDER BY user_id, app_url, version, entity_id";
+    private static final String UPDATE_SQL = "UPDATE application_data SET serialized_data = ?, version = ? " +
+            "WHERE entity_id = ?";
+    private static final String DELETE_SQL = "DELETE FROM application_data WHERE entity_id = ?";
+    private static final String CREATE_INDEX_SQL = "CREATE UNIQUE INDEX uk_app_data_user_app " +
+            "ON application_data (user_id, app_url)";
+
+    @Override
+    public String getDescription() {
+        return "application data unique";
+    }
+
+    @Override
+    public void migrate(Connection connection) throws SQLException {
+        List<Row> rows = getDuplicates(connection);
+        int start = 0;
+        for (int i = 1; i <= rows.size(); i++) {
+            if (i == rows.size() || !rows.get(i).isSameUserAndApp(rows.get(start))) {
+                merge(connection, rows.subList(start, i));
+                start = i;
+            }
+        }
+        Statement statement = connection.createStatement();
+        try {
+            statement.execute(CREATE_INDEX_SQL);
+        } finally {
+            statement.close();
+        }
+    }
+
+    private List<Row> getDuplicates(Connection connection) throws SQLException {
+        List<Row> rows = new ArrayList<Row>();
+        Statement statement = connection.createStatement();
+        try {
+            ResultSet resultSet = statement.executeQuery(SELECT_DUPLICATES_SQL);
+            while (resultSet.next()) {
+                //V2 set the version of the rows written before it was mapped
+                rows.add(new Row(resultSet.getLong(1), resultSet.getString(2), resultSet.getString(3),
+                        resultSet.getLong(4), resultSet.getString(5)));
+            }
+        } finally {
+            statement.close();
+        }
+        return rows;
+    }
+
+    //the rows of one user and application, oldest first
+    private void merge(Connection connection, List<Row> rows) throws SQLException {
+        Row kept = rows.get(rows.size() - 1);
+        JSONObject merged = new JSONObject();
+        for (Row row : rows) {
+            putAll(merged, row);
+        }
+        PreparedStatement update = connection.prepareStatement(UPDATE_SQL);
+        try {
+            update.setString(1, merged.toString());
+            update.setLong(2, kept.version + 1);
+            update.setLong(3, kept.entityId);
+            update.executeUpdate();
+        } finally {
+            update.close();
+        }
+        PreparedStatement delete = connection.prepareStatement(DELETE_SQL);
+        try {
+            for (Row row : rows.subList(0, rows.size() - 1)) {
+                delete.setLong(1, row.entityId);
+                delete.executeUpdate();
+            }
+        } finally {
+            delete.close();
+        }
+        logger.info("Merged {} rows of application data of user {} for {}",
+                new Object[]{rows.size(), kept.userId, kept.appUrl});
+    }
+
+    private static void putAll(JSONObject merged, Row row) throws SQLException {
+        if (StringUtils.isBlank(row.serializedData)) {
+            return;
+        }
+        try {
+            JSONObject data = new JSONObject(row.serializedData);
+            Iterator keys = data.keys();
+            while (keys.hasNext()) {
+                String key = (String) keys.next();
+                merged.put(key, data.get(key));
+            }
+        } catch (JSONException e) {
+            //fail rather than drop the data, the row has to be repaired by hand
+            throw new SQLException("Application data " + row.entityId + " cannot be merged, it is not valid JSON: " +
+                    row.serializedData, e);
+        }
+    }
+
+    private static class Row {
+        private final long entityId;
+        private final String userId;
+        private final String appUrl;
+        private final long version;
+        private final String serializedData;
+
+        private Row(long entityId, String userId, String appUrl, long version, String serializedData) {
+            this.entityId = entityId;
+            this.userId = userId;
+            this.appUrl = appUrl;
+            this.version = version;
+            this.serializedData = serializedData;
+        }
+
+        private boolean isSameUserAndApp(Row other) {
+            return userId.equals(other.userId) && appUrl.equals(other.appUrl);
+        }
+    }
+}
@@ -24,16 +24,18 @@ import javax.persistence.*;
 import java.util.Map;
 
 @Entity
-@Table(name = "application_data")
+@Table(name = "application_data", uniqueConstraints = @UniqueConstraint(columnNames = {"user_id", "app_url"}))
 @NamedQueries(value = {
         @NamedQuery(name = ApplicationData.FIND_BY_USER_IDS_AND_APP_ID, query = "select a from ApplicationData a " +
                 "where a.userId IN :" + ApplicationData.USER_IDS_PARAM + " AND a.appUrl = :" + ApplicationData.APP_URL_PARAM),
         @NamedQuery(name = ApplicationData.FIND_BY_USER_ID_AND_APP_ID, query = "select a from ApplicationData a " +
-                "where a.userId = :" + ApplicationData.USER_ID_PARAM + " AND a.appUrl = :" + ApplicationData.APP_URL_PARAM)
+                "where a.userId = :" + ApplicationData.USER_ID_PARAM + " AND a.appUrl = :" + ApplicationData.APP_URL_PARAM),
+        @NamedQuery(name = ApplicationData.FIND_ALL, query = "select a from ApplicationData a order by a.entityId")
 })
 public class ApplicationData implements BasicEntity {
     public static final String FIND_BY_USER_IDS_AND_APP_ID = "ApplicationData.findByUserIdsAndAppId";
     public static final String FIND_BY_USER_ID_AND_APP_ID = "ApplicationData.findByUserIdAndAppId";
+    public static final String FIND_ALL = "ApplicationData.findAll";
 
     public static final String USER_IDS_PARAM = "userIds";
     public static final String USER_ID_PARAM = "userId";
@@ -45,7 +47,7 @@ public class ApplicationData implements BasicEntity {
     @Id
     @GeneratedValue(strategy = GenerationType.TABLE, generator = "applicationDataIdGenerator")
     @TableGenerator(name = "applicationDataIdGenerator", table = "RAVE_SHINDIG_SEQUENCES", pkColumnName = "SEQ_NAME",
-            valueColumnName = "SEQ_COUNT", pkColumnValue = "application_data", allocationSize = 1, initialValue = 1)
+            valueColumnName = "SEQ_COUNT", pkColumnValue = "application_data", allocationSize = 50, initialValue = 1)
     @Column(name = "entity_id")
     private Long entityId;
 
@@ -55,6 +57,13 @@ public class ApplicationData implements BasicEntity {
     @Column(name = "app_url")
     private String appUrl;
 
+    /**
+     * Incremented on every write by the repository, so a write based on data that was changed since it was read fails
+     * instead of overwriting the change.
+     */
+    @Column(name = "version")
+    private Long version;
+
     @Transient
     private Map<String, String> data;
 
@@ -92,6 +101,14 @@ public class ApplicationData implements BasicEntity {
         this.appUrl = appUrl;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public Map<String, String> getData() {
         return data;
     }
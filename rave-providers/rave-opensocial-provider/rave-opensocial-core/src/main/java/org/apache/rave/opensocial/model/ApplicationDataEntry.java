@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.rave.opensocial.model;
+
+import org.apache.rave.persistence.BasicEntity;
+
+import javax.persistence.*;
+
+/**
+ * A single key of the application data of a user and application, used by the key value application data store so
+ * reads can select and writes can change only the keys requested.
+ */
+@Entity
+@Table(name = "application_data_entry",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"user_id", "app_url", "data_key"}))
+@NamedQueries(value = {
+        @NamedQuery(name = ApplicationDataEntry.FIND_BY_USER_IDS_AND_APP_ID, query = "select e from ApplicationDataEntry e " +
+                "where e.userId IN :" + ApplicationDataEntry.USER_IDS_PARAM + " AND e.appUrl = :" + ApplicationDataEntry.APP_URL_PARAM),
+        @NamedQuery(name = ApplicationDataEntry.FIND_BY_USER_IDS_AND_APP_ID_AND_KEYS, query = "select e from ApplicationDataEntry e " +
+                "where e.userId IN :" + ApplicationDataEntry.USER_IDS_PARAM + " AND e.appUrl = :" + ApplicationDataEntry.APP_URL_PARAM +
+                " AND e.dataKey IN :" + ApplicationDataEntry.KEYS_PARAM),
+        @NamedQuery(name = ApplicationDataEntry.DELETE_BY_USER_ID_AND_APP_ID, query = "delete from ApplicationDataEntry e " +
+                "where e.userId = :" + ApplicationDataEntry.USER_ID_PARAM + " AND e.appUrl = :" + ApplicationDataEntry.APP_URL_PARAM),
+        @NamedQuery(name = ApplicationDataEntry.DELETE_BY_USER_ID_AND_APP_ID_AND_KEYS, query = "delete from ApplicationDataEntry e " +
+                "where e.userId = :" + ApplicationDataEntry.USER_ID_PARAM + " AND e.appUrl = :" + ApplicationDataEntry.APP_URL_PARAM +
+                " AND e.dataKey IN :" + ApplicationDataEntry.KEYS_PARAM)
+})
+public class ApplicationDataEntry implements BasicEntity {
+    public static final String FIND_BY_USER_IDS_AND_APP_ID = "ApplicationDataEntry.findByUserIdsAndAppId";
+    public static final String FIND_BY_USER_IDS_AND_APP_ID_AND_KEYS = "ApplicationDataEntry.findByUserIdsAndAppIdAndKeys";
+    public static final String DELETE_BY_USER_ID_AND_APP_ID = "ApplicationDataEntry.deleteByUserIdAndAppId";
+    public static final String DELETE_BY_USER_ID_AND_APP_ID_AND_KEYS = "ApplicationDataEntry.deleteByUserIdAndAppIdAndKeys";
+
+    public static final String USER_IDS_PARAM = "userIds";
+    public static final String USER_ID_PARAM = "userId";
+    public static final String APP_URL_PARAM = "appUrl";
+    public static final String KEYS_PARAM = "keys";
+
+    /**
+     * The internal object ID used for references to this object.
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "applicationDataEntryIdGenerator")
+    @TableGenerator(name = "applicationDataEntryIdGenerator", table = "RAVE_SHINDIG_SEQUENCES", pkColumnName = "SEQ_NAME",
+            valueColumnName = "SEQ_COUNT", pkColumnValue = "application_data_entry", allocationSize = 50, initialValue = 1)
+    @Column(name = "entity_id")
+    private Long entityId;
+
+    @Column(name = "user_id")
+    private String userId;
+
+    @Column(name = "app_url")
+    private String appUrl;
+
+    @Column(name = "data_key")
+    private String dataKey;
+
+    @Lob
+    @Column(name = "data_value")
+    private String dataValue;
+
+    public ApplicationDataEntry() {
+    }
+
+    public ApplicationDataEntry(String userId, String appUrl, String dataKey, String dataValue) {
+        this.userId = userId;
+        this.appUrl = appUrl;
+        this.dataKey = dataKey;
+        this.dataValue = dataValue;
+    }
+
+    public Long getEntityId() {
+        return entityId;
+    }
+
+    public void setEntityId(Long entityId) {
+        this.entityId = entityId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public String getAppUrl() {
+        return appUrl;
+    }
+
+    public void setAppUrl(String appUrl) {
+        this.appUrl = appUrl;
+    }
+
+    public String getDataKey() {
+        return dataKey;
+    }
+
+    public void setDataKey(String dataKey) {
+        this.dataKey = dataKey;
+    }
+
+    public String getDataValue() {
+        return dataValue;
+    }
+
+    public void setDataValue(String dataValue) {
+        this.dataValue = dataValue;
+    }
+}
@@ -22,6 +22,8 @@ import org.apache.rave.opensocial.model.ApplicationData;
 import org.apache.rave.persistence.Repository;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public interface ApplicationDataRepository extends Repository<ApplicationData> {
 
@@ -42,4 +44,39 @@ public interface ApplicationDataRepository extends Repository<ApplicationData> {
      * @return The application data, or null if not found
      */
     ApplicationData getApplicationData(String personId, String appId);
+
+    /**
+     * Gets the given keys of the application data for the given users and application
+     *
+     * @param userIds The users
+     * @param appId   The application
+     * @param keys    The keys to get - null or an empty set gets all keys
+     * @return The application data for the specified users holding only the requested keys, or an empty list if none
+     *         is found
+     */
+    List<ApplicationData> getApplicationData(List<String> userIds, String appId, Set<String> keys);
+
+    /**
+     * Sets the given values and removes the given keys of the application data for the given user and application,
+     * leaving all other keys as they are.  The change is made atomically: if a concurrent write conflicts with it,
+     * nothing is changed and the call can be retried.
+     *
+     * @param personId    The user
+     * @param appId       The application
+     * @param values      The keys to add or change and their new values
+     * @param removedKeys The keys to remove
+     * @throws org.springframework.dao.OptimisticLockingFailureException if a concurrent write conflicted
+     */
+    void updateApplicationData(String personId, String appId, Map<String, String> values, Set<String> removedKeys);
+
+    /**
+     * Replaces all the application data for the given user and application with the given values.  The change is
+     * made atomically: if a concurrent write conflicts with it, nothing is changed and the call can be retried.
+     *
+     * @param personId The user
+     * @param appId    The application
+     * @param values   The new values - an empty map removes all the application data
+     * @throws org.springframework.dao.OptimisticLockingFailureException if a concurrent write conflicted
+     */
+    void replaceApplicationData(String personId, String appId, Map<String, String> values);
 }
@@ -0,0 +1,35 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.rave.opensocial.repository;
+
+/**
+ * An {@link ApplicationDataRepository} that stores each key of the application data separately, so reads of some
+ * keys and writes of some keys do not read or write the rest.
+ */
+public interface KeyValueApplicationDataRepository extends ApplicationDataRepository {
+
+    /**
+     * Converts application data stored serialized as one value per user and application into this store, removing
+     * the serialized data.  Keys already in this store are newer than the serialized copy and are kept.
+     *
+     * @param batchSize The most users and applications to convert
+     * @return The number of users and applications converted - less than the batch size when no more remain
+     */
+    int convertSerializedApplicationData(int batchSize);
+}
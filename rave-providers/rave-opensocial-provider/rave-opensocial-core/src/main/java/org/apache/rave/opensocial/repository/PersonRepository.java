@@ -142,5 +142,29 @@ public interface PersonRepository extends Repository<Person> {
      * @return a list of people in the group who have the specified friend
      */
     List<Person> findByGroupWithFriend(String groupId, String friendUsername);
+
+    /**
+     * Gets the ids of the people followed by or sharing a group with the given user, without loading the people
+     *
+     * @param username the user
+     * @return the unique ids of the connected people
+     */
+    List<Long> findAllConnectedPeopleIds(String username);
+
+    /**
+     * Gets the ids of the people followed by the given user, without loading the people
+     *
+     * @param username the user
+     * @return the ids of the friends
+     */
+    List<Long> findFriendIds(String username);
+
+    /**
+     * Gets the ids of the members of the given group, without loading the people
+     *
+     * @param groupId the group
+     * @return the ids of the members, or an empty list if the group does not exist
+     */
+    List<Long> findIdsByGroup(String groupId);
 }
 
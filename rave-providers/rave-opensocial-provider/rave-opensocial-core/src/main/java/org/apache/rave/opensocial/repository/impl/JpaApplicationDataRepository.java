@@ -25,20 +25,27 @@ import org.apache.rave.opensocial.repository.ApplicationDataRepository;
 import org.apache.rave.persistence.jpa.AbstractJpaRepository;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.PersistenceException;
 import javax.persistence.Lob;
+import javax.persistence.Query;
 import javax.persistence.TypedQuery;
 import java.util.*;
 
 import static org.apache.rave.persistence.jpa.util.JpaUtil.getSingleResult;
+import static org.apache.rave.persistence.jpa.util.JpaUtil.isConstraintViolation;
 
 @Repository
 public class JpaApplicationDataRepository extends AbstractJpaRepository<ApplicationData>
         implements ApplicationDataRepository {
+    private static final long INITIAL_VERSION = 0L;
+    private static final String COMPARE_AND_SET_SQL = "UPDATE application_data SET serialized_data = ?, version = ?" +
+            " WHERE entity_id = ? AND version = ?";
 
     public JpaApplicationDataRepository() {
         super(JpaSerializableApplicationData.class);
@@ -80,6 +87,42 @@ public class JpaApplicationDataRepository extends AbstractJpaRepository<Applicat
         return applicationData;
     }
 
+    @Override
+    public List<ApplicationData> getApplicationData(List<String> userIds, String appId, Set<String> keys) {
+        //the serialized data can only be read whole, so the keys are selected once it is deserialized
+        List<ApplicationData> applicationData = getApplicationData(userIds, appId);
+        if (keys != null && !keys.isEmpty()) {
+            for (ApplicationData data : applicationData) {
+                data.getData().keySet().retainAll(keys);
+            }
+        }
+        return applicationData;
+    }
+
+    @Override
+    @Transactional
+    public void updateApplicationData(String personId, String appId, Map<String, String> values,
+                                      Set<String> removedKeys) {
+        ApplicationData applicationData = getApplicationData(personId, appId);
+        Map<String, String> data = new HashMap<String, String>();
+        if (applicationData != null) {
+            data.putAll(applicationData.getData());
+        }
+        data.keySet().removeAll(removedKeys);
+        data.putAll(values);
+        compareAndSet(applicationData, personId, appId, data);
+    }
+
+    @Override
+    @Transactional
+    public void replaceApplicationData(String personId, String appId, Map<String, String> values) {
+        ApplicationData applicationData = getApplicationData(personId, appId);
+        if (applicationData == null && values.isEmpty()) {
+            return;
+        }
+        compareAndSet(applicationData, personId, appId, values);
+    }
+
     @Override
     public ApplicationData get(long id) {
         JpaSerializableApplicationData applicationData = (JpaSerializableApplicationData) super.get(id);
@@ -92,18 +135,59 @@ public class JpaApplicationDataRepository extends AbstractJpaRepository<Applicat
     @Override
     @Transactional
     public ApplicationData save(ApplicationData applicationData) {
-        JpaSerializableApplicationData jpaSerializableApplicationData = getJpaSerializableApplicationData(applicationData);
-        jpaSerializableApplicationData.serializeData();
-        return super.save(jpaSerializableApplicationData);
+        ApplicationData read = applicationData;
+        if (applicationData.getEntityId() != null && applicationData.getVersion() == null) {
+            //data saved without the version it was read with overwrites whatever is stored
+            read = super.get(applicationData.getEntityId());
+        }
+        Map<String, String> data = applicationData.getData();
+        return compareAndSet(read, applicationData.getUserId(), applicationData.getAppUrl(),
+                data == null ? new HashMap<String, String>() : data);
     }
 
-    private JpaSerializableApplicationData getJpaSerializableApplicationData(ApplicationData applicationData) {
-        if (applicationData instanceof JpaSerializableApplicationData) {
-            return (JpaSerializableApplicationData) applicationData;
+    /**
+     * Writes the data of a user and application only if it has not been written since it was read, so concurrent
+     * writes from any node fail instead of overwriting each other
+     *
+     * @param read     the data as read, or null if none was stored
+     * @param personId the user
+     * @param appId    the application
+     * @param data     the data to write
+     * @return the data written
+     * @throws OptimisticLockingFailureException if the data was written, or first created, since it was read
+     */
+    private ApplicationData compareAndSet(ApplicationData read, String personId, String appId,
+                                          Map<String, String> data) {
+        if (read == null || read.getEntityId() == null) {
+            JpaSerializableApplicationData created = new JpaSerializableApplicationData(null, personId, appId, data);
+            created.setVersion(INITIAL_VERSION);
+            created.serializeData();
+            try {
+                manager.persist(created);
+                //the unique user and application constraint fails the insert if the data was created concurrently
+                manager.flush();
+            } catch (PersistenceException e) {
+                if (!isConstraintViolation(e)) {
+                    throw e;
+                }
+                throw new OptimisticLockingFailureException("Application data of user " + personId +
+                        " for " + appId + " was created concurrently", e);
+            }
+            return created;
         }
 
-        return new JpaSerializableApplicationData(applicationData.getEntityId(), applicationData.getUserId(),
-                applicationData.getAppUrl(), applicationData.getData());
+        Query query = manager.createNativeQuery(COMPARE_AND_SET_SQL);
+        query.setParameter(1, new JSONObject(data).toString());
+        query.setParameter(2, read.getVersion() + 1);
+        query.setParameter(3, read.getEntityId());
+        query.setParameter(4, read.getVersion());
+        if (query.executeUpdate() == 0) {
+            throw new OptimisticLockingFailureException("Application data of user " + personId +
+                    " for " + appId + " was changed concurrently");
+        }
+        ApplicationData written = new ApplicationData(read.getEntityId(), personId, appId, data);
+        written.setVersion(read.getVersion() + 1);
+        return written;
     }
 
     /**
@@ -0,0 +1,242 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.rave.opensocial.repository.impl;
+
+import org.apache.rave.exception.NotSupportedException;
+import org.apache.rave.opensocial.model.ApplicationData;
+import org.apache.rave.opensocial.model.ApplicationDataEntry;
+import org.apache.rave.opensocial.repository.KeyValueApplicationDataRepository;
+import org.apache.rave.opensocial.repository.impl.JpaApplicationDataRepository.JpaSerializableApplicationData;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceException;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+import java.util.*;
+
+import static org.apache.rave.persistence.jpa.util.JpaUtil.isConstraintViolation;
+
+/**
+ * Stores application data as one row per user, application and key.
+ * <p/>
+ * The application data returned by this repository has no id, as it is assembled from the rows of its keys.
+ * <p/>
+ * Until {@link #convertSerializedApplicationData(int)} has converted all of it, application data may still be stored
+ * serialized.  Reads combine the serialized data with the keys of this store, the keys of this store being newer, and
+ * the first write of a user and application converts its serialized data before changing it.
+ */
+@Repository
+public class JpaKeyValueApplicationDataRepository implements KeyValueApplicationDataRepository {
+
+    @PersistenceContext
+    private EntityManager manager;
+
+    @Override
+    public Class<? extends ApplicationData> getType() {
+        return ApplicationData.class;
+    }
+
+    @Override
+    public ApplicationData get(long id) {
+        throw new NotSupportedException();
+    }
+
+    @Override
+    @Transactional
+    public ApplicationData save(ApplicationData item) {
+        Map<String, String> data = item.getData();
+        replaceApplicationData(item.getUserId(), item.getAppUrl(),
+                data == null ? Collections.<String, String>emptyMap() : data);
+        return item;
+    }
+
+    @Override
+    @Transactional
+    public void delete(ApplicationData item) {
+        replaceApplicationData(item.getUserId(), item.getAppUrl(), Collections.<String, String>emptyMap());
+    }
+
+    @Override
+    public List<ApplicationData> getApplicationData(List<String> userIds, String appId) {
+        return getApplicationData(userIds, appId, null);
+    }
+
+    @Override
+    public ApplicationData getApplicationData(String personId, String appId) {
+        List<ApplicationData> applicationData = getApplicationData(Arrays.asList(personId), appId, null);
+        return applicationData.isEmpty() ? null : applicationData.get(0);
+    }
+
+    @Override
+    public List<ApplicationData> getApplicationData(List<String> userIds, String appId, Set<String> keys) {
+        Map<String, ApplicationData> applicationDataByUser = new LinkedHashMap<String, ApplicationData>();
+        for (JpaSerializableApplicationData serialized : getSerialized(userIds, appId)) {
+            for (Map.Entry<String, String> value : serialized.getData().entrySet()) {
+                if (keys == null || keys.isEmpty() || keys.contains(value.getKey())) {
+                    getOrCreate(applicationDataByUser, serialized.getUserId(), appId)
+                            .getData().put(value.getKey(), value.getValue());
+                }
+            }
+        }
+        //put after the serialized data, as the keys of this store are newer
+        for (ApplicationDataEntry entry : getEntries(userIds, appId, keys)) {
+            getOrCreate(applicationDataByUser, entry.getUserId(), appId)
+                    .getData().put(entry.getDataKey(), entry.getDataValue());
+        }
+        return new ArrayList<ApplicationData>(applicationDataByUser.values());
+    }
+
+    @Override
+    @Transactional
+    public void updateApplicationData(String personId, String appId, Map<String, String> values,
+                                      Set<String> removedKeys) {
+        //the keys that are not changed must survive the write, so the serialized data is converted first
+        List<JpaSerializableApplicationData> serialized = getSerialized(Arrays.asList(personId), appId);
+        if (!serialized.isEmpty()) {
+            for (JpaSerializableApplicationData applicationData : serialized) {
+                convert(applicationData);
+            }
+            flush(personId, appId);
+        }
+        if (!removedKeys.isEmpty()) {
+            Query query = manager.createNamedQuery(ApplicationDataEntry.DELETE_BY_USER_ID_AND_APP_ID_AND_KEYS);
+            query.setParameter(ApplicationDataEntry.USER_ID_PARAM, personId);
+            query.setParameter(ApplicationDataEntry.APP_URL_PARAM, appId);
+            query.setParameter(ApplicationDataEntry.KEYS_PARAM, removedKeys);
+            query.executeUpdate();
+        }
+        if (values.isEmpty()) {
+            return;
+        }
+        //change the keys that exist in place and add the rest
+        Map<String, String> added = new HashMap<String, String>(values);
+        for (ApplicationDataEntry entry : getEntries(Arrays.asList(personId), appId, values.keySet())) {
+            entry.setDataValue(added.remove(entry.getDataKey()));
+        }
+        persistEntries(personId, appId, added);
+        flush(personId, appId);
+    }
+
+    @Override
+    @Transactional
+    public void replaceApplicationData(String personId, String appId, Map<String, String> values) {
+        for (JpaSerializableApplicationData serialized : getSerialized(Arrays.asList(personId), appId)) {
+            manager.remove(serialized);
+        }
+        Query query = manager.createNamedQuery(ApplicationDataEntry.DELETE_BY_USER_ID_AND_APP_ID);
+        query.setParameter(ApplicationDataEntry.USER_ID_PARAM, personId);
+        query.setParameter(ApplicationDataEntry.APP_URL_PARAM, appId);
+        query.executeUpdate();
+        persistEntries(personId, appId, values);
+        flush(personId, appId);
+    }
+
+    @Override
+    @Transactional
+    public int convertSerializedApplicationData(int batchSize) {
+        //converted data is removed, so the next batch is always at the start
+        TypedQuery<ApplicationData> query = manager.createNamedQuery(ApplicationData.FIND_ALL, ApplicationData.class);
+        query.setMaxResults(batchSize);
+        List<ApplicationData> serialized = query.getResultList();
+        for (ApplicationData applicationData : serialized) {
+            if (applicationData instanceof JpaSerializableApplicationData) {
+                ((JpaSerializableApplicationData) applicationData).deserializeData();
+            }
+            convert(applicationData);
+        }
+        return serialized.size();
+    }
+
+    private void convert(ApplicationData applicationData) {
+        Map<String, String> data = applicationData.getData();
+        if (data != null && !data.isEmpty()) {
+            Map<String, String> converted = new HashMap<String, String>(data);
+            List<String> userIds = Arrays.asList(applicationData.getUserId());
+            for (ApplicationDataEntry entry : getEntries(userIds, applicationData.getAppUrl(), data.keySet())) {
+                converted.remove(entry.getDataKey());
+            }
+            persistEntries(applicationData.getUserId(), applicationData.getAppUrl(), converted);
+        }
+        manager.remove(applicationData);
+    }
+
+    private List<JpaSerializableApplicationData> getSerialized(List<String> userIds, String appId) {
+        TypedQuery<JpaSerializableApplicationData> query = manager.createNamedQuery(
+                ApplicationData.FIND_BY_USER_IDS_AND_APP_ID, JpaSerializableApplicationData.class);
+        query.setParameter(ApplicationData.USER_IDS_PARAM, userIds);
+        query.setParameter(ApplicationData.APP_URL_PARAM, appId);
+        List<JpaSerializableApplicationData> serialized = query.getResultList();
+        for (JpaSerializableApplicationData applicationData : serialized) {
+            applicationData.deserializeData();
+        }
+        return serialized;
+    }
+
+    private static ApplicationData getOrCreate(Map<String, ApplicationData> applicationDataByUser, String userId,
+                                               String appId) {
+        ApplicationData applicationData = applicationDataByUser.get(userId);
+        if (applicationData == null) {
+            applicationData = new ApplicationData(null, userId, appId, new HashMap<String, String>());
+            applicationDataByUser.put(userId, applicationData);
+        }
+        return applicationData;
+    }
+
+    private List<ApplicationDataEntry> getEntries(List<String> userIds, String appId, Set<String> keys) {
+        TypedQuery<ApplicationDataEntry> query;
+        if (keys == null || keys.isEmpty()) {
+            query = manager.createNamedQuery(ApplicationDataEntry.FIND_BY_USER_IDS_AND_APP_ID,
+                    ApplicationDataEntry.class);
+        } else {
+            query = manager.createNamedQuery(ApplicationDataEntry.FIND_BY_USER_IDS_AND_APP_ID_AND_KEYS,
+                    ApplicationDataEntry.class);
+            query.setParameter(ApplicationDataEntry.KEYS_PARAM, keys);
+        }
+        query.setParameter(ApplicationDataEntry.USER_IDS_PARAM, userIds);
+        query.setParameter(ApplicationDataEntry.APP_URL_PARAM, appId);
+        return query.getResultList();
+    }
+
+    //each key is written on its own, so the only conflicts are keys added or removed by a concurrent write
+    private void flush(String personId, String appId) {
+        try {
+            manager.flush();
+        } catch (OptimisticLockException e) {
+            throw new OptimisticLockingFailureException("Application data of user " + personId +
+                    " for " + appId + " was removed concurrently", e);
+        } catch (PersistenceException e) {
+            if (!isConstraintViolation(e)) {
+                throw e;
+            }
+            throw new OptimisticLockingFailureException("Application data of user " + personId +
+                    " for " + appId + " was added concurrently", e);
+        }
+    }
+
+    private void persistEntries(String personId, String appId, Map<String, String> values) {
+        for (Map.Entry<String, String> value : values.entrySet()) {
+            manager.persist(new ApplicationDataEntry(personId, appId, value.getKey(), value.getValue()));
+        }
+    }
+}
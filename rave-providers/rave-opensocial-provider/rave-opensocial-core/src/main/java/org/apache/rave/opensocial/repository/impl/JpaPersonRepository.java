@@ -32,7 +32,9 @@ import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.TypedQuery;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import static org.apache.rave.persistence.jpa.util.JpaUtil.getSingleResult;
 
@@ -125,4 +127,28 @@ public class JpaPersonRepository extends AbstractJpaRepository<Person> implement
     public List<Person> findByGroupWithFriend(String groupId, String friendUsername) {
         throw new NotSupportedException();
     }
+
+    @Override
+    public List<Long> findAllConnectedPeopleIds(String username) {
+        //a set rather than addUniqueValues, connections of large groups would make the list search quadratic
+        Set<Long> ids = new LinkedHashSet<Long>(findFriendIds(username));
+        TypedQuery<Long> members = manager.createNamedQuery(Person.FIND_IDS_BY_GROUP_MEMBERSHIP, Long.class);
+        members.setParameter(Person.USERNAME_PARAM, username);
+        ids.addAll(members.getResultList());
+        return new ArrayList<Long>(ids);
+    }
+
+    @Override
+    public List<Long> findFriendIds(String username) {
+        TypedQuery<Long> friends = manager.createNamedQuery(Person.FIND_FRIEND_IDS_BY_USERNAME, Long.class);
+        friends.setParameter(Person.USERNAME_PARAM, username);
+        return friends.getResultList();
+    }
+
+    @Override
+    public List<Long> findIdsByGroup(String groupId) {
+        TypedQuery<Long> query = manager.createNamedQuery(Group.FIND_MEMBER_IDS_BY_TITLE, Long.class);
+        query.setParameter(Group.GROUP_ID_PARAM, groupId);
+        return query.getResultList();
+    }
 }
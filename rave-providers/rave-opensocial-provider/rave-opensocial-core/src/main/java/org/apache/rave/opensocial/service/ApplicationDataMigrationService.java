@@ -0,0 +1,32 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.rave.opensocial.service;
+
+/**
+ * Converts application data stored serialized as one value per user and application into the key value store
+ */
+public interface ApplicationDataMigrationService {
+    /**
+     * Converts all the serialized application data in batches, each batch in its own transaction, so an interrupted
+     * migration continues where it stopped when run again.  Does nothing unless the key value store is in use.
+     *
+     * @return The number of users and applications converted, or -1 if the data is being converted elsewhere
+     */
+    int migrate();
+}
@@ -38,4 +38,15 @@ public interface SimplePersonService {
      * @return a list of people
      */
     List<Person> getPeople(Set<UserId> userIds, GroupId groupId, CollectionOptions collectionOptions, SecurityToken token);
+
+    /**
+     * Returns the ids of the people that correspond to the passed in person ids, without loading the people, for
+     * callers that only need to know who is in a large group.
+     *
+     * @param userIds A set of users
+     * @param groupId The group
+     * @param token   The gadget token
+     * @return the unique ids of the people
+     */
+    List<String> getPersonIds(Set<UserId> userIds, GroupId groupId, SecurityToken token);
 }
@@ -21,10 +21,9 @@ package org.apache.rave.opensocial.service.impl;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.rave.opensocial.model.ApplicationData;
-import org.apache.rave.portal.model.Person;
 import org.apache.rave.opensocial.repository.ApplicationDataRepository;
 import org.apache.rave.opensocial.service.SimplePersonService;
-import org.apache.rave.service.LockService;
+import org.apache.rave.util.CollectionUtils;
 import org.apache.shindig.auth.SecurityToken;
 import org.apache.shindig.common.util.ImmediateFuture;
 import org.apache.shindig.protocol.DataCollection;
@@ -33,21 +32,27 @@ import org.apache.shindig.social.opensocial.spi.AppDataService;
 import org.apache.shindig.social.opensocial.spi.GroupId;
 import org.apache.shindig.social.opensocial.spi.UserId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 
 import javax.servlet.http.HttpServletResponse;
 import java.util.*;
 import java.util.concurrent.Future;
-import java.util.concurrent.locks.Lock;
 
 /**
  * Implementation of the {@link AppDataService} SPI.
+ * <p/>
+ * Writes are not serialized by a lock.  The repository applies each write atomically and fails it if a concurrent
+ * write conflicted, in which case the write is retried up to the maximum number of attempts.
  */
 @Service
 public class DefaultAppDataService implements AppDataService {
     private final SimplePersonService personService;
-    private final LockService lockService;
     private final ApplicationDataRepository applicationDataRepository;
+    private final int maxWriteAttempts;
+    private final int readBatchSize;
 
     /**
      * These are the only visibility rules I can find in the OpenSocial specification regarding visibility of appdata:
@@ -58,11 +63,15 @@ public class DefaultAppDataService implements AppDataService {
      */
 
     @Autowired
-    public DefaultAppDataService(SimplePersonService personService, LockService lockService,
-                                 ApplicationDataRepository applicationDataRepository) {
+    public DefaultAppDataService(SimplePersonService personService,
+                                 @Qualifier("applicationDataRepository")
+                                 ApplicationDataRepository applicationDataRepository,
+                                 @Value("${rave-shindig.applicationData.maxWriteAttempts}") int maxWriteAttempts,
+                                 @Value("${rave-shindig.applicationData.readBatchSize}") int readBatchSize) {
         this.personService = personService;
-        this.lockService = lockService;
         this.applicationDataRepository = applicationDataRepository;
+        this.maxWriteAttempts = maxWriteAttempts;
+        this.readBatchSize = readBatchSize;
     }
 
     /**
@@ -81,10 +90,23 @@ public class DefaultAppDataService implements AppDataService {
         //make sure the request conforms to the OpenSocial visibility rules
         List<String> personIds = validateReadRequest(userIds, groupId, appId, token);
 
-        //fetch their appdata, convert it to a DataCollection and return it
-        List<ApplicationData> applicationData = applicationDataRepository.getApplicationData(personIds, appId);
-        DataCollection dataCollection = convertAppDataMapToDataCollection(personIds, applicationData, fields);
-        return ImmediateFuture.newInstance(dataCollection);
+        //fetch the requested fields of their appdata a batch of people at a time to keep the IN lists bounded
+        Map<String, Map<String, String>> dataCollectionMap = new HashMap<String, Map<String, String>>(
+                (int) (personIds.size() / 0.75f) + 1);
+        for (List<String> batch : CollectionUtils.partition(personIds, readBatchSize)) {
+            for (ApplicationData data : applicationDataRepository.getApplicationData(batch, appId, fields)) {
+                //the repository has already filtered the fields and hands back a map of its own
+                dataCollectionMap.put(data.getUserId(), data.getData());
+            }
+        }
+
+        //be sure we have some data in the map for everyone, and if not, add empty data
+        for (String personId : personIds) {
+            if (!dataCollectionMap.containsKey(personId)) {
+                dataCollectionMap.put(personId, Collections.<String, String>emptyMap());
+            }
+        }
+        return ImmediateFuture.newInstance(new DataCollection(dataCollectionMap));
     }
 
     /**
@@ -103,32 +125,11 @@ public class DefaultAppDataService implements AppDataService {
         //make sure the request conforms to the OpenSocial visibility rules
         String personId = validateWriteRequest(userId, groupId, appId, token);
 
-        //lock on this user and this application to avoid any potential concurrency issues
-        Lock lock = getApplicationDataLock(personId, appId);
-        try {
-            lock.lock();
-
-            //get the application data for this user and application
-            ApplicationData applicationData = applicationDataRepository.getApplicationData(personId, appId);
-
-            //if there is no data, there's nothing to delete, so we're done...
-            if (applicationData == null || applicationData.getData() == null) {
-                return ImmediateFuture.newInstance(null);
-            }
-
-            //remove the fields specified -- empty field set implies remove all, otherwise remove just the fields specified
-            Map<String, String> data = applicationData.getData();
-            if (fields == null || fields.size() == 0) {
-                data.clear();
-            } else {
-                data.keySet().removeAll(fields);
-            }
-
-            //save our changes and return
-            applicationDataRepository.save(applicationData);
-        } finally {
-            lock.unlock();
-            lockService.returnLock(lock);
+        //remove the fields specified -- empty field set implies remove all, otherwise remove just the fields specified
+        if (fields == null || fields.size() == 0) {
+            replaceApplicationData(personId, appId, new HashMap<String, String>());
+        } else {
+            updateApplicationData(personId, appId, new HashMap<String, String>(), fields);
         }
         return ImmediateFuture.newInstance(null);
     }
@@ -153,48 +154,24 @@ public class DefaultAppDataService implements AppDataService {
         //make sure the request conforms to the OpenSocial visibility rules
         String personId = validateWriteRequest(userId, groupId, appId, token);
 
-        //lock on this user and this application to avoid any potential concurrency issues
-        Lock lock = getApplicationDataLock(personId, appId);
-        try {
-            lock.lock();
-            //get the application data for this user and application
-            ApplicationData applicationData = applicationDataRepository.getApplicationData(personId, appId);
-
-            //if there is no data, create an empty object to store the data in that we'll save when we're done
-            if (applicationData == null) {
-                applicationData = new ApplicationData(null, personId, appId, new HashMap<String, String>());
-            }
-
-            //if the fields parameter is empty, we can just use the values map directly since this is a full update
-            if (fields == null || fields.size() == 0) {
-                applicationData.setData(values);
-            }
-            //if there are keys in the values map that aren't in the fields set, its a bad request
-            else if (!fields.containsAll(values.keySet())) {
-                throw new ProtocolException(HttpServletResponse.SC_BAD_REQUEST, "Fields parameter must either be empty or contain keys " +
-                        "for all name value pairs sent in request.");
-            }
-            //we have a partial update - we know that the fields set contains keys for all the entries in the values
-            //map (due to the check above), so we can just enumerate over it now to finish our work.  So we want to remove
-            //any fields found in the fields set that are not found in the values map and update the rest.
-            else {
-                Map<String, String> data = applicationData.getData();
-                for (String field : fields) {
-                    //if this field is not in the values map, its a delete
-                    if (!values.containsKey(field)) {
-                        data.remove(field);
-                    } else {
-                        //its an update
-                        data.put(field, values.get(field));
-                    }
-                }
-            }
+        boolean fullUpdate = fields == null || fields.size() == 0;
+        //if there are keys in the values map that aren't in the fields set, its a bad request
+        if (!fullUpdate && !fields.containsAll(values.keySet())) {
+            throw new ProtocolException(HttpServletResponse.SC_BAD_REQUEST, "Fields parameter must either be empty or contain keys " +
+                    "for all name value pairs sent in request.");
+        }
 
-            //save our changes and return
-            applicationDataRepository.save(applicationData);
-        } finally {
-            lock.unlock();
-            lockService.returnLock(lock);
+        //if the fields parameter is empty, we can just use the values map directly since this is a full update
+        if (fullUpdate) {
+            replaceApplicationData(personId, appId, values);
+        }
+        //we have a partial update - we know that the fields set contains keys for all the entries in the values
+        //map (due to the check above), so any fields found in the fields set that are not found in the values map
+        //are deletes and the rest are updates
+        else {
+            Set<String> removedFields = new HashSet<String>(fields);
+            removedFields.removeAll(values.keySet());
+            updateApplicationData(personId, appId, values, removedFields);
         }
         return ImmediateFuture.newInstance(null);
     }
@@ -203,9 +180,8 @@ public class DefaultAppDataService implements AppDataService {
         //if the appId in the token matches the appId parameter, then we know the user "can see the gadget"
         validateAppIdMatches(appId, token);
 
-        //get the people we're supposed to be fetching data for
-        List<Person> people = personService.getPeople(userIds, groupId, null, token);
-        return convertPeopleToUserIds(people);
+        //get the ids of the people we're supposed to be fetching data for
+        return personService.getPersonIds(userIds, groupId, token);
     }
 
     private String validateWriteRequest(UserId userId, GroupId groupId, String appId, SecurityToken token) {
@@ -229,50 +205,41 @@ public class DefaultAppDataService implements AppDataService {
         }
     }
 
-    private List<String> convertPeopleToUserIds(List<Person> people) {
-        List<String> ids = new ArrayList<String>(people.size());
-        for (Person person : people) {
-            ids.add(String.valueOf(person.getEntityId()));
-        }
-        return ids;
+    private void updateApplicationData(final String personId, final String appId, final Map<String, String> values,
+                                       final Set<String> removedFields) {
+        retryOnConflict(new ApplicationDataWrite() {
+            @Override
+            void write() {
+                applicationDataRepository.updateApplicationData(personId, appId, values, removedFields);
+            }
+        });
     }
 
-    private Lock getApplicationDataLock(String personId, String appId) {
-        return lockService.borrowLock("ApplicationData", new StringBuilder(personId).append("-").append(appId).toString());
+    private void replaceApplicationData(final String personId, final String appId, final Map<String, String> values) {
+        retryOnConflict(new ApplicationDataWrite() {
+            @Override
+            void write() {
+                applicationDataRepository.replaceApplicationData(personId, appId, values);
+            }
+        });
     }
 
-    private DataCollection convertAppDataMapToDataCollection(List<String> personIds, List<ApplicationData> applicationData,
-                                                             Set<String> fields) {
-        //create the map that we'll use to associate users with their appdata
-        Map<String, Map<String, String>> dataCollectionMap = new HashMap<String, Map<String, String>>();
-
-        //enumerate the data we have mapping it back to the owner
-        for (ApplicationData data : applicationData) {
-            //create a map for our return values
-            Map<String, String> returnData = new HashMap<String, String>();
-            //if there isn't a set of fields to filter on return all user data, otherwise filter to the specified fields
-            if (fields == null || fields.size() == 0) {
-                returnData.putAll(data.getData());
-            } else {
-                //otherwise filter the values
-                for (Map.Entry<String, String> userDataEntry : data.getData().entrySet()) {
-                    if (fields.contains(userDataEntry.getKey())) {
-                        returnData.put(userDataEntry.getKey(), userDataEntry.getValue());
-                    }
+    private void retryOnConflict(ApplicationDataWrite write) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                write.write();
+                return;
+            } catch (OptimisticLockingFailureException e) {
+                //another request changed the data first, the write is applied again on top of its change
+                if (attempt >= maxWriteAttempts) {
+                    throw new ProtocolException(HttpServletResponse.SC_CONFLICT, "The appdata was changed by " +
+                            "another request, please retry.");
                 }
             }
-
-            //put an entry in the data collection mapping the user and their appdata
-            dataCollectionMap.put(data.getUserId(), returnData);
-        }
-
-        //now enumerate all of the personIds to be sure we have some data in the map for them, and if not, add empty data
-        for (String personId : personIds) {
-            if (!dataCollectionMap.containsKey(personId)) {
-                dataCollectionMap.put(personId, new HashMap<String, String>());
-            }
         }
+    }
 
-        return new DataCollection(dataCollectionMap);
+    private abstract static class ApplicationDataWrite {
+        abstract void write();
     }
 }
\ No newline at end of file
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.opensocial.service.impl;
+
+import org.apache.rave.opensocial.repository.ApplicationDataRepository;
+import org.apache.rave.opensocial.repository.KeyValueApplicationDataRepository;
+import org.apache.rave.opensocial.service.ApplicationDataMigrationService;
+import org.apache.rave.service.LockService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Default implementation of {@link ApplicationDataMigrationService}
+ * <p/>
+ * When migrating on startup is enabled, the data is converted in the background as soon as the service is created,
+ * the key value store reads the data not converted yet in the meantime.  The lock service keeps nodes sharing a
+ * database from converting at the same time.
+ */
+@Service
+public class DefaultApplicationDataMigrationService implements ApplicationDataMigrationService, InitializingBean {
+    private static Logger logger = LoggerFactory.getLogger(DefaultApplicationDataMigrationService.class);
+
+    private static final String LOCK_DISCRIMINATOR = "ApplicationData";
+    private static final String LOCK_ID = "migrate";
+
+    private final ApplicationDataRepository applicationDataRepository;
+    private final LockService lockService;
+    private final TaskScheduler taskScheduler;
+    private final boolean migrateOnStartup;
+    private final int batchSize;
+
+    @Autowired
+    public DefaultApplicationDataMigrationService(@Qualifier("applicationDataRepository")
+                                                  ApplicationDataRepository applicationDataRepository,
+                                                  @Qualifier("lockService") LockService lockService,
+                                                  TaskScheduler taskScheduler,
+                                                  @Value("${rave-shindig.applicationData.migrateOnStartup}")
+                                                  boolean migrateOnStartup,
+                                                  @Value("${rave-shindig.applicationData.migrationBatchSize}")
+                                                  int batchSize) {
+        this.applicationDataRepository = applicationDataRepository;
+        this.lockService = lockService;
+        this.taskScheduler = taskScheduler;
+        this.migrateOnStartup = migrateOnStartup;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!migrateOnStartup) {
+            return;
+        }
+        taskScheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    migrate();
+                } catch (RuntimeException e) {
+                    //the data not converted yet stays readable, the next start or a call to migrate picks it up
+                    logger.warn("Unable to migrate the application data to the key value store", e);
+                }
+            }
+        }, new Date());
+    }
+
+    @Override
+    public int migrate() {
+        if (!(applicationDataRepository instanceof KeyValueApplicationDataRepository)) {
+            logger.warn("Application data is only migrated when the key value application data store is in use");
+            return 0;
+        }
+        Lock lock = lockService.borrowLock(LOCK_DISCRIMINATOR, LOCK_ID);
+        try {
+            if (!lock.tryLock()) {
+                logger.debug("Application data is being migrated elsewhere");
+                return -1;
+            }
+            try {
+                return migrateAll((KeyValueApplicationDataRepository) applicationDataRepository);
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            lockService.returnLock(lock);
+        }
+    }
+
+    private int migrateAll(KeyValueApplicationDataRepository repository) {
+        int total = 0;
+        int converted;
+        do {
+            converted = repository.convertSerializedApplicationData(batchSize);
+            total += converted;
+        } while (converted == batchSize);
+        if (total > 0) {
+            logger.info("Migrated the application data of {} users and applications to the key value store", total);
+        }
+        return total;
+    }
+}
@@ -37,6 +37,7 @@ import org.springframework.stereotype.Service;
 
 import javax.servlet.http.HttpServletResponse;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Future;
@@ -95,6 +96,39 @@ public class DefaultPersonService implements PersonService, SimplePersonService
         }
     }
 
+    @Override
+    public List<String> getPersonIds(Set<UserId> userIds, GroupId groupId, SecurityToken token) {
+        Set<Long> ids = new LinkedHashSet<Long>();
+        switch (groupId.getType()) {
+            case all:
+                for (UserId id : userIds) {
+                    ids.addAll(repository.findAllConnectedPeopleIds(id.getUserId(token)));
+                }
+                break;
+            case friends:
+                for (UserId id : userIds) {
+                    ids.addAll(repository.findFriendIds(id.getUserId(token)));
+                }
+                break;
+            case groupId:
+                ids.addAll(repository.findIdsByGroup(groupId.getGroupId()));
+                break;
+            case self:
+                //a single person, loaded so an unknown viewer is still reported as not found
+                ids.add(getPersonForId(new UserId(UserId.Type.me, null), token).getEntityId());
+                break;
+            case deleted:
+                throw new ProtocolException(HttpServletResponse.SC_NOT_IMPLEMENTED, "Deleted Friends are not tracked by the container");
+            default:
+                throw new ProtocolException(HttpServletResponse.SC_BAD_REQUEST, "Invalid group id specified by request");
+        }
+        List<String> personIds = new ArrayList<String>(ids.size());
+        for (Long id : ids) {
+            personIds.add(String.valueOf(id));
+        }
+        return personIds;
+    }
+
     private List<org.apache.rave.portal.model.Person> getUniqueListOfFriends(Set<UserId> userIds,
                                                                                  CollectionOptions collectionOptions,
                                                                                  SecurityToken token) {
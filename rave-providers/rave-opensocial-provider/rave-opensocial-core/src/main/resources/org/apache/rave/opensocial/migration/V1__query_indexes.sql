@@ -0,0 +1,26 @@
+ -- Licensed to the Apache Software Foundation (ASF) under one
+ -- or more contributor license agreements.  See the NOTICE file
+ -- distributed with this work for additional information
+ -- regarding copyright ownership.  The ASF licenses this file
+ -- to you under the Apache License, Version 2.0 (the
+ -- "License"); you may not use this file except in compliance
+ -- with the License.  You may obtain a copy of the License at
+
+ --   http://www.apache.org/licenses/LICENSE-2.0
+
+ -- Unless required by applicable law or agreed to in writing,
+ -- software distributed under the License is distributed on an
+ -- "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ -- KIND, either express or implied.  See the License for the
+ -- specific language governing permissions and limitations
+ -- under the License.
+
+-- Secondary indexes for the named queries run on every gadget render, OpenJPA only creates the primary keys, unique
+-- constraints and foreign keys of the mappings
+
+-- ApplicationData.FIND_BY_USER_ID_AND_APP_ID and FIND_BY_USER_IDS_AND_APP_ID
+CREATE INDEX idx_app_data_user_app ON application_data (user_id, app_url);
+
+-- OAuthTokenInfo.FIND_OAUTH_TOKEN_INFO, every token is stored with the same module id so it is left out to keep the
+-- index within the key length limits of all databases
+CREATE INDEX idx_oauth_token_user_app ON oauth_token_info (user_id, app_url, service_name, token_name);
@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.opensocial.migration;
+
+import org.apache.rave.jdbc.util.JdbcMigration;
+import org.apache.rave.jdbc.util.SchemaMigrator;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.Resource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class MergeDuplicateApplicationDataMigrationTest {
+    private DriverManagerDataSource dataSource;
+    private SchemaMigrator migrator;
+
+    @Before
+    public void setup() throws SQLException {
+        dataSource = new DriverManagerDataSource("jdbc:h2:mem:applicationDataMigration;DB_CLOSE_DELAY=-1", "sa", "");
+        migrator = new SchemaMigrator();
+        migrator.setMigrationLocations(new Resource[0]);
+        migrator.setJdbcMigrations(Collections.singletonMap(3,
+                (JdbcMigration) new MergeDuplicateApplicationDataMigration()));
+
+        //the table as created before the unique constraint was mapped
+        execute("CREATE TABLE application_data (entity_id BIGINT NOT NULL PRIMARY KEY, user_id VARCHAR(255), " +
+                "app_url VARCHAR(255), version BIGINT, serialized_data CLOB, DTYPE VARCHAR(255))");
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        execute("DROP ALL OBJECTS");
+    }
+
+    @Test
+    public void migrate_mergesDuplicates() throws SQLException, JSONException {
+        insert(1, "john.doe", 0, "{\"color\":\"blue\",\"size\":\"large\"}");
+        insert(2, "john.doe", 2, "{\"color\":\"red\"}");
+        insert(3, "john.doe", 1, "{\"speed\":\"fast\",\"color\":\"green\"}");
+        insert(4, "jane.doe", 0, "{\"color\":\"yellow\"}");
+
+        migrator.migrate(dataSource);
+
+        assertThat(count("SELECT COUNT(*) FROM application_data WHERE user_id = 'john.doe'"), is(1));
+        assertThat(count("SELECT version FROM application_data WHERE entity_id = 2"), is(3));
+        JSONObject merged = new JSONObject(query("SELECT serialized_data FROM application_data WHERE entity_id = 2"));
+        assertThat(merged.length(), is(3));
+        assertThat(merged.optString("color"), is(equalTo("red")));
+        assertThat(merged.optString("size"), is(equalTo("large")));
+        assertThat(merged.optString("speed"), is(equalTo("fast")));
+
+        assertThat(count("SELECT version FROM application_data WHERE entity_id = 4"), is(0));
+        assertThat(query("SELECT serialized_data FROM application_data WHERE entity_id = 4"),
+                is(equalTo("{\"color\":\"yellow\"}")));
+    }
+
+    @Test
+    public void migrate_sameVersionKeepsHighestId() throws SQLException, JSONException {
+        insert(1, "john.doe", 0, "{\"color\":\"blue\"}");
+        insert(2, "john.doe", 0, "{\"color\":\"red\",\"state\":\"MA\"}");
+        insert(3, "john.doe", 0, "{\"color\":\"green\",\"size\":\"large\"}");
+
+        migrator.migrate(dataSource);
+
+        assertThat(count("SELECT COUNT(*) FROM application_data WHERE user_id = 'john.doe'"), is(1));
+        assertThat(count("SELECT entity_id FROM application_data WHERE user_id = 'john.doe'"), is(3));
+        JSONObject merged = new JSONObject(query("SELECT serialized_data FROM application_data WHERE entity_id = 3"));
+        assertThat(merged.length(), is(3));
+        assertThat(merged.optString("color"), is(equalTo("green")));
+        assertThat(merged.optString("state"), is(equalTo("MA")));
+    }
+
+    @Test
+    public void migrate_addsUniqueConstraint() throws SQLException {
+        insert(1, "john.doe", 0, "{}");
+        migrator.migrate(dataSource);
+
+        try {
+            insert(2, "john.doe", 0, "{}");
+            fail("Expected the unique constraint to reject a second row of the user and application");
+        } catch (SQLException e) {
+            assertThat(count("SELECT COUNT(*) FROM application_data"), is(1));
+        }
+    }
+
+    @Test
+    public void migrate_invalidDataNotDeleted() throws SQLException {
+        insert(1, "john.doe", 0, "{\"color\":\"blue\"}");
+        insert(2, "john.doe", 1, "not json");
+        try {
+            migrator.migrate(dataSource);
+            fail("Expected the migration to fail");
+        } catch (RuntimeException e) {
+            assertThat(count("SELECT COUNT(*) FROM application_data"), is(2));
+        }
+    }
+
+    private void insert(long id, String userId, long version, String data) throws SQLException {
+        execute("INSERT INTO application_data VALUES (" + id + ", '" + userId + "', 'http://example.com/gadget.xml', " +
+                version + ", '" + data + "', 'JpaApplicationDataRepository$JpaSerializableApplicationData')");
+    }
+
+    private int count(String sql) throws SQLException {
+        return Integer.parseInt(query(sql));
+    }
+
+    private String query(String sql) throws SQLException {
+        Connection connection = dataSource.getConnection();
+        try {
+            ResultSet resultSet = connection.createStatement().executeQuery(sql);
+            resultSet.next();
+            return resultSet.getString(1);
+        } finally {
+            connection.close();
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+        Connection connection = dataSource.getConnection();
+        try {
+            Statement statement = connection.createStatement();
+            statement.execute(sql);
+        } finally {
+            connection.close();
+        }
+    }
+}
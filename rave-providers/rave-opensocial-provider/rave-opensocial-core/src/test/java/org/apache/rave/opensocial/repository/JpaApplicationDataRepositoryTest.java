@@ -23,6 +23,8 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.test.annotation.Rollback;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
@@ -31,7 +33,9 @@ import org.springframework.transaction.annotation.Transactional;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -47,6 +51,7 @@ public class JpaApplicationDataRepositoryTest {
     private EntityManager manager;
 
     @Autowired
+    @Qualifier("jpaApplicationDataRepository")
     private ApplicationDataRepository repository;
 
     private static final String VALID_USER_ID = "12345";
@@ -137,6 +142,88 @@ public class JpaApplicationDataRepositoryTest {
         assertThat(saved.getEntityId(), is(equalTo(applicationData.getEntityId())));
     }
 
+    @Test
+    @Transactional
+    @Rollback(true)
+    public void save_incrementsVersion() {
+        ApplicationData applicationData = repository.get(VALID_APPLICATION_DATA_ID);
+        long version = applicationData.getVersion();
+        manager.clear();
+
+        repository.save(new ApplicationData(VALID_APPLICATION_DATA_ID, VALID_USER_ID, VALID_APPLICATION_ID,
+                new HashMap<String, String>()));
+        manager.clear();
+        assertThat(repository.get(VALID_APPLICATION_DATA_ID).getVersion(), is(equalTo(version + 1)));
+    }
+
+    @Test(expected = OptimisticLockingFailureException.class)
+    @Transactional
+    @Rollback(true)
+    public void save_staleVersion() {
+        ApplicationData applicationData = new ApplicationData(VALID_APPLICATION_DATA_ID, VALID_USER_ID,
+                VALID_APPLICATION_ID, validApplicationDataMap);
+        applicationData.setVersion(-1L);
+        repository.save(applicationData);
+    }
+
+    @Test(expected = OptimisticLockingFailureException.class)
+    @Transactional
+    @Rollback(true)
+    public void save_createdConcurrently() {
+        repository.save(new ApplicationData(null, VALID_USER_ID, VALID_APPLICATION_ID, validApplicationDataMap));
+    }
+
+    @Test
+    public void getApplicationData_byUserIdsAndApplicationIdAndKeys_valid() {
+        List<ApplicationData> applicationData = repository.getApplicationData(Arrays.asList(VALID_USER_ID),
+                VALID_APPLICATION_ID, new HashSet<String>(Arrays.asList("color", "unknown")));
+        assertThat(applicationData.size(), is(equalTo(1)));
+        assertThat(applicationData.get(0).getData().size(), is(equalTo(1)));
+        assertThat(applicationData.get(0).getData().get("color"), is(equalTo("blue")));
+    }
+
+    @Test
+    @Transactional
+    @Rollback(true)
+    public void updateApplicationData_existingEntity() {
+        Map<String, String> values = new HashMap<String, String>();
+        values.put("color", "red");
+        values.put("size", "large");
+        repository.updateApplicationData(VALID_USER_ID, VALID_APPLICATION_ID, values, Collections.singleton("speed"));
+        manager.flush();
+        manager.clear();
+
+        Map<String, String> data = repository.getApplicationData(VALID_USER_ID, VALID_APPLICATION_ID).getData();
+        assertThat(data.size(), is(equalTo(3)));
+        assertThat(data.get("color"), is(equalTo("red")));
+        assertThat(data.get("size"), is(equalTo("large")));
+        assertThat(data.get("state"), is(equalTo("MA")));
+    }
+
+    @Test
+    @Transactional
+    @Rollback(true)
+    public void replaceApplicationData_newEntity() {
+        repository.replaceApplicationData(VALID_USER_ID, SECOND_VALID_APPLICATION_ID, validApplicationDataMap);
+        manager.flush();
+        manager.clear();
+
+        ApplicationData applicationData = repository.getApplicationData(VALID_USER_ID, SECOND_VALID_APPLICATION_ID);
+        assertThat(applicationData.getData(), is(equalTo(validApplicationDataMap)));
+    }
+
+    @Test
+    @Transactional
+    @Rollback(true)
+    public void replaceApplicationData_empty() {
+        repository.replaceApplicationData(VALID_USER_ID, VALID_APPLICATION_ID, new HashMap<String, String>());
+        manager.flush();
+        manager.clear();
+
+        ApplicationData applicationData = repository.getApplicationData(VALID_USER_ID, VALID_APPLICATION_ID);
+        assertThat(applicationData.getData().isEmpty(), is(true));
+    }
+
     private void validateApplicationData(ApplicationData applicationData) {
         assertThat(applicationData, is(not(nullValue())));
         assertThat(applicationData.getEntityId(), is(equalTo(VALID_APPLICATION_DATA_ID)));
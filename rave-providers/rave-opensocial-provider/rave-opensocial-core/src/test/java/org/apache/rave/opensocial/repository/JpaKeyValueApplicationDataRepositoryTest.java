@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.rave.opensocial.repository;
+
+import org.apache.rave.exception.NotSupportedException;
+import org.apache.rave.opensocial.model.ApplicationData;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.test.annotation.Rollback;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(locations = {"classpath:rave-shindig-test-applicationContext.xml",
+        "classpath:rave-shindig-test-dataContext.xml"})
+public class JpaKeyValueApplicationDataRepositoryTest {
+    @PersistenceContext
+    private EntityManager manager;
+
+    @Autowired
+    private KeyValueApplicationDataRepository repository;
+
+    @Autowired
+    @Qualifier("jpaApplicationDataRepository")
+    private ApplicationDataRepository serializedRepository;
+
+    private static final String VALID_USER_ID = "12345";
+    private static final String SECOND_VALID_USER_ID = "67890";
+    private static final String VALID_APPLICATION_ID = "http://example.com/gadget.xml";
+    private static final String SECOND_VALID_APPLICATION_ID = "http://example.com/gadget2.xml";
+
+    @Test(expected = NotSupportedException.class)
+    public void get() {
+        repository.get(1L);
+    }
+
+    @Test
+    public void getApplicationData_byUserIdAndApplicationId_valid() {
+        ApplicationData applicationData = repository.getApplicationData(VALID_USER_ID, VALID_APPLICATION_ID);
+        assertThat(applicationData.getUserId(), is(equalTo(VALID_USER_ID)));
+        assertThat(applicationData.getAppUrl(), is(equalTo(VALID_APPLICATION_ID)));
+        //the keys not converted yet are read from the serialized data, the keys of the store are newer
+        assertThat(applicationData.getData().size(), is(equalTo(4)));
+        assertThat(applicationData.getData().get("color"), is(equalTo("red")));
+        assertThat(applicationData.getData().get("size"), is(equalTo("large")));
+        assertThat(applicationData.getData().get("speed"), is(equalTo("fast")));
+    }
+
+    @Test
+    @Transactional
+    @Rollback(true)
+    public void getApplicationData_onlySerialized() {
+        Map<String, String> values = Collections.singletonMap("size", "small");
+        serializedRepository.save(new ApplicationData(null, SECOND_VALID_USER_ID, SECOND_VALID_APPLICATION_ID, values));
+        manager.flush();
+        manager.clear();
+
+        assertThat(repository.getApplicationData(SECOND_VALID_USER_ID, SECOND_VALID_APPLICATION_ID).getData(),
+                is(equalTo(values)));
+    }
+
+    @Test
+    public void getApplicationData_byUserIdAndApplicationId_invalid() {
+        assertThat(repository.getApplicationData("-1", VALID_APPLICATION_ID), is(nullValue()));
+    }
+
+    @Test
+    public void getApplicationData_byUserIdsAndApplicationId_multipleUserIds_valid() {
+        List<ApplicationData> applicationData = repository.getApplicationData(
+                Arrays.asList(VALID_USER_ID, SECOND_VALID_USER_ID, "NO-DATA-USER"), VALID_APPLICATION_ID);
+        assertThat(applicationData.size(), is(equalTo(2)));
+    }
+
+    @Test
+    public void getApplicationData_byUserIdsAndApplicationIdAndKeys_valid() {
+        List<ApplicationData> applicationData = repository.getApplicationData(
+                Arrays.asList(VALID_USER_ID, SECOND_VALID_USER_ID), VALID_APPLICATION_ID, Collections.singleton("color"));
+        assertThat(applicationData.size(), is(equalTo(2)));
+        for (ApplicationData data : applicationData) {
+            assertThat(data.getData().size(), is(equalTo(1)));
+            assertThat(data.getData().get("color"), is(notNullValue()));
+        }
+    }
+
+    @Test
+    @Transactional
+    @Rollback(true)
+    public void updateApplicationData() {
+        Map<String, String> values = new HashMap<String, String>();
+        values.put("size", "small");
+        values.put("shape", "round");
+        repository.updateApplicationData(VALID_USER_ID, VALID_APPLICATION_ID, values, Collections.singleton("color"));
+        manager.flush();
+        manager.clear();
+
+        //the serialized data is converted by the write, so the removed key is not read from it again
+        Map<String, String> expected = new HashMap<String, String>(values);
+        expected.put("speed", "fast");
+        expected.put("state", "MA");
+        assertThat(repository.getApplicationData(VALID_USER_ID, VALID_APPLICATION_ID).getData(), is(equalTo(expected)));
+        assertThat(serializedRepository.getApplicationData(VALID_USER_ID, VALID_APPLICATION_ID), is(nullValue()));
+        assertThat(repository.getApplicationData(SECOND_VALID_USER_ID, VALID_APPLICATION_ID).getData().get("color"),
+                is(equalTo("green")));
+    }
+
+    @Test
+    @Transactional
+    @Rollback(true)
+    public void replaceApplicationData() {
+        Map<String, String> values = Collections.singletonMap("size", "small");
+        repository.replaceApplicationData(VALID_USER_ID, VALID_APPLICATION_ID, values);
+        manager.flush();
+        manager.clear();
+
+        assertThat(repository.getApplicationData(VALID_USER_ID, VALID_APPLICATION_ID).getData(), is(equalTo(values)));
+    }
+
+    @Test
+    @Transactional
+    @Rollback(true)
+    public void replaceApplicationData_empty() {
+        repository.replaceApplicationData(VALID_USER_ID, VALID_APPLICATION_ID, new HashMap<String, String>());
+        manager.flush();
+        manager.clear();
+
+        assertThat(repository.getApplicationData(VALID_USER_ID, VALID_APPLICATION_ID), is(nullValue()));
+    }
+
+    @Test
+    @Transactional
+    @Rollback(true)
+    public void save_newApplicationData() {
+        Map<String, String> values = Collections.singletonMap("size", "small");
+        repository.save(new ApplicationData(null, VALID_USER_ID, SECOND_VALID_APPLICATION_ID, values));
+        manager.flush();
+        manager.clear();
+
+        assertThat(repository.getApplicationData(VALID_USER_ID, SECOND_VALID_APPLICATION_ID).getData(),
+                is(equalTo(values)));
+    }
+
+    @Test
+    @Transactional
+    @Rollback(true)
+    public void convertSerializedApplicationData() {
+        assertThat(repository.convertSerializedApplicationData(10), is(equalTo(1)));
+        manager.flush();
+        manager.clear();
+
+        Map<String, String> data = repository.getApplicationData(VALID_USER_ID, VALID_APPLICATION_ID).getData();
+        assertThat(data.size(), is(equalTo(4)));
+        //the key already in the key value store is newer than the serialized copy
+        assertThat(data.get("color"), is(equalTo("red")));
+        assertThat(data.get("size"), is(equalTo("large")));
+        assertThat(data.get("speed"), is(equalTo("fast")));
+        assertThat(data.get("state"), is(equalTo("MA")));
+        assertThat(serializedRepository.getApplicationData(VALID_USER_ID, VALID_APPLICATION_ID), is(nullValue()));
+        assertThat(repository.convertSerializedApplicationData(10), is(equalTo(0)));
+    }
+}
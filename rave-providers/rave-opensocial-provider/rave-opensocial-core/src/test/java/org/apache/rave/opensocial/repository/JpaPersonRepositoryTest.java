@@ -19,6 +19,7 @@
 
 package org.apache.rave.opensocial.repository;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.persistence.EntityManager;
@@ -110,5 +111,42 @@ public class JpaPersonRepositoryTest {
         assertThat(connected.isEmpty(), is(true));
     }
 
+    @Test
+    public void findFriendIds_valid() {
+        List<Long> ids = repository.findFriendIds(VALID_USER);
+        assertThat(ids, is(equalTo(getIds(repository.findFriends(VALID_USER)))));
+    }
+
+    @Test
+    public void findConnectedIds_valid() {
+        List<Long> ids = repository.findAllConnectedPeopleIds(VALID_USER);
+        assertThat(ids, is(equalTo(getIds(repository.findAllConnectedPeople(VALID_USER)))));
+    }
+
+    @Test
+    public void findConnectedIds_invalid() {
+        assertThat(repository.findAllConnectedPeopleIds(INVALID_USERNAME).isEmpty(), is(true));
+    }
+
+    @Test
+    public void findIdsByGroup_valid() {
+        List<Long> ids = repository.findIdsByGroup("Party");
+        assertThat(ids.size(), is(equalTo(2)));
+        assertThat(ids.containsAll(getIds(repository.findByGroup("Party"))), is(true));
+    }
+
+    @Test
+    public void findIdsByGroup_invalid() {
+        assertThat(repository.findIdsByGroup(INVALID_USERNAME).isEmpty(), is(true));
+    }
+
+    private static List<Long> getIds(List<Person> people) {
+        List<Long> ids = new ArrayList<Long>(people.size());
+        for (Person person : people) {
+            ids.add(person.getEntityId());
+        }
+        return ids;
+    }
+
 
 }
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.opensocial.repository;
+
+import org.apache.openjpa.persistence.OpenJPAPersistence;
+import org.apache.rave.gadgets.oauth.model.OAuthConsumerStore;
+import org.apache.rave.gadgets.oauth.model.OAuthTokenInfo;
+import org.apache.rave.opensocial.model.ApplicationData;
+import org.apache.rave.opensocial.model.ApplicationDataEntry;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Asks H2 for the plan of the SQL OpenJPA generates for the named queries run on every gadget render, so a query
+ * that no longer matches an index of the schema migrations fails the build instead of scanning a large table
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(locations = {"classpath:rave-shindig-test-applicationContext.xml",
+        "classpath:rave-shindig-test-dataContext.xml"})
+public class JpaQueryPlanTest {
+    private static final String TABLE_SCAN = "tableScan";
+
+    @PersistenceContext
+    private EntityManager manager;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    public void applicationDataByUserAndApp() throws SQLException {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(ApplicationData.USER_ID_PARAM, "john.doe");
+        params.put(ApplicationData.APP_URL_PARAM, "http://example.com/gadget.xml");
+        assertIndexed(ApplicationData.FIND_BY_USER_ID_AND_APP_ID, params);
+    }
+
+    @Test
+    public void applicationDataByUsersAndApp() throws SQLException {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(ApplicationData.USER_IDS_PARAM, Arrays.asList("john.doe", "jane.doe"));
+        params.put(ApplicationData.APP_URL_PARAM, "http://example.com/gadget.xml");
+        assertIndexed(ApplicationData.FIND_BY_USER_IDS_AND_APP_ID, params);
+    }
+
+    @Test
+    public void applicationDataEntriesByUsersAndApp() throws SQLException {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(ApplicationDataEntry.USER_IDS_PARAM, Arrays.asList("john.doe", "jane.doe"));
+        params.put(ApplicationDataEntry.APP_URL_PARAM, "http://example.com/gadget.xml");
+        assertIndexed(ApplicationDataEntry.FIND_BY_USER_IDS_AND_APP_ID, params);
+    }
+
+    @Test
+    public void applicationDataEntriesByUsersAndAppAndKeys() throws SQLException {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(ApplicationDataEntry.USER_IDS_PARAM, Arrays.asList("john.doe", "jane.doe"));
+        params.put(ApplicationDataEntry.APP_URL_PARAM, "http://example.com/gadget.xml");
+        params.put(ApplicationDataEntry.KEYS_PARAM, Arrays.asList("color", "speed"));
+        assertIndexed(ApplicationDataEntry.FIND_BY_USER_IDS_AND_APP_ID_AND_KEYS, params);
+    }
+
+    @Test
+    public void oAuthTokenInfo() throws SQLException {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(OAuthTokenInfo.USER_ID_PARAM, "john.doe");
+        params.put(OAuthTokenInfo.APP_URL_PARAM, "http://example.com/gadget.xml");
+        params.put(OAuthTokenInfo.MODULE_ID_PARAM, OAuthTokenInfo.MODULE_ID);
+        params.put(OAuthTokenInfo.TOKEN_NAME_PARAM, "tokenName");
+        params.put(OAuthTokenInfo.SERVICE_NAME_PARAM, "serviceName");
+        assertIndexed(OAuthTokenInfo.FIND_OAUTH_TOKEN_INFO, params);
+    }
+
+    @Test
+    public void oAuthConsumerStore() throws SQLException {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(OAuthConsumerStore.GADGET_URI_PARAM, "http://example.com/gadget.xml");
+        params.put(OAuthConsumerStore.SERVICE_NAME_PARAM, "serviceName");
+        assertIndexed(OAuthConsumerStore.FIND_BY_URI_AND_SERVICE_NAME, params);
+    }
+
+    /* Helper methods */
+    private void assertIndexed(String queryName, Map<String, Object> params) throws SQLException {
+        String[] sql = OpenJPAPersistence.cast(manager.createNamedQuery(queryName)).getDataStoreActions(params);
+        String plan = explain(sql[0]);
+        assertThat(queryName + " scans a table: " + plan, plan.contains(TABLE_SCAN), is(false));
+    }
+
+    private String explain(String sql) throws SQLException {
+        Connection connection = dataSource.getConnection();
+        try {
+            PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql);
+            //the plan does not depend on the values of the parameters
+            for (int i = 1; i <= statement.getParameterMetaData().getParameterCount(); i++) {
+                statement.setObject(i, null);
+            }
+            ResultSet resultSet = statement.executeQuery();
+            resultSet.next();
+            return resultSet.getString(1);
+        } finally {
+            connection.close();
+        }
+    }
+}
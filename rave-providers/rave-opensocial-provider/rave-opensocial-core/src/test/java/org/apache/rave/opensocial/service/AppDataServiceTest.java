@@ -20,34 +20,31 @@
 package org.apache.rave.opensocial.service;
 
 import org.apache.rave.opensocial.model.ApplicationData;
-import org.apache.rave.portal.model.Person;
 import org.apache.rave.opensocial.repository.ApplicationDataRepository;
 import org.apache.rave.opensocial.service.impl.DefaultAppDataService;
-import org.apache.rave.service.LockService;
 import org.apache.shindig.auth.SecurityToken;
 import org.apache.shindig.protocol.DataCollection;
 import org.apache.shindig.protocol.ProtocolException;
 import org.apache.shindig.social.opensocial.spi.AppDataService;
 import org.apache.shindig.social.opensocial.spi.GroupId;
 import org.apache.shindig.social.opensocial.spi.UserId;
-import org.easymock.Capture;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
 
+import javax.servlet.http.HttpServletResponse;
 import java.util.*;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
-import java.util.concurrent.locks.ReentrantLock;
 
 import static org.easymock.EasyMock.*;
 import static org.hamcrest.CoreMatchers.*;
 import static org.hamcrest.CoreMatchers.not;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
 public class AppDataServiceTest {
     private SimplePersonService personService;
-    private LockService lockService;
     private ApplicationDataRepository appDataRepository;
     private AppDataService appDataService;
 
@@ -57,18 +54,18 @@ public class AppDataServiceTest {
     private static final String VALID_APPLICATION_ID = "http://example.com/gadget.xml";
     private static final Long VALID_APPLICATION_DATA_ID = 1L;
     private static final Long VALID_MODULE_ID = 1l;
+    private static final int MAX_WRITE_ATTEMPTS = 3;
+    private static final int READ_BATCH_SIZE = 2;
 
     private Map<String, String> validApplicationDataMap;
     private ApplicationData validApplicationData;
 
-    private Person validPerson;
-
     @Before
     public void setup() {
         personService = createMock(SimplePersonService.class);
-        lockService = createMock(LockService.class);
         appDataRepository = createMock(ApplicationDataRepository.class);
-        appDataService = new DefaultAppDataService(personService, lockService, appDataRepository);
+        appDataService = new DefaultAppDataService(personService, appDataRepository, MAX_WRITE_ATTEMPTS,
+                READ_BATCH_SIZE);
 
         validApplicationDataMap = new HashMap<String, String>();
         validApplicationDataMap.put("color", "blue");
@@ -76,9 +73,6 @@ public class AppDataServiceTest {
         validApplicationDataMap.put("state", "MA");
         validApplicationData = new ApplicationData(VALID_APPLICATION_DATA_ID, VALID_VIEWER_ID, VALID_APPLICATION_ID,
                 validApplicationDataMap);
-
-        validPerson = new Person();
-        validPerson.setEntityId(Long.valueOf(VALID_VIEWER_ID));
     }
 
     @Test
@@ -109,9 +103,40 @@ public class AppDataServiceTest {
     public void getPersonData_validRequest_hasAppData_partialFields() throws Exception {
         HashMap<String, String> expectedData = new HashMap<String, String>(validApplicationDataMap);
         expectedData.remove("color");
+        ApplicationData partialApplicationData = new ApplicationData(null, VALID_VIEWER_ID, VALID_APPLICATION_ID,
+                expectedData);
+
+        Map<String, String> actualData = testGetPersonData(expectedData.keySet(), VALID_OWNER_ID, VALID_VIEWER_ID,
+                VALID_APPLICATION_ID, partialApplicationData, expectedData);
+        assertThat(actualData.containsKey("color"), is(false));
+    }
+
+    @Test
+    public void getPersonData_validRequest_group_readInBatches() throws Exception {
+        Set<UserId> userIds = new HashSet<UserId>(Arrays.asList(new UserId(UserId.Type.userId, VALID_USER_ID)));
+        GroupId groupId = new GroupId(GroupId.Type.groupId, "Party");
+        SecurityToken securityToken = getMockSecurityToken(VALID_OWNER_ID, VALID_VIEWER_ID, VALID_APPLICATION_ID,
+                VALID_MODULE_ID);
+        expect(personService.getPersonIds(userIds, groupId, securityToken)).andReturn(
+                Arrays.asList(VALID_USER_ID, "23456", "34567"));
+        replay(personService);
+
+        expect(appDataRepository.getApplicationData(Arrays.asList(VALID_USER_ID, "23456"), VALID_APPLICATION_ID, null))
+                .andReturn(Arrays.asList(validApplicationData));
+        ApplicationData otherApplicationData = new ApplicationData(2L, "34567", VALID_APPLICATION_ID,
+                Collections.singletonMap("color", "green"));
+        expect(appDataRepository.getApplicationData(Arrays.asList("34567"), VALID_APPLICATION_ID, null))
+                .andReturn(Arrays.asList(otherApplicationData));
+        replay(appDataRepository);
 
-        testGetPersonData(expectedData.keySet(), VALID_OWNER_ID, VALID_VIEWER_ID, VALID_APPLICATION_ID,
-                validApplicationData, expectedData);
+        Map<String, Map<String, String>> entries = appDataService.getPersonData(userIds, groupId,
+                VALID_APPLICATION_ID, null, securityToken).get().getEntry();
+
+        assertThat(entries.size(), is(3));
+        assertThat(entries.get(VALID_USER_ID), is(equalTo(validApplicationDataMap)));
+        assertThat(entries.get("23456").isEmpty(), is(true));
+        assertThat(entries.get("34567").get("color"), is(equalTo("green")));
+        verify(appDataRepository);
     }
 
     @Test(expected = ProtocolException.class)
@@ -124,53 +149,43 @@ public class AppDataServiceTest {
     public void deletePersonData_validRequest_clearAllDataWithAllFields() throws Exception {
         Set<String> fieldsToDelete = new HashSet<String>(validApplicationData.getData().keySet());
 
-        testDeletePersonData(fieldsToDelete, new HashMap<String, String>());
+        appDataRepository.updateApplicationData(VALID_USER_ID, VALID_APPLICATION_ID, new HashMap<String, String>(),
+                fieldsToDelete);
+        testDeletePersonData(VALID_OWNER_ID, VALID_VIEWER_ID, fieldsToDelete);
     }
 
     @Test
     public void deletePersonData_validRequest_clearAllDataWithNullFields() throws Exception {
-        testDeletePersonData(null, new HashMap<String, String>());
+        appDataRepository.replaceApplicationData(VALID_USER_ID, VALID_APPLICATION_ID, new HashMap<String, String>());
+        testDeletePersonData(VALID_OWNER_ID, VALID_VIEWER_ID, null);
     }
 
     @Test
     public void deletePersonData_validRequest_clearAllDataWithEmptyFields() throws Exception {
-        testDeletePersonData(new HashSet<String>(), new HashMap<String, String>());
+        appDataRepository.replaceApplicationData(VALID_USER_ID, VALID_APPLICATION_ID, new HashMap<String, String>());
+        testDeletePersonData(VALID_OWNER_ID, VALID_VIEWER_ID, new HashSet<String>());
     }
 
     @Test
     public void deletePersonData_validRequest_clearSomeData() throws Exception {
         Set<String> fieldsToDelete = new HashSet<String>(validApplicationData.getData().keySet());
         fieldsToDelete.remove("color");
-        HashMap<String, String> expectedApplicationDataAfterDelete = new HashMap<String, String>(validApplicationData.getData());
-        for (String fieldToDelete : fieldsToDelete) {
-            expectedApplicationDataAfterDelete.remove(fieldToDelete);
-        }
 
-        testDeletePersonData(fieldsToDelete, expectedApplicationDataAfterDelete);
+        appDataRepository.updateApplicationData(VALID_USER_ID, VALID_APPLICATION_ID, new HashMap<String, String>(),
+                fieldsToDelete);
+        testDeletePersonData(VALID_OWNER_ID, VALID_VIEWER_ID, fieldsToDelete);
     }
 
     @Test(expected = ProtocolException.class)
     public void deletePersonData_invalidRequest_wrongViewer() throws Exception {
-        testDeletePersonData("11111", "11111", new HashSet<String>(), new HashMap<String, String>(),
-                validApplicationData);
-    }
-
-    @Test
-    public void deletePersonData_validRequest_nullApplicationData() throws Exception {
-        testDeletePersonDataNoAppDataExpected(null);
+        testDeletePersonData("11111", "11111", new HashSet<String>());
     }
 
-    @Test
-    public void deletePersonData_validRequest_emptyApplicationData() throws Exception {
-        ApplicationData applicationData = new ApplicationData();
-        testDeletePersonDataNoAppDataExpected(applicationData);
-    }
-
-
     @Test
     public void updatePersonData_validRequest_removeAllValues() throws Exception {
         HashMap<String, String> values = new HashMap<String, String>();
-        testUpdatePersonData(null, values, values, validApplicationData);
+        appDataRepository.replaceApplicationData(VALID_USER_ID, VALID_APPLICATION_ID, values);
+        testUpdatePersonData(null, values);
     }
 
     @Test
@@ -178,7 +193,8 @@ public class AppDataServiceTest {
         HashMap<String, String> values = new HashMap<String, String>();
         values.put("newKey1", "newValue1");
         values.put("newKey2", "newValue2");
-        testUpdatePersonData(null, values, values, validApplicationData);
+        appDataRepository.replaceApplicationData(VALID_USER_ID, VALID_APPLICATION_ID, values);
+        testUpdatePersonData(null, values);
     }
 
     @Test
@@ -186,7 +202,8 @@ public class AppDataServiceTest {
         HashMap<String, String> values = new HashMap<String, String>();
         values.put("newKey1", "newValue1");
         values.put("newKey2", "newValue2");
-        testUpdatePersonData(new HashSet<String>(), values, values, validApplicationData);
+        appDataRepository.replaceApplicationData(VALID_USER_ID, VALID_APPLICATION_ID, values);
+        testUpdatePersonData(new HashSet<String>(), values);
     }
 
     @Test
@@ -195,19 +212,8 @@ public class AppDataServiceTest {
         values.put("newKey1", "newValue1");
         values.put("newKey2", "newValue2");
 
-        HashMap<String, String> expectedValuesAfterUpdate = new HashMap<String, String>(validApplicationData.getData());
-        expectedValuesAfterUpdate.putAll(values);
-
-        testUpdatePersonData(values.keySet(), values, expectedValuesAfterUpdate, validApplicationData);
-    }
-
-    @Test
-    public void updatePersonData_validRequest_appendNewValues_nullApplicationData() throws Exception {
-        HashMap<String, String> values = new HashMap<String, String>();
-        values.put("newKey1", "newValue1");
-        values.put("newKey2", "newValue2");
-
-        testUpdatePersonData(values.keySet(), values, values, null);
+        appDataRepository.updateApplicationData(VALID_USER_ID, VALID_APPLICATION_ID, values, new HashSet<String>());
+        testUpdatePersonData(values.keySet(), values);
     }
 
     @Test
@@ -216,10 +222,9 @@ public class AppDataServiceTest {
         Set<String> fields = new HashSet<String>();
         fields.add(propertyToRemove);
 
-        HashMap<String, String> expectedValuesAfterUpdate = new HashMap<String, String>(validApplicationData.getData());
-        expectedValuesAfterUpdate.remove(propertyToRemove);
-
-        testUpdatePersonData(fields, new HashMap<String, String>(), expectedValuesAfterUpdate, validApplicationData);
+        HashMap<String, String> values = new HashMap<String, String>();
+        appDataRepository.updateApplicationData(VALID_USER_ID, VALID_APPLICATION_ID, values, fields);
+        testUpdatePersonData(fields, values);
     }
 
     @Test
@@ -233,10 +238,56 @@ public class AppDataServiceTest {
         HashMap<String, String> values = new HashMap<String, String>();
         values.put(propertyToUpdate, updatedValue);
 
-        HashMap<String, String> expectedValuesAfterUpdate = new HashMap<String, String>(validApplicationData.getData());
-        expectedValuesAfterUpdate.put(propertyToUpdate, updatedValue);
+        appDataRepository.updateApplicationData(VALID_USER_ID, VALID_APPLICATION_ID, values, new HashSet<String>());
+        testUpdatePersonData(fields, values);
+    }
+
+    @Test
+    public void updatePersonData_validRequest_updateAndRemoveFields() throws Exception {
+        Set<String> fields = new HashSet<String>(Arrays.asList("color", "speed"));
+
+        HashMap<String, String> values = new HashMap<String, String>();
+        values.put("color", "ZZZZZZZZZZ");
+
+        appDataRepository.updateApplicationData(VALID_USER_ID, VALID_APPLICATION_ID, values,
+                Collections.singleton("speed"));
+        testUpdatePersonData(fields, values);
+    }
+
+    @Test
+    public void updatePersonData_validRequest_retriedOnConflict() throws Exception {
+        Set<String> fields = Collections.singleton("color");
+        HashMap<String, String> values = new HashMap<String, String>();
+        values.put("color", "ZZZZZZZZZZ");
+
+        appDataRepository.updateApplicationData(VALID_USER_ID, VALID_APPLICATION_ID, values, new HashSet<String>());
+        expectLastCall().andThrow(new OptimisticLockingFailureException("changed")).times(MAX_WRITE_ATTEMPTS - 1);
+        appDataRepository.updateApplicationData(VALID_USER_ID, VALID_APPLICATION_ID, values, new HashSet<String>());
+        testUpdatePersonData(fields, values);
+    }
+
+    @Test
+    public void updatePersonData_validRequest_conflictsOnEveryAttempt() throws Exception {
+        HashMap<String, String> values = new HashMap<String, String>();
+        values.put("color", "ZZZZZZZZZZ");
+
+        appDataRepository.replaceApplicationData(VALID_USER_ID, VALID_APPLICATION_ID, values);
+        expectLastCall().andThrow(new OptimisticLockingFailureException("changed")).times(MAX_WRITE_ATTEMPTS);
+        try {
+            testUpdatePersonData(null, values);
+            fail();
+        } catch (ProtocolException e) {
+            assertEquals(HttpServletResponse.SC_CONFLICT, e.getCode());
+        }
+        verify(appDataRepository);
+    }
 
-        testUpdatePersonData(fields, values, expectedValuesAfterUpdate, validApplicationData);
+    @Test
+    public void deletePersonData_validRequest_retriedOnConflict() throws Exception {
+        appDataRepository.replaceApplicationData(VALID_USER_ID, VALID_APPLICATION_ID, new HashMap<String, String>());
+        expectLastCall().andThrow(new OptimisticLockingFailureException("changed"));
+        appDataRepository.replaceApplicationData(VALID_USER_ID, VALID_APPLICATION_ID, new HashMap<String, String>());
+        testDeletePersonData(VALID_OWNER_ID, VALID_VIEWER_ID, null);
     }
 
     @Test(expected = ProtocolException.class)
@@ -246,22 +297,23 @@ public class AppDataServiceTest {
 
         HashMap<String, String> values = new HashMap<String, String>();
         values.put("a key", "that is not present in the fields set");
-        testUpdatePersonData(fields, values, values, validApplicationData);
+        testUpdatePersonData(fields, values);
     }
 
-    private void testGetPersonData(Set<String> fields, String ownerId, String viewerId, String applicationId,
-                                   ApplicationData applicationData, Map<String, String> expectedData) throws Exception {
+    private Map<String, String> testGetPersonData(Set<String> fields, String ownerId, String viewerId,
+                                                  String applicationId, ApplicationData applicationData,
+                                                  Map<String, String> expectedData) throws Exception {
 
         Set<UserId> userIds = new HashSet<UserId>(Arrays.asList(new UserId(UserId.Type.userId, VALID_USER_ID)));
 
         SecurityToken securityToken = getMockSecurityToken(ownerId, viewerId, applicationId, VALID_MODULE_ID);
 
-        List<Person> users = Arrays.asList(validPerson);
+        List<String> personIds = Arrays.asList(VALID_USER_ID);
         GroupId groupId = new GroupId(GroupId.Type.self, "@self");
-        expect(personService.getPeople(userIds, groupId, null, securityToken)).andReturn(users);
+        expect(personService.getPersonIds(userIds, groupId, securityToken)).andReturn(personIds);
         replay(personService);
 
-        expect(appDataRepository.getApplicationData(convertPeopleToUserIds(users), applicationId)).andReturn(
+        expect(appDataRepository.getApplicationData(personIds, applicationId, fields)).andReturn(
                 applicationData == null ? new ArrayList<ApplicationData>() : Arrays.asList(applicationData));
         replay(appDataRepository);
 
@@ -272,109 +324,42 @@ public class AppDataServiceTest {
         for (Map.Entry<String, String> entry : expectedData.entrySet()) {
             assertEquals(entry.getValue(), actualData.get(entry.getKey()));
         }
+        verify(appDataRepository);
+        return actualData;
     }
 
-    private void testDeletePersonData(Set<String> fieldsToDelete, HashMap<String, String> expectedApplicationDataAfterDelete) {
-        testDeletePersonData(VALID_OWNER_ID, VALID_VIEWER_ID, fieldsToDelete, expectedApplicationDataAfterDelete,
-                validApplicationData);
-    }
-
-    private void testDeletePersonData(String ownerId, String viewerId, Set<String> fieldsToDelete,
-                                      HashMap<String, String> expectedApplicationDataAfterDelete,
-                                      ApplicationData applicationData) {
-
+    //the repository calls expected by the test are recorded before calling this
+    private void testDeletePersonData(String ownerId, String viewerId, Set<String> fieldsToDelete) {
         UserId userId = new UserId(UserId.Type.userId, VALID_USER_ID);
-        Set<UserId> userIds = new HashSet<UserId>(Arrays.asList(userId));
-
-        SecurityToken securityToken = getMockSecurityToken(ownerId, viewerId, VALID_APPLICATION_ID, VALID_MODULE_ID);
-
-        List<Person> users = Arrays.asList(validPerson);
-        GroupId groupId = new GroupId(GroupId.Type.self, "@self");
-        expect(personService.getPeople(userIds, groupId, null, securityToken)).andReturn(users);
-        replay(personService);
-
-        expect(appDataRepository.getApplicationData(VALID_USER_ID, VALID_APPLICATION_ID)).andReturn(applicationData);
-        Capture<ApplicationData> capturedApplicationData = new Capture<ApplicationData>();
-        expect(appDataRepository.save(capture(capturedApplicationData))).andReturn(null);
-        replay(appDataRepository);
-
-        ReentrantLock lock = new ReentrantLock();
-        expect(lockService.borrowLock(anyObject(String.class), anyObject(String.class))).andReturn(lock);
-        lockService.returnLock(lock);
-        replay(lockService);
-
-        appDataService.deletePersonData(userId, groupId, VALID_APPLICATION_ID, fieldsToDelete, securityToken);
+        SecurityToken securityToken = expectWriteRequest(userId, ownerId, viewerId);
 
-        ApplicationData expectedApplicationData = new ApplicationData(applicationData.getEntityId(),
-                applicationData.getUserId(), applicationData.getAppUrl(), expectedApplicationDataAfterDelete);
+        appDataService.deletePersonData(userId, new GroupId(GroupId.Type.self, "@self"), VALID_APPLICATION_ID,
+                fieldsToDelete, securityToken);
 
-        ApplicationData actualApplicationData = capturedApplicationData.getValue();
-        assertEquals(expectedApplicationData.getEntityId(), actualApplicationData.getEntityId());
-        assertEquals(expectedApplicationData.getUserId(), actualApplicationData.getUserId());
-        assertEquals(expectedApplicationData.getAppUrl(), actualApplicationData.getAppUrl());
-        assertEquals(expectedApplicationData.getData(), actualApplicationData.getData());
+        verify(appDataRepository);
     }
 
-    private void testDeletePersonDataNoAppDataExpected(ApplicationData applicationData) throws InterruptedException, ExecutionException {
-
+    //the repository calls expected by the test are recorded before calling this
+    private void testUpdatePersonData(Set<String> fields, Map<String, String> values) {
         UserId userId = new UserId(UserId.Type.userId, VALID_USER_ID);
-        Set<UserId> userIds = new HashSet<UserId>(Arrays.asList(userId));
-
-        SecurityToken securityToken = getMockSecurityToken(VALID_OWNER_ID, VALID_VIEWER_ID, VALID_APPLICATION_ID, VALID_MODULE_ID);
-
-        List<Person> users = Arrays.asList(validPerson);
-        GroupId groupId = new GroupId(GroupId.Type.self, "@self");
-        expect(personService.getPeople(userIds, groupId, null, securityToken)).andReturn(users);
-        replay(personService);
-
-        expect(appDataRepository.getApplicationData(VALID_USER_ID, VALID_APPLICATION_ID)).andReturn(applicationData);
-        replay(appDataRepository);
+        SecurityToken securityToken = expectWriteRequest(userId, VALID_OWNER_ID, VALID_VIEWER_ID);
 
-        ReentrantLock lock = new ReentrantLock();
-        expect(lockService.borrowLock(anyObject(String.class), anyObject(String.class))).andReturn(lock);
-        lockService.returnLock(lock);
-        replay(lockService);
+        appDataService.updatePersonData(userId, new GroupId(GroupId.Type.self, "@self"), VALID_APPLICATION_ID, fields,
+                values, securityToken);
 
-        Future<Void> result = appDataService.deletePersonData(userId, groupId, VALID_APPLICATION_ID, null, securityToken);
-        assertEquals(null, result.get());
+        verify(appDataRepository);
     }
 
-    private void testUpdatePersonData(Set<String> fields, Map<String, String> values,
-                                      HashMap<String, String> expectedApplicationDataAfterUpdate,
-                                      ApplicationData applicationData) {
-
-        UserId userId = new UserId(UserId.Type.userId, VALID_USER_ID);
+    private SecurityToken expectWriteRequest(UserId userId, String ownerId, String viewerId) {
         Set<UserId> userIds = new HashSet<UserId>(Arrays.asList(userId));
 
-        SecurityToken securityToken = getMockSecurityToken(VALID_OWNER_ID, VALID_VIEWER_ID, VALID_APPLICATION_ID, VALID_MODULE_ID);
+        SecurityToken securityToken = getMockSecurityToken(ownerId, viewerId, VALID_APPLICATION_ID, VALID_MODULE_ID);
 
-        List<Person> users = Arrays.asList(validPerson);
         GroupId groupId = new GroupId(GroupId.Type.self, "@self");
-        expect(personService.getPeople(userIds, groupId, null, securityToken)).andReturn(users);
+        expect(personService.getPersonIds(userIds, groupId, securityToken)).andReturn(Arrays.asList(VALID_USER_ID));
         replay(personService);
-
-        expect(appDataRepository.getApplicationData(VALID_USER_ID, VALID_APPLICATION_ID)).andReturn(applicationData);
-        Capture<ApplicationData> capturedApplicationData = new Capture<ApplicationData>();
-        expect(appDataRepository.save(capture(capturedApplicationData))).andReturn(null);
         replay(appDataRepository);
-
-        ReentrantLock lock = new ReentrantLock();
-        expect(lockService.borrowLock(anyObject(String.class), anyObject(String.class))).andReturn(lock);
-        lockService.returnLock(lock);
-        replay(lockService);
-
-        appDataService.updatePersonData(userId, groupId, VALID_APPLICATION_ID, fields, values, securityToken);
-
-        ApplicationData expectedApplicationData = applicationData == null ? new ApplicationData(null, VALID_USER_ID,
-                VALID_APPLICATION_ID, expectedApplicationDataAfterUpdate) :
-                new ApplicationData(applicationData.getEntityId(), applicationData.getUserId(),
-                        applicationData.getAppUrl(), expectedApplicationDataAfterUpdate);
-
-        ApplicationData actualApplicationData = capturedApplicationData.getValue();
-        assertEquals(expectedApplicationData.getEntityId(), actualApplicationData.getEntityId());
-        assertEquals(expectedApplicationData.getUserId(), actualApplicationData.getUserId());
-        assertEquals(expectedApplicationData.getAppUrl(), actualApplicationData.getAppUrl());
-        assertEquals(expectedApplicationData.getData(), actualApplicationData.getData());
+        return securityToken;
     }
 
     private SecurityToken getMockSecurityToken(String ownerId, String viewerId, String applicationId, Long moduleID) {
@@ -387,12 +372,4 @@ public class AppDataServiceTest {
         replay(securityToken);
         return securityToken;
     }
-
-    private List<String> convertPeopleToUserIds(List<Person> people) {
-        List<String> ids = new ArrayList<String>(people.size());
-        for (Person person : people) {
-            ids.add(String.valueOf(person.getEntityId()));
-        }
-        return ids;
-    }
 }
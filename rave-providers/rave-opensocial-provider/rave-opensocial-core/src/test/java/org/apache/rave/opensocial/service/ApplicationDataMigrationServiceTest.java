@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.opensocial.service;
+
+import org.apache.rave.opensocial.repository.ApplicationDataRepository;
+import org.apache.rave.opensocial.repository.KeyValueApplicationDataRepository;
+import org.apache.rave.opensocial.service.impl.DefaultApplicationDataMigrationService;
+import org.apache.rave.service.LockService;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.scheduling.TaskScheduler;
+
+import java.util.Date;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.easymock.EasyMock.*;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ApplicationDataMigrationServiceTest {
+    private static final int BATCH_SIZE = 2;
+
+    private KeyValueApplicationDataRepository repository;
+    private LockService lockService;
+    private TaskScheduler taskScheduler;
+    private ApplicationDataMigrationService service;
+
+    @Before
+    public void setup() {
+        repository = createMock(KeyValueApplicationDataRepository.class);
+        lockService = createMock(LockService.class);
+        taskScheduler = createMock(TaskScheduler.class);
+        service = new DefaultApplicationDataMigrationService(repository, lockService, taskScheduler, false, BATCH_SIZE);
+    }
+
+    @Test
+    public void migrate_convertsUntilShortBatch() {
+        expectLock(new ReentrantLock());
+        expect(repository.convertSerializedApplicationData(BATCH_SIZE)).andReturn(2).times(2);
+        expect(repository.convertSerializedApplicationData(BATCH_SIZE)).andReturn(1);
+        replay(repository, lockService);
+
+        assertThat(service.migrate(), is(equalTo(5)));
+        verify(repository, lockService);
+    }
+
+    @Test
+    public void migrate_nothingToConvert() {
+        expectLock(new ReentrantLock());
+        expect(repository.convertSerializedApplicationData(BATCH_SIZE)).andReturn(0);
+        replay(repository, lockService);
+
+        assertThat(service.migrate(), is(equalTo(0)));
+        verify(repository, lockService);
+    }
+
+    @Test
+    public void migrate_lockedElsewhere() throws InterruptedException {
+        final ReentrantLock lock = new ReentrantLock();
+        Thread holder = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                lock.lock();
+            }
+        });
+        holder.start();
+        holder.join();
+        expectLock(lock);
+        replay(repository, lockService);
+
+        assertThat(service.migrate(), is(equalTo(-1)));
+        verify(repository, lockService);
+    }
+
+    @Test
+    public void migrate_serializedStore() {
+        ApplicationDataRepository serializedRepository = createMock(ApplicationDataRepository.class);
+        replay(serializedRepository, lockService);
+        service = new DefaultApplicationDataMigrationService(serializedRepository, lockService, taskScheduler, true,
+                BATCH_SIZE);
+
+        assertThat(service.migrate(), is(equalTo(0)));
+        verify(serializedRepository, lockService);
+    }
+
+    @Test
+    public void afterPropertiesSet_schedulesMigration() {
+        expect(taskScheduler.schedule(isA(Runnable.class), isA(Date.class))).andReturn(null);
+        replay(repository, lockService, taskScheduler);
+        service = new DefaultApplicationDataMigrationService(repository, lockService, taskScheduler, true, BATCH_SIZE);
+
+        ((DefaultApplicationDataMigrationService) service).afterPropertiesSet();
+        verify(repository, lockService, taskScheduler);
+    }
+
+    @Test
+    public void afterPropertiesSet_migrationDisabled() {
+        replay(repository, lockService, taskScheduler);
+
+        ((DefaultApplicationDataMigrationService) service).afterPropertiesSet();
+        verify(repository, lockService, taskScheduler);
+    }
+
+    private void expectLock(Lock lock) {
+        expect(lockService.borrowLock("ApplicationData", "migrate")).andReturn(lock);
+        lockService.returnLock(lock);
+    }
+}
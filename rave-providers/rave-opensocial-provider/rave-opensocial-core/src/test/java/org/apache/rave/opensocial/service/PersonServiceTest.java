@@ -36,6 +36,7 @@ import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -458,6 +459,61 @@ public class PersonServiceTest {
         Future<RestfulCollection<Person>> people = service.getPeople(ids, groupId, null, null, token);
     }
 
+    @Test
+    public void getPersonIds_self() {
+        expect(token.getViewerId()).andReturn(ID_1);
+        replay(token);
+        expect(repository.get(Long.parseLong(ID_1))).andReturn(getDbPerson());
+        replay(repository);
+
+        List<String> ids = ((SimplePersonService) service).getPersonIds(getUserIdSet(),
+                new GroupId(GroupId.Type.self, GROUP_ID), token);
+        assertThat(ids, is(equalTo(Arrays.asList(ID_1))));
+    }
+
+    @Test
+    public void getPersonIds_all() {
+        replay(token);
+        expect(repository.findAllConnectedPeopleIds(ID_2)).andReturn(Arrays.asList(1L, 2L));
+        expect(repository.findAllConnectedPeopleIds(ID_3)).andReturn(Arrays.asList(2L, 3L));
+        replay(repository);
+
+        List<String> ids = ((SimplePersonService) service).getPersonIds(getUserIdSet(),
+                new GroupId(GroupId.Type.all, GROUP_ID), token);
+        assertThat(ids.size(), is(equalTo(3)));
+        assertThat(ids.containsAll(Arrays.asList("1", "2", "3")), is(true));
+        verify(repository);
+    }
+
+    @Test
+    public void getPersonIds_friends() {
+        replay(token);
+        expect(repository.findFriendIds(ID_2)).andReturn(Arrays.asList(1L));
+        expect(repository.findFriendIds(ID_3)).andReturn(Arrays.asList(1L));
+        replay(repository);
+
+        List<String> ids = ((SimplePersonService) service).getPersonIds(getUserIdSet(),
+                new GroupId(GroupId.Type.friends, GROUP_ID), token);
+        assertThat(ids, is(equalTo(Arrays.asList("1"))));
+        verify(repository);
+    }
+
+    @Test
+    public void getPersonIds_groupId() {
+        expect(repository.findIdsByGroup(GROUP_ID)).andReturn(Arrays.asList(1L, 2L));
+        replay(repository);
+
+        List<String> ids = ((SimplePersonService) service).getPersonIds(getUserIdSet(),
+                new GroupId(GroupId.Type.groupId, GROUP_ID), token);
+        assertThat(ids, is(equalTo(Arrays.asList("1", "2"))));
+        verify(repository);
+    }
+
+    @Test(expected = ProtocolException.class)
+    public void getPersonIds_deleted() {
+        ((SimplePersonService) service).getPersonIds(getUserIdSet(), new GroupId(GroupId.Type.deleted, GROUP_ID), token);
+    }
+
     private List<org.apache.rave.portal.model.Person> getDbPersonList() {
         return Lists.asList(getDbPerson(), new org.apache.rave.portal.model.Person[]{});
     }
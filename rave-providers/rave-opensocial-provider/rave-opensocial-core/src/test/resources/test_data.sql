@@ -17,6 +17,7 @@
 set @token_info_seq = 'token_info';
 set @oauth_consumer_store_seq = 'oauth_consumer_store';
 set @application_data_seq = 'application_data';
+set @application_data_entry_seq = 'application_data_entry';
 set @person_seq = 'person';
 set @person_association_seq = 'person_association';
 set @groups_seq = 'groups';
@@ -37,6 +38,21 @@ INSERT INTO application_data(entity_id, user_id, app_url, serialized_data, dtype
 VALUES (@application_data_id_1, '12345', 'http://example.com/gadget.xml', '{"color":"blue","speed":"fast","state":"MA"}', 'JpaApplicationDataRepository$JpaSerializableApplicationData');
 UPDATE RAVE_SHINDIG_SEQUENCES SET seq_count = (seq_count + 1) WHERE seq_name = @application_data_seq;
 
+set @application_data_entry_id_1 = (SELECT seq_count FROM RAVE_SHINDIG_SEQUENCES WHERE seq_name = @application_data_entry_seq);
+INSERT INTO application_data_entry(entity_id, user_id, app_url, data_key, data_value)
+VALUES (@application_data_entry_id_1, '12345', 'http://example.com/gadget.xml', 'color', 'red');
+UPDATE RAVE_SHINDIG_SEQUENCES SET seq_count = (seq_count + 1) WHERE seq_name = @application_data_entry_seq;
+
+set @application_data_entry_id_2 = (SELECT seq_count FROM RAVE_SHINDIG_SEQUENCES WHERE seq_name = @application_data_entry_seq);
+INSERT INTO application_data_entry(entity_id, user_id, app_url, data_key, data_value)
+VALUES (@application_data_entry_id_2, '12345', 'http://example.com/gadget.xml', 'size', 'large');
+UPDATE RAVE_SHINDIG_SEQUENCES SET seq_count = (seq_count + 1) WHERE seq_name = @application_data_entry_seq;
+
+set @application_data_entry_id_3 = (SELECT seq_count FROM RAVE_SHINDIG_SEQUENCES WHERE seq_name = @application_data_entry_seq);
+INSERT INTO application_data_entry(entity_id, user_id, app_url, data_key, data_value)
+VALUES (@application_data_entry_id_3, '67890', 'http://example.com/gadget.xml', 'color', 'green');
+UPDATE RAVE_SHINDIG_SEQUENCES SET seq_count = (seq_count + 1) WHERE seq_name = @application_data_entry_seq;
+
 CREATE TABLE IF NOT EXISTS RAVE_PORTAL_SEQUENCES (seq_name VARCHAR(255) PRIMARY KEY NOT NULL, seq_count BIGINT(19));
 INSERT INTO RAVE_PORTAL_SEQUENCES(seq_name, seq_count) values (@person_seq, 1);
 INSERT INTO RAVE_PORTAL_SEQUENCES(seq_name, seq_count) values (@person_association_seq, 1);
@@ -23,7 +23,6 @@ import org.apache.rave.portal.model.Widget;
 import org.apache.rave.portal.service.WidgetProviderService;
 import org.apache.rave.provider.w3c.repository.W3CWidgetMetadataRepository;
 import org.apache.rave.provider.w3c.service.impl.WookieWidgetService;
-import org.apache.wookie.connector.framework.WookieConnectorException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -52,7 +51,7 @@ public class WookieWidgetMetadataRepository implements W3CWidgetMetadataReposito
     public Widget getWidgetMetadata(String widgetGuid) {
         try {
         	return this.widgetService.getWidget(widgetGuid);
-        } catch (WookieConnectorException e) {
+        } catch (RuntimeException e) {
             throw new IllegalArgumentException("Error occurred while processing response from wookie metadata call", e);
         }
     }
@@ -64,7 +63,7 @@ public class WookieWidgetMetadataRepository implements W3CWidgetMetadataReposito
 	public Widget[] getWidgetMetadata() {
 		try {
 			return this.widgetService.getWidgets();
-		} catch (WookieConnectorException e) {
+		} catch (RuntimeException e) {
             throw new IllegalArgumentException("Error occurred while processing response from wookie metadata call", e);
 		}
 	}
@@ -0,0 +1,357 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.provider.w3c.service.impl;
+
+import org.apache.commons.lang.ObjectUtils;
+import org.apache.rave.portal.model.Widget;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Local copy of the widget catalog of a Wookie server, indexed by widget identifier ignoring case.
+ * <p/>
+ * The catalog is loaded on first use and refreshed when it is older than the refresh interval, or sooner when a
+ * lookup misses.  Refreshes are conditional requests: the server is sent the ETag and Last-Modified date of the
+ * previous response, and a response identical to the previous one is not parsed again.  When the catalog did change,
+ * only the widgets that were added, changed or removed are replaced.  While one thread refreshes the catalog, others
+ * keep reading the previous one, and a failed refresh keeps serving it as well.
+ */
+public class WookieWidgetCatalog {
+    private static Logger logger = LoggerFactory.getLogger(WookieWidgetCatalog.class);
+
+    private static final String CATALOG_PATH = "/widgets?all=true";
+    private static final int TIMEOUT_MS = 10000;
+    private static final long MISS_REFRESH_INTERVAL_MS = 5000;
+
+    private final String catalogUrl;
+    private final long refreshIntervalMillis;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private final Object loadLock = new Object();
+
+    private volatile Catalog catalog;
+    private volatile long lastRefreshAttempt;
+
+    public WookieWidgetCatalog(String wookieServerUrl, long refreshIntervalMillis) {
+        this.catalogUrl = wookieServerUrl + CATALOG_PATH;
+        this.refreshIntervalMillis = refreshIntervalMillis;
+    }
+
+    /**
+     * @return all widgets in the catalog, in the order the server lists them
+     */
+    public List<Widget> getWidgets() {
+        Catalog current = getCatalog();
+        List<Widget> widgets = new ArrayList<Widget>(current.entries.size());
+        for (CatalogEntry entry : current.entries.values()) {
+            widgets.add(entry.toWidget());
+        }
+        return widgets;
+    }
+
+    /**
+     * @param identifier the identifier of the widget, in any case
+     * @return the widget, or null when the catalog does not contain it
+     */
+    public Widget getWidget(String identifier) {
+        String key = toKey(identifier);
+        CatalogEntry entry = getCatalog().entries.get(key);
+        if (entry == null && refreshAfterMiss()) {
+            entry = catalog.entries.get(key);
+        }
+        return entry == null ? null : entry.toWidget();
+    }
+
+    /**
+     * @return the number of widgets in the catalog, without loading it
+     */
+    public int size() {
+        Catalog current = catalog;
+        return current == null ? 0 : current.entries.size();
+    }
+
+    /**
+     * Fetches the catalog from the server if it has changed since the last refresh
+     *
+     * @return true when the catalog changed
+     */
+    public boolean refresh() {
+        synchronized (loadLock) {
+            lastRefreshAttempt = currentTimeMillis();
+            Catalog previous = catalog;
+            Catalog fetched = fetch(previous);
+            catalog = fetched;
+            return previous == null || fetched.entries != previous.entries;
+        }
+    }
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /*
+      Helper methods
+    */
+    private Catalog getCatalog() {
+        Catalog current = catalog;
+        if (current == null) {
+            synchronized (loadLock) {
+                if (catalog == null) {
+                    refresh();
+                }
+                return catalog;
+            }
+        }
+        boolean stale = currentTimeMillis() - current.loadTime >= refreshIntervalMillis;
+        if (stale && refreshing.compareAndSet(false, true)) {
+            try {
+                refresh();
+            } catch (RuntimeException e) {
+                logger.warn("Unable to refresh the wookie widget catalog, using the previous one", e);
+            } finally {
+                refreshing.set(false);
+            }
+            return catalog;
+        }
+        return current;
+    }
+
+    private boolean refreshAfterMiss() {
+        //the widget may have been added to wookie since the last refresh
+        synchronized (loadLock) {
+            if (currentTimeMillis() - lastRefreshAttempt < MISS_REFRESH_INTERVAL_MS) {
+                return false;
+            }
+            try {
+                return refresh();
+            } catch (RuntimeException e) {
+                logger.warn("Unable to refresh the wookie widget catalog, using the previous one", e);
+                return false;
+            }
+        }
+    }
+
+    private Catalog fetch(Catalog previous) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(catalogUrl).openConnection();
+            connection.setConnectTimeout(TIMEOUT_MS);
+            connection.setReadTimeout(TIMEOUT_MS);
+            if (previous != null) {
+                if (previous.eTag != null) {
+                    connection.setRequestProperty("If-None-Match", previous.eTag);
+                }
+                if (previous.lastModified > 0) {
+                    connection.setIfModifiedSince(previous.lastModified);
+                }
+            }
+            try {
+                int status = connection.getResponseCode();
+                if (status == HttpURLConnection.HTTP_NOT_MODIFIED && previous != null) {
+                    logger.debug("Wookie widget catalog not modified");
+                    return previous.reloaded(currentTimeMillis());
+                }
+                if (status != HttpURLConnection.HTTP_OK) {
+                    throw new IOException("Unexpected response " + status + " for " + catalogUrl);
+                }
+                byte[] body = read(connection.getInputStream());
+                byte[] digest = digest(body);
+                String eTag = connection.getHeaderField("ETag");
+                long lastModified = connection.getLastModified();
+                if (previous != null && Arrays.equals(digest, previous.digest)) {
+                    logger.debug("Wookie widget catalog unchanged");
+                    return new Catalog(previous.entries, digest, eTag, lastModified, currentTimeMillis());
+                }
+                Map<String, CatalogEntry> entries = merge(previous, parse(body));
+                return new Catalog(entries, digest, eTag, lastModified, currentTimeMillis());
+            } finally {
+                connection.disconnect();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to retrieve the widget catalog from " + catalogUrl, e);
+        }
+    }
+
+    private static Map<String, CatalogEntry> merge(Catalog previous, List<CatalogEntry> fetched) {
+        Map<String, CatalogEntry> existing = previous == null ?
+                Collections.<String, CatalogEntry>emptyMap() : previous.entries;
+        Map<String, CatalogEntry> entries = new LinkedHashMap<String, CatalogEntry>();
+        int added = 0;
+        int changed = 0;
+        for (CatalogEntry entry : fetched) {
+            String key = toKey(entry.identifier);
+            CatalogEntry current = existing.get(key);
+            if (current == null) {
+                added++;
+                entries.put(key, entry);
+            } else if (current.equals(entry)) {
+                entries.put(key, current);
+            } else {
+                changed++;
+                entries.put(key, entry);
+            }
+        }
+        int removed = 0;
+        for (String key : existing.keySet()) {
+            if (!entries.containsKey(key)) {
+                removed++;
+            }
+        }
+        logger.info("Wookie widget catalog refreshed: {} widgets, {} added, {} changed, {} removed",
+                new Object[]{entries.size(), added, changed, removed});
+        return Collections.unmodifiableMap(entries);
+    }
+
+    private static List<CatalogEntry> parse(byte[] body) throws IOException {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(false);
+            Document document = factory.newDocumentBuilder().parse(new ByteArrayInputStream(body));
+            NodeList widgetElements = document.getDocumentElement().getElementsByTagName("widget");
+            List<CatalogEntry> entries = new ArrayList<CatalogEntry>(widgetElements.getLength());
+            for (int i = 0; i < widgetElements.getLength(); i++) {
+                Element widgetElement = (Element) widgetElements.item(i);
+                String identifier = widgetElement.getAttribute("identifier");
+                if (identifier.length() == 0) {
+                    continue;
+                }
+                entries.add(new CatalogEntry(identifier, getChildText(widgetElement, "title"),
+                        getChildText(widgetElement, "description"), getChildText(widgetElement, "icon")));
+            }
+            return entries;
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException("Unable to create an XML parser", e);
+        } catch (SAXException e) {
+            throw new IOException("Invalid widget catalog", e);
+        }
+    }
+
+    private static String getChildText(Element parent, String tagName) {
+        NodeList children = parent.getElementsByTagName(tagName);
+        return children.getLength() == 0 ? null : children.item(0).getTextContent().trim();
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+            }
+            return body.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static byte[] digest(byte[] body) {
+        try {
+            return MessageDigest.getInstance("MD5").digest(body);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available", e);
+        }
+    }
+
+    private static String toKey(String identifier) {
+        return identifier == null ? null : identifier.toLowerCase(Locale.ENGLISH);
+    }
+
+    private static class Catalog {
+        private final Map<String, CatalogEntry> entries;
+        private final byte[] digest;
+        private final String eTag;
+        private final long lastModified;
+        private final long loadTime;
+
+        private Catalog(Map<String, CatalogEntry> entries, byte[] digest, String eTag, long lastModified,
+                        long loadTime) {
+            this.entries = entries;
+            this.digest = digest;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.loadTime = loadTime;
+        }
+
+        private Catalog reloaded(long loadTime) {
+            return new Catalog(entries, digest, eTag, lastModified, loadTime);
+        }
+    }
+
+    private static class CatalogEntry {
+        private final String identifier;
+        private final String title;
+        private final String description;
+        private final String icon;
+
+        private CatalogEntry(String identifier, String title, String description, String icon) {
+            this.identifier = identifier;
+            this.title = title;
+            this.description = description;
+            this.icon = icon;
+        }
+
+        private Widget toWidget() {
+            //a new object every time, callers are free to change and persist it
+            Widget widget = new Widget();
+            widget.setUrl(identifier);
+            widget.setTitle(title);
+            widget.setDescription(description);
+            widget.setThumbnailUrl(icon);
+            return widget;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof CatalogEntry)) {
+                return false;
+            }
+            CatalogEntry other = (CatalogEntry) o;
+            return ObjectUtils.equals(identifier, other.identifier) && ObjectUtils.equals(title, other.title)
+                    && ObjectUtils.equals(description, other.description) && ObjectUtils.equals(icon, other.icon);
+        }
+
+        @Override
+        public int hashCode() {
+            return identifier.hashCode();
+        }
+    }
+}
@@ -19,29 +19,73 @@
 
 package org.apache.rave.provider.w3c.service.impl;
 
+import org.apache.commons.lang.ObjectUtils;
 import org.apache.rave.portal.model.User;
 import org.apache.rave.portal.model.Widget;
 import org.apache.rave.portal.service.WidgetProviderService;
+import org.apache.rave.util.ExpiringCache;
 import org.apache.wookie.connector.framework.WidgetInstance;
 import org.apache.wookie.connector.framework.WookieConnectorException;
 import org.apache.wookie.connector.framework.WookieConnectorService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 
+/**
+ * Retrieves W3C widget instances from a Wookie server.
+ * <p/>
+ * A {@link WookieConnectorService} holds the current user and shared data key between calls, so connectors are never
+ * shared between threads.  They are pooled instead: a render borrows an idle connector, or creates one when there is
+ * none, sets the user and shared data key, and hands it back afterwards.  Connectors that fail with an IO error are
+ * discarded.
+ * <p/>
+ * The instances Wookie returns are cached by viewer, shared data key and widget url for the instance cache ttl, so
+ * repeated page views do not call Wookie again.  Failed lookups are not cached.  The instance cache can be cleared
+ * through JMX.
+ * <p/>
+ * Widget metadata is looked up in a {@link WookieWidgetCatalog} that is refreshed from the server periodically.
+ */
+@ManagedResource(description = "Wookie widget instance cache and connector pool")
 public class WookieWidgetService implements WidgetProviderService {
   private static Logger logger = LoggerFactory.getLogger(WookieWidgetService.class);
 
+    private static final long DEFAULT_INSTANCE_CACHE_TTL_MS = 5 * 60 * 1000;
+    private static final int DEFAULT_INSTANCE_CACHE_MAX_SIZE = 10000;
+    private static final int DEFAULT_CONNECTOR_POOL_MAX_IDLE = 8;
+    private static final long DEFAULT_CATALOG_REFRESH_MS = 5 * 60 * 1000;
+
     private final String wookieServerUrl; // = "http://localhost:8080/wookie";
     private final String wookieApiKey; // = "TEST";
-    private static WookieConnectorService  connectorService;
+    private final WookieWidgetCatalog widgetCatalog;
+    //all connectors use the same server and api key, only the user and shared data key change between renders
+    private final BlockingQueue<WookieConnectorService> connectorPool;
+    private final ExpiringCache<InstanceKey, WidgetInstance> instanceCache;
 
     public WookieWidgetService(String wookieServerUrl, String wookieApiKey){
+        this(wookieServerUrl, wookieApiKey, DEFAULT_INSTANCE_CACHE_TTL_MS, DEFAULT_INSTANCE_CACHE_MAX_SIZE,
+                DEFAULT_CONNECTOR_POOL_MAX_IDLE, DEFAULT_CATALOG_REFRESH_MS);
+    }
+
+    public WookieWidgetService(String wookieServerUrl, String wookieApiKey, long instanceCacheTtlMillis,
+                               int instanceCacheMaxSize, int connectorPoolMaxIdle, long catalogRefreshMillis) {
         this.wookieServerUrl = wookieServerUrl;
         this.wookieApiKey = wookieApiKey;
+        this.connectorPool = new LinkedBlockingQueue<WookieConnectorService>(connectorPoolMaxIdle);
+        this.instanceCache = new ExpiringCache<InstanceKey, WidgetInstance>(instanceCacheTtlMillis,
+                instanceCacheMaxSize) {
+            @Override
+            protected long currentTimeMillis() {
+                return WookieWidgetService.this.currentTimeMillis();
+            }
+        };
+        this.widgetCatalog = new WookieWidgetCatalog(wookieServerUrl, catalogRefreshMillis);
     }
 
     /* (non-Javadoc)
@@ -59,32 +103,49 @@ public class WookieWidgetService implements WidgetProviderService {
     /**
      * Get all widgets available from the configured Wookie server
      * @return an array of available widgets
-     * @throws WookieConnectorException
      */
-    public Widget[] getWidgets() throws WookieConnectorException{
-        connectorService = getWookieConnectorService(wookieServerUrl, wookieApiKey, null);    
-    	Collection<org.apache.wookie.connector.framework.Widget> widgets = connectorService.getAvailableWidgets().values();
-    	ArrayList<Widget> raveWidgets = new ArrayList<Widget>();
-    	for (org.apache.wookie.connector.framework.Widget wookieWidget: widgets){
-    		Widget widget = new Widget();
-    		widget.setUrl(wookieWidget.getIdentifier());
-    		widget.setDescription(wookieWidget.getDescription());
-    		widget.setTitle(wookieWidget.getTitle());
-    		widget.setThumbnailUrl(wookieWidget.getIcon().toString());
-    		raveWidgets.add(widget);
-    	}
-    	return raveWidgets.toArray(new Widget[raveWidgets.size()]);
+    public Widget[] getWidgets() {
+        List<Widget> widgets = widgetCatalog.getWidgets();
+        return widgets.toArray(new Widget[widgets.size()]);
     }
-    
-    public Widget getWidget(String url) throws WookieConnectorException{
-    	for (Widget widget: getWidgets()){
-    		if (widget.getUrl().equalsIgnoreCase(url)){
-    			return widget;
-    		}
-    	}
-    	return null;
+
+    /**
+     * Get a widget available from the configured Wookie server
+     * @param url the identifier of the widget, in any case
+     * @return the widget, or null when the Wookie server does not have it
+     */
+    public Widget getWidget(String url) {
+        return widgetCatalog.getWidget(url);
     }
-    
+
+    /**
+     * Removes all cached widget instances, so the next renders ask Wookie for them again
+     */
+    @ManagedOperation(description = "Removes all cached widget instances")
+    public void clearInstanceCache() {
+        instanceCache.clear();
+    }
+
+    /**
+     * @return the number of cached widget instances
+     */
+    @ManagedAttribute(description = "Number of cached widget instances")
+    public int getInstanceCacheSize() {
+        return instanceCache.size();
+    }
+
+    /**
+     * @return the number of idle connectors in the pool
+     */
+    @ManagedAttribute(description = "Number of idle Wookie connectors")
+    public int getIdleConnectorCount() {
+        return connectorPool.size();
+    }
+
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
     /**
      * Gets the Widget Instance corresponding to the RegionWidget and the Viewer
      * @param widget the type of Widget to obtain
@@ -93,20 +154,32 @@ public class WookieWidgetService implements WidgetProviderService {
      * @return a Widget
      */
     private W3CWidget getWidgetForViewer(Widget widget, String sharedDataKey, User viewer){
-       try {
-            // TODO: parameters for WookieConnectorService should not be fixed in code.
-            connectorService = getWookieConnectorService(wookieServerUrl, wookieApiKey, sharedDataKey);
+        InstanceKey key = new InstanceKey(viewer.getUsername(), sharedDataKey, widget.getUrl());
+        WidgetInstance cached = instanceCache.get(key);
+        if (cached != null) {
+            return createWidget(cached);
+        }
+
+        WookieConnectorService connectorService = null;
+        try {
+            connectorService = borrowConnector(sharedDataKey);
             org.apache.wookie.connector.framework.User user = new org.apache.wookie.connector.framework.User(String.valueOf(viewer.getUsername()), viewer.getUsername());
             connectorService.setCurrentUser(user);
             
-            logger.debug("Getting widget:"+widget.getUrl()+" from:" +connectorService.getConnection().getURL());
+            if (logger.isDebugEnabled()) {
+                logger.debug("Getting widget:"+widget.getUrl()+" from:" +connectorService.getConnection().getURL());
+            }
             WidgetInstance instance = connectorService.getOrCreateInstance(widget.getUrl());
+            returnConnector(connectorService);
+            instanceCache.put(key, instance);
             return createWidget(instance);
         } catch (WookieConnectorException e) {
+            returnConnector(connectorService);
             logger.error("Unable to connect to Wookie server", e);
             // FIXME: provide a real error widget
             return createWidget(new WidgetInstance("error", "error", e.getMessage(), "100", "100"));
         } catch (IOException e) {
+            //the connection may be left in an unknown state, so the connector is not reused
             logger.error("Problem communicating with Wookie server", e);
             // FIXME: provide a real error widget
             return createWidget(new WidgetInstance("error", "error", e.getMessage(), "100", "100"));
@@ -127,12 +200,51 @@ public class WookieWidgetService implements WidgetProviderService {
         widget.setWidth(Integer.parseInt(instance.getWidth()));
         return widget;
     }
-    
-    
-    // Get the wookie service connector
-    private WookieConnectorService getWookieConnectorService(String serverURL, String apiKey, String sharedDataKey ) throws WookieConnectorException {
-      connectorService = new WookieConnectorService(serverURL, apiKey, sharedDataKey);
-      return connectorService;
+
+    // Borrow an idle wookie service connector, or create one when all are in use
+    private WookieConnectorService borrowConnector(String sharedDataKey) throws WookieConnectorException {
+        WookieConnectorService connectorService = connectorPool.poll();
+        if (connectorService == null) {
+            connectorService = new WookieConnectorService(wookieServerUrl, wookieApiKey, sharedDataKey);
+        } else {
+            connectorService.getConnection().setSharedDataKey(sharedDataKey);
+        }
+        return connectorService;
     }
 
+    private void returnConnector(WookieConnectorService connectorService) {
+        //beyond the idle limit the connector is left to the garbage collector
+        if (connectorService != null) {
+            connectorPool.offer(connectorService);
+        }
+    }
+
+    private static class InstanceKey {
+        private final String viewer;
+        private final String sharedDataKey;
+        private final String widgetUrl;
+
+        private InstanceKey(String viewer, String sharedDataKey, String widgetUrl) {
+            this.viewer = viewer;
+            this.sharedDataKey = sharedDataKey;
+            this.widgetUrl = widgetUrl;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof InstanceKey)) {
+                return false;
+            }
+            InstanceKey other = (InstanceKey) o;
+            return ObjectUtils.equals(viewer, other.viewer) && ObjectUtils.equals(sharedDataKey, other.sharedDataKey)
+                    && ObjectUtils.equals(widgetUrl, other.widgetUrl);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = ObjectUtils.hashCode(viewer);
+            result = 31 * result + ObjectUtils.hashCode(sharedDataKey);
+            return 31 * result + ObjectUtils.hashCode(widgetUrl);
+        }
+    }
 }
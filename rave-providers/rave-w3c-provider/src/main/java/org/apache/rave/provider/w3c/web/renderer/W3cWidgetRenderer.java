@@ -40,6 +40,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+
 import static org.apache.rave.provider.w3c.Constants.WIDGET_TYPE;
 
 /**
@@ -100,7 +102,16 @@ public class W3cWidgetRenderer implements RegionWidgetRenderer {
 
         return String.format(MARKUP, item.getEntityId());
     }
-    
+
+    /**
+     * Widget instances are retrieved from Wookie one at a time as each widget is rendered
+     *
+     * @param items the RegionWidgets that are about to be rendered
+     */
+    @Override
+    public void prepareForRender(List<RegionWidget> items) {
+    }
+
     /**
      * Create a widget script block
      * @param item the RegionWidget to create a script block for
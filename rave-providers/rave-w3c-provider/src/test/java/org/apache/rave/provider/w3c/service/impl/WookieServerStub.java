@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.provider.w3c.service.impl;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal Wookie server on a free local port for testing the Wookie connector.
+ * <p/>
+ * It creates a widget instance for every request to /widgetinstances, accepts every participant and lists the widgets
+ * given to {@link #setWidgetsXml(String)}.  The url of each instance contains the widget, user and shared data key it
+ * was created for, so tests can tell which request produced it.  The widget list carries an ETag and is answered with
+ * 304 Not Modified when the client sends the current one, unless conditional requests are switched off.
+ */
+public class WookieServerStub {
+    private static final String CONTEXT = "/wookie";
+    private static final String INSTANCE_XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><widgetdata>" +
+            "<url>%1$s</url><identifier>%2$s</identifier><title>%3$s</title>" +
+            "<height>%4$s</height><width>%5$s</width><maximize>false</maximize></widgetdata>";
+
+    private final HttpServer server;
+    private final AtomicInteger instanceRequests = new AtomicInteger();
+    private final AtomicInteger widgetRequests = new AtomicInteger();
+    private final AtomicInteger widgetsNotModified = new AtomicInteger();
+    private volatile int instanceStatus = HttpURLConnection.HTTP_OK;
+    private volatile String widgetsXml = "<widgets></widgets>";
+    private volatile boolean conditionalRequests = true;
+
+    public WookieServerStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext(CONTEXT, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    dispatch(exchange);
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    /**
+     * @return the url of the server, to pass to the connector
+     */
+    public String getUrl() {
+        return "http://localhost:" + server.getAddress().getPort() + CONTEXT;
+    }
+
+    /**
+     * @return the number of widget instance requests received so far
+     */
+    public int getInstanceRequests() {
+        return instanceRequests.get();
+    }
+
+    /**
+     * @return the number of widget list requests received so far
+     */
+    public int getWidgetRequests() {
+        return widgetRequests.get();
+    }
+
+    /**
+     * @return the number of widget list requests answered with 304 Not Modified
+     */
+    public int getWidgetsNotModified() {
+        return widgetsNotModified.get();
+    }
+
+    /**
+     * @param conditionalRequests whether the widget list is sent with an ETag
+     */
+    public void setConditionalRequests(boolean conditionalRequests) {
+        this.conditionalRequests = conditionalRequests;
+    }
+
+    /**
+     * @param instanceStatus the http status to answer widget instance requests with
+     */
+    public void setInstanceStatus(int instanceStatus) {
+        this.instanceStatus = instanceStatus;
+    }
+
+    /**
+     * @param widgetsXml the widget list returned for /widgets
+     */
+    public void setWidgetsXml(String widgetsXml) {
+        this.widgetsXml = widgetsXml;
+    }
+
+    /**
+     * @return the url of the widget instance the stub creates for the given widget, user and shared data key
+     */
+    public String getInstanceUrl(String widgetId, String userId, String sharedDataKey) {
+        return getUrl() + "/instance/" + sharedDataKey + "/" + userId + "?widget=" + widgetId;
+    }
+
+    /*
+      Helper methods
+    */
+    private void dispatch(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath().substring(CONTEXT.length());
+        if (path.startsWith("/widgetinstances")) {
+            instanceRequests.incrementAndGet();
+            if (instanceStatus != HttpURLConnection.HTTP_OK) {
+                respond(exchange, instanceStatus, "");
+                return;
+            }
+            Map<String, String> parameters = getParameters(exchange);
+            String widgetId = parameters.get("widgetid");
+            respond(exchange, HttpURLConnection.HTTP_OK, String.format(INSTANCE_XML,
+                    getInstanceUrl(widgetId, parameters.get("userid"), parameters.get("shareddatakey")),
+                    widgetId, "Stub widget", "200", "300"));
+        } else if (path.startsWith("/participants")) {
+            respond(exchange, HttpURLConnection.HTTP_CREATED, "");
+        } else if (path.startsWith("/widgets")) {
+            widgetRequests.incrementAndGet();
+            String xml = widgetsXml;
+            if (conditionalRequests) {
+                String eTag = "\"" + Integer.toHexString(xml.hashCode()) + "\"";
+                if (eTag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    widgetsNotModified.incrementAndGet();
+                    respond(exchange, HttpURLConnection.HTTP_NOT_MODIFIED, "");
+                    return;
+                }
+                exchange.getResponseHeaders().set("ETag", eTag);
+            }
+            respond(exchange, HttpURLConnection.HTTP_OK, xml);
+        } else {
+            respond(exchange, HttpURLConnection.HTTP_NOT_FOUND, "");
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes("UTF-8");
+        exchange.getResponseHeaders().set("Content-Type", "text/xml; charset=UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            OutputStream out = exchange.getResponseBody();
+            out.write(bytes);
+            out.close();
+        }
+    }
+
+    private static Map<String, String> getParameters(HttpExchange exchange) throws IOException {
+        Map<String, String> parameters = new HashMap<String, String>();
+        addParameters(parameters, exchange.getRequestURI().getRawQuery());
+        addParameters(parameters, readBody(exchange.getRequestBody()));
+        return parameters;
+    }
+
+    private static void addParameters(Map<String, String> parameters, String encoded) throws IOException {
+        if (encoded == null || encoded.length() == 0) {
+            return;
+        }
+        for (String pair : encoded.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0) {
+                parameters.put(URLDecoder.decode(pair.substring(0, separator), "UTF-8"),
+                        URLDecoder.decode(pair.substring(separator + 1), "UTF-8"));
+            }
+        }
+    }
+
+    private static String readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            body.write(buffer, 0, read);
+        }
+        return body.toString("UTF-8");
+    }
+}
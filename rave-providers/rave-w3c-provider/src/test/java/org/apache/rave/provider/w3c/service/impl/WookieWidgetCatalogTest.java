@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.rave.provider.w3c.service.impl;
+
+import org.apache.rave.portal.model.Widget;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class WookieWidgetCatalogTest {
+    private static final long REFRESH_INTERVAL = 60000L;
+    private static final String FREEDER = widgetXml("http://wookie.apache.org/widgets/freeder", "freeder",
+            "An RSS reader", "http://localhost:8080/wookie/freeder.png");
+    private static final String WEATHER = widgetXml("http://www.getwookie.org/widgets/weather", "Weather",
+            "A silly Weather widget", "http://localhost:8080/wookie/weather.png");
+    private static final String CHAT = widgetXml("http://wookie.apache.org/widgets/simplechat", "SimpleChat",
+            "Stripped down chat widget", null);
+
+    private WookieServerStub wookieServer;
+    private TestWookieWidgetCatalog catalog;
+
+    @Before
+    public void setup() throws Exception {
+        wookieServer = new WookieServerStub();
+        wookieServer.setWidgetsXml(catalogXml(FREEDER, WEATHER));
+        wookieServer.start();
+        catalog = new TestWookieWidgetCatalog(wookieServer.getUrl());
+    }
+
+    @After
+    public void tearDown() {
+        wookieServer.stop();
+    }
+
+    @Test
+    public void getWidgets() {
+        List<Widget> widgets = catalog.getWidgets();
+
+        assertThat(widgets.size(), is(2));
+        assertThat(widgets.get(0).getUrl(), is(equalTo("http://wookie.apache.org/widgets/freeder")));
+        assertThat(widgets.get(0).getTitle(), is(equalTo("freeder")));
+        assertThat(widgets.get(0).getDescription(), is(equalTo("An RSS reader")));
+        assertThat(widgets.get(0).getThumbnailUrl(), is(equalTo("http://localhost:8080/wookie/freeder.png")));
+        assertThat(widgets.get(1).getTitle(), is(equalTo("Weather")));
+    }
+
+    @Test
+    public void getWidget_ignoresCase() {
+        Widget widget = catalog.getWidget("HTTP://www.GetWookie.org/widgets/weather");
+        assertThat(widget.getTitle(), is(equalTo("Weather")));
+
+        catalog.getWidget("http://wookie.apache.org/widgets/freeder");
+        assertThat(wookieServer.getWidgetRequests(), is(1));
+        assertThat(catalog.size(), is(2));
+    }
+
+    @Test
+    public void getWidget_copies() {
+        catalog.getWidget("http://wookie.apache.org/widgets/freeder").setTitle("changed");
+        assertThat(catalog.getWidget("http://wookie.apache.org/widgets/freeder").getTitle(), is(equalTo("freeder")));
+    }
+
+    @Test
+    public void getWidget_missRefreshesAtMostEveryFewSeconds() {
+        assertThat(catalog.getWidget("http://example.com/unknown"), is(nullValue()));
+        assertThat(wookieServer.getWidgetRequests(), is(1));
+
+        wookieServer.setWidgetsXml(catalogXml(FREEDER, WEATHER, CHAT));
+        catalog.now += 5000;
+        Widget chat = catalog.getWidget("http://wookie.apache.org/widgets/simplechat");
+        assertThat(chat.getTitle(), is(equalTo("SimpleChat")));
+        assertThat(chat.getThumbnailUrl(), is(nullValue()));
+
+        assertThat(catalog.getWidget("http://example.com/unknown"), is(nullValue()));
+        assertThat(wookieServer.getWidgetRequests(), is(2));
+    }
+
+    @Test
+    public void refresh_notModified() {
+        catalog.getWidgets();
+        catalog.now += REFRESH_INTERVAL - 1;
+        catalog.getWidgets();
+        assertThat(wookieServer.getWidgetRequests(), is(1));
+
+        catalog.now += 1;
+        assertThat(catalog.getWidgets().size(), is(2));
+        assertThat(wookieServer.getWidgetRequests(), is(2));
+        assertThat(wookieServer.getWidgetsNotModified(), is(1));
+
+        //the not modified response restarts the refresh interval
+        catalog.now += REFRESH_INTERVAL - 1;
+        catalog.getWidgets();
+        assertThat(wookieServer.getWidgetRequests(), is(2));
+    }
+
+    @Test
+    public void refresh_changes() {
+        catalog.getWidgets();
+        String changedWeather = widgetXml("http://www.getwookie.org/widgets/weather", "Weather",
+                "A better Weather widget", "http://localhost:8080/wookie/weather.png");
+        wookieServer.setWidgetsXml(catalogXml(changedWeather, CHAT));
+
+        assertThat(catalog.refresh(), is(true));
+
+        assertThat(catalog.getWidget("http://wookie.apache.org/widgets/freeder"), is(nullValue()));
+        assertThat(catalog.getWidget("http://www.getwookie.org/widgets/weather").getDescription(),
+                is(equalTo("A better Weather widget")));
+        assertThat(catalog.getWidget("http://wookie.apache.org/widgets/simplechat").getTitle(),
+                is(equalTo("SimpleChat")));
+        assertThat(catalog.size(), is(2));
+    }
+
+    @Test
+    public void refresh_unchangedWithoutETag() {
+        wookieServer.setConditionalRequests(false);
+        catalog.getWidgets();
+
+        assertThat(catalog.refresh(), is(false));
+        assertThat(wookieServer.getWidgetsNotModified(), is(0));
+
+        wookieServer.setWidgetsXml(catalogXml(FREEDER));
+        assertThat(catalog.refresh(), is(true));
+        assertThat(catalog.size(), is(1));
+    }
+
+    @Test
+    public void refresh_failureKeepsCatalog() {
+        catalog.getWidgets();
+        wookieServer.stop();
+        catalog.now += REFRESH_INTERVAL;
+
+        assertThat(catalog.getWidgets().size(), is(2));
+        assertThat(catalog.getWidget("http://wookie.apache.org/widgets/freeder").getTitle(), is(equalTo("freeder")));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void getWidgets_serverUnavailable() {
+        wookieServer.stop();
+        catalog.getWidgets();
+    }
+
+    /* Helper methods */
+    private static String widgetXml(String identifier, String title, String description, String icon) {
+        return "<widget id=\"1\" identifier=\"" + identifier + "\" width=\"320\" height=\"480\" version=\"1.0\">" +
+                "<title short=\"\">" + title + "</title><description>" + description + "</description>" +
+                (icon == null ? "" : "<icon>" + icon + "</icon>") + "<author>Apache Wookie Team</author></widget>";
+    }
+
+    private static String catalogXml(String... widgets) {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><widgets>");
+        for (String widget : widgets) {
+            xml.append(widget);
+        }
+        return xml.append("</widgets>").toString();
+    }
+
+    private static class TestWookieWidgetCatalog extends WookieWidgetCatalog {
+        private long now = 1000000L;
+
+        private TestWookieWidgetCatalog(String wookieServerUrl) {
+            super(wookieServerUrl, REFRESH_INTERVAL);
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+    }
+}
@@ -19,6 +19,221 @@
 
 package org.apache.rave.provider.w3c.service.impl;
 
+import org.apache.rave.portal.model.User;
+import org.apache.rave.portal.model.Widget;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
 
 public class WookieWidgetServiceTest {
+    private static final String WIDGET_URL = "http://wookie.apache.org/widgets/freeder";
+    private static final String OTHER_WIDGET_URL = "http://www.getwookie.org/widgets/weather";
+    private static final long TTL = 60000L;
+
+    private WookieServerStub wookieServer;
+    private TestWookieWidgetService widgetService;
+    private User viewer;
+    private Widget widget;
+
+    @Before
+    public void setup() throws Exception {
+        wookieServer = new WookieServerStub();
+        wookieServer.start();
+        widgetService = new TestWookieWidgetService(wookieServer.getUrl());
+        viewer = new User(1L, "canonical");
+        widget = createWidget(WIDGET_URL);
+    }
+
+    @After
+    public void tearDown() {
+        wookieServer.stop();
+    }
+
+    @Test
+    public void getWidget_instance() {
+        W3CWidget result = (W3CWidget) widgetService.getWidget(viewer, "7", widget);
+
+        assertThat(result.getUrl(), is(equalTo(wookieServer.getInstanceUrl(WIDGET_URL, "canonical", "7"))));
+        assertThat(result.getType(), is(equalTo("W3C")));
+        assertThat(result.getHeight(), is(200));
+        assertThat(result.getWidth(), is(300));
+        assertThat(wookieServer.getInstanceRequests(), is(1));
+    }
+
+    @Test
+    public void getWidget_notW3C() {
+        widget.setType("OpenSocial");
+        assertThat(widgetService.getWidget(viewer, "7", widget), is(nullValue()));
+        assertThat(wookieServer.getInstanceRequests(), is(0));
+    }
+
+    @Test
+    public void getWidget_cached() {
+        Widget first = widgetService.getWidget(viewer, "7", widget);
+        Widget second = widgetService.getWidget(viewer, "7", widget);
+
+        assertThat(second.getUrl(), is(equalTo(first.getUrl())));
+        assertThat(wookieServer.getInstanceRequests(), is(1));
+        assertThat(widgetService.getInstanceCacheSize(), is(1));
+    }
+
+    @Test
+    public void getWidget_cachedPerViewerSharedDataKeyAndWidget() {
+        widgetService.getWidget(viewer, "7", widget);
+        Widget otherViewer = widgetService.getWidget(new User(2L, "john.doe"), "7", widget);
+        Widget otherKey = widgetService.getWidget(viewer, "8", widget);
+        Widget otherWidget = widgetService.getWidget(viewer, "7", createWidget(OTHER_WIDGET_URL));
+
+        assertThat(otherViewer.getUrl(), is(equalTo(wookieServer.getInstanceUrl(WIDGET_URL, "john.doe", "7"))));
+        assertThat(otherKey.getUrl(), is(equalTo(wookieServer.getInstanceUrl(WIDGET_URL, "canonical", "8"))));
+        assertThat(otherWidget.getUrl(), is(equalTo(wookieServer.getInstanceUrl(OTHER_WIDGET_URL, "canonical", "7"))));
+        assertThat(wookieServer.getInstanceRequests(), is(4));
+    }
+
+    @Test
+    public void getWidget_expired() {
+        widgetService.getWidget(viewer, "7", widget);
+        widgetService.now += TTL - 1;
+        widgetService.getWidget(viewer, "7", widget);
+        assertThat(wookieServer.getInstanceRequests(), is(1));
+
+        widgetService.now += 1;
+        widgetService.getWidget(viewer, "7", widget);
+        assertThat(wookieServer.getInstanceRequests(), is(2));
+    }
+
+    @Test
+    public void getWidget_errorNotCached() {
+        wookieServer.setInstanceStatus(HttpURLConnection.HTTP_INTERNAL_ERROR);
+        W3CWidget error = (W3CWidget) widgetService.getWidget(viewer, "7", widget);
+        assertThat(error.getUrl(), is(equalTo("error")));
+        assertThat(widgetService.getInstanceCacheSize(), is(0));
+
+        wookieServer.setInstanceStatus(HttpURLConnection.HTTP_OK);
+        Widget result = widgetService.getWidget(viewer, "7", widget);
+        assertThat(result.getUrl(), is(equalTo(wookieServer.getInstanceUrl(WIDGET_URL, "canonical", "7"))));
+        assertThat(wookieServer.getInstanceRequests(), is(2));
+    }
+
+    @Test
+    public void clearInstanceCache() {
+        widgetService.getWidget(viewer, "7", widget);
+        widgetService.clearInstanceCache();
+        assertThat(widgetService.getInstanceCacheSize(), is(0));
+
+        widgetService.getWidget(viewer, "7", widget);
+        assertThat(wookieServer.getInstanceRequests(), is(2));
+    }
+
+    @Test
+    public void instanceCache_maxSize() {
+        widgetService = new TestWookieWidgetService(wookieServer.getUrl(), 2);
+        widgetService.getWidget(viewer, "1", widget);
+        widgetService.now += 1;
+        widgetService.getWidget(viewer, "2", widget);
+        widgetService.now += 1;
+        widgetService.getWidget(viewer, "3", widget);
+
+        assertThat(widgetService.getInstanceCacheSize(), is(2));
+        //the oldest instance was dropped
+        widgetService.getWidget(viewer, "1", widget);
+        assertThat(wookieServer.getInstanceRequests(), is(4));
+    }
+
+    @Test
+    public void connectors_reused() {
+        widgetService.getWidget(viewer, "7", widget);
+        widgetService.getWidget(new User(2L, "john.doe"), "7", widget);
+        widgetService.getWidget(new User(3L, "jane.doe"), "7", widget);
+
+        assertThat(widgetService.getIdleConnectorCount(), is(1));
+    }
+
+    @Test
+    public void connectors_reusedForOtherSharedDataKeys() {
+        widgetService.getWidget(viewer, "7", widget);
+        Widget result = widgetService.getWidget(viewer, "8", widget);
+
+        assertThat(result.getUrl(), is(equalTo(wookieServer.getInstanceUrl(WIDGET_URL, "canonical", "8"))));
+        assertThat(widgetService.getIdleConnectorCount(), is(1));
+    }
+
+    @Test
+    public void concurrentViewers() throws Exception {
+        final int viewers = 20;
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<Future<String>>();
+            for (int i = 0; i < viewers * 5; i++) {
+                final User user = new User((long) (i % viewers), "user" + (i % viewers));
+                results.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() {
+                        return widgetService.getWidget(user, "7", widget).getUrl();
+                    }
+                }));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                //every viewer gets its own instance, never one created for another thread's viewer
+                assertThat(results.get(i).get(),
+                        is(equalTo(wookieServer.getInstanceUrl(WIDGET_URL, "user" + (i % viewers), "7"))));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(widgetService.getInstanceCacheSize(), is(viewers));
+    }
+
+    @Test
+    public void getWidgets() throws Exception {
+        wookieServer.setWidgetsXml("<widgets><widget id=\"7\" identifier=\"" + WIDGET_URL + "\" width=\"320\" " +
+                "height=\"480\" version=\"0.1\"><title short=\"\">freeder</title><description>An RSS reader" +
+                "</description><icon>http://localhost:8080/wookie/icon.png</icon></widget></widgets>");
+
+        Widget[] widgets = widgetService.getWidgets();
+
+        assertThat(widgets.length, is(1));
+        assertThat(widgets[0].getUrl(), is(equalTo(WIDGET_URL)));
+        assertThat(widgets[0].getTitle(), is(equalTo("freeder")));
+        assertThat(widgetService.getWidget(WIDGET_URL.toUpperCase()).getTitle(), is(equalTo("freeder")));
+        assertThat(wookieServer.getWidgetRequests(), is(1));
+    }
+
+    /* Helper methods */
+    private static Widget createWidget(String url) {
+        Widget widget = new Widget();
+        widget.setUrl(url);
+        widget.setType("W3C");
+        return widget;
+    }
+
+    private static class TestWookieWidgetService extends WookieWidgetService {
+        private long now = 1000L;
+
+        private TestWookieWidgetService(String wookieServerUrl) {
+            this(wookieServerUrl, 100);
+        }
+
+        private TestWookieWidgetService(String wookieServerUrl, int instanceCacheMaxSize) {
+            super(wookieServerUrl, "TEST", TTL, instanceCacheMaxSize, 4, TTL);
+        }
+
+        @Override
+        protected long currentTimeMillis() {
+            return now;
+        }
+    }
 }